@@ -0,0 +1,53 @@
+package com.dbhys.oauth.benchmark;
+
+import com.dbhys.oauth.security.Authentication;
+import com.dbhys.oauth.validator.AuthenticationTokenValidator;
+import com.dbhys.oauth.validator.CachingJWSKeySelector;
+import com.nimbusds.jose.JWSAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification throughput per signature algorithm, through the full
+ * validator path with the token caches disabled so that every call parses
+ * the token and checks the signature.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlgorithmBenchmark {
+
+    @Param({"RS256", "ES256", "EdDSA"})
+    private String algorithm;
+
+    private String token;
+
+    private AuthenticationTokenValidator validator;
+
+    @Setup
+    public void setUp() throws Exception {
+        TokenFixture fixture = TokenFixture.forAlgorithm(JWSAlgorithm.parse(algorithm));
+        token = fixture.mint("benchmark");
+        validator = new AuthenticationTokenValidator(TokenFixture.ISSUER,
+                new CachingJWSKeySelector<>(fixture.getAlgorithm(), fixture.jwkSource()), null);
+    }
+
+    @Benchmark
+    public Authentication verify() throws Exception {
+        return validator.authenticate(token);
+    }
+}
@@ -0,0 +1,139 @@
+package com.dbhys.oauth.benchmark;
+
+import com.dbhys.oauth.bean.OAuthClientMetadata;
+import com.dbhys.oauth.config.AuthenticationResourceServerConfig;
+import com.dbhys.oauth.security.ApiSecurityInterceptor;
+import com.dbhys.oauth.validator.AuthenticationTokenValidator;
+import com.dbhys.oauth.validator.CachingJWSKeySelector;
+import com.dbhys.oauth.validator.VerifiedTokenCache;
+import com.nimbusds.jose.JWSAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link ApiSecurityInterceptor#preHandle} for a token that is
+ * already in the verified token cache.
+ *
+ * <p>Run {@link #main} to enforce the allocation budget of the success
+ * path: it runs the benchmark with the GC profiler and exits with status 1
+ * if more than {@link #ALLOCATION_BUDGET} bytes are allocated per call.
+ * The mock request returns its header without the case-insensitive map
+ * lookup of {@link MockHttpServletRequest}, so only the interceptor's own
+ * allocations are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiSecurityInterceptorBenchmark {
+
+    /**
+     * Bytes allowed per cached-token request, the success path must not
+     * allocate.
+     */
+    static final double ALLOCATION_BUDGET = 1.0;
+
+    private ApiSecurityInterceptor interceptor;
+
+    private GenericApplicationContext context;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        TokenFixture fixture = TokenFixture.rsa();
+
+        AuthenticationResourceServerConfig config = new AuthenticationResourceServerConfig();
+        config.setIssuer(TokenFixture.ISSUER);
+        AuthenticationTokenValidator validator = new AuthenticationTokenValidator(TokenFixture.ISSUER,
+                new CachingJWSKeySelector<>(JWSAlgorithm.RS256, fixture.jwkSource()), null);
+        validator.setTokenCache(new VerifiedTokenCache(1024));
+
+        context = new GenericApplicationContext();
+        context.getBeanFactory().registerSingleton("config", config);
+        context.getBeanFactory().registerSingleton("authenticationTokenValidator", validator);
+        context.getBeanFactory().registerSingleton("oAuthClientMetadata",
+                new OAuthClientMetadata(TokenFixture.ISSUER, new String[]{"RS256"}, TokenFixture.ISSUER + "/jwks"));
+        context.refresh();
+
+        interceptor = new ApiSecurityInterceptor();
+        interceptor.setApplicationContext(context);
+
+        request = new BearerRequest("Bearer " + fixture.mint("benchmark"));
+        response = new MockHttpServletResponse();
+        if (!interceptor.preHandle(request, response, null)) {
+            throw new IllegalStateException("The benchmark token was rejected");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean cachedToken() throws Exception {
+        boolean authenticated = interceptor.preHandle(request, response, null);
+        interceptor.afterCompletion(request, response, null, null);
+        return authenticated;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ApiSecurityInterceptorBenchmark.class.getName() + ".cachedToken")
+                .addProfiler(GCProfiler.class)
+                .build();
+        for (RunResult runResult : new Runner(options).run()) {
+            Result<?> allocated = runResult.getSecondaryResults().get("gc.alloc.rate.norm");
+            if (allocated != null && allocated.getScore() > ALLOCATION_BUDGET) {
+                System.err.printf("preHandle allocates %.1f B/op, budget is %.1f B/op%n",
+                        allocated.getScore(), ALLOCATION_BUDGET);
+                System.exit(1);
+            }
+        }
+    }
+
+    private static final class BearerRequest extends MockHttpServletRequest {
+
+        private final String authorization;
+
+        private BearerRequest(String authorization) {
+            this.authorization = authorization;
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return "Authorization".equals(name) ? authorization : null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.dbhys.oauth.benchmark;
+
+import com.dbhys.oauth.validator.AuthenticationTokenValidator;
+import com.dbhys.oauth.validator.CachingJWSKeySelector;
+import com.dbhys.oauth.validator.ValidationResult;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokens per second of {@code validateAll} against the pool parallelism,
+ * for a batch where every token is signed by the same key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkValidationBenchmark {
+
+    private static final int BATCH_SIZE = 4096;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private List<JWT> batch;
+
+    private ForkJoinPool pool;
+
+    private AuthenticationTokenValidator validator;
+
+    @Setup
+    public void setUp() throws Exception {
+        TokenFixture fixture = TokenFixture.rsa();
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(SignedJWT.parse(fixture.mint("user-" + i)));
+        }
+        pool = new ForkJoinPool(parallelism);
+        validator = new AuthenticationTokenValidator(TokenFixture.ISSUER,
+                new CachingJWSKeySelector<>(fixture.getAlgorithm(), fixture.jwkSource()), null);
+        validator.setForkJoinPool(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<ValidationResult> validateAll() {
+        return validator.validateAll(batch);
+    }
+}
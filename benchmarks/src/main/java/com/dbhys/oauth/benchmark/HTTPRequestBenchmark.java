@@ -0,0 +1,113 @@
+package com.dbhys.oauth.benchmark;
+
+import com.dbhys.oauth.http.HTTPRequest;
+import com.dbhys.oauth.http.HTTPResponse;
+import com.dbhys.oauth.http.HTTPTransport;
+import com.dbhys.oauth.http.HttpClientTransport;
+import com.dbhys.oauth.http.HttpURLConnectionTransport;
+import com.dbhys.oauth.http.InMemoryTransport;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.sun.net.httpserver.HttpServer;
+import net.minidev.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link HTTPRequest#send()} fetching a JWK set from a server on
+ * the loopback interface, i.e. the client overhead without the network,
+ * by transport. {@code inmemory} answers without any socket, the floor of
+ * the request and response handling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HTTPRequestBenchmark {
+
+    @Param({"urlconnection", "httpclient", "inmemory"})
+    public String transportType;
+
+    private HttpServer server;
+
+    private ExecutorService serverExecutor;
+
+    private URL jwksURL;
+
+    private HTTPTransport transport;
+
+    @Setup
+    public void setUp() throws Exception {
+        // A typical JWK set, the current and the next signing key
+        byte[] jwks = new JWKSet(Arrays.asList(
+                TokenFixture.rsa().getPublicJWK(),
+                TokenFixture.forAlgorithm(JWSAlgorithm.ES256).getPublicJWK()))
+                .toString().getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/keys", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(200, jwks.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(jwks);
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(2);
+        server.setExecutor(serverExecutor);
+        server.start();
+        jwksURL = new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/keys");
+
+        switch (transportType) {
+            case "urlconnection":
+                transport = new HttpURLConnectionTransport();
+                break;
+            case "httpclient":
+                transport = new HttpClientTransport();
+                break;
+            default:
+                String content = new String(jwks, StandardCharsets.UTF_8);
+                transport = new InMemoryTransport().register(jwksURL.toString(), request -> {
+                    HTTPResponse response = new HTTPResponse(HTTPResponse.SC_OK);
+                    response.setHeader("Content-Type", "application/json; charset=UTF-8");
+                    response.setContent(content);
+                    return response;
+                });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public JSONObject send() throws Exception {
+        HTTPRequest request = new HTTPRequest(HTTPRequest.Method.GET, jwksURL);
+        request.setTransport(transport);
+        HTTPResponse response = request.send();
+        response.ensureStatusCode(HTTPResponse.SC_OK);
+        return response.getContentAsJSONObject();
+    }
+}
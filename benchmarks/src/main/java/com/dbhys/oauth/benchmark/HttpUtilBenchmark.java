@@ -0,0 +1,119 @@
+package com.dbhys.oauth.benchmark;
+
+import com.dbhys.oauth.http.ContentType;
+import com.dbhys.oauth.util.JSONObjectUtils;
+import com.dbhys.oauth.util.URLUtils;
+import net.minidev.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the content type, query string and JSON helpers on the request
+ * and discovery paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpUtilBenchmark {
+
+    private static final String DISCOVERY_DOCUMENT = "{"
+            + "\"issuer\":\"" + TokenFixture.ISSUER + "\","
+            + "\"authorization_endpoint\":\"" + TokenFixture.ISSUER + "/auth\","
+            + "\"token_endpoint\":\"" + TokenFixture.ISSUER + "/token\","
+            + "\"jwks_uri\":\"" + TokenFixture.ISSUER + "/keys\","
+            + "\"response_types_supported\":[\"code\",\"id_token\",\"token\"],"
+            + "\"subject_types_supported\":[\"public\"],"
+            + "\"id_token_signing_alg_values_supported\":[\"RS256\",\"ES256\",\"EdDSA\"],"
+            + "\"scopes_supported\":[\"openid\",\"email\",\"groups\",\"profile\",\"offline_access\"],"
+            + "\"claims_supported\":[\"aud\",\"email\",\"email_verified\",\"exp\",\"iat\",\"iss\",\"name\",\"sub\"],"
+            + "\"request_uri_parameter_supported\":false,"
+            + "\"max_age\":3600"
+            + "}";
+
+    private JSONObject discovery;
+
+    @Setup
+    public void setUp() throws Exception {
+        discovery = JSONObjectUtils.parse(DISCOVERY_DOCUMENT);
+    }
+
+    @State(Scope.Benchmark)
+    public static class ContentTypes {
+
+        @Param({"application/json", "application/json; charset=UTF-8",
+                "multipart/form-data; boundary=----WebKitFormBoundary7MA4YWxkTrZu0gW; charset=utf-8"})
+        private String contentType;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Query {
+
+        // From a few short parameters to a long redirect
+        @Param({"2", "8", "32"})
+        private int parameterCount;
+
+        private String query;
+
+        private Map<String, List<String>> parameters;
+
+        @Setup
+        public void setUp() {
+            StringBuilder sb = new StringBuilder("response_type=code&redirect_uri=https%3A%2F%2Fapp.dbhys.local%2Fcallback%3Fx%3D1");
+            for (int i = 2; i < parameterCount; i++) {
+                sb.append("&param_").append(i).append('=').append("value%20").append(i).append("%26more");
+            }
+            query = sb.toString();
+            parameters = URLUtils.parseParameters(query);
+        }
+    }
+
+    @Benchmark
+    public ContentType parseContentType(ContentTypes state) throws Exception {
+        return ContentType.parse(state.contentType);
+    }
+
+    @Benchmark
+    public Map<String, List<String>> parseParameters(Query state) {
+        return URLUtils.parseParameters(state.query);
+    }
+
+    @Benchmark
+    public String serializeParameters(Query state) {
+        return URLUtils.serializeParameters(state.parameters);
+    }
+
+    @Benchmark
+    public JSONObject parseJSONObject() throws Exception {
+        return JSONObjectUtils.parse(DISCOVERY_DOCUMENT);
+    }
+
+    @Benchmark
+    public void readJSONObject(Blackhole blackhole) throws Exception {
+        blackhole.consume(JSONObjectUtils.getString(discovery, "issuer"));
+        blackhole.consume(JSONObjectUtils.getURI(discovery, "jwks_uri"));
+        blackhole.consume(JSONObjectUtils.getStringArray(discovery, "id_token_signing_alg_values_supported"));
+        blackhole.consume(JSONObjectUtils.getStringList(discovery, "scopes_supported"));
+        blackhole.consume(JSONObjectUtils.getStringSet(discovery, "claims_supported"));
+        blackhole.consume(JSONObjectUtils.getBoolean(discovery, "request_uri_parameter_supported"));
+        blackhole.consume(JSONObjectUtils.getLong(discovery, "max_age"));
+        blackhole.consume(JSONObjectUtils.getURI(discovery, "end_session_endpoint", (URI) null));
+    }
+}
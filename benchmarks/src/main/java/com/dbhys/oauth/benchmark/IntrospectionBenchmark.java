@@ -0,0 +1,95 @@
+package com.dbhys.oauth.benchmark;
+
+import com.dbhys.oauth.bean.OAuthClientMetadata;
+import com.dbhys.oauth.benchmark.loadtest.StubIdentityProvider;
+import com.dbhys.oauth.security.Authentication;
+import com.dbhys.oauth.validator.IntrospectionTokenValidator;
+import com.dbhys.oauth.validator.VerifiedTokenCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IntrospectionTokenValidator} against the introspection endpoint of
+ * the {@link StubIdentityProvider} on the loopback interface, over 256
+ * distinct opaque tokens from 8 threads. {@code uncached} costs a round
+ * trip per request, {@code cached} one per token.
+ *
+ * <p>The setup also checks that concurrent requests presenting the same
+ * new token share one introspection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class IntrospectionBenchmark {
+
+    private static final int TOKEN_COUNT = 256;
+
+    @Param({"cached", "uncached"})
+    public String cache;
+
+    private StubIdentityProvider idp;
+
+    private IntrospectionTokenValidator validator;
+
+    private String[] tokens;
+
+    @Setup
+    public void setUp() throws Exception {
+        idp = new StubIdentityProvider();
+        OAuthClientMetadata metadata = new OAuthClientMetadata(idp.getIssuer(), new String[]{"RS256"}, idp.getIssuer() + "/keys");
+        metadata.setIntrospectionUri(idp.getIssuer() + "/introspect");
+        validator = new IntrospectionTokenValidator(idp.getIssuer(), metadata, "benchmark", "secret", 1000, 1000);
+        if ("cached".equals(cache)) {
+            validator.setTokenCache(new VerifiedTokenCache(TOKEN_COUNT * 4));
+            checkCoalescing();
+        }
+        tokens = new String[TOKEN_COUNT];
+        for (int i = 0; i < TOKEN_COUNT; i++) {
+            tokens[i] = idp.issueOpaque("user-" + i, TimeUnit.HOURS.toMillis(1));
+        }
+    }
+
+    private void checkCoalescing() throws Exception {
+        String token = idp.issueOpaque("coalesced", TimeUnit.HOURS.toMillis(1));
+        long before = idp.getIntrospectionRequests();
+        List<CompletableFuture<Authentication>> results = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            results.add(validator.authenticateAsync(token, 0).toCompletableFuture());
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        System.out.printf("64 concurrent requests of a new token: %d introspection(s)%n",
+                idp.getIntrospectionRequests() - before);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%d introspection requests%n", idp.getIntrospectionRequests());
+        idp.close();
+    }
+
+    @Benchmark
+    public Authentication authenticate() throws Exception {
+        return validator.authenticate(tokens[ThreadLocalRandom.current().nextInt(TOKEN_COUNT)], 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.dbhys.oauth.benchmark;
+
+import com.dbhys.oauth.validator.AuthenticationTokenValidator;
+import com.dbhys.oauth.validator.CachingJWSKeySelector;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.ConfigurableJWTProcessor;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a JWT processor and RSA verifier for every token, as
+ * the validator used to, with the shared processor and cached verifiers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JWTProcessorBenchmark {
+
+    private String token;
+
+    private JWKSource<SecurityContext> jwkSource;
+
+    private AuthenticationTokenValidator validator;
+
+    @Setup
+    public void setUp() throws Exception {
+        TokenFixture fixture = TokenFixture.rsa();
+        token = fixture.mint("benchmark");
+        jwkSource = fixture.jwkSource();
+        validator = new AuthenticationTokenValidator(TokenFixture.ISSUER,
+                new CachingJWSKeySelector<>(JWSAlgorithm.RS256, jwkSource), null);
+    }
+
+    @Benchmark
+    public JWTClaimsSet perCallProcessor() throws Exception {
+        ConfigurableJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        return jwtProcessor.process(SignedJWT.parse(token), null);
+    }
+
+    @Benchmark
+    public JWTClaimsSet sharedProcessor() throws Exception {
+        return validator.validate(SignedJWT.parse(token));
+    }
+}
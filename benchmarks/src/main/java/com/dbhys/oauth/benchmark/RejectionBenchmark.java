@@ -0,0 +1,126 @@
+package com.dbhys.oauth.benchmark;
+
+import com.dbhys.oauth.bean.OAuthClientMetadata;
+import com.dbhys.oauth.config.AuthenticationResourceServerConfig;
+import com.dbhys.oauth.security.ApiSecurityFilter;
+import com.dbhys.oauth.security.ApiSecurityInterceptor;
+import com.dbhys.oauth.validator.AuthenticationTokenValidator;
+import com.dbhys.oauth.validator.CachingJWSKeySelector;
+import com.dbhys.oauth.validator.RejectedTokenCache;
+import com.nimbusds.jose.JWSAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rejecting a request through a {@code DispatcherServlet}, by
+ * {@link ApiSecurityFilter} in front of it versus
+ * {@link ApiSecurityInterceptor} after the handler mapping. The
+ * {@code invalid} token has a broken signature and is answered from the
+ * rejected token cache after the first request, so the difference is the
+ * dispatch overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RejectionBenchmark {
+
+    @Param({"missing", "invalid"})
+    public String token;
+
+    private GenericApplicationContext context;
+
+    private MockMvc filterMvc;
+
+    private MockMvc interceptorMvc;
+
+    private MockHttpServletRequestBuilder request;
+
+    @Setup
+    public void setUp() throws Exception {
+        TokenFixture fixture = TokenFixture.rsa();
+
+        AuthenticationResourceServerConfig config = new AuthenticationResourceServerConfig();
+        config.setIssuer(TokenFixture.ISSUER);
+        AuthenticationTokenValidator validator = new AuthenticationTokenValidator(TokenFixture.ISSUER,
+                new CachingJWSKeySelector<>(JWSAlgorithm.RS256, fixture.jwkSource()), null);
+        validator.setRejectedTokenCache(new RejectedTokenCache(1024, 3600));
+
+        context = new GenericApplicationContext();
+        context.getBeanFactory().registerSingleton("config", config);
+        context.getBeanFactory().registerSingleton("authenticationTokenValidator", validator);
+        context.getBeanFactory().registerSingleton("oAuthClientMetadata",
+                new OAuthClientMetadata(TokenFixture.ISSUER, new String[]{"RS256"}, TokenFixture.ISSUER + "/jwks"));
+        context.refresh();
+
+        ApiSecurityFilter filter = new ApiSecurityFilter();
+        filter.setApplicationContext(context);
+        filterMvc = MockMvcBuilders.standaloneSetup(new HelloController())
+                .addFilters(filter)
+                .build();
+
+        ApiSecurityInterceptor interceptor = new ApiSecurityInterceptor();
+        interceptor.setApplicationContext(context);
+        interceptorMvc = MockMvcBuilders.standaloneSetup(new HelloController())
+                .addInterceptors(interceptor)
+                .build();
+
+        // Rejections answer 403 instead of redirecting to the login
+        request = MockMvcRequestBuilders.get("/api/hello").header("X-Requested-With", "XMLHttpRequest");
+        if ("invalid".equals(token)) {
+            String jwt = fixture.mint("benchmark");
+            char last = jwt.charAt(jwt.length() - 2);
+            String tampered = jwt.substring(0, jwt.length() - 2) + (last == 'A' ? 'B' : 'A') + jwt.charAt(jwt.length() - 1);
+            request.header("Authorization", "Bearer " + tampered);
+        }
+        int expected = "invalid".equals(token) ? 403 : 401;
+        if (filter() != expected || interceptor() != expected) {
+            throw new IllegalStateException("The benchmark request wasn't rejected with " + expected);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int filter() throws Exception {
+        return filterMvc.perform(request).andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int interceptor() throws Exception {
+        return interceptorMvc.perform(request).andReturn().getResponse().getStatus();
+    }
+
+    @RestController
+    public static class HelloController {
+
+        @GetMapping("/api/hello")
+        public String hello() {
+            return "Hello";
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.dbhys.oauth.benchmark;
+
+import com.dbhys.oauth.validator.RevocationList;
+import com.dbhys.oauth.validator.RevocationUpdate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-request {@link RevocationList} check, by number of
+ * revoked IDs. {@code notRevoked} is the common case, rejected by the
+ * Bloom filter without touching the exact set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RevocationListBenchmark {
+
+    private static final int ID_COUNT = 1024;
+
+    @Param({"0", "1000", "100000"})
+    public int revoked;
+
+    private RevocationList revocationList;
+
+    private String[] revokedIds;
+
+    private String[] validIds;
+
+    @Setup
+    public void setUp() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < revoked; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        revocationList = new RevocationList(cursor -> null);
+        revocationList.apply(new RevocationUpdate(true, ids, null, null));
+        revokedIds = new String[ID_COUNT];
+        validIds = new String[ID_COUNT];
+        for (int i = 0; i < ID_COUNT; i++) {
+            revokedIds[i] = ids.isEmpty() ? UUID.randomUUID().toString() : ids.get(i % ids.size());
+            validIds[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    @Benchmark
+    public boolean notRevoked() {
+        return revocationList.isRevoked(validIds[ThreadLocalRandom.current().nextInt(ID_COUNT)]);
+    }
+
+    @Benchmark
+    public boolean revoked() {
+        return revocationList.isRevoked(revokedIds[ThreadLocalRandom.current().nextInt(ID_COUNT)]);
+    }
+}
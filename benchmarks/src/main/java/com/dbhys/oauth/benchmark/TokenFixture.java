@@ -0,0 +1,152 @@
+package com.dbhys.oauth.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.Base64URL;
+import com.nimbusds.jwt.JWTClaimsSet;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Signing key and token minting shared by the benchmarks.
+ */
+final class TokenFixture {
+
+    static final String ISSUER = "http://oauth.dbhys.local:5556";
+
+    private final JWSAlgorithm jwsAlg;
+
+    private final JWK publicJWK;
+
+    private final TokenSigner signer;
+
+    private TokenFixture(JWSAlgorithm jwsAlg, JWK publicJWK, TokenSigner signer) {
+        this.jwsAlg = jwsAlg;
+        this.publicJWK = publicJWK;
+        this.signer = signer;
+    }
+
+    static TokenFixture rsa() throws JOSEException {
+        return forAlgorithm(JWSAlgorithm.RS256);
+    }
+
+    /**
+     * Creates a fixture signing with RS256, ES256 or EdDSA (Ed25519).
+     */
+    static TokenFixture forAlgorithm(JWSAlgorithm jwsAlg) throws JOSEException {
+        if (JWSAlgorithm.RS256.equals(jwsAlg)) {
+            RSAKey rsaKey = new RSAKeyGenerator(2048).keyID("rs-1").generate();
+            return new TokenFixture(jwsAlg, rsaKey.toPublicJWK(), jwsSigner(new RSASSASigner(rsaKey)));
+        } else if (JWSAlgorithm.ES256.equals(jwsAlg)) {
+            ECKey ecKey = new ECKeyGenerator(Curve.P_256).keyID("es-1").generate();
+            return new TokenFixture(jwsAlg, ecKey.toPublicJWK(), jwsSigner(new ECDSASigner(ecKey)));
+        } else if (JWSAlgorithm.EdDSA.equals(jwsAlg)) {
+            return ed25519();
+        }
+        throw new IllegalArgumentException("Unsupported benchmark algorithm: " + jwsAlg);
+    }
+
+    // Signed with the JDK, nimbus needs Tink for EdDSA signing
+    private static TokenFixture ed25519() throws JOSEException {
+        KeyPair keyPair;
+        try {
+            keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new JOSEException(e.getMessage(), e);
+        }
+        byte[] encoded = keyPair.getPublic().getEncoded();
+        // The raw key follows the 12 byte X.509 prefix
+        byte[] x = Arrays.copyOfRange(encoded, 12, encoded.length);
+        OctetKeyPair publicJWK = new OctetKeyPair.Builder(Curve.Ed25519, Base64URL.encode(x)).keyID("ed-1").build();
+        PrivateKey privateKey = keyPair.getPrivate();
+        return new TokenFixture(JWSAlgorithm.EdDSA, publicJWK, (header, signingInput) -> {
+            try {
+                Signature signature = Signature.getInstance("Ed25519");
+                signature.initSign(privateKey);
+                signature.update(signingInput);
+                return Base64URL.encode(signature.sign());
+            } catch (GeneralSecurityException e) {
+                throw new JOSEException(e.getMessage(), e);
+            }
+        });
+    }
+
+    private static TokenSigner jwsSigner(JWSSigner jwsSigner) {
+        return jwsSigner::sign;
+    }
+
+    JWSAlgorithm getAlgorithm() {
+        return jwsAlg;
+    }
+
+    JWK getPublicJWK() {
+        return publicJWK;
+    }
+
+    JWKSource<SecurityContext> jwkSource() {
+        return new ImmutableJWKSet<>(new JWKSet(publicJWK));
+    }
+
+    String mint(String subject) throws JOSEException {
+        return mint(subject, 0);
+    }
+
+    /**
+     * Mints a token with extra claims, like the custom attributes and the
+     * group memberships of a realistic token: every fourth extra claim is
+     * a list of eight group names, the others are strings.
+     */
+    String mint(String subject, int extraClaims) throws JOSEException {
+        long now = System.currentTimeMillis();
+        JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject(subject)
+                .claim("name", "Benchmark User")
+                .issueTime(new Date(now))
+                .expirationTime(new Date(now + 3600_000L));
+        for (int i = 0; i < extraClaims; i++) {
+            if (i % 4 == 3) {
+                List<String> groups = new ArrayList<>();
+                for (int g = 0; g < 8; g++) {
+                    groups.add("/org/unit-" + i + "/group-" + g);
+                }
+                builder.claim("groups_" + i, groups);
+            } else {
+                builder.claim("attr_" + i, "value-" + i + "-" + subject);
+            }
+        }
+        JWTClaimsSet claims = builder.build();
+        JWSHeader header = new JWSHeader.Builder(jwsAlg).keyID(publicJWK.getKeyID()).build();
+        String signingInput = header.toBase64URL() + "." + Base64URL.encode(claims.toString());
+        return signingInput + "." + signer.sign(header, signingInput.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private interface TokenSigner {
+
+        Base64URL sign(JWSHeader header, byte[] signingInput) throws JOSEException;
+    }
+}
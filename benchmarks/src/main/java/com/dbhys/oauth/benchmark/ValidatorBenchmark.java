@@ -0,0 +1,79 @@
+package com.dbhys.oauth.benchmark;
+
+import com.dbhys.oauth.security.Authentication;
+import com.dbhys.oauth.validator.AuthenticationTokenValidator;
+import com.dbhys.oauth.validator.CachingJWSKeySelector;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link AuthenticationTokenValidator#validate} and of the staged
+ * {@link AuthenticationTokenValidator#authenticate(String)} over a corpus of
+ * distinct tokens, by algorithm and claim count. The validator has no token
+ * cache, every call verifies a signature.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    @Param({"RS256", "ES256", "EdDSA"})
+    private String algorithm;
+
+    // Claims besides the registered ones
+    @Param({"0", "16", "128"})
+    private int claims;
+
+    @Param({"1024"})
+    private int corpusSize;
+
+    private String[] tokens;
+
+    private int next;
+
+    private AuthenticationTokenValidator validator;
+
+    @Setup
+    public void setUp() throws Exception {
+        TokenFixture fixture = TokenFixture.forAlgorithm(JWSAlgorithm.parse(algorithm));
+        tokens = new String[corpusSize];
+        for (int i = 0; i < corpusSize; i++) {
+            tokens[i] = fixture.mint("user-" + i, claims);
+        }
+        validator = new AuthenticationTokenValidator(TokenFixture.ISSUER,
+                new CachingJWSKeySelector<>(fixture.getAlgorithm(), fixture.jwkSource()), null);
+    }
+
+    private String nextToken() {
+        String token = tokens[next];
+        next = next + 1 == tokens.length ? 0 : next + 1;
+        return token;
+    }
+
+    @Benchmark
+    public JWTClaimsSet validate() throws Exception {
+        return validator.validate(SignedJWT.parse(nextToken()));
+    }
+
+    @Benchmark
+    public Authentication authenticate() throws Exception {
+        return validator.authenticate(nextToken());
+    }
+}
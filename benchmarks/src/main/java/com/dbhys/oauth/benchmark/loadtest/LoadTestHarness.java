@@ -0,0 +1,255 @@
+package com.dbhys.oauth.benchmark.loadtest;
+
+import com.dbhys.oauth.bean.AuthenticationBootstrap;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * End-to-end load test of the {@link SampleApplication} against the
+ * {@link StubIdentityProvider}, all on the loopback interface. Runs these
+ * scenarios and reports the throughput and the p50, p99 and p999 latency
+ * of each:
+ *
+ * <ul>
+ *     <li>{@code steady}: a pool of valid tokens.
+ *     <li>{@code key-rotation}: halfway, the provider rotates its key and
+ *         the clients switch to tokens signed with the new key.
+ *     <li>{@code idp-outage}: the provider is down, tokens of known keys
+ *         must keep working.
+ *     <li>{@code idp-outage-rotated}: the provider is down and signs with a
+ *         key the service hasn't seen, it comes back halfway.
+ * </ul>
+ *
+ * <p>Usage: {@code java -cp target/benchmarks.jar
+ * com.dbhys.oauth.benchmark.loadtest.LoadTestHarness [threads] [seconds]}
+ */
+public final class LoadTestHarness {
+
+    private static final int TOKEN_POOL_SIZE = 1000;
+
+    private static final long TOKEN_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final StubIdentityProvider idp;
+
+    private final HttpClient client;
+
+    private final URI endpoint;
+
+    private final int threads;
+
+    private final long scenarioMillis;
+
+    private final AtomicReference<String[]> tokens = new AtomicReference<>();
+
+    private LoadTestHarness(StubIdentityProvider idp, int port, int threads, long scenarioMillis) {
+        this.idp = idp;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.endpoint = URI.create("http://127.0.0.1:" + port + "/api/hello");
+        this.threads = threads;
+        this.scenarioMillis = scenarioMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10L;
+
+        try (StubIdentityProvider idp = new StubIdentityProvider()) {
+            ServletWebServerApplicationContext context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(SampleApplication.class)
+                    .properties(
+                            "server.port=0",
+                            "spring.main.banner-mode=off",
+                            "logging.level.root=warn",
+                            "dbhys.oauth.issuer=" + idp.getIssuer(),
+                            "dbhys.oauth.jwks-refetch-interval=1",
+                            "dbhys.oauth.filter-url-patterns=/api/*")
+                    .run();
+            try {
+                if (!context.getBean(AuthenticationBootstrap.class).awaitReady(30, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("The sample application didn't warm up");
+                }
+                LoadTestHarness harness = new LoadTestHarness(idp, context.getWebServer().getPort(),
+                        threads, TimeUnit.SECONDS.toMillis(seconds));
+                harness.run();
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        System.out.printf("%d client threads, %d s per scenario%n", threads, scenarioMillis / 1000);
+        tokens.set(mintPool(TOKEN_POOL_SIZE));
+        // Warm the JIT and the token cache up, not reported
+        drive(scenarioMillis / 2, null);
+
+        report("steady", drive(scenarioMillis, null));
+
+        report("key-rotation", drive(scenarioMillis, () -> {
+            idp.rotateKeys(true);
+            tokens.set(mintPool(TOKEN_POOL_SIZE / 10));
+        }));
+
+        idp.setOutage(true);
+        try {
+            report("idp-outage", drive(scenarioMillis, null));
+
+            idp.rotateKeys(false);
+            tokens.set(mintPool(TOKEN_POOL_SIZE / 10));
+            report("idp-outage-rotated", drive(scenarioMillis, () -> idp.setOutage(false)));
+        } finally {
+            idp.setOutage(false);
+        }
+    }
+
+    private String[] mintPool(int size) throws Exception {
+        String[] pool = new String[size];
+        for (int i = 0; i < size; i++) {
+            pool[i] = idp.mint("user-" + i, TOKEN_TTL_MILLIS);
+        }
+        return pool;
+    }
+
+    /**
+     * Drives load from all client threads for the specified time.
+     *
+     * @param halfway Run once halfway, {@code null} if none.
+     */
+    private Result drive(long millis, Action halfway) throws Exception {
+        long jwkSetRequests = idp.getJWKSetRequests();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(millis);
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(deadline);
+            worker.setName("load-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        if (halfway != null) {
+            Thread.sleep(millis / 2);
+            halfway.run();
+        }
+        Result result = new Result();
+        for (Worker worker : workers) {
+            worker.join();
+            result.add(worker);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        result.jwkSetRequests = idp.getJWKSetRequests() - jwkSetRequests;
+        return result;
+    }
+
+    private static void report(String scenario, Result result) {
+        long[] latencies = result.sortedLatencies();
+        double seconds = result.elapsedNanos / 1e9;
+        System.out.printf("%-20s %9d req %9.0f req/s  p50 %8.1f us  p99 %8.1f us  p999 %8.1f us  statuses %s  JWKS fetches %d%n",
+                scenario, latencies.length, latencies.length / seconds,
+                percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3, percentile(latencies, 0.999) / 1e3,
+                result.statuses, result.jwkSetRequests);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0L;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private interface Action {
+
+        void run() throws Exception;
+    }
+
+    private final class Worker extends Thread {
+
+        private final long deadline;
+
+        private long[] latencies = new long[1 << 16];
+
+        private int count;
+
+        private final Map<Integer, Integer> statuses = new TreeMap<>();
+
+        private Worker(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                String[] pool = tokens.get();
+                HttpRequest request = HttpRequest.newBuilder(endpoint)
+                        .header("Authorization", "Bearer " + pool[random.nextInt(pool.length)])
+                        // Rejections answer 403 instead of redirecting to the login
+                        .header("X-Requested-With", "XMLHttpRequest")
+                        .GET()
+                        .build();
+                long start = System.nanoTime();
+                int status;
+                try {
+                    status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                } catch (Exception e) {
+                    status = -1;
+                }
+                record(System.nanoTime() - start, status);
+            }
+        }
+
+        private void record(long nanos, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            statuses.merge(status, 1, Integer::sum);
+        }
+    }
+
+    private static final class Result {
+
+        private final List<long[]> latencies = new ArrayList<>();
+
+        private final Map<Integer, Integer> statuses = new TreeMap<>();
+
+        private long elapsedNanos;
+
+        private long jwkSetRequests;
+
+        private void add(Worker worker) {
+            latencies.add(Arrays.copyOf(worker.latencies, worker.count));
+            worker.statuses.forEach((status, count) -> statuses.merge(status, count, Integer::sum));
+        }
+
+        private long[] sortedLatencies() {
+            int total = 0;
+            for (long[] l : latencies) {
+                total += l.length;
+            }
+            long[] all = new long[total];
+            int pos = 0;
+            for (long[] l : latencies) {
+                System.arraycopy(l, 0, all, pos, l.length);
+                pos += l.length;
+            }
+            Arrays.sort(all);
+            return all;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.dbhys.oauth.benchmark.loadtest;
+
+import com.dbhys.oauth.bean.AuthenticationBeanFactory;
+import com.dbhys.oauth.config.AuthenticationResourceServerConfig;
+import com.dbhys.oauth.security.ApiSecurityFilter;
+import com.dbhys.oauth.security.ApiSecurityFilterRegistration;
+import com.dbhys.oauth.security.AuthenticationHelper;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Minimal Spring MVC application protecting {@code /api/*} with the
+ * {@link ApiSecurityFilter}, the way a service embeds the SDK.
+ */
+@SpringBootApplication
+@Import({AuthenticationResourceServerConfig.class, AuthenticationBeanFactory.class, ApiSecurityFilterRegistration.class})
+public class SampleApplication {
+
+    @RestController
+    public static class HelloController {
+
+        @GetMapping("/api/hello")
+        public String hello() {
+            return "Hello " + AuthenticationHelper.getAuthentication().getUsername();
+        }
+    }
+}
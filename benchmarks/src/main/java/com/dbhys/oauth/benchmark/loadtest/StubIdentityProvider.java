@@ -0,0 +1,287 @@
+package com.dbhys.oauth.benchmark.loadtest;
+
+import com.dbhys.oauth.util.URLUtils;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.minidev.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stand-in for the identity provider on the loopback interface. Serves the
+ * discovery document and the JWK set, mints RS256 tokens and rotates its
+ * signing key on demand. Also issues opaque tokens and introspects them
+ * (RFC 7662) for any client with basic credentials. The discovery document
+ * and the JWK set carry an {@code ETag} and a {@code Cache-Control}
+ * max-age, and are answered 304 when unchanged. An outage makes every
+ * endpoint answer 503.
+ */
+public final class StubIdentityProvider implements Closeable {
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final String issuer;
+
+    private final AtomicInteger keyNumber = new AtomicInteger();
+
+    private final LongAdder discoveryRequests = new LongAdder();
+
+    private final LongAdder jwkSetRequests = new LongAdder();
+
+    private final LongAdder introspectionRequests = new LongAdder();
+
+    private final LongAdder notModifiedResponses = new LongAdder();
+
+    // The Cache-Control max-age of the discovery document and the JWK set, in seconds
+    private volatile int maxAge = 300;
+
+    // Active opaque tokens and their expiration time
+    private final ConcurrentHashMap<String, OpaqueToken> opaqueTokens = new ConcurrentHashMap<>();
+
+    private final SecureRandom random = new SecureRandom();
+
+    private volatile Keys keys;
+
+    private volatile boolean outage;
+
+    public StubIdentityProvider() throws IOException, JOSEException {
+        this.keys = new Keys(newKey(), Collections.emptyList());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.issuer = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        this.server.createContext("/.well-known/oauth-configuration", exchange -> {
+            discoveryRequests.increment();
+            JSONObject discovery = new JSONObject();
+            discovery.put("issuer", issuer);
+            discovery.put("jwks_uri", issuer + "/keys");
+            discovery.put("authorization_uri", issuer + "/authorize");
+            discovery.put("introspection_endpoint", issuer + "/introspect");
+            discovery.put("token_signing_alg_values_supported", Collections.singletonList(JWSAlgorithm.RS256.getName()));
+            respondCacheable(exchange, discovery.toJSONString());
+        });
+        this.server.createContext("/keys", exchange -> {
+            jwkSetRequests.increment();
+            respondCacheable(exchange, keys.toJWKSet().toString());
+        });
+        this.server.createContext("/introspect", exchange -> {
+            introspectionRequests.increment();
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (!"POST".equals(exchange.getRequestMethod()) || authorization == null || !authorization.startsWith("Basic ")) {
+                exchange.sendResponseHeaders(401, -1);
+                exchange.close();
+                return;
+            }
+            String form;
+            try (InputStream in = exchange.getRequestBody()) {
+                form = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            String token = URLUtils.parseParameters(form).getOrDefault("token", Collections.singletonList("")).get(0);
+            OpaqueToken opaqueToken = opaqueTokens.get(token);
+            JSONObject introspection = new JSONObject();
+            if (opaqueToken == null || opaqueToken.expiresAt <= System.currentTimeMillis()) {
+                introspection.put("active", false);
+            } else {
+                introspection.put("active", true);
+                introspection.put("iss", issuer);
+                introspection.put("sub", opaqueToken.subject);
+                introspection.put("username", opaqueToken.subject);
+                introspection.put("scope", "read");
+                introspection.put("iat", opaqueToken.issuedAt / 1000L);
+                introspection.put("exp", opaqueToken.expiresAt / 1000L);
+            }
+            respond(exchange, introspection.toJSONString());
+        });
+        this.executor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "stub-idp");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        if (outage) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void respondCacheable(HttpExchange exchange, String body) throws IOException {
+        String entityTag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        exchange.getResponseHeaders().set("ETag", entityTag);
+        exchange.getResponseHeaders().set("Cache-Control", "max-age=" + maxAge);
+        if (!outage && entityTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModifiedResponses.increment();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        respond(exchange, body);
+    }
+
+    private RSAKey newKey() throws JOSEException {
+        return new RSAKeyGenerator(2048).keyID("key-" + keyNumber.incrementAndGet()).generate();
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    /**
+     * Signs with a new key from now on.
+     *
+     * @param keepPrevious {@code true} to keep publishing the previous
+     *                     key, so tokens it signed stay valid.
+     */
+    public void rotateKeys(boolean keepPrevious) throws JOSEException {
+        Keys current = keys;
+        List<RSAKey> previous = new ArrayList<>();
+        if (keepPrevious) {
+            previous.add(current.signingKey);
+        }
+        keys = new Keys(newKey(), previous);
+    }
+
+    public void setOutage(boolean outage) {
+        this.outage = outage;
+    }
+
+    /**
+     * Sets the Cache-Control max-age of the discovery document and the JWK
+     * set, in seconds.
+     */
+    public void setMaxAge(int maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Mints a token with the current signing key.
+     */
+    public String mint(String subject, long ttlMillis) throws JOSEException {
+        RSAKey signingKey = keys.signingKey;
+        long now = System.currentTimeMillis();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .subject(subject)
+                .claim("name", "Load Test User")
+                .issueTime(new Date(now))
+                .expirationTime(new Date(now + ttlMillis))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(signingKey));
+        return jwt.serialize();
+    }
+
+    /**
+     * Issues an opaque token, only known by the introspection endpoint.
+     */
+    public String issueOpaque(String subject, long ttlMillis) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        long now = System.currentTimeMillis();
+        opaqueTokens.put(token, new OpaqueToken(subject, now, now + ttlMillis));
+        return token;
+    }
+
+    /**
+     * Revokes an opaque token, it's introspected as inactive from now on.
+     */
+    public void revoke(String token) {
+        opaqueTokens.remove(token);
+    }
+
+    public long getDiscoveryRequests() {
+        return discoveryRequests.sum();
+    }
+
+    public long getJWKSetRequests() {
+        return jwkSetRequests.sum();
+    }
+
+    public long getIntrospectionRequests() {
+        return introspectionRequests.sum();
+    }
+
+    public long getNotModifiedResponses() {
+        return notModifiedResponses.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static final class OpaqueToken {
+
+        private final String subject;
+
+        private final long issuedAt;
+
+        private final long expiresAt;
+
+        private OpaqueToken(String subject, long issuedAt, long expiresAt) {
+            this.subject = subject;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Keys {
+
+        private final RSAKey signingKey;
+
+        private final List<RSAKey> previousKeys;
+
+        private Keys(RSAKey signingKey, List<RSAKey> previousKeys) {
+            this.signingKey = signingKey;
+            this.previousKeys = previousKeys;
+        }
+
+        private JWKSet toJWKSet() {
+            List<JWK> published = new ArrayList<>();
+            published.add(signingKey.toPublicJWK());
+            for (RSAKey previousKey : previousKeys) {
+                published.add(previousKey.toPublicJWK());
+            }
+            return new JWKSet(published);
+        }
+    }
+}
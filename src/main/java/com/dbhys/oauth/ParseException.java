@@ -8,6 +8,7 @@ import java.net.URI;
  */
 public class ParseException extends Exception{
 
+    private static final long serialVersionUID = 1L;
 
     /**
      * Creates a new parse exception.
@@ -1,18 +1,36 @@
 package com.dbhys.oauth.bean;
 
 import com.dbhys.oauth.config.AuthenticationResourceServerConfig;
-import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.jwk.source.DefaultJWKSetCache;
-import com.nimbusds.jose.jwk.source.JWKSetCache;
-import com.nimbusds.jose.jwk.source.JWKSource;
-import com.nimbusds.jose.jwk.source.RemoteJWKSet;
-import com.nimbusds.jose.proc.JWSKeySelector;
-import com.nimbusds.jose.proc.JWSVerificationKeySelector;
-import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.dbhys.oauth.http.HTTPRequest;
+import com.dbhys.oauth.http.HTTPTransport;
+import com.dbhys.oauth.http.HttpClientTransport;
+import com.dbhys.oauth.http.TransportResourceRetriever;
+import com.dbhys.oauth.jwk.RefreshAheadJWKSource;
+import com.dbhys.oauth.metrics.AuthenticationMetrics;
+import com.dbhys.oauth.metrics.MicrometerAuthenticationMetrics;
+import com.dbhys.oauth.security.AuthenticationHelper;
+import com.dbhys.oauth.security.ScopedValueAuthenticationContext;
+import com.dbhys.oauth.util.PathPatternMatcher;
+import com.dbhys.oauth.util.VirtualThreads;
 import com.nimbusds.jose.util.ResourceRetriever;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.dbhys.oauth.validator.AuthenticationTokenValidator;
+import com.dbhys.oauth.validator.ClaimsProjector;
+import com.dbhys.oauth.validator.MultiIssuerTokenValidator;
+import com.dbhys.oauth.validator.FileRevocationSource;
+import com.dbhys.oauth.validator.HttpRevocationSource;
+import com.dbhys.oauth.validator.IntrospectionTokenValidator;
+import com.dbhys.oauth.validator.RejectedTokenCache;
+import com.dbhys.oauth.validator.RevocationList;
+import com.dbhys.oauth.validator.RevocationSource;
+import com.dbhys.oauth.validator.TokenClaimsVerifier;
+import com.dbhys.oauth.validator.TokenAuthenticator;
+import com.dbhys.oauth.validator.TokenFormatRouter;
+import com.dbhys.oauth.validator.VerifiedTokenCache;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
@@ -20,16 +38,25 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
 import java.io.IOException;
-import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Milas on 2019/3/18.
  */
 @Component
-public class AuthenticationBeanFactory implements ApplicationContextAware, InitializingBean {
+public class AuthenticationBeanFactory implements ApplicationContextAware, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthenticationBeanFactory.class);
+
+    private static final String METER_REGISTRY_CLASS = "io.micrometer.core.instrument.MeterRegistry";
 
     @Autowired
     private AuthenticationResourceServerConfig config;
@@ -38,6 +65,12 @@ public class AuthenticationBeanFactory implements ApplicationContextAware, Initi
 
     private OAuthClientMetadata oAuthClientMetadata;
 
+    // Virtual threads validating tokens asynchronously, null for the default pool
+    private ExecutorService asyncExecutor;
+
+    // Threads and schedulers created here, closed in reverse order on destroy, registerSingleton doesn't
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = applicationContext;
@@ -55,23 +88,208 @@ public class AuthenticationBeanFactory implements ApplicationContextAware, Initi
             // 获取bean工厂并转换为ConfigurableListableBeanFactory
             ConfigurableListableBeanFactory configurableListableBeanFactory = configurableApplicationContext.getBeanFactory();
 
-            this.oAuthClientMetadata = OAuthClientMetadata.resolve(config.getIssuer(), config.getConnectTimeout(), config.getReadTimeout());
-            JWKSetCache jwkSetCache = new DefaultJWKSetCache(config.getLifeSpan(), config.getLifeSpan() - 10, TimeUnit.HOURS);
-            ResourceRetriever resourceRetriever = new DefaultResourceRetriever(this.config.getConnectTimeout(), this.config.getReadTimeout());
-            JWKSource jwkSource = new RemoteJWKSet(new URL(this.oAuthClientMetadata.getJwksURI()), resourceRetriever, jwkSetCache);
-            JWSKeySelector jwsKeySelector = new JWSVerificationKeySelector(JWSAlgorithm.RS256, jwkSource);
-            AuthenticationTokenValidator authenticationTokenValidator = new AuthenticationTokenValidator(this.config.getIssuer(), jwsKeySelector, null);
+            // Only touched if Micrometer is on the class path
+            AuthenticationMetrics metrics = ClassUtils.isPresent(METER_REGISTRY_CLASS, getClass().getClassLoader())
+                    ? MicrometerAuthenticationMetrics.lookup(this.applicationContext) : null;
+            if (this.config.getContextMode() == AuthenticationResourceServerConfig.ContextMode.SCOPED_VALUE) {
+                if (!ScopedValueAuthenticationContext.isSupported()) {
+                    throw new Error("Property 'contextMode' SCOPED_VALUE requires Java 21 or later!");
+                }
+                AuthenticationHelper.setContext(new ScopedValueAuthenticationContext());
+            }
+            if (this.config.isVirtualThreads() && VirtualThreads.isSupported()) {
+                this.asyncExecutor = VirtualThreads.newThreadPerTaskExecutor("dbhys-oauth-validator-");
+                this.resources.add(this.asyncExecutor::shutdown);
+            }
+            // One pool of connections for discovery, JWK set, introspection and revocation requests
+            HTTPTransport transport;
+            if (this.config.isVirtualThreads() && VirtualThreads.isSupported()) {
+                ExecutorService httpExecutor = VirtualThreads.newThreadPerTaskExecutor("dbhys-oauth-http-");
+                this.resources.add(httpExecutor::shutdown);
+                transport = new HttpClientTransport(null, null, httpExecutor);
+            } else {
+                transport = HTTPRequest.getDefaultTransport();
+            }
+            TransportResourceRetriever resourceRetriever = new TransportResourceRetriever(this.config.getConnectTimeout(),
+                    this.config.getReadTimeout(), 0);
+            resourceRetriever.setTransport(transport);
+            AuthenticationBootstrap bootstrap = new AuthenticationBootstrap(this.config, resourceRetriever);
+            this.resources.add(bootstrap);
+            bootstrap.setTransport(transport);
+            bootstrap.setMetrics(metrics);
+            this.oAuthClientMetadata = bootstrap.getMetadata();
+            AuthenticationTokenValidator authenticationTokenValidator = createValidator(this.config.toPrimaryIssuer(), bootstrap);
+            authenticationTokenValidator.setMetrics(metrics);
 
             configurableListableBeanFactory.registerSingleton("oAuthClientMetadata", oAuthClientMetadata);
-            configurableListableBeanFactory.registerSingleton("jwkSetCache", jwkSetCache);
+            configurableListableBeanFactory.registerSingleton("httpTransport", transport);
             configurableListableBeanFactory.registerSingleton("resourceRetriever", resourceRetriever);
-            configurableListableBeanFactory.registerSingleton("jwkSource", jwkSource);
-            configurableListableBeanFactory.registerSingleton("jwsKeySelector", jwsKeySelector);
-            configurableListableBeanFactory.registerSingleton("authenticationTokenValidator", authenticationTokenValidator);
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new Error("Init authentication config and resource error.");
+            configurableListableBeanFactory.registerSingleton("jwkSource", bootstrap.getJWKSource());
+            configurableListableBeanFactory.registerSingleton("jwsKeySelector", bootstrap.getJWSKeySelector());
+            if (authenticationTokenValidator.getTokenCache() != null) {
+                configurableListableBeanFactory.registerSingleton("verifiedTokenCache", authenticationTokenValidator.getTokenCache());
+            }
+            if (authenticationTokenValidator.getRejectedTokenCache() != null) {
+                configurableListableBeanFactory.registerSingleton("rejectedTokenCache", authenticationTokenValidator.getRejectedTokenCache());
+            }
+            TokenAuthenticator tokenAuthenticator;
+            if (this.config.getIssuers() == null || this.config.getIssuers().isEmpty()) {
+                tokenAuthenticator = authenticationTokenValidator;
+            } else {
+                // The beans above are the primary issuer's, the others are only reachable through the router
+                List<AuthenticationTokenValidator> validators = new ArrayList<>();
+                validators.add(authenticationTokenValidator);
+                for (AuthenticationResourceServerConfig.Issuer issuer : this.config.getIssuers()) {
+                    if (issuer.getIssuer() == null) {
+                        throw new Error("Property 'issuer' of the issuers can't be null!");
+                    }
+                    AuthenticationBootstrap issuerBootstrap = new AuthenticationBootstrap(this.config, issuer, resourceRetriever);
+                    this.resources.add(issuerBootstrap);
+                    issuerBootstrap.setTransport(transport);
+                    issuerBootstrap.setMetrics(metrics);
+                    AuthenticationTokenValidator issuerValidator = createValidator(issuer, issuerBootstrap);
+                    issuerValidator.setMetrics(metrics);
+                    validators.add(issuerValidator);
+                    // The registered bootstrap gates the requests until every issuer is ready
+                    bootstrap.readyWith(issuerBootstrap);
+                    issuerBootstrap.start();
+                }
+                MultiIssuerTokenValidator multiIssuerTokenValidator = new MultiIssuerTokenValidator(validators);
+                multiIssuerTokenValidator.setMetrics(metrics);
+                tokenAuthenticator = multiIssuerTokenValidator;
+            }
+            if (this.config.getIntrospectionClientId() != null) {
+                IntrospectionTokenValidator introspectionTokenValidator = createIntrospectionValidator();
+                introspectionTokenValidator.setTransport(transport);
+                introspectionTokenValidator.setMetrics(metrics);
+                configurableListableBeanFactory.registerSingleton("introspectionTokenValidator", introspectionTokenValidator);
+                tokenAuthenticator = new TokenFormatRouter(tokenAuthenticator, introspectionTokenValidator);
+            }
+            configurableListableBeanFactory.registerSingleton("authenticationTokenValidator", tokenAuthenticator);
+            if (metrics != null) {
+                configurableListableBeanFactory.registerSingleton("authenticationMetrics", metrics);
+            }
+            RevocationList revocationList = createRevocationList(resourceRetriever);
+            if (revocationList != null) {
+                this.resources.add(revocationList);
+                configurableListableBeanFactory.registerSingleton("revocationList", revocationList);
+                revocationList.start(TimeUnit.SECONDS.toMillis(this.config.getRevocationPollInterval()),
+                        VirtualThreads.factory("dbhys-oauth-revocation", this.config.isVirtualThreads()));
+            }
+            configurableListableBeanFactory.registerSingleton("pathPatternMatcher",
+                    PathPatternMatcher.compile(this.config.getIncludePaths(), this.config.getExcludePaths()));
+            configurableListableBeanFactory.registerSingleton("authenticationBootstrap", bootstrap);
+            // Registered in a warming state, the metadata and keys are loaded in the background
+            bootstrap.start();
+        } catch (IOException | java.text.ParseException e) {
+            logger.error("Init authentication config and resource error: {}", e.toString());
+            throw new Error("Init authentication config and resource error.", e);
+        }
+    }
+
+    /**
+     * Stops the background refreshes and shuts down the threads created for
+     * the registered beans.
+     */
+    @Override
+    public void destroy() {
+        for (int i = this.resources.size() - 1; i >= 0; i--) {
+            try {
+                this.resources.get(i).close();
+            } catch (Exception e) {
+                logger.warn("Couldn't close an authentication resource: {}", e.toString());
+            }
+        }
+        this.resources.clear();
+    }
+
+    /**
+     * Creates the revocation list of the configured source.
+     *
+     * @return The list, {@code null} if no source is configured.
+     */
+    private RevocationList createRevocationList(ResourceRetriever resourceRetriever) {
+        RevocationSource source;
+        if (this.config.getRevocationUri() != null) {
+            source = new HttpRevocationSource(this.config.getRevocationUri(), resourceRetriever);
+        } else if (this.config.getRevocationFile() != null) {
+            source = new FileRevocationSource(Paths.get(this.config.getRevocationFile()));
+        } else {
+            return null;
+        }
+        return new RevocationList(source);
+    }
+
+    /**
+     * Creates the validator of the opaque tokens of the primary issuer, with its own token caches.
+     */
+    private IntrospectionTokenValidator createIntrospectionValidator() {
+        if (this.config.getIntrospectionClientSecret() == null) {
+            throw new Error("Property 'introspectionClientSecret' can't be null!");
+        }
+        IntrospectionTokenValidator validator = new IntrospectionTokenValidator(this.config.getIssuer(),
+                this.oAuthClientMetadata,
+                this.config.getIntrospectionClientId(),
+                this.config.getIntrospectionClientSecret(),
+                this.config.getConnectTimeout(),
+                this.config.getReadTimeout());
+        validator.setMaxTokenLength(this.config.getMaxTokenLength());
+        validator.setMaxCacheTtl(this.config.getIntrospectionCacheTtl());
+        validator.setScopeClaim(this.config.getScopeClaim());
+        validator.setRolesClaim(this.config.getRolesClaim());
+        if (this.config.getTokenCacheSize() != null && this.config.getTokenCacheSize() > 0) {
+            validator.setTokenCache(new VerifiedTokenCache(this.config.getTokenCacheSize()));
+        }
+        if (this.config.getRejectedTokenCacheSize() != null && this.config.getRejectedTokenCacheSize() > 0) {
+            validator.setRejectedTokenCache(new RejectedTokenCache(this.config.getRejectedTokenCacheSize(),
+                    this.config.getRejectedTokenTtl()));
+        }
+        return validator;
+    }
+
+    /**
+     * Creates the validator of an issuer, with its own token caches.
+     */
+    private AuthenticationTokenValidator createValidator(AuthenticationResourceServerConfig.Issuer issuer, AuthenticationBootstrap bootstrap) {
+        AuthenticationTokenValidator validator = new AuthenticationTokenValidator(issuer.getIssuer(), bootstrap.getJWSKeySelector(), null);
+        List<String> audience = issuer.getAudience() != null ? issuer.getAudience() : this.config.getAudience();
+        validator.setClaimsVerifier(new TokenClaimsVerifier(issuer.getIssuer(),
+                audience == null ? null : new HashSet<>(audience),
+                this.config.getMaxClockSkew(),
+                this.config.isRequireExpirationTime()));
+        validator.setMaxTokenLength(this.config.getMaxTokenLength());
+        validator.setAsyncExecutor(this.asyncExecutor);
+        // Scopes and roles are read on every authentication, never parse the payload for them
+        List<String> projectedClaims = new ArrayList<>();
+        if (this.config.getProjectedClaims() != null) {
+            projectedClaims.addAll(this.config.getProjectedClaims());
+        }
+        projectedClaims.add(this.config.getScopeClaim());
+        projectedClaims.add(this.config.getRolesClaim());
+        if (this.config.getRevocationUri() != null || this.config.getRevocationFile() != null) {
+            // Read on every request by the revocation check
+            projectedClaims.add(RevocationList.JWT_ID_CLAIM);
+        }
+        validator.setClaimsProjector(new ClaimsProjector(projectedClaims));
+        validator.setScopeClaim(this.config.getScopeClaim());
+        validator.setRolesClaim(this.config.getRolesClaim());
+        Integer tokenCacheSize = issuer.getTokenCacheSize() != null ? issuer.getTokenCacheSize() : this.config.getTokenCacheSize();
+        if (tokenCacheSize != null && tokenCacheSize > 0) {
+            validator.setTokenCache(new VerifiedTokenCache(tokenCacheSize));
+        }
+        Integer rejectedTokenCacheSize = issuer.getRejectedTokenCacheSize() != null
+                ? issuer.getRejectedTokenCacheSize() : this.config.getRejectedTokenCacheSize();
+        if (rejectedTokenCacheSize != null && rejectedTokenCacheSize > 0) {
+            RejectedTokenCache rejectedTokenCache = new RejectedTokenCache(rejectedTokenCacheSize, this.config.getRejectedTokenTtl());
+            validator.setRejectedTokenCache(rejectedTokenCache);
+            if (bootstrap.getJWKSource() instanceof RefreshAheadJWKSource) {
+                // Tokens rejected for an unknown key may be valid with the new keys
+                ((RefreshAheadJWKSource<?>) bootstrap.getJWKSource()).addListener(jwkSet -> rejectedTokenCache.clear());
+            }
+            // Tokens rejected while warming up
+            bootstrap.whenReady().thenRun(rejectedTokenCache::clear);
         }
+        return validator;
     }
 
 
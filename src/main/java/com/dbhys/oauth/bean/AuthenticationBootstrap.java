@@ -0,0 +1,518 @@
+package com.dbhys.oauth.bean;
+
+import com.dbhys.oauth.config.AuthenticationResourceServerConfig;
+import com.dbhys.oauth.http.HTTPCacheUtils;
+import com.dbhys.oauth.http.HTTPTransport;
+import com.dbhys.oauth.jwk.RefreshAheadJWKSource;
+import com.dbhys.oauth.jwk.SnapshotStore;
+import com.dbhys.oauth.metrics.AuthenticationMetrics;
+import com.dbhys.oauth.util.Backoff;
+import com.dbhys.oauth.util.VirtualThreads;
+import com.dbhys.oauth.validator.CachingJWSKeySelector;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.ResourceRetriever;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Brings up the discovery metadata and the JWK set of the issuer without
+ * blocking the Spring context refresh. The beans built on them exist from
+ * the start, in a warming state where no token is accepted, and become
+ * ready once both were loaded:
+ *
+ * <ul>
+ *     <li>From a static JWK set file, ready at once.
+ *     <li>From a snapshot, ready at once and revalidated in the background.
+ *     <li>Otherwise the discovery document is fetched in the background,
+ *         in parallel with the JWK set if its URI is configured, each
+ *         retried with an exponential backoff until it succeeds, the
+ *         discovery document until it can also be applied.
+ * </ul>
+ *
+ * <p>With several issuers, the bootstrap of the primary one is only ready
+ * once those of the others are too, see {@link #readyWith}.
+ *
+ * <p>The discovery metadata is then revalidated after 70 to 90% of the
+ * lifespan given by the {@code Cache-Control} or {@code Expires} header of
+ * its response, within the configured bounds, with a conditional request.
+ */
+public class AuthenticationBootstrap implements Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(AuthenticationBootstrap.class);
+
+    /**
+     * The delay before the first retry, in milliseconds.
+     */
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 500L;
+
+    /**
+     * The maximum delay between retries, in milliseconds.
+     */
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000L;
+
+    public enum State {
+        WARMING,
+        READY
+    }
+
+    private final AuthenticationResourceServerConfig config;
+
+    private final AuthenticationResourceServerConfig.Issuer issuer;
+
+    // The accepted signing algorithms, null for all the advertised ones
+    private final Set<JWSAlgorithm> allowedJWSAlgorithms;
+
+    private final OAuthClientMetadata metadata;
+
+    private final JWKSource<SecurityContext> jwkSource;
+
+    private final CachingJWSKeySelector<SecurityContext> jwsKeySelector;
+
+    private final SnapshotStore snapshotStore;
+
+    // Completed once this issuer's metadata and JWK set are loaded
+    private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+
+    // Completed once this and the other issuers' bootstraps are loaded
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    private final List<AuthenticationBootstrap> others = new ArrayList<>();
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private volatile Exception lastError;
+
+    private volatile AuthenticationMetrics metrics;
+
+    private volatile HTTPTransport transport;
+
+    // The last resolved discovery metadata, for conditional revalidation
+    private volatile OAuthClientMetadata lastResolved;
+
+    public AuthenticationBootstrap(AuthenticationResourceServerConfig config, ResourceRetriever resourceRetriever)
+            throws IOException, java.text.ParseException {
+        this(config, config.toPrimaryIssuer(), resourceRetriever);
+    }
+
+    public AuthenticationBootstrap(AuthenticationResourceServerConfig config, AuthenticationResourceServerConfig.Issuer issuer,
+                                   ResourceRetriever resourceRetriever)
+            throws IOException, java.text.ParseException {
+        this.config = config;
+        this.issuer = issuer;
+        this.allowedJWSAlgorithms = issuer.getJwsAlgorithms() == null ? null
+                : resolveJWSAlgorithms(issuer.getJwsAlgorithms().toArray(new String[0]));
+        if (issuer.getJwksFile() != null) {
+            // Offline, the static JWK set replaces discovery
+            File jwksFile = new File(issuer.getJwksFile());
+            JWKSet jwkSet;
+            try {
+                jwkSet = JWKSet.load(jwksFile);
+            } catch (java.text.ParseException e) {
+                throw new java.text.ParseException("Invalid JWK set file " + jwksFile + ": " + e.getMessage(), e.getErrorOffset());
+            }
+            this.metadata = new OAuthClientMetadata(issuer.getIssuer(), algorithmsOf(jwkSet), jwksFile.toURI().toString());
+            this.jwkSource = new ImmutableJWKSet<>(jwkSet);
+            this.snapshotStore = null;
+        } else {
+            this.metadata = new OAuthClientMetadata(issuer.getIssuer(), new String[0], null);
+            RefreshAheadJWKSource<SecurityContext> remoteJWKSource = new RefreshAheadJWKSource<>(
+                    resourceRetriever, config.getLifeSpan(), TimeUnit.HOURS,
+                    VirtualThreads.factory("dbhys-oauth-jwks-refresh", config.isVirtualThreads()));
+            remoteJWKSource.setUnknownKeyRefetchInterval(TimeUnit.SECONDS.toMillis(config.getJwksRefetchInterval()));
+            remoteJWKSource.setLifespanBounds(config.getMinCacheLifespan(), config.getMaxCacheLifespan(), TimeUnit.SECONDS);
+            this.jwkSource = remoteJWKSource;
+            this.snapshotStore = issuer.getSnapshotFile() == null ? null : new SnapshotStore(Paths.get(issuer.getSnapshotFile()));
+            if (snapshotStore != null) {
+                remoteJWKSource.addListener(jwkSet -> {
+                    if (loaded.isDone()) {
+                        snapshotStore.save(metadata.toJSONObject(), jwkSet);
+                    }
+                });
+            }
+        }
+        // No algorithm is accepted until the metadata was applied
+        this.jwsKeySelector = new CachingJWSKeySelector<>(Collections.emptySet(), jwkSource);
+        if (jwkSource instanceof RefreshAheadJWKSource) {
+            // The verifiers of the current keys are rebuilt on next use, those of rotated-out keys are dropped
+            ((RefreshAheadJWKSource<SecurityContext>) jwkSource).addListener(jwkSet -> jwsKeySelector.clear());
+        }
+        this.executor = new ScheduledThreadPoolExecutor(1,
+                VirtualThreads.factory("dbhys-oauth-bootstrap", config.isVirtualThreads()));
+        this.executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts loading the metadata and the JWK set, without blocking on any
+     * network call.
+     */
+    public void start() {
+        CompletableFuture<?>[] all = new CompletableFuture<?>[others.size() + 1];
+        all[0] = loaded;
+        for (int i = 0; i < others.size(); i++) {
+            all[i + 1] = others.get(i).ready;
+        }
+        CompletableFuture.allOf(all).thenRun(() -> ready.complete(null));
+
+        if (!(jwkSource instanceof RefreshAheadJWKSource)) {
+            apply(metadata);
+            loaded.complete(null);
+            return;
+        }
+        RefreshAheadJWKSource<SecurityContext> remoteJWKSource = (RefreshAheadJWKSource<SecurityContext>) jwkSource;
+
+        SnapshotStore.Snapshot snapshot = loadSnapshot();
+        if (snapshot != null) {
+            remoteJWKSource.start(snapshot.getJWKSet());
+            loaded.complete(null);
+            logger.info("Started from the snapshot saved at {}", snapshot.getSavedAt());
+            // Revalidated in the background, the JWK set by its source
+            retry("Discovery", this::resolveMetadata).thenAccept(resolved -> {
+                apply(resolved);
+                saveSnapshot();
+            }).whenComplete((v, e) -> {
+                if (e != null) {
+                    logger.error("Couldn't apply the revalidated discovery metadata: {}", e.toString());
+                }
+                scheduleRevalidation();
+            });
+            return;
+        }
+
+        // Applied within the retried task, metadata that can't be applied is retried like a failed discovery
+        final boolean jwksUriKnown = issuer.getJwksUri() != null;
+        CompletableFuture<OAuthClientMetadata> discovery = retry("Discovery", () -> {
+            OAuthClientMetadata resolved = resolveMetadata();
+            apply(resolved);
+            if (!jwksUriKnown) {
+                remoteJWKSource.setJWKSetURL(toURL(resolved.getJwksURI()));
+            }
+            return resolved;
+        });
+        if (jwksUriKnown) {
+            // Known up front, the JWK set is fetched in parallel with discovery
+            remoteJWKSource.setJWKSetURL(toURL(issuer.getJwksUri()));
+            remoteJWKSource.startInBackground();
+        } else {
+            discovery.thenRun(remoteJWKSource::startInBackground);
+        }
+        discovery.thenCombine(remoteJWKSource.whenLoaded(), (v, jwkSet) -> jwkSet)
+                .whenComplete((jwkSet, e) -> {
+                    if (e != null) {
+                        lastError = e instanceof Exception ? (Exception) e : new IllegalStateException(e);
+                        logger.error("Authentication bootstrap failed: {}", e.toString());
+                        return;
+                    }
+                    loaded.complete(null);
+                    logger.info("Authentication ready for {}", issuer.getIssuer());
+                    saveSnapshot();
+                    scheduleRevalidation();
+                });
+    }
+
+    /**
+     * Revalidates the discovery metadata after 70 to 90% of its lifespan,
+     * applying it if it changed.
+     */
+    private void scheduleRevalidation() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        final OAuthClientMetadata last = lastResolved;
+        long lifespan = HTTPCacheUtils.bound(last == null ? HTTPCacheUtils.UNSPECIFIED : last.getFreshnessLifetime(),
+                TimeUnit.HOURS.toMillis(config.getLifeSpan()),
+                TimeUnit.SECONDS.toMillis(config.getMinCacheLifespan()),
+                TimeUnit.SECONDS.toMillis(config.getMaxCacheLifespan()));
+        long delay = (long) (lifespan * (0.7 + 0.2 * ThreadLocalRandom.current().nextDouble()));
+        executor.schedule(() -> {
+            retry("Discovery revalidation", this::resolveMetadata).thenAccept(resolved -> {
+                if (resolved != last) {
+                    // Modified since, else answered 304
+                    apply(resolved);
+                    saveSnapshot();
+                }
+            }).whenComplete((v, e) -> {
+                if (e != null) {
+                    logger.error("Couldn't apply the revalidated discovery metadata: {}", e.toString());
+                }
+                scheduleRevalidation();
+            });
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private SnapshotStore.Snapshot loadSnapshot() {
+        SnapshotStore.Snapshot snapshot = snapshotStore == null ? null : snapshotStore.load();
+        if (snapshot == null) {
+            return null;
+        }
+        if (!issuer.getIssuer().equals(snapshot.getMetadata().get("issuer"))) {
+            logger.warn("Ignoring the snapshot of another issuer: {}", snapshot.getMetadata().get("issuer"));
+            return null;
+        }
+        try {
+            OAuthClientMetadata saved = OAuthClientMetadata.parse(snapshot.getMetadata());
+            apply(saved);
+            ((RefreshAheadJWKSource<SecurityContext>) jwkSource).setJWKSetURL(toURL(saved.getJwksURI()));
+        } catch (Exception e) {
+            logger.warn("Ignoring the snapshot with invalid metadata: {}", e.getMessage());
+            return null;
+        }
+        return snapshot;
+    }
+
+    private void saveSnapshot() {
+        JWKSet jwkSet = jwkSource instanceof RefreshAheadJWKSource
+                ? ((RefreshAheadJWKSource<SecurityContext>) jwkSource).getJWKSet() : null;
+        if (snapshotStore != null && jwkSet != null) {
+            snapshotStore.save(metadata.toJSONObject(), jwkSet);
+        }
+    }
+
+    private OAuthClientMetadata resolveMetadata()
+            throws Exception {
+
+        final AuthenticationMetrics metrics = this.metrics;
+        final long start = metrics == null ? 0L : System.nanoTime();
+        boolean success = false;
+        try {
+            OAuthClientMetadata resolved = OAuthClientMetadata.resolve(issuer.getIssuer(), config.getConnectTimeout(), config.getReadTimeout(),
+                    transport, lastResolved);
+            lastResolved = resolved;
+            success = true;
+            return resolved;
+        } finally {
+            if (metrics != null) {
+                metrics.recordDiscovery(issuer.getIssuer(), System.nanoTime() - start, success);
+            }
+        }
+    }
+
+    /**
+     * Copies resolved metadata into the registered metadata bean and
+     * configures the accepted algorithms.
+     */
+    private void apply(OAuthClientMetadata resolved) {
+        Set<JWSAlgorithm> jwsAlgs = resolveJWSAlgorithms(resolved.getTokenSigningAlgValuesSupported());
+        if (allowedJWSAlgorithms != null) {
+            jwsAlgs.retainAll(allowedJWSAlgorithms);
+            if (jwsAlgs.isEmpty()) {
+                throw new IllegalArgumentException("None of the token signing algorithms of " + issuer.getIssuer() + " is allowed!");
+            }
+        }
+        if (metadata.getJwksURI() != null && !metadata.getJwksURI().equals(resolved.getJwksURI())) {
+            logger.warn("The JWK set URI changed to {}, restart to use it", resolved.getJwksURI());
+        } else {
+            metadata.setJwksURI(resolved.getJwksURI());
+        }
+        metadata.setTokenSigningAlgValuesSupported(resolved.getTokenSigningAlgValuesSupported());
+        metadata.setAuthorizationUri(resolved.getAuthorizationUri());
+        metadata.setRefreshUri(resolved.getRefreshUri());
+        metadata.setIntrospectionUri(resolved.getIntrospectionUri());
+        jwsKeySelector.setExpectedJWSAlgorithms(jwsAlgs);
+    }
+
+    private <T> CompletableFuture<T> retry(String what, Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> attempt(what, task, result, 0));
+        return result;
+    }
+
+    private <T> void attempt(String what, Callable<T> task, CompletableFuture<T> result, int failures) {
+        try {
+            result.complete(task.call());
+        } catch (Exception e) {
+            lastError = e;
+            long delay = Backoff.delay(failures + 1, INITIAL_RETRY_DELAY_MILLIS, MAX_RETRY_DELAY_MILLIS);
+            logger.warn("{} of {} failed, retrying in {} ms: {}", what, issuer.getIssuer(), delay, e.getMessage());
+            executor.schedule(() -> attempt(what, task, result, failures + 1), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public State getState() {
+        return ready.isDone() ? State.READY : State.WARMING;
+    }
+
+    public boolean isReady() {
+        return ready.isDone();
+    }
+
+    /**
+     * Returns a stage completed once the metadata and the JWK set are
+     * loaded, also those of the bootstraps it's {@link #readyWith ready
+     * with}.
+     */
+    public CompletionStage<Void> whenReady() {
+        return ready.minimalCompletionStage();
+    }
+
+    /**
+     * Waits until ready.
+     *
+     * @return {@code true} if ready, {@code false} if the timeout elapsed
+     *         or the thread was interrupted.
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) {
+        if (ready.isDone()) {
+            return true;
+        }
+        try {
+            ready.get(timeout, unit);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the last error while warming up, e.g. to report why an
+     * instance isn't ready.
+     *
+     * @return The last error, {@code null} if none.
+     */
+    public Exception getLastError() {
+        Exception lastError = this.lastError;
+        for (int i = 0; lastError == null && i < others.size(); i++) {
+            lastError = others.get(i).getLastError();
+        }
+        return lastError;
+    }
+
+    /**
+     * Also waits for the bootstrap of another issuer before reporting
+     * ready, so that none is still warming once requests get through.
+     * Called before {@link #start()}.
+     *
+     * @param other The bootstrap of another issuer.
+     */
+    public void readyWith(AuthenticationBootstrap other) {
+        others.add(other);
+    }
+
+    /**
+     * Sets the transport of the discovery requests, before
+     * {@link #start()}. The JWK set is fetched with the resource
+     * retriever.
+     *
+     * @param transport The transport, {@code null} for the default one.
+     */
+    public void setTransport(HTTPTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the metrics of the discovery and the JWK set, before
+     * {@link #start()}.
+     *
+     * @param metrics The metrics, {@code null} if none.
+     */
+    public void setMetrics(AuthenticationMetrics metrics) {
+        this.metrics = metrics;
+        if (metrics != null && jwkSource instanceof RefreshAheadJWKSource) {
+            RefreshAheadJWKSource<SecurityContext> remoteJWKSource = (RefreshAheadJWKSource<SecurityContext>) jwkSource;
+            remoteJWKSource.setFetchListener((nanos, success) -> metrics.recordJWKSetFetch(issuer.getIssuer(), nanos, success));
+            metrics.monitor(issuer.getIssuer(), remoteJWKSource);
+        }
+    }
+
+    public OAuthClientMetadata getMetadata() {
+        return metadata;
+    }
+
+    public JWKSource<SecurityContext> getJWKSource() {
+        return jwkSource;
+    }
+
+    public CachingJWSKeySelector<SecurityContext> getJWSKeySelector() {
+        return jwsKeySelector;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        if (jwkSource instanceof RefreshAheadJWKSource) {
+            ((RefreshAheadJWKSource<SecurityContext>) jwkSource).close();
+        }
+    }
+
+    private static URL toURL(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid JWK set URI: " + url, e);
+        }
+    }
+
+    /**
+     * Returns the advertised token signing algorithms that can be verified
+     * with public keys from the JWK set. HMAC and "none" are never accepted.
+     */
+    static Set<JWSAlgorithm> resolveJWSAlgorithms(String[] algValues) {
+        Set<JWSAlgorithm> jwsAlgs = new LinkedHashSet<>();
+        for (String algValue : algValues) {
+            JWSAlgorithm jwsAlg = JWSAlgorithm.parse(algValue);
+            if (JWSAlgorithm.Family.RSA.contains(jwsAlg)
+                    || JWSAlgorithm.Family.EC.contains(jwsAlg)
+                    || JWSAlgorithm.Family.ED.contains(jwsAlg)) {
+                jwsAlgs.add(jwsAlg);
+            }
+        }
+        if (jwsAlgs.isEmpty()) {
+            throw new IllegalArgumentException("None of the token signing algorithms " + Arrays.toString(algValues) + " is supported!");
+        }
+        return jwsAlgs;
+    }
+
+    /**
+     * Returns the signing algorithms of the keys of a static JWK set, from
+     * their "alg" or else from their key type.
+     */
+    static String[] algorithmsOf(JWKSet jwkSet) {
+        Set<String> algValues = new LinkedHashSet<>();
+        for (JWK jwk : jwkSet.getKeys()) {
+            if (jwk.getAlgorithm() != null) {
+                algValues.add(jwk.getAlgorithm().getName());
+            } else if (jwk instanceof RSAKey) {
+                algValues.add(JWSAlgorithm.RS256.getName());
+            } else if (jwk instanceof ECKey) {
+                Curve curve = ((ECKey) jwk).getCurve();
+                algValues.add(Curve.P_384.equals(curve) ? JWSAlgorithm.ES384.getName()
+                        : Curve.P_521.equals(curve) ? JWSAlgorithm.ES512.getName() : JWSAlgorithm.ES256.getName());
+            } else if (jwk instanceof OctetKeyPair) {
+                algValues.add(JWSAlgorithm.EdDSA.getName());
+            }
+        }
+        return algValues.toArray(new String[0]);
+    }
+}
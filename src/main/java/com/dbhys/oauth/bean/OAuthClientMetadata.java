@@ -1,15 +1,19 @@
 package com.dbhys.oauth.bean;
 
 import com.dbhys.oauth.ParseException;
+import com.dbhys.oauth.http.HTTPCacheUtils;
 import com.dbhys.oauth.http.HTTPRequest;
 import com.dbhys.oauth.http.HTTPResponse;
+import com.dbhys.oauth.http.HTTPTransport;
 import com.dbhys.oauth.util.JSONObjectUtils;
 import net.minidev.json.JSONObject;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
+import java.util.Arrays;
 
 public class OAuthClientMetadata {
 
@@ -22,9 +26,19 @@ public class OAuthClientMetadata {
 
     private String refreshUri;
 
+    //introspection_endpoint, RFC 7662
+    private String introspectionUri;
+
     //token_signing_alg_values_supported
     private String[] tokenSigningAlgValuesSupported;
 
+    // The discovery response, for conditional revalidation. Not part of the document.
+    private HTTPResponse httpResponse;
+
+    // The freshness lifetime of the discovery response in milliseconds, HTTPCacheUtils.UNSPECIFIED if none.
+    // Updated by a 304 on the revalidation thread, read by the thread scheduling the next one.
+    private volatile long freshnessLifetime = HTTPCacheUtils.UNSPECIFIED;
+
     public String getIssuer() {
         return issuer;
     }
@@ -49,6 +63,14 @@ public class OAuthClientMetadata {
         this.refreshUri = refreshUri;
     }
 
+    public String getIntrospectionUri() {
+        return introspectionUri;
+    }
+
+    public void setIntrospectionUri(String introspectionUri) {
+        this.introspectionUri = introspectionUri;
+    }
+
     public String getJwksURI() {
         return jwksURI;
     }
@@ -65,6 +87,10 @@ public class OAuthClientMetadata {
         this.tokenSigningAlgValuesSupported = tokenSigningAlgValuesSupported;
     }
 
+    public long getFreshnessLifetime() {
+        return freshnessLifetime;
+    }
+
     public OAuthClientMetadata(String issuer, String[] tokenSigningAlgValuesSupported, String jwkSetURI){
         this.issuer = issuer;
         this.tokenSigningAlgValuesSupported = tokenSigningAlgValuesSupported;
@@ -76,6 +102,46 @@ public class OAuthClientMetadata {
                                                final int readTimeout)
             throws Exception {
 
+        return resolve(issuer, connectTimeout, readTimeout, null);
+    }
+
+    /**
+     * Resolves the metadata of an issuer from its discovery document.
+     *
+     * @param transport The HTTP transport, {@code null} for the default
+     *                  one.
+     */
+    public static OAuthClientMetadata resolve(final String issuer,
+                                               final int connectTimeout,
+                                               final int readTimeout,
+                                               final HTTPTransport transport)
+            throws Exception {
+
+        return resolve(issuer, connectTimeout, readTimeout, transport, null);
+    }
+
+    /**
+     * Resolves the metadata of an issuer from its discovery document,
+     * unless it wasn't modified since it was last resolved. The
+     * {@link #getFreshnessLifetime() freshness lifetime} of the returned
+     * metadata is taken from the {@code Cache-Control} or {@code Expires}
+     * header of the response.
+     *
+     * @param transport The HTTP transport, {@code null} for the default
+     *                  one.
+     * @param previous  The previously resolved metadata, {@code null} if
+     *                  none.
+     *
+     * @return The metadata, {@code previous} if the document wasn't
+     *         modified.
+     */
+    public static OAuthClientMetadata resolve(final String issuer,
+                                               final int connectTimeout,
+                                               final int readTimeout,
+                                               final HTTPTransport transport,
+                                               final OAuthClientMetadata previous)
+            throws Exception {
+
         URL configURL;
 
         try {
@@ -100,9 +166,21 @@ public class OAuthClientMetadata {
         HTTPRequest httpRequest = new HTTPRequest(HTTPRequest.Method.GET, configURL);
         httpRequest.setConnectTimeout(connectTimeout);
         httpRequest.setReadTimeout(readTimeout);
+        httpRequest.setTransport(transport);
+        HTTPResponse validated = previous == null ? null : previous.httpResponse;
+        HTTPCacheUtils.setValidators(httpRequest, validated);
 
         HTTPResponse httpResponse = httpRequest.send();
 
+        if (httpResponse.getStatusCode() == HTTPResponse.SC_NOT_MODIFIED && validated != null) {
+            // The 304 updates the freshness of the stored response, see RFC 7234 section 4.3.4
+            long lifetime = HTTPCacheUtils.getFreshnessLifetime(httpResponse, System.currentTimeMillis());
+            if (lifetime != HTTPCacheUtils.UNSPECIFIED) {
+                previous.freshnessLifetime = lifetime;
+            }
+            return previous;
+        }
+
         if (httpResponse.getStatusCode() != 200) {
             throw new IOException("Couldn't download OpenID Provider metadata from " + configURL +
                     ": Status code " + httpResponse.getStatusCode());
@@ -115,28 +193,53 @@ public class OAuthClientMetadata {
         if (! issuer.equals(op.getIssuer())) {
             throw new Exception("The returned issuer doesn't match the expected: " + op.getIssuer());
         }
+        op.httpResponse = httpResponse;
+        op.freshnessLifetime = HTTPCacheUtils.getFreshnessLifetime(httpResponse, System.currentTimeMillis());
         return op;
     }
 
     public static OAuthClientMetadata parse(final JSONObject jsonObject) throws ParseException {
         String issuer = JSONObjectUtils.getURI(jsonObject, "issuer").toString();
-        if (StringUtils.isEmpty(issuer))
+        if (!StringUtils.hasLength(issuer))
             throw new IllegalArgumentException("The value must not be null or empty string");
         String jwkSetURI = JSONObjectUtils.getURI(jsonObject, "jwks_uri", null).toString();
-        if (StringUtils.isEmpty(jwkSetURI))
+        if (!StringUtils.hasLength(jwkSetURI))
             throw new IllegalArgumentException("The public JWK set URI must not be null");
 
-        if (StringUtils.isEmpty(jwkSetURI))
+        if (!StringUtils.hasLength(jwkSetURI))
             throw new IllegalArgumentException("The public JWK set URI must not be null");
         String[] tokenSigningAlgValuesSupported = JSONObjectUtils.getStringArray(jsonObject, "token_signing_alg_values_supported");
         if (tokenSigningAlgValuesSupported == null || tokenSigningAlgValuesSupported.length == 0)
             throw new IllegalArgumentException("At least one supported token signing alg must be specified");
 
         OAuthClientMetadata oAuthClientMetadata = new OAuthClientMetadata(issuer, tokenSigningAlgValuesSupported, jwkSetURI);
-        String authorizationUri = JSONObjectUtils.getURI(jsonObject, "authorization_uri", null).toString();
-        String refreshUri = JSONObjectUtils.getURI(jsonObject, "refresh_uri", null).toString();
-        oAuthClientMetadata.setAuthorizationUri(authorizationUri);
-        oAuthClientMetadata.setRefreshUri(refreshUri);
+        URI authorizationUri = JSONObjectUtils.getURI(jsonObject, "authorization_uri", null);
+        URI refreshUri = JSONObjectUtils.getURI(jsonObject, "refresh_uri", null);
+        oAuthClientMetadata.setAuthorizationUri(authorizationUri == null ? null : authorizationUri.toString());
+        oAuthClientMetadata.setRefreshUri(refreshUri == null ? null : refreshUri.toString());
+        URI introspectionUri = JSONObjectUtils.getURI(jsonObject, "introspection_endpoint", null);
+        oAuthClientMetadata.setIntrospectionUri(introspectionUri == null ? null : introspectionUri.toString());
         return oAuthClientMetadata;
     }
+
+    /**
+     * Returns the metadata as a JSON object, in the form {@link #parse}
+     * reads, e.g. to save it in a snapshot.
+     */
+    public JSONObject toJSONObject() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("issuer", issuer);
+        jsonObject.put("jwks_uri", jwksURI);
+        jsonObject.put("token_signing_alg_values_supported", Arrays.asList(tokenSigningAlgValuesSupported));
+        if (authorizationUri != null) {
+            jsonObject.put("authorization_uri", authorizationUri);
+        }
+        if (refreshUri != null) {
+            jsonObject.put("refresh_uri", refreshUri);
+        }
+        if (introspectionUri != null) {
+            jsonObject.put("introspection_endpoint", introspectionUri);
+        }
+        return jsonObject;
+    }
 }
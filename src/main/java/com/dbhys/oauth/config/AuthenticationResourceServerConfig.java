@@ -2,6 +2,10 @@ package com.dbhys.oauth.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Created by Milas on 2019/3/19.
@@ -15,6 +19,18 @@ public class AuthenticationResourceServerConfig {
      */
     public static final long DEFAULT_LIFESPAN_HOUR = 24;
 
+    /**
+     * The default minimum lifespan of the discovery metadata and the JWK
+     * set taken from the HTTP cache headers, in seconds.
+     */
+    private static final int DEFAULT_MIN_CACHE_LIFESPAN = 300;
+
+    /**
+     * The default maximum lifespan of the discovery metadata and the JWK
+     * set taken from the HTTP cache headers, in seconds.
+     */
+    private static final int DEFAULT_MAX_CACHE_LIFESPAN = 86400;
+
     /**
      * The default HTTP connect timeout for JWK set retrieval, in
      * milliseconds. Set to 500 milliseconds.
@@ -29,20 +45,278 @@ public class AuthenticationResourceServerConfig {
     private static final int DEFAULT_HTTP_READ_TIMEOUT = 500;
     private static final String DEFAULT_COOKIE_NAME_OF_TOKEN = "ac";
 
+    /**
+     * The default maximum number of verified tokens to cache.
+     */
+    private static final int DEFAULT_TOKEN_CACHE_SIZE = 10000;
+
+    /**
+     * The default maximum number of recently rejected tokens to remember.
+     */
+    private static final int DEFAULT_REJECTED_TOKEN_CACHE_SIZE = 4096;
+
+    /**
+     * The default time a token rejection is remembered, in seconds.
+     */
+    private static final int DEFAULT_REJECTED_TOKEN_TTL = 30;
+
+    /**
+     * The default maximum clock skew when checking token times, in seconds.
+     */
+    private static final int DEFAULT_MAX_CLOCK_SKEW = 60;
+
+    /**
+     * The default maximum length of a token, in characters.
+     */
+    private static final int DEFAULT_MAX_TOKEN_LENGTH = 16384;
+
+    /**
+     * The default minimum interval between JWK set fetches for unknown key IDs, in seconds.
+     */
+    private static final int DEFAULT_JWKS_REFETCH_INTERVAL = 10;
+
+    /**
+     * The default maximum time a request waits for the warm-up, in milliseconds.
+     */
+    private static final int DEFAULT_WARMUP_TIMEOUT = 5000;
+
+    /**
+     * The default maximum time an active opaque token is cached, in seconds.
+     */
+    private static final int DEFAULT_INTROSPECTION_CACHE_TTL = 60;
+
+    /**
+     * The default interval between polls of the revocation source, in seconds.
+     */
+    private static final int DEFAULT_REVOCATION_POLL_INTERVAL = 30;
+
+    /**
+     * The default order of the security filter, right after Spring's character encoding filter.
+     */
+    public static final int DEFAULT_FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE + 10;
+
+    /**
+     * What happens to requests arriving before the metadata and keys are loaded.
+     */
+    public enum WarmupBehavior {
+        // Wait up to the warm-up timeout, then answer 503
+        WAIT,
+        // Answer 503 right away
+        REJECT
+    }
+
+    /**
+     * Where {@link com.dbhys.oauth.security.AuthenticationHelper} keeps the
+     * authentication of the current request.
+     */
+    public enum ContextMode {
+        // A thread-local variable, set and cleared around each request
+        THREAD_LOCAL,
+        // A scoped value (Java 21+) bound for the duration of each request, inherited by structured concurrency forks
+        SCOPED_VALUE
+    }
+
+    /**
+     * Settings of an issuer besides the primary one.
+     */
+    public static class Issuer {
+
+        private String issuer;
+
+        // As the top-level properties of the same name, but for this issuer.
+        private String jwksUri;
+        private String jwksFile;
+        private String snapshotFile;
+
+        // Accepted token audience values, unset for the top-level ones.
+        private List<String> audience;
+
+        // Accepted signing algorithms, unset for all the advertised ones.
+        private List<String> jwsAlgorithms;
+
+        // Sizes of the token caches of this issuer, unset for the top-level ones. Each issuer has
+        // its own caches, a busy issuer can't evict the tokens of the others.
+        private Integer tokenCacheSize;
+        private Integer rejectedTokenCacheSize;
+
+        public String getIssuer() {
+            return issuer;
+        }
+
+        public void setIssuer(String issuer) {
+            this.issuer = issuer;
+        }
+
+        public String getJwksUri() {
+            return jwksUri;
+        }
+
+        public void setJwksUri(String jwksUri) {
+            this.jwksUri = jwksUri;
+        }
+
+        public String getJwksFile() {
+            return jwksFile;
+        }
+
+        public void setJwksFile(String jwksFile) {
+            this.jwksFile = jwksFile;
+        }
+
+        public String getSnapshotFile() {
+            return snapshotFile;
+        }
+
+        public void setSnapshotFile(String snapshotFile) {
+            this.snapshotFile = snapshotFile;
+        }
+
+        public List<String> getAudience() {
+            return audience;
+        }
+
+        public void setAudience(List<String> audience) {
+            this.audience = audience;
+        }
+
+        public List<String> getJwsAlgorithms() {
+            return jwsAlgorithms;
+        }
+
+        public void setJwsAlgorithms(List<String> jwsAlgorithms) {
+            this.jwsAlgorithms = jwsAlgorithms;
+        }
+
+        public Integer getTokenCacheSize() {
+            return tokenCacheSize;
+        }
+
+        public void setTokenCacheSize(Integer tokenCacheSize) {
+            this.tokenCacheSize = tokenCacheSize;
+        }
+
+        public Integer getRejectedTokenCacheSize() {
+            return rejectedTokenCacheSize;
+        }
+
+        public void setRejectedTokenCacheSize(Integer rejectedTokenCacheSize) {
+            this.rejectedTokenCacheSize = rejectedTokenCacheSize;
+        }
+    }
+
     private String issuer;
 
+    // Further accepted issuers, tokens are routed by their iss claim. The top-level issuer stays the
+    // primary one, users are redirected to its authorization endpoint.
+    private List<Issuer> issuers;
+
+    // Accepted signing algorithms of the primary issuer, unset for all the advertised ones.
+    private List<String> jwsAlgorithms;
+
     // If production env, disable this config, it's just for swagger test or something else.
     private boolean enableCookieToken;
     private String cookieNameOfToken = DEFAULT_COOKIE_NAME_OF_TOKEN;
 
+    // The lifespan of the JWK set, in hours. It's refreshed in the background after 70 to 90% of it.
+    // Only applies to responses without a Cache-Control max-age or Expires header.
     private Long lifeSpan = DEFAULT_LIFESPAN_HOUR;
 
+    // Bounds of the lifespan of the discovery metadata and the JWK set taken from the Cache-Control
+    // max-age or Expires header of their responses, in seconds.
+    private Integer minCacheLifespan = DEFAULT_MIN_CACHE_LIFESPAN;
+    private Integer maxCacheLifespan = DEFAULT_MAX_CACHE_LIFESPAN;
+
+    // The file of the last good discovery metadata and JWK set. If present at startup, it's served
+    // right away and revalidated in the background. Unset disables the snapshot.
+    private String snapshotFile;
+
+    // A static JWK set file for offline environments, no discovery or JWK set retrieval happens then.
+    private String jwksFile;
+
+    // The JWK set URI, if known up front it's fetched in parallel with the discovery document.
+    private String jwksUri;
+
+    private WarmupBehavior warmupBehavior = WarmupBehavior.WAIT;
+
+    private Integer warmupTimeout = DEFAULT_WARMUP_TIMEOUT;
+
+    // Tokens with an unknown key ID fetch the JWK set at most once per this interval, in seconds.
+    private Integer jwksRefetchInterval = DEFAULT_JWKS_REFETCH_INTERVAL;
+
     // The HTTP connect timeout, in milliseconds. Zero implies no timeout. Must not be negative.
     private Integer connectTimeout = DEFAULT_HTTP_CONNECT_TIMEOUT;
 
     // The HTTP response read timeout, in milliseconds. Zero implies no timeout. Must not be negative.
     private Integer readTimeout = DEFAULT_HTTP_READ_TIMEOUT;
 
+    // The maximum number of verified tokens to cache until they expire. Zero disables the cache.
+    private Integer tokenCacheSize = DEFAULT_TOKEN_CACHE_SIZE;
+
+    // The maximum number of recently rejected tokens to remember. Zero disables the cache.
+    private Integer rejectedTokenCacheSize = DEFAULT_REJECTED_TOKEN_CACHE_SIZE;
+
+    // How long a token rejection is remembered, in seconds.
+    private Integer rejectedTokenTtl = DEFAULT_REJECTED_TOKEN_TTL;
+
+    // The accepted token audience values. Empty means the audience isn't checked.
+    private List<String> audience;
+
+    // The tolerated clock skew when checking the token exp and nbf, in seconds.
+    private Integer maxClockSkew = DEFAULT_MAX_CLOCK_SKEW;
+
+    // Reject tokens without an exp claim, accepted and never expiring otherwise.
+    private boolean requireExpirationTime;
+
+    // Longer tokens are rejected before they are decoded.
+    private Integer maxTokenLength = DEFAULT_MAX_TOKEN_LENGTH;
+
+    // Claims read straight from the token payload besides iss, sub, aud, exp, nbf, iat and name.
+    private List<String> projectedClaims;
+
+    // The claim of the granted scopes, delimited by spaces, checked by @RequiresScope.
+    private String scopeClaim = "scope";
+
+    // The claim of the granted roles, a list, checked by @RequiresScope.
+    private String rolesClaim = "roles";
+
+    private ContextMode contextMode = ContextMode.THREAD_LOCAL;
+
+    // Register the servlet security filter, otherwise register ApiSecurityInterceptor with a WebMvcConfigurer.
+    private boolean filterEnabled = true;
+
+    // The URL patterns of the servlet security filter.
+    private List<String> filterUrlPatterns = Collections.singletonList("/*");
+
+    private Integer filterOrder = DEFAULT_FILTER_ORDER;
+
+    // Patterns of the paths requiring a token, e.g. /api/**. Empty means all paths.
+    private List<String> includePaths;
+
+    // Patterns of the paths never requiring a token, e.g. /actuator/** or /**/*.js.
+    private List<String> excludePaths;
+
+    // Run the JWK set refreshes, the bootstrap and the async token validation on virtual threads, if the runtime has them (Java 21+).
+    private boolean virtualThreads;
+
+    // The client credentials of this resource server at the introspection endpoint. If set, opaque tokens
+    // are introspected (RFC 7662) at the endpoint advertised by the primary issuer, JWTs are still validated locally.
+    private String introspectionClientId;
+    private String introspectionClientSecret;
+
+    // The maximum time an active opaque token is cached, in seconds, i.e. how long a revocation may go unnoticed.
+    // Inactive ones are remembered for rejectedTokenTtl.
+    private Integer introspectionCacheTtl = DEFAULT_INTROSPECTION_CACHE_TTL;
+
+    // The delta endpoint of the revoked token IDs (jti), see HttpRevocationSource. Tokens it lists are rejected
+    // before they expire, also when cached.
+    private String revocationUri;
+
+    // A file of revoked token IDs, one per line, reread when it changes. Ignored if revocationUri is set.
+    private String revocationFile;
+
+    // The interval between polls of the revocation source, in seconds.
+    private Integer revocationPollInterval = DEFAULT_REVOCATION_POLL_INTERVAL;
+
     public String getIssuer() {
         return issuer;
     }
@@ -51,6 +325,39 @@ public class AuthenticationResourceServerConfig {
         this.issuer = issuer;
     }
 
+    public List<Issuer> getIssuers() {
+        return issuers;
+    }
+
+    public void setIssuers(List<Issuer> issuers) {
+        this.issuers = issuers;
+    }
+
+    public List<String> getJwsAlgorithms() {
+        return jwsAlgorithms;
+    }
+
+    public void setJwsAlgorithms(List<String> jwsAlgorithms) {
+        this.jwsAlgorithms = jwsAlgorithms;
+    }
+
+    /**
+     * Returns the settings of the primary issuer, from the top-level
+     * properties.
+     */
+    public Issuer toPrimaryIssuer() {
+        Issuer primary = new Issuer();
+        primary.setIssuer(issuer);
+        primary.setJwksUri(jwksUri);
+        primary.setJwksFile(jwksFile);
+        primary.setSnapshotFile(snapshotFile);
+        primary.setAudience(audience);
+        primary.setJwsAlgorithms(jwsAlgorithms);
+        primary.setTokenCacheSize(tokenCacheSize);
+        primary.setRejectedTokenCacheSize(rejectedTokenCacheSize);
+        return primary;
+    }
+
     public Long getLifeSpan() {
         return lifeSpan;
     }
@@ -59,6 +366,70 @@ public class AuthenticationResourceServerConfig {
         this.lifeSpan = lifeSpan;
     }
 
+    public Integer getMinCacheLifespan() {
+        return minCacheLifespan;
+    }
+
+    public void setMinCacheLifespan(Integer minCacheLifespan) {
+        this.minCacheLifespan = minCacheLifespan;
+    }
+
+    public Integer getMaxCacheLifespan() {
+        return maxCacheLifespan;
+    }
+
+    public void setMaxCacheLifespan(Integer maxCacheLifespan) {
+        this.maxCacheLifespan = maxCacheLifespan;
+    }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public String getJwksFile() {
+        return jwksFile;
+    }
+
+    public void setJwksFile(String jwksFile) {
+        this.jwksFile = jwksFile;
+    }
+
+    public String getJwksUri() {
+        return jwksUri;
+    }
+
+    public void setJwksUri(String jwksUri) {
+        this.jwksUri = jwksUri;
+    }
+
+    public WarmupBehavior getWarmupBehavior() {
+        return warmupBehavior;
+    }
+
+    public void setWarmupBehavior(WarmupBehavior warmupBehavior) {
+        this.warmupBehavior = warmupBehavior;
+    }
+
+    public Integer getWarmupTimeout() {
+        return warmupTimeout;
+    }
+
+    public void setWarmupTimeout(Integer warmupTimeout) {
+        this.warmupTimeout = warmupTimeout;
+    }
+
+    public Integer getJwksRefetchInterval() {
+        return jwksRefetchInterval;
+    }
+
+    public void setJwksRefetchInterval(Integer jwksRefetchInterval) {
+        this.jwksRefetchInterval = jwksRefetchInterval;
+    }
+
     public Integer getConnectTimeout() {
         return connectTimeout;
     }
@@ -75,6 +446,190 @@ public class AuthenticationResourceServerConfig {
         this.readTimeout = readTimeout;
     }
 
+    public Integer getTokenCacheSize() {
+        return tokenCacheSize;
+    }
+
+    public void setTokenCacheSize(Integer tokenCacheSize) {
+        this.tokenCacheSize = tokenCacheSize;
+    }
+
+    public Integer getRejectedTokenCacheSize() {
+        return rejectedTokenCacheSize;
+    }
+
+    public void setRejectedTokenCacheSize(Integer rejectedTokenCacheSize) {
+        this.rejectedTokenCacheSize = rejectedTokenCacheSize;
+    }
+
+    public Integer getRejectedTokenTtl() {
+        return rejectedTokenTtl;
+    }
+
+    public void setRejectedTokenTtl(Integer rejectedTokenTtl) {
+        this.rejectedTokenTtl = rejectedTokenTtl;
+    }
+
+    public List<String> getAudience() {
+        return audience;
+    }
+
+    public void setAudience(List<String> audience) {
+        this.audience = audience;
+    }
+
+    public Integer getMaxClockSkew() {
+        return maxClockSkew;
+    }
+
+    public void setMaxClockSkew(Integer maxClockSkew) {
+        this.maxClockSkew = maxClockSkew;
+    }
+
+    public boolean isRequireExpirationTime() {
+        return requireExpirationTime;
+    }
+
+    public void setRequireExpirationTime(boolean requireExpirationTime) {
+        this.requireExpirationTime = requireExpirationTime;
+    }
+
+    public Integer getMaxTokenLength() {
+        return maxTokenLength;
+    }
+
+    public void setMaxTokenLength(Integer maxTokenLength) {
+        this.maxTokenLength = maxTokenLength;
+    }
+
+    public List<String> getProjectedClaims() {
+        return projectedClaims;
+    }
+
+    public void setProjectedClaims(List<String> projectedClaims) {
+        this.projectedClaims = projectedClaims;
+    }
+
+    public String getScopeClaim() {
+        return scopeClaim;
+    }
+
+    public void setScopeClaim(String scopeClaim) {
+        this.scopeClaim = scopeClaim;
+    }
+
+    public String getRolesClaim() {
+        return rolesClaim;
+    }
+
+    public void setRolesClaim(String rolesClaim) {
+        this.rolesClaim = rolesClaim;
+    }
+
+    public boolean isFilterEnabled() {
+        return filterEnabled;
+    }
+
+    public void setFilterEnabled(boolean filterEnabled) {
+        this.filterEnabled = filterEnabled;
+    }
+
+    public List<String> getFilterUrlPatterns() {
+        return filterUrlPatterns;
+    }
+
+    public void setFilterUrlPatterns(List<String> filterUrlPatterns) {
+        this.filterUrlPatterns = filterUrlPatterns;
+    }
+
+    public Integer getFilterOrder() {
+        return filterOrder;
+    }
+
+    public void setFilterOrder(Integer filterOrder) {
+        this.filterOrder = filterOrder;
+    }
+
+    public List<String> getIncludePaths() {
+        return includePaths;
+    }
+
+    public void setIncludePaths(List<String> includePaths) {
+        this.includePaths = includePaths;
+    }
+
+    public List<String> getExcludePaths() {
+        return excludePaths;
+    }
+
+    public void setExcludePaths(List<String> excludePaths) {
+        this.excludePaths = excludePaths;
+    }
+
+    public ContextMode getContextMode() {
+        return contextMode;
+    }
+
+    public void setContextMode(ContextMode contextMode) {
+        this.contextMode = contextMode;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public String getIntrospectionClientId() {
+        return introspectionClientId;
+    }
+
+    public void setIntrospectionClientId(String introspectionClientId) {
+        this.introspectionClientId = introspectionClientId;
+    }
+
+    public String getIntrospectionClientSecret() {
+        return introspectionClientSecret;
+    }
+
+    public void setIntrospectionClientSecret(String introspectionClientSecret) {
+        this.introspectionClientSecret = introspectionClientSecret;
+    }
+
+    public Integer getIntrospectionCacheTtl() {
+        return introspectionCacheTtl;
+    }
+
+    public void setIntrospectionCacheTtl(Integer introspectionCacheTtl) {
+        this.introspectionCacheTtl = introspectionCacheTtl;
+    }
+
+    public String getRevocationUri() {
+        return revocationUri;
+    }
+
+    public void setRevocationUri(String revocationUri) {
+        this.revocationUri = revocationUri;
+    }
+
+    public String getRevocationFile() {
+        return revocationFile;
+    }
+
+    public void setRevocationFile(String revocationFile) {
+        this.revocationFile = revocationFile;
+    }
+
+    public Integer getRevocationPollInterval() {
+        return revocationPollInterval;
+    }
+
+    public void setRevocationPollInterval(Integer revocationPollInterval) {
+        this.revocationPollInterval = revocationPollInterval;
+    }
+
     public boolean isEnableCookieToken() {
         return enableCookieToken;
     }
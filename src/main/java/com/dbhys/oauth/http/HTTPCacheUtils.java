@@ -0,0 +1,144 @@
+package com.dbhys.oauth.http;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * HTTP caching of fetched documents, see RFC 7234 and RFC 7232: the
+ * freshness lifetime of a response from its {@code Cache-Control} or
+ * {@code Expires} header, and the validators of conditional requests.
+ */
+public final class HTTPCacheUtils {
+
+    /**
+     * Returned by {@link #getFreshnessLifetime} for a response without
+     * freshness information.
+     */
+    public static final long UNSPECIFIED = -1L;
+
+    private HTTPCacheUtils() {
+    }
+
+    /**
+     * Returns the freshness lifetime of a response: its
+     * {@code Cache-Control} {@code max-age} less its {@code Age}, else its
+     * {@code Expires} less its {@code Date}. {@code no-cache},
+     * {@code no-store} and an invalid {@code Expires} date give zero.
+     *
+     * @param response The HTTP response. Must not be {@code null}.
+     * @param now      The current time, in milliseconds since the epoch,
+     *                 if the response has no {@code Date}.
+     *
+     * @return The lifetime in milliseconds, {@link #UNSPECIFIED} if the
+     *         response has no freshness information.
+     */
+    public static long getFreshnessLifetime(final HTTPResponse response, final long now) {
+        String cacheControl = response.getHeaderValue(HttpHeader.CACHE_CONTROL);
+        if (cacheControl != null) {
+            long maxAge = UNSPECIFIED;
+            for (String directive : cacheControl.split(",")) {
+                String name = directive.trim().toLowerCase(Locale.ROOT);
+                if (name.equals("no-cache") || name.equals("no-store")) {
+                    return 0L;
+                }
+                if (name.startsWith("max-age=")) {
+                    maxAge = parseSeconds(name.substring("max-age=".length()));
+                }
+            }
+            if (maxAge != UNSPECIFIED) {
+                long age = parseSeconds(response.getHeaderValue(HttpHeader.AGE));
+                return Math.max(0L, (maxAge - Math.max(0L, age)) * 1000L);
+            }
+        }
+        String expires = response.getHeaderValue(HttpHeader.EXPIRES);
+        if (expires == null) {
+            return UNSPECIFIED;
+        }
+        long expiresAt = parseDate(expires);
+        if (expiresAt < 0) {
+            // E.g. "0", already expired
+            return 0L;
+        }
+        long date = parseDate(response.getHeaderValue(HttpHeader.DATE));
+        return Math.max(0L, expiresAt - (date < 0 ? now : date));
+    }
+
+    /**
+     * Returns a freshness lifetime within bounds.
+     *
+     * @param lifetime The lifetime, {@link #UNSPECIFIED} for the fallback.
+     * @param fallback The lifetime of responses without freshness
+     *                 information.
+     * @param min      The minimum lifetime.
+     * @param max      The maximum lifetime.
+     *
+     * @return The bounded lifetime.
+     */
+    public static long bound(final long lifetime, final long fallback, final long min, final long max) {
+        long value = lifetime == UNSPECIFIED ? fallback : lifetime;
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Makes a request conditional on the {@code ETag} and
+     * {@code Last-Modified} validators of a previous response, so an
+     * unchanged resource is answered {@link HTTPResponse#SC_NOT_MODIFIED
+     * 304} without a body.
+     *
+     * @param request   The HTTP request. Must not be {@code null}.
+     * @param validated The previous response of the resource, {@code null}
+     *                  if none.
+     */
+    public static void setValidators(final HTTPRequest request, final HTTPResponse validated) {
+        if (validated == null) {
+            return;
+        }
+        String entityTag = validated.getHeaderValue(HttpHeader.ETAG);
+        if (entityTag != null) {
+            request.setHeader(HttpHeader.IF_NONE_MATCH, entityTag);
+        }
+        String lastModified = validated.getHeaderValue(HttpHeader.LAST_MODIFIED);
+        if (lastModified != null) {
+            request.setHeader(HttpHeader.IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+
+    /**
+     * Returns {@code true} if a response has an {@code ETag} or
+     * {@code Last-Modified} validator.
+     *
+     * @param response The HTTP response, {@code null} if none.
+     */
+    public static boolean hasValidators(final HTTPResponse response) {
+        return response != null && (response.getHeaderValue(HttpHeader.ETAG) != null
+                || response.getHeaderValue(HttpHeader.LAST_MODIFIED) != null);
+    }
+
+    private static long parseSeconds(final String value) {
+        if (value == null) {
+            return UNSPECIFIED;
+        }
+        String seconds = value.trim();
+        if (seconds.length() > 1 && seconds.startsWith("\"") && seconds.endsWith("\"")) {
+            seconds = seconds.substring(1, seconds.length() - 1);
+        }
+        try {
+            return Long.parseLong(seconds);
+        } catch (NumberFormatException e) {
+            return UNSPECIFIED;
+        }
+    }
+
+    private static long parseDate(final String value) {
+        if (value == null) {
+            return -1L;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1L;
+        }
+    }
+}
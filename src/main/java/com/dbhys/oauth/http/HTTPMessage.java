@@ -129,7 +129,7 @@ abstract class HTTPMessage {
 	public void ensureContentType(final ContentType contentType)
 			throws ParseException {
 
-		this.ensureContentType(contentType, getContentType());
+		ensureContentType(contentType, getContentType());
 	}
 
 
@@ -142,7 +142,7 @@ abstract class HTTPMessage {
 	 */
 	public String getHeaderValue(final String name) {
 
-		return this.getFirstValue(headers, name);
+		return getFirstValue(headers, name);
 	}
 	/**
 	 * Gets the first value for the specified key.
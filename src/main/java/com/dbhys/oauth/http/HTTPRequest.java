@@ -28,7 +28,7 @@ import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.*;
 import java.net.*;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.cert.X509Certificate;
 import java.util.List;
 import java.util.Map;
@@ -175,6 +175,19 @@ public class HTTPRequest extends HTTPMessage {
 	private SSLSocketFactory sslSocketFactory = null;
 
 
+	/**
+	 * The transport to send this request with, {@code null} implies the
+	 * default one.
+	 */
+	private HTTPTransport transport = null;
+
+
+	/**
+	 * The default transport for all outgoing requests.
+	 */
+	private static volatile HTTPTransport defaultTransport = new HttpClientTransport();
+
+
 	/**
 	 * The default hostname verifier for all outgoing HTTPS requests.
 	 */
@@ -187,6 +200,14 @@ public class HTTPRequest extends HTTPMessage {
 	private static SSLSocketFactory defaultSSLSocketFactory = (SSLSocketFactory)SSLSocketFactory.getDefault();
 
 
+	/**
+	 * Whether the default hostname verifier or socket factory was set,
+	 * {@link SSLSocketFactory#getDefault()} isn't the same instance on
+	 * every call to compare it with.
+	 */
+	private static volatile boolean defaultTLSOverridden;
+
+
 	/**
 	 * Creates a new minimally specified HTTP request.
 	 *
@@ -659,6 +680,7 @@ public class HTTPRequest extends HTTPMessage {
 		}
 
 		HTTPRequest.defaultHostnameVerifier = defaultHostnameVerifier;
+		defaultTLSOverridden = true;
 	}
 
 
@@ -688,6 +710,70 @@ public class HTTPRequest extends HTTPMessage {
 		}
 
 		HTTPRequest.defaultSSLSocketFactory = sslSocketFactory;
+		defaultTLSOverridden = true;
+	}
+
+
+	/**
+	 * Returns {@code true} if the default hostname verifier or SSL socket
+	 * factory was set.
+	 */
+	static boolean isDefaultTLSOverridden() {
+
+		return defaultTLSOverridden;
+	}
+
+
+	/**
+	 * Gets the transport to send this request with.
+	 *
+	 * @return The transport, {@code null} implies use of the
+	 *         {@link #getDefaultTransport() default one}.
+	 */
+	public HTTPTransport getTransport() {
+
+		return transport;
+	}
+
+
+	/**
+	 * Sets the transport to send this request with.
+	 *
+	 * @param transport The transport, {@code null} implies use of the
+	 *                  {@link #getDefaultTransport() default one}.
+	 */
+	public void setTransport(final HTTPTransport transport) {
+
+		this.transport = transport;
+	}
+
+
+	/**
+	 * Returns the default transport for all outgoing requests, a
+	 * {@link HttpClientTransport} unless set.
+	 *
+	 * @return The transport.
+	 */
+	public static HTTPTransport getDefaultTransport() {
+
+		return defaultTransport;
+	}
+
+
+	/**
+	 * Sets the default transport for all outgoing requests, e.g. an
+	 * {@link InMemoryTransport} in tests. May be overridden on an
+	 * individual request basis.
+	 *
+	 * @param transport The transport. Must not be {@code null}.
+	 */
+	public static void setDefaultTransport(final HTTPTransport transport) {
+
+		if (transport == null) {
+			throw new IllegalArgumentException("The HTTP transport must not be null");
+		}
+
+		HTTPRequest.defaultTransport = transport;
 	}
 
 
@@ -746,46 +832,53 @@ public class HTTPRequest extends HTTPMessage {
 	public HttpURLConnection toHttpURLConnection()
 			throws IOException {
 
-		URL finalURL = url;
-
-		if (query != null && (method.equals(HTTPRequest.Method.GET) || method.equals(HTTPRequest.Method.DELETE))) {
-
-			// Append query string
-			StringBuilder sb = new StringBuilder(url.toString());
-			sb.append('?');
-			sb.append(query);
-
-			try {
-				finalURL = new URL(sb.toString());
+		return toHttpURLConnection(false);
+	}
 
-			} catch (MalformedURLException e) {
 
-				throw new IOException("Couldn't append query string: " + e.getMessage(), e);
-			}
-		}
+	/**
+	 * Returns an established HTTP URL connection for this HTTP request.
+	 *
+	 * @param acceptGzip {@code true} to accept a gzip encoded response,
+	 *                   unless the request has its own
+	 *                   {@code Accept-Encoding} header.
+	 *
+	 * @return The HTTP URL connection, with the request sent and ready to
+	 *         read the response.
+	 *
+	 * @throws IOException If the HTTP request couldn't be made, due to a
+	 *                     network or other error.
+	 */
+	HttpURLConnection toHttpURLConnection(final boolean acceptGzip)
+			throws IOException {
 
-		if (fragment != null) {
+		URL finalURL = url;
 
-			// Append raw fragment
-			StringBuilder sb = new StringBuilder(finalURL.toString());
-			sb.append('#');
-			sb.append(fragment);
+		if (fragment != null || (query != null && ! HTTPTransportUtils.hasBody(method))) {
 
 			try {
-				finalURL = new URL(sb.toString());
+				// Query string and raw fragment appended in one pass
+				finalURL = new URL(HTTPTransportUtils.toURLString(this));
 
 			} catch (MalformedURLException e) {
 
-				throw new IOException("Couldn't append raw fragment: " + e.getMessage(), e);
+				throw new IOException("Couldn't append query string / raw fragment: " + e.getMessage(), e);
 			}
 		}
 
 		HttpURLConnection conn = (HttpURLConnection)finalURL.openConnection();
 
 		if (conn instanceof HttpsURLConnection) {
+			// The connection starts with the JDK defaults, only replace them if changed
 			HttpsURLConnection sslConn = (HttpsURLConnection)conn;
-			sslConn.setHostnameVerifier(hostnameVerifier != null ? hostnameVerifier : getDefaultHostnameVerifier());
-			sslConn.setSSLSocketFactory(sslSocketFactory != null ? sslSocketFactory : getDefaultSSLSocketFactory());
+			HostnameVerifier verifier = hostnameVerifier != null ? hostnameVerifier : getDefaultHostnameVerifier();
+			if (verifier != sslConn.getHostnameVerifier()) {
+				sslConn.setHostnameVerifier(verifier);
+			}
+			SSLSocketFactory factory = sslSocketFactory != null ? sslSocketFactory : getDefaultSSLSocketFactory();
+			if (factory != sslConn.getSSLSocketFactory()) {
+				sslConn.setSSLSocketFactory(factory);
+			}
 		}
 
 		for (Map.Entry<String,List<String>> header: getHeaderMap().entrySet()) {
@@ -794,12 +887,16 @@ public class HTTPRequest extends HTTPMessage {
 			}
 		}
 
+		if (acceptGzip && getHeaderValue("Accept-Encoding") == null) {
+			conn.setRequestProperty("Accept-Encoding", "gzip");
+		}
+
 		conn.setRequestMethod(method.name());
 		conn.setConnectTimeout(connectTimeout);
 		conn.setReadTimeout(readTimeout);
 		conn.setInstanceFollowRedirects(followRedirects);
 
-		if (method.equals(HTTPRequest.Method.POST) || method.equals(HTTPRequest.Method.PUT)) {
+		if (HTTPTransportUtils.hasBody(method)) {
 
 			conn.setDoOutput(true);
 
@@ -807,10 +904,8 @@ public class HTTPRequest extends HTTPMessage {
 				conn.setRequestProperty("Content-Type", getContentType().toString());
 
 			if (query != null) {
-				try {
-					OutputStreamWriter writer = new OutputStreamWriter(conn.getOutputStream());
+				try (Writer writer = new OutputStreamWriter(conn.getOutputStream(), StandardCharsets.UTF_8)) {
 					writer.write(query);
-					writer.close();
 				} catch (IOException e) {
 					closeStreams(conn);
 					throw e; // Rethrow
@@ -865,8 +960,9 @@ public class HTTPRequest extends HTTPMessage {
 
 
 	/**
-	 * Sends this HTTP request to the request URL and retrieves the
-	 * resulting HTTP response.
+	 * Sends this HTTP request to the request URL with its
+	 * {@link #getTransport() transport} and retrieves the resulting HTTP
+	 * response.
 	 *
 	 * @return The resulting HTTP response.
 	 *
@@ -876,79 +972,7 @@ public class HTTPRequest extends HTTPMessage {
 	public HTTPResponse send()
 			throws IOException {
 
-		HttpURLConnection conn = toHttpURLConnection();
-
-		int statusCode;
-
-		BufferedReader reader;
-
-		try {
-			// Open a connection, then send method and headers
-			reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), Charset.forName("UTF-8")));
-
-			// The next step is to get the status
-			statusCode = conn.getResponseCode();
-
-		} catch (IOException e) {
-
-			// HttpUrlConnection will throw an IOException if any
-			// 4XX response is sent. If we request the status
-			// again, this time the internal status will be
-			// properly set, and we'll be able to retrieve it.
-			statusCode = conn.getResponseCode();
-
-			if (statusCode == -1) {
-				throw e; // Rethrow IO exception
-			} else {
-				// HTTP status code indicates the response got
-				// through, read the content but using error stream
-				InputStream errStream = conn.getErrorStream();
-
-				if (errStream != null) {
-					// We have useful HTTP error body
-					reader = new BufferedReader(new InputStreamReader(errStream));
-				} else {
-					// No content, set to empty string
-					reader = new BufferedReader(new StringReader(""));
-				}
-			}
-		}
-
-		StringBuilder body = new StringBuilder();
-		String line;
-		while ((line = reader.readLine()) != null) {
-			body.append(line);
-			body.append(System.getProperty("line.separator"));
-		}
-		reader.close();
-
-
-		HTTPResponse response = new HTTPResponse(statusCode);
-
-		response.setStatusMessage(conn.getResponseMessage());
-
-		// Set headers
-		for (Map.Entry<String,List<String>> responseHeader: conn.getHeaderFields().entrySet()) {
-
-			if (responseHeader.getKey() == null) {
-				continue; // skip header
-			}
-
-			List<String> values = responseHeader.getValue();
-			if (values == null || values.isEmpty() || values.get(0) == null) {
-				continue; // skip header
-			}
-
-			response.setHeader(responseHeader.getKey(), values.toArray(new String[]{}));
-		}
-
-		closeStreams(conn);
-
-		final String bodyContent = body.toString();
-		if (! bodyContent.isEmpty())
-			response.setContent(bodyContent);
-
-		return response;
+		return (transport != null ? transport : defaultTransport).send(this);
 	}
 
 
@@ -984,7 +1008,7 @@ public class HTTPRequest extends HTTPMessage {
 
 		try {
 			if (conn.getErrorStream() != null) {
-				conn.getOutputStream().close();
+				conn.getErrorStream().close();
 			}
 		} catch (Exception e) {
 			// ignore
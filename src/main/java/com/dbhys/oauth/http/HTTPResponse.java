@@ -82,6 +82,13 @@ public class HTTPResponse extends HTTPMessage {
 	public static final int SC_FOUND = 302;
 	
 	
+	/**
+	 * HTTP status code (304) indicating that the resource wasn't modified
+	 * since the conditional request validators.
+	 */
+	public static final int SC_NOT_MODIFIED = 304;
+	
+	
 	/**
 	 * HTTP status code (400) indicating a bad request.
 	 */
@@ -0,0 +1,43 @@
+package com.dbhys.oauth.http;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends {@link HTTPRequest HTTP requests}. The transport of a request is
+ * set with {@link HTTPRequest#setTransport}, else the
+ * {@link HTTPRequest#getDefaultTransport() default one} is used.
+ *
+ * <p>Implementations must be thread-safe.
+ */
+public interface HTTPTransport {
+
+    /**
+     * Sends the specified HTTP request and retrieves the response.
+     *
+     * @param request The HTTP request. Must not be {@code null}.
+     *
+     * @return The HTTP response, whatever its status code.
+     *
+     * @throws IOException If the HTTP request couldn't be made, due to a
+     *                     network or other error.
+     */
+    HTTPResponse send(HTTPRequest request) throws IOException;
+
+    /**
+     * Sends the specified HTTP request without waiting for the response.
+     * The default implementation sends it on the calling thread.
+     *
+     * @param request The HTTP request. Must not be {@code null}.
+     *
+     * @return The HTTP response, completed exceptionally with an
+     *         {@link IOException} if the request couldn't be made.
+     */
+    default CompletableFuture<HTTPResponse> sendAsync(HTTPRequest request) {
+        try {
+            return CompletableFuture.completedFuture(send(request));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.dbhys.oauth.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Request and response conversions shared by the transports.
+ */
+final class HTTPTransportUtils {
+
+    private HTTPTransportUtils() {
+    }
+
+    /**
+     * Returns the complete URL of a request, with the query string of a
+     * GET or DELETE request and the fragment, built in one pass.
+     */
+    static String toURLString(final HTTPRequest request) {
+        String url = request.getURL().toString();
+        String query = hasBody(request.getMethod()) ? null : request.getQuery();
+        String fragment = request.getFragment();
+        if (query == null && fragment == null) {
+            return url;
+        }
+        StringBuilder sb = new StringBuilder(url.length()
+                + (query == null ? 0 : query.length() + 1)
+                + (fragment == null ? 0 : fragment.length() + 1));
+        sb.append(url);
+        if (query != null) {
+            sb.append(url.indexOf('?') < 0 ? '?' : '&').append(query);
+        }
+        if (fragment != null) {
+            sb.append('#').append(fragment);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns {@code true} if the query string of a request with the
+     * specified method is sent as its body.
+     */
+    static boolean hasBody(final HTTPRequest.Method method) {
+        return method == HTTPRequest.Method.POST || method == HTTPRequest.Method.PUT;
+    }
+
+    /**
+     * Decodes a response body, gunzipping it first if the content encoding
+     * is {@code gzip}.
+     *
+     * @param body            The raw body.
+     * @param contentEncoding The {@code Content-Encoding} header value,
+     *                        {@code null} if none.
+     * @param contentType     The {@code Content-Type} header value, for the
+     *                        charset, UTF-8 if none.
+     *
+     * @return The decoded body, {@code null} if empty.
+     */
+    static String decode(byte[] body, final String contentEncoding, final String contentType)
+            throws IOException {
+
+        if (body.length == 0) {
+            return null;
+        }
+        if (contentEncoding != null && contentEncoding.trim().equalsIgnoreCase("gzip")) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            }
+        }
+        return new String(body, charsetOf(contentType));
+    }
+
+    private static Charset charsetOf(final String contentType) {
+        if (contentType != null) {
+            try {
+                for (ContentType.Parameter parameter : ContentType.parse(contentType).getParameters()) {
+                    if ("charset".equalsIgnoreCase(parameter.getName())) {
+                        return Charset.forName(parameter.getValue());
+                    }
+                }
+            } catch (java.text.ParseException | IllegalArgumentException e) {
+                // Fall back to UTF-8, as for JSON
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,216 @@
+package com.dbhys.oauth.http;
+
+import com.dbhys.oauth.util.VirtualThreads;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Transport over shared {@link HttpClient java.net.http} clients, the
+ * default one. Compared with {@link HttpURLConnectionTransport}:
+ *
+ * <ul>
+ *     <li>connections are kept alive in the pool of the client, and TLS
+ *         sessions are resumed from the session cache of its SSL context;
+ *     <li>HTTP/2 is negotiated with servers supporting it, multiplexing
+ *         the requests to one host over one connection;
+ *     <li>responses are requested gzip encoded and decoded as a whole;
+ *     <li>{@link #sendAsync} doesn't block the calling thread.
+ * </ul>
+ *
+ * <p>A client is created per combination of connect timeout and redirect
+ * policy of the requests, in practice one. HTTPS requests with their own
+ * SSL socket factory or hostname verifier, or sent after the defaults of
+ * {@link HTTPRequest} were set, which a client can't take, are sent with
+ * {@link HttpURLConnectionTransport}, by {@link #sendAsync} on the
+ * executor of the transport, else on shared daemon threads, virtual if
+ * supported.
+ *
+ * <p>Instances are thread-safe.
+ */
+public class HttpClientTransport implements HTTPTransport {
+
+    // Set by the client itself, rejected if set on a request
+    private static final Set<String> RESTRICTED_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "content-length", "expect", "host", "upgrade"));
+
+    private final HttpClient.Version version;
+
+    private final SSLContext sslContext;
+
+    private final Executor executor;
+
+    // By connect timeout and redirect policy
+    private final ConcurrentHashMap<Long, HttpClient> clients = new ConcurrentHashMap<>();
+
+    private final HttpURLConnectionTransport fallback = new HttpURLConnectionTransport();
+
+    // Blocking fallback requests of sendAsync without an executor, idle threads expire
+    private static final class FallbackExecutor {
+
+        static final Executor INSTANCE = Executors.newCachedThreadPool(
+                VirtualThreads.factory("dbhys-oauth-http-fallback", true));
+    }
+
+    /**
+     * Creates a new transport preferring HTTP/2, with the default SSL
+     * context and executor.
+     */
+    public HttpClientTransport() {
+        this(HttpClient.Version.HTTP_2, null, null);
+    }
+
+    /**
+     * Creates a new transport.
+     *
+     * @param version    The preferred HTTP version, {@code null} for
+     *                   HTTP/2.
+     * @param sslContext The SSL context, {@code null} for the default one.
+     * @param executor   The executor of the clients, e.g. creating virtual
+     *                   threads, {@code null} for the default one.
+     */
+    public HttpClientTransport(final HttpClient.Version version, final SSLContext sslContext, final Executor executor) {
+        this.version = version != null ? version : HttpClient.Version.HTTP_2;
+        this.sslContext = sslContext;
+        this.executor = executor;
+    }
+
+    @Override
+    public HTTPResponse send(final HTTPRequest request) throws IOException {
+        if (requiresFallback(request)) {
+            return fallback.send(request);
+        }
+        try {
+            return toHTTPResponse(client(request).send(toHttpRequest(request), HttpResponse.BodyHandlers.ofByteArray()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sending the HTTP request to " + request.getURL());
+        }
+    }
+
+    @Override
+    public CompletableFuture<HTTPResponse> sendAsync(final HTTPRequest request) {
+        if (requiresFallback(request)) {
+            // Never on the calling thread, e.g. an event loop
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fallback.send(request);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor != null ? executor : FallbackExecutor.INSTANCE);
+        }
+        HttpRequest httpRequest;
+        try {
+            httpRequest = toHttpRequest(request);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return client(request).sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    try {
+                        return toHTTPResponse(response);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    private static boolean requiresFallback(final HTTPRequest request) {
+        if (!"https".equalsIgnoreCase(request.getURL().getProtocol())) {
+            return false;
+        }
+        return request.getSSLSocketFactory() != null
+                || request.getHostnameVerifier() != null
+                || HTTPRequest.isDefaultTLSOverridden();
+    }
+
+    private HttpClient client(final HTTPRequest request) {
+        long key = ((long) request.getConnectTimeout() << 1) | (request.getFollowRedirects() ? 1L : 0L);
+        HttpClient client = clients.get(key);
+        if (client == null) {
+            client = clients.computeIfAbsent(key, k -> newClient(request.getConnectTimeout(), request.getFollowRedirects()));
+        }
+        return client;
+    }
+
+    private HttpClient newClient(final int connectTimeout, final boolean followRedirects) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(version)
+                .followRedirects(followRedirects ? HttpClient.Redirect.NORMAL : HttpClient.Redirect.NEVER);
+        if (connectTimeout > 0) {
+            builder.connectTimeout(Duration.ofMillis(connectTimeout));
+        }
+        if (sslContext != null) {
+            builder.sslContext(sslContext);
+        }
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        return builder.build();
+    }
+
+    private static HttpRequest toHttpRequest(final HTTPRequest request) throws IOException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(new URI(HTTPTransportUtils.toURLString(request)));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Invalid HTTP request URL: " + e.getMessage(), e);
+        }
+        for (Map.Entry<String, List<String>> header : request.getHeaderMap().entrySet()) {
+            if (RESTRICTED_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                builder.header(header.getKey(), value);
+            }
+        }
+        if (request.getHeaderValue(HttpHeader.ACCEPT_ENCODING) == null) {
+            builder.header(HttpHeader.ACCEPT_ENCODING, "gzip");
+        }
+        if (request.getReadTimeout() > 0) {
+            builder.timeout(Duration.ofMillis(request.getReadTimeout()));
+        }
+        HttpRequest.BodyPublisher body = HTTPTransportUtils.hasBody(request.getMethod()) && request.getQuery() != null
+                ? HttpRequest.BodyPublishers.ofString(request.getQuery(), StandardCharsets.UTF_8)
+                : HttpRequest.BodyPublishers.noBody();
+        return builder.method(request.getMethod().name(), body).build();
+    }
+
+    private static HTTPResponse toHTTPResponse(final HttpResponse<byte[]> httpResponse) throws IOException {
+        HTTPResponse response = new HTTPResponse(httpResponse.statusCode());
+        for (Map.Entry<String, List<String>> header : httpResponse.headers().map().entrySet()) {
+            if (header.getKey().startsWith(":") || header.getValue().isEmpty()) {
+                continue; // HTTP/2 pseudo-headers
+            }
+            response.setHeader(header.getKey(), header.getValue().toArray(new String[0]));
+        }
+        String contentEncoding = response.getHeaderValue(HttpHeader.CONTENT_ENCODING);
+        response.setContent(HTTPTransportUtils.decode(httpResponse.body(), contentEncoding,
+                response.getHeaderValue(HttpHeader.CONTENT_TYPE)));
+        if (contentEncoding != null) {
+            // The content is decoded
+            response.setHeader(HttpHeader.CONTENT_ENCODING);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,49 @@
+package com.dbhys.oauth.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transport over {@link HttpURLConnection}, the only one honouring the
+ * per-request {@link HTTPRequest#setSSLSocketFactory SSL socket factory}
+ * and {@link HTTPRequest#setHostnameVerifier hostname verifier}. The JDK
+ * keeps HTTP/1.1 connections alive once their streams are fully read and
+ * closed, which this transport always does.
+ */
+public class HttpURLConnectionTransport implements HTTPTransport {
+
+    @Override
+    public HTTPResponse send(final HTTPRequest request) throws IOException {
+        HttpURLConnection conn = request.toHttpURLConnection(true);
+
+        // Doesn't throw on 4xx and 5xx, unlike getInputStream()
+        int statusCode = conn.getResponseCode();
+        byte[] body;
+        try (InputStream in = statusCode >= 400 ? conn.getErrorStream() : conn.getInputStream()) {
+            body = in == null ? new byte[0] : in.readAllBytes();
+        } catch (IOException e) {
+            conn.disconnect();
+            throw e;
+        }
+
+        HTTPResponse response = new HTTPResponse(statusCode);
+        response.setStatusMessage(conn.getResponseMessage());
+        for (Map.Entry<String, List<String>> header : conn.getHeaderFields().entrySet()) {
+            List<String> values = header.getValue();
+            if (header.getKey() == null || values == null || values.isEmpty() || values.get(0) == null) {
+                continue; // skip the status line
+            }
+            response.setHeader(header.getKey(), values.toArray(new String[0]));
+        }
+        String contentEncoding = response.getHeaderValue(HttpHeader.CONTENT_ENCODING);
+        response.setContent(HTTPTransportUtils.decode(body, contentEncoding, response.getHeaderValue(HttpHeader.CONTENT_TYPE)));
+        if (contentEncoding != null) {
+            // The content is decoded
+            response.setHeader(HttpHeader.CONTENT_ENCODING);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,80 @@
+package com.dbhys.oauth.http;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport answering requests from {@link HTTPEndpoint endpoints}
+ * registered by URL, without any network, for tests and benchmarks. An
+ * endpoint is matched by the scheme, authority and path of the request
+ * URL, whatever its query string. Unmatched requests are answered 404.
+ *
+ * <p>Instances are thread-safe, endpoints must be too.
+ */
+public class InMemoryTransport implements HTTPTransport {
+
+    private final ConcurrentHashMap<String, HTTPEndpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final LongAdder requestCount = new LongAdder();
+
+    /**
+     * Registers an endpoint.
+     *
+     * @param url      The endpoint URL. Must not be {@code null}.
+     * @param endpoint The endpoint. Must not be {@code null}.
+     *
+     * @return This transport.
+     */
+    public InMemoryTransport register(final String url, final HTTPEndpoint endpoint) {
+        if (endpoint == null) {
+            throw new IllegalArgumentException("The HTTP endpoint must not be null");
+        }
+        endpoints.put(keyOf(toURL(url)), endpoint);
+        return this;
+    }
+
+    /**
+     * Unregisters the endpoint of the specified URL, it's answered 404
+     * from now on.
+     *
+     * @param url The endpoint URL. Must not be {@code null}.
+     */
+    public void unregister(final String url) {
+        endpoints.remove(keyOf(toURL(url)));
+    }
+
+    @Override
+    public HTTPResponse send(final HTTPRequest request) {
+        requestCount.increment();
+        HTTPEndpoint endpoint = endpoints.get(keyOf(request.getURL()));
+        if (endpoint == null) {
+            HTTPResponse response = new HTTPResponse(404);
+            response.setStatusMessage("Not Found");
+            return response;
+        }
+        return endpoint.process(request);
+    }
+
+    /**
+     * Returns the number of requests sent, matched or not.
+     *
+     * @return The request count.
+     */
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    private static URL toURL(final String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid endpoint URL: " + e.getMessage(), e);
+        }
+    }
+
+    private static String keyOf(final URL url) {
+        return url.getProtocol() + "://" + url.getAuthority() + url.getPath();
+    }
+}
@@ -0,0 +1,125 @@
+package com.dbhys.oauth.http;
+
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Retrieves the JWK set and other resources with an {@link HTTPTransport},
+ * so they share its pooled connections, unlike the
+ * {@code DefaultResourceRetriever} opening an {@code HttpURLConnection}
+ * per fetch.
+ *
+ * <p>Instances are thread-safe.
+ */
+public class TransportResourceRetriever implements ResourceRetriever {
+
+    private final int connectTimeout;
+
+    private final int readTimeout;
+
+    private final int sizeLimit;
+
+    private volatile HTTPTransport transport;
+
+    /**
+     * Creates a new resource retriever with the
+     * {@link HTTPRequest#getDefaultTransport() default transport}.
+     *
+     * @param connectTimeout The HTTP connect timeout, in milliseconds. Zero
+     *                       implies no timeout. Must not be negative.
+     * @param readTimeout    The HTTP response timeout, in milliseconds.
+     *                       Zero implies no timeout. Must not be negative.
+     * @param sizeLimit      The maximum size of a resource, in characters.
+     *                       Zero implies no limit. Must not be negative.
+     */
+    public TransportResourceRetriever(final int connectTimeout, final int readTimeout, final int sizeLimit) {
+        if (connectTimeout < 0 || readTimeout < 0 || sizeLimit < 0) {
+            throw new IllegalArgumentException("The timeouts and size limit must not be negative");
+        }
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.sizeLimit = sizeLimit;
+    }
+
+    @Override
+    public Resource retrieveResource(final URL url) throws IOException {
+        HTTPResponse response = retrieveResponse(url, null);
+        return new Resource(response.getContent(), response.getHeaderValue(HttpHeader.CONTENT_TYPE));
+    }
+
+    /**
+     * Retrieves a resource, unless it wasn't modified since a previous
+     * response, see {@link HTTPCacheUtils#setValidators}. The response
+     * headers give the {@link HTTPCacheUtils#getFreshnessLifetime freshness
+     * lifetime} of the resource.
+     *
+     * @param url       The resource URL. Must not be {@code null}.
+     * @param validated The previous response of the resource, {@code null}
+     *                  if none.
+     *
+     * @return The response, {@link HTTPResponse#SC_NOT_MODIFIED 304}
+     *         without content if the resource wasn't modified.
+     *
+     * @throws IOException If the resource couldn't be retrieved.
+     */
+    public HTTPResponse retrieveResponse(final URL url, final HTTPResponse validated) throws IOException {
+        HTTPResponse response = send(url, validated);
+        if (response.getStatusCode() == HTTPResponse.SC_NOT_MODIFIED && validated != null) {
+            return response;
+        }
+        if (response.getStatusCode() > 299) {
+            throw new IOException("HTTP " + response.getStatusCode() + ": " + response.getStatusMessage());
+        }
+        String content = response.getContent();
+        if (content == null) {
+            throw new IOException("Empty HTTP response from " + url);
+        }
+        if (sizeLimit > 0 && content.length() > sizeLimit) {
+            throw new IOException("Exceeded configured input limit of " + sizeLimit + " characters");
+        }
+        return response;
+    }
+
+    /**
+     * Sends a GET request of the specified URL, conditional on the
+     * validators of the previous response if any.
+     */
+    protected HTTPResponse send(final URL url, final HTTPResponse validated) throws IOException {
+        HTTPRequest request = new HTTPRequest(HTTPRequest.Method.GET, url);
+        request.setConnectTimeout(connectTimeout);
+        request.setReadTimeout(readTimeout);
+        request.setTransport(transport);
+        HTTPCacheUtils.setValidators(request, validated);
+        return request.send();
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public int getSizeLimit() {
+        return sizeLimit;
+    }
+
+    public HTTPTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the transport.
+     *
+     * @param transport The transport, {@code null} implies the
+     *                  {@link HTTPRequest#getDefaultTransport() default
+     *                  one}.
+     */
+    public void setTransport(final HTTPTransport transport) {
+        this.transport = transport;
+    }
+}
@@ -0,0 +1,609 @@
+package com.dbhys.oauth.jwk;
+
+import com.dbhys.oauth.http.HTTPCacheUtils;
+import com.dbhys.oauth.http.HTTPResponse;
+import com.dbhys.oauth.http.TransportResourceRetriever;
+import com.dbhys.oauth.util.Backoff;
+import com.dbhys.oauth.util.VirtualThreads;
+import com.nimbusds.jose.RemoteKeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Remote JWK set source refreshed ahead of time by a background thread, so
+ * that request threads only ever read the current set and never wait on
+ * the identity provider.
+ *
+ * <p>A fetched set is refreshed after 70 to 90% of its lifespan, the jitter
+ * spreads the fetches of many instances. With a
+ * {@link TransportResourceRetriever} the lifespan is taken from the
+ * {@code Cache-Control} or {@code Expires} header of the response, within
+ * the {@link #setLifespanBounds lifespan bounds}, and the refreshes are
+ * conditional on its {@code ETag} and {@code Last-Modified}, an unchanged
+ * set is answered 304 without a body. A failed fetch keeps the current
+ * set and is retried with an exponential backoff of up to
+ * {@link #RETRY_DELAY_MILLIS}. A fetched set
+ * that is equal to the current one doesn't replace it, so the verifiers
+ * built for its keys stay valid.
+ *
+ * <p>A lookup for a key ID missing from the set, e.g. during a key
+ * rotation, fetches the set right away. Concurrent lookups share one
+ * in-flight fetch and wait on it, and such fetches happen at most once per
+ * {@link #setUnknownKeyRefetchInterval(long) refetch interval}, lookups in
+ * between see the current set only. A lookup waiting on a background
+ * refresh uses its result instead of fetching again.
+ *
+ * <p>Fetches are serialized, so an older response never replaces a newer
+ * set.
+ *
+ * @param <C> The security context type.
+ */
+public class RefreshAheadJWKSource<C extends SecurityContext> implements JWKSource<C>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshAheadJWKSource.class);
+
+    /**
+     * The maximum delay before retrying a failed fetch, in milliseconds.
+     */
+    public static final long RETRY_DELAY_MILLIS = 30_000L;
+
+    /**
+     * The delay before retrying after the first failed fetch, in
+     * milliseconds.
+     */
+    public static final long INITIAL_RETRY_DELAY_MILLIS = 500L;
+
+    /**
+     * The default minimum interval between fetches for unknown key IDs, in
+     * milliseconds.
+     */
+    public static final long DEFAULT_UNKNOWN_KEY_REFETCH_INTERVAL_MILLIS = 10_000L;
+
+    private volatile URL jwkSetURL;
+
+    private final ResourceRetriever resourceRetriever;
+
+    private final long lifespanMillis;
+
+    private volatile long minLifespanMillis;
+
+    private volatile long maxLifespanMillis;
+
+    // The lifespan of the current set, from the last fetch
+    private volatile long currentLifespanMillis;
+
+    // The response of the current set, for conditional fetches
+    private volatile HTTPResponse validated;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final List<Consumer<JWKSet>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile JWKSet jwkSet;
+
+    private volatile long fetchedAt;
+
+    // Serializes the fetches, a ReentrantLock doesn't pin virtual threads
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private final CompletableFuture<JWKSet> loaded = new CompletableFuture<>();
+
+    // Consecutive failed fetches, only used on the refresh thread
+    private int failures;
+
+    private final AtomicReference<CompletableFuture<Boolean>> unknownKeyFetch = new AtomicReference<>();
+
+    private volatile long unknownKeyFetchedAt;
+
+    private volatile long unknownKeyRefetchIntervalMillis = DEFAULT_UNKNOWN_KEY_REFETCH_INTERVAL_MILLIS;
+
+    private final LongAdder unknownKeyFetchCount = new LongAdder();
+
+    private final LongAdder coalescedFetchCount = new LongAdder();
+
+    private final LongAdder suppressedFetchCount = new LongAdder();
+
+    private final LongAdder notModifiedCount = new LongAdder();
+
+    private volatile FetchListener fetchListener;
+
+    /**
+     * Listener of the JWK set fetches, e.g. to time them.
+     */
+    public interface FetchListener {
+
+        /**
+         * Called after each fetch attempt.
+         *
+         * @param nanos   The duration of the fetch, in nanoseconds.
+         * @param success {@code true} if the JWK set was fetched.
+         */
+        void fetched(long nanos, boolean success);
+    }
+
+    /**
+     * Creates a new refresh-ahead JWK source whose URL isn't known yet, e.g.
+     * before the discovery metadata was retrieved. It serves no keys until
+     * the URL is {@link #setJWKSetURL set} and the source started.
+     *
+     * @param resourceRetriever The retriever of the JWK set. Must not be
+     *                          {@code null}.
+     * @param lifespan          The lifespan of a fetched set. Must be
+     *                          positive.
+     * @param timeUnit          The time unit of the lifespan.
+     */
+    public RefreshAheadJWKSource(final ResourceRetriever resourceRetriever, final long lifespan, final TimeUnit timeUnit) {
+        this(resourceRetriever, lifespan, timeUnit, VirtualThreads.factory("dbhys-oauth-jwks-refresh", false));
+    }
+
+    /**
+     * Creates a new refresh-ahead JWK source whose URL isn't known yet,
+     * refreshing the set on a thread of the specified factory, e.g. a
+     * {@link VirtualThreads#factory(String) virtual} one.
+     *
+     * @param resourceRetriever The retriever of the JWK set. Must not be
+     *                          {@code null}.
+     * @param lifespan          The lifespan of a fetched set. Must be
+     *                          positive.
+     * @param timeUnit          The time unit of the lifespan.
+     * @param threadFactory     The factory of the refresh thread. Must not
+     *                          be {@code null}.
+     */
+    public RefreshAheadJWKSource(final ResourceRetriever resourceRetriever, final long lifespan, final TimeUnit timeUnit,
+                                 final ThreadFactory threadFactory) {
+        if (resourceRetriever == null) {
+            throw new IllegalArgumentException("The resource retriever must not be null");
+        }
+        if (lifespan <= 0) {
+            throw new IllegalArgumentException("The JWK set lifespan must be positive");
+        }
+        this.resourceRetriever = resourceRetriever;
+        this.lifespanMillis = timeUnit.toMillis(lifespan);
+        this.minLifespanMillis = lifespanMillis;
+        this.maxLifespanMillis = lifespanMillis;
+        this.currentLifespanMillis = lifespanMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * Creates a new refresh-ahead JWK source. Call {@link #start()} to load
+     * the set and schedule the refreshes.
+     *
+     * @param jwkSetURL         The JWK set URL. Must not be {@code null}.
+     * @param resourceRetriever The retriever of the JWK set. Must not be
+     *                          {@code null}.
+     * @param lifespan          The lifespan of a fetched set. Must be
+     *                          positive.
+     * @param timeUnit          The time unit of the lifespan.
+     */
+    public RefreshAheadJWKSource(final URL jwkSetURL, final ResourceRetriever resourceRetriever,
+                                 final long lifespan, final TimeUnit timeUnit) {
+        this(resourceRetriever, lifespan, timeUnit);
+        if (jwkSetURL == null) {
+            throw new IllegalArgumentException("The JWK set URL must not be null");
+        }
+        this.jwkSetURL = jwkSetURL;
+    }
+
+    /**
+     * Fetches the JWK set on the calling thread, then schedules the
+     * background refreshes. A failed first fetch is retried in the
+     * background.
+     *
+     * @return {@code true} if the JWK set was fetched.
+     */
+    public boolean start() {
+        boolean fetched = refresh();
+        scheduleNext(fetched);
+        return fetched;
+    }
+
+    /**
+     * Serves the specified JWK set, e.g. from a {@link SnapshotStore}
+     * snapshot, and revalidates it right away in the background, then
+     * schedules the refreshes.
+     *
+     * @param jwkSet The JWK set to serve until the first fetch. Must not
+     *               be {@code null}.
+     */
+    public void start(final JWKSet jwkSet) {
+        if (jwkSet == null) {
+            throw new IllegalArgumentException("The initial JWK set must not be null");
+        }
+        this.jwkSet = jwkSet;
+        loaded.complete(jwkSet);
+        startInBackground();
+    }
+
+    /**
+     * Fetches the JWK set in the background, retrying with backoff until
+     * it succeeds, then schedules the refreshes. See {@link #whenLoaded()}.
+     */
+    public void startInBackground() {
+        scheduler.execute(() -> scheduleNext(scheduledRefresh()));
+    }
+
+    @Override
+    public List<JWK> get(final JWKSelector jwkSelector, final C context) {
+        JWKSet current = jwkSet;
+        List<JWK> jwks = current == null ? Collections.emptyList() : jwkSelector.select(current);
+        if (!jwks.isEmpty() || jwkSetURL == null || !hasKeyIDs(jwkSelector)) {
+            return jwks;
+        }
+        if (fetchForUnknownKey()) {
+            current = jwkSet;
+            if (current != null) {
+                return jwkSelector.select(current);
+            }
+        }
+        return jwks;
+    }
+
+    private static boolean hasKeyIDs(final JWKSelector jwkSelector) {
+        Set<String> keyIDs = jwkSelector.getMatcher().getKeyIDs();
+        return keyIDs != null && !keyIDs.isEmpty();
+    }
+
+    /**
+     * Fetches the JWK set for an unknown key ID, joining the fetch already
+     * in flight if any.
+     *
+     * @return {@code true} if a fetch completed, {@code false} if it was
+     *         suppressed by the refetch interval or failed.
+     */
+    private boolean fetchForUnknownKey() {
+        while (true) {
+            CompletableFuture<Boolean> inFlight = unknownKeyFetch.get();
+            if (inFlight != null) {
+                coalescedFetchCount.increment();
+                return inFlight.join();
+            }
+            if (System.currentTimeMillis() - unknownKeyFetchedAt < unknownKeyRefetchIntervalMillis) {
+                suppressedFetchCount.increment();
+                return false;
+            }
+            CompletableFuture<Boolean> fetch = new CompletableFuture<>();
+            if (!unknownKeyFetch.compareAndSet(null, fetch)) {
+                continue;
+            }
+            boolean fetched = false;
+            try {
+                // Checked again, a fetch may have completed since the check above
+                if (System.currentTimeMillis() - unknownKeyFetchedAt < unknownKeyRefetchIntervalMillis) {
+                    suppressedFetchCount.increment();
+                    return false;
+                }
+                unknownKeyFetchCount.increment();
+                fetched = refresh(System.currentTimeMillis());
+                unknownKeyFetchedAt = System.currentTimeMillis();
+                return fetched;
+            } finally {
+                unknownKeyFetch.set(null);
+                fetch.complete(fetched);
+            }
+        }
+    }
+
+    /**
+     * Fetches the JWK set now and swaps it in if it changed. Waits for a
+     * fetch in progress to finish first.
+     *
+     * @return {@code true} if the JWK set was fetched, {@code false} if
+     *         the fetch failed and the current set was kept.
+     */
+    public boolean refresh() {
+        return refresh(Long.MAX_VALUE);
+    }
+
+    /**
+     * Fetches the JWK set unless it was fetched after the specified time,
+     * e.g. by a refresh this thread waited on.
+     */
+    private boolean refresh(final long unlessFetchedAfter) {
+        refreshLock.lock();
+        try {
+            if (fetchedAt > unlessFetchedAfter) {
+                return true;
+            }
+            JWKSet fetched;
+            try {
+                fetched = fetch();
+            } catch (RemoteKeySourceException e) {
+                logger.warn("JWK set refresh failed, keeping the current set: {}", e.getMessage());
+                return false;
+            }
+            JWKSet current = jwkSet;
+            fetchedAt = System.currentTimeMillis();
+            if (current != null && (current == fetched || current.toJSONObject().equals(fetched.toJSONObject()))) {
+                return true;
+            }
+            jwkSet = fetched;
+            loaded.complete(fetched);
+            for (Consumer<JWKSet> listener : listeners) {
+                listener.accept(fetched);
+            }
+            return true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Fetches the JWK set, the current one if it wasn't modified.
+     */
+    private JWKSet fetch()
+            throws RemoteKeySourceException {
+
+        URL jwkSetURL = this.jwkSetURL;
+        if (jwkSetURL == null) {
+            throw new RemoteKeySourceException("The JWK set URL isn't known yet", null);
+        }
+        final FetchListener listener = fetchListener;
+        final long start = listener == null ? 0L : System.nanoTime();
+        boolean success = false;
+        try {
+            JWKSet fetched;
+            if (resourceRetriever instanceof TransportResourceRetriever) {
+                fetched = fetchConditionally((TransportResourceRetriever) resourceRetriever, jwkSetURL);
+            } else {
+                Resource resource = resourceRetriever.retrieveResource(jwkSetURL);
+                fetched = JWKSet.parse(resource.getContent());
+            }
+            success = true;
+            return fetched;
+        } catch (IOException | java.text.ParseException e) {
+            throw new RemoteKeySourceException("Couldn't retrieve the JWK set from " + jwkSetURL + ": " + e.getMessage(), e);
+        } finally {
+            if (listener != null) {
+                listener.fetched(System.nanoTime() - start, success);
+            }
+        }
+    }
+
+    private JWKSet fetchConditionally(final TransportResourceRetriever retriever, final URL jwkSetURL)
+            throws IOException, java.text.ParseException {
+
+        JWKSet current = jwkSet;
+        HTTPResponse validated = current != null && HTTPCacheUtils.hasValidators(this.validated) ? this.validated : null;
+        HTTPResponse response = retriever.retrieveResponse(jwkSetURL, validated);
+        long now = System.currentTimeMillis();
+        if (response.getStatusCode() == HTTPResponse.SC_NOT_MODIFIED) {
+            notModifiedCount.increment();
+            // The 304 updates the freshness of the stored response, see RFC 7234 section 4.3.4
+            long lifetime = HTTPCacheUtils.getFreshnessLifetime(response, now);
+            currentLifespanMillis = bound(lifetime != HTTPCacheUtils.UNSPECIFIED
+                    ? lifetime : HTTPCacheUtils.getFreshnessLifetime(validated, now));
+            return current;
+        }
+        JWKSet fetched = JWKSet.parse(response.getContent());
+        currentLifespanMillis = bound(HTTPCacheUtils.getFreshnessLifetime(response, now));
+        this.validated = response;
+        return fetched;
+    }
+
+    /**
+     * Refreshes on the scheduler. A failure, e.g. of a listener or of the
+     * retriever, counts as a failed fetch, so it never ends the refreshes.
+     */
+    private boolean scheduledRefresh() {
+        try {
+            return refresh();
+        } catch (RuntimeException e) {
+            logger.error("JWK set refresh failed, retrying", e);
+            return false;
+        }
+    }
+
+    private long bound(final long lifetime) {
+        return HTTPCacheUtils.bound(lifetime, lifespanMillis, minLifespanMillis, maxLifespanMillis);
+    }
+
+    private void scheduleNext(final boolean fetched) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        failures = fetched ? 0 : failures + 1;
+        final long lifespan = currentLifespanMillis;
+        long delay = fetched
+                ? (long) (lifespan * (0.7 + 0.2 * ThreadLocalRandom.current().nextDouble()))
+                : Backoff.delay(failures, INITIAL_RETRY_DELAY_MILLIS, Math.min(RETRY_DELAY_MILLIS, lifespan));
+        scheduler.schedule(() -> {
+            boolean ok = scheduledRefresh();
+            if (!ok && jwkSet != null && System.currentTimeMillis() - fetchedAt > currentLifespanMillis) {
+                logger.warn("Serving a JWK set older than its lifespan, fetched at {}", fetchedAt);
+            }
+            scheduleNext(ok);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a listener called on the fetching thread when a changed JWK set
+     * was swapped in, e.g. to forget rejections for unknown keys.
+     *
+     * @param listener The listener. Must not be {@code null}.
+     */
+    public void addListener(final Consumer<JWKSet> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets the listener of the JWK set fetches.
+     *
+     * @param fetchListener The listener, {@code null} if none.
+     */
+    public void setFetchListener(final FetchListener fetchListener) {
+        this.fetchListener = fetchListener;
+    }
+
+    /**
+     * Sets the bounds of the lifespan taken from the {@code Cache-Control}
+     * or {@code Expires} header of the JWK set responses. Both default to
+     * the lifespan of the constructor, which also applies to responses
+     * without these headers.
+     *
+     * @param minLifespan The minimum lifespan. Must be positive.
+     * @param maxLifespan The maximum lifespan. Must not be less than the
+     *                    minimum.
+     * @param timeUnit    The time unit of the bounds.
+     */
+    public void setLifespanBounds(final long minLifespan, final long maxLifespan, final TimeUnit timeUnit) {
+        if (minLifespan <= 0 || maxLifespan < minLifespan) {
+            throw new IllegalArgumentException("The JWK set lifespan bounds must be positive and ordered");
+        }
+        this.minLifespanMillis = timeUnit.toMillis(minLifespan);
+        this.maxLifespanMillis = timeUnit.toMillis(maxLifespan);
+        this.currentLifespanMillis = bound(HTTPCacheUtils.UNSPECIFIED);
+    }
+
+    /**
+     * Returns the lifespan of the current JWK set.
+     *
+     * @return The lifespan, in milliseconds.
+     */
+    public long getCurrentLifespan() {
+        return currentLifespanMillis;
+    }
+
+    /**
+     * Returns the number of fetches answered 304, the JWK set being
+     * unchanged.
+     *
+     * @return The not modified count.
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount.sum();
+    }
+
+    /**
+     * Returns the minimum interval between fetches for unknown key IDs.
+     *
+     * @return The interval, in milliseconds.
+     */
+    public long getUnknownKeyRefetchInterval() {
+        return unknownKeyRefetchIntervalMillis;
+    }
+
+    /**
+     * Sets the minimum interval between fetches for unknown key IDs.
+     *
+     * @param unknownKeyRefetchInterval The interval, in milliseconds. Must
+     *                                  not be negative.
+     */
+    public void setUnknownKeyRefetchInterval(final long unknownKeyRefetchInterval) {
+        if (unknownKeyRefetchInterval < 0) {
+            throw new IllegalArgumentException("The unknown key refetch interval must not be negative");
+        }
+        this.unknownKeyRefetchIntervalMillis = unknownKeyRefetchInterval;
+    }
+
+    /**
+     * Returns the number of fetches made for unknown key IDs.
+     *
+     * @return The fetch count.
+     */
+    public long getUnknownKeyFetchCount() {
+        return unknownKeyFetchCount.sum();
+    }
+
+    /**
+     * Returns the number of unknown key lookups that waited on a fetch
+     * already in flight instead of making their own.
+     *
+     * @return The coalesced fetch count.
+     */
+    public long getCoalescedFetchCount() {
+        return coalescedFetchCount.sum();
+    }
+
+    /**
+     * Returns the number of unknown key lookups that didn't fetch because
+     * of the refetch interval.
+     *
+     * @return The suppressed fetch count.
+     */
+    public long getSuppressedFetchCount() {
+        return suppressedFetchCount.sum();
+    }
+
+    /**
+     * Returns the current JWK set.
+     *
+     * @return The JWK set, {@code null} if none was fetched yet.
+     */
+    public JWKSet getJWKSet() {
+        return jwkSet;
+    }
+
+    /**
+     * Returns when the JWK set was last fetched.
+     *
+     * @return The time in milliseconds since the epoch, zero if never.
+     */
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    /**
+     * Returns a stage completed when the first JWK set was loaded.
+     *
+     * @return The stage, completed with the first JWK set.
+     */
+    public CompletionStage<JWKSet> whenLoaded() {
+        return loaded.minimalCompletionStage();
+    }
+
+    /**
+     * Returns the JWK set URL.
+     *
+     * @return The JWK set URL, {@code null} if not known yet.
+     */
+    public URL getJWKSetURL() {
+        return jwkSetURL;
+    }
+
+    /**
+     * Sets the JWK set URL, used by the next fetch.
+     *
+     * @param jwkSetURL The JWK set URL. Must not be {@code null}.
+     */
+    public void setJWKSetURL(final URL jwkSetURL) {
+        if (jwkSetURL == null) {
+            throw new IllegalArgumentException("The JWK set URL must not be null");
+        }
+        this.jwkSetURL = jwkSetURL;
+    }
+
+    /**
+     * Stops the background refreshes.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
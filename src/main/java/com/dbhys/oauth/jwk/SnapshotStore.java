@@ -0,0 +1,134 @@
+package com.dbhys.oauth.jwk;
+
+import com.dbhys.oauth.util.JSONObjectUtils;
+import com.nimbusds.jose.jwk.JWKSet;
+import net.minidev.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Local file holding the last good discovery metadata and JWK set of the
+ * issuer, so that an instance can start without the identity provider.
+ *
+ * <p>The file is replaced atomically: a snapshot is written to a temporary
+ * file next to it and then moved over it, so readers never see a partly
+ * written snapshot. Only public keys are stored.
+ */
+public class SnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private final Path file;
+
+    /**
+     * Creates a new snapshot store.
+     *
+     * @param file The snapshot file. Must not be {@code null}.
+     */
+    public SnapshotStore(final Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("The snapshot file must not be null");
+        }
+        this.file = file;
+    }
+
+    /**
+     * Loads the snapshot.
+     *
+     * @return The snapshot, {@code null} if there is none or it couldn't
+     *         be read.
+     */
+    public Snapshot load() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            JSONObject json = JSONObjectUtils.parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            JSONObject metadata = JSONObjectUtils.getJSONObject(json, "metadata");
+            JWKSet jwkSet = JWKSet.parse(JSONObjectUtils.getJSONObject(json, "jwks").toJSONString());
+            return new Snapshot(metadata, jwkSet, JSONObjectUtils.getLong(json, "saved_at"));
+        } catch (Exception e) {
+            logger.warn("Ignoring unreadable snapshot {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Saves a snapshot, replacing the previous one. Failures are logged,
+     * the snapshot is only an optimisation.
+     *
+     * @param metadata The discovery metadata. Must not be {@code null}.
+     * @param jwkSet   The JWK set. Must not be {@code null}.
+     */
+    public synchronized void save(final JSONObject metadata, final JWKSet jwkSet) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("saved_at", System.currentTimeMillis());
+            json.put("metadata", metadata);
+            // Public keys only
+            json.put("jwks", JSONObjectUtils.parse(jwkSet.toString()));
+
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tmp, json.toJSONString().getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException | com.dbhys.oauth.ParseException e) {
+            logger.warn("Couldn't save the snapshot {}: {}", file, e.toString());
+        }
+    }
+
+    /**
+     * Returns the snapshot file.
+     *
+     * @return The snapshot file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Discovery metadata and JWK set saved together.
+     */
+    public static final class Snapshot {
+
+        private final JSONObject metadata;
+
+        private final JWKSet jwkSet;
+
+        private final long savedAt;
+
+        private Snapshot(JSONObject metadata, JWKSet jwkSet, long savedAt) {
+            this.metadata = metadata;
+            this.jwkSet = jwkSet;
+            this.savedAt = savedAt;
+        }
+
+        public JSONObject getMetadata() {
+            return metadata;
+        }
+
+        public JWKSet getJWKSet() {
+            return jwkSet;
+        }
+
+        public long getSavedAt() {
+            return savedAt;
+        }
+    }
+}
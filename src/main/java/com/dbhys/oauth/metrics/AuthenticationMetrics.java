@@ -0,0 +1,119 @@
+package com.dbhys.oauth.metrics;
+
+import com.dbhys.oauth.jwk.RefreshAheadJWKSource;
+import com.dbhys.oauth.validator.RejectionReason;
+
+/**
+ * Receives the timings and outcomes of the authentication. The components
+ * only call it when one is set, so there is no cost without metrics, not
+ * even a clock read.
+ *
+ * <p>Implementations must be thread-safe and cheap, they are called on the
+ * request threads.
+ */
+public interface AuthenticationMetrics {
+
+    /**
+     * Phases of the authentication of a request.
+     */
+    enum Phase {
+
+        /**
+         * Reading the token from the request header or cookie.
+         */
+        EXTRACTION("extraction"),
+
+        /**
+         * Decoding the token and checking its header.
+         */
+        PARSE("parse"),
+
+        /**
+         * Projecting the claims and checking issuer, audience and times.
+         */
+        CLAIMS("claims"),
+
+        /**
+         * Looking up the candidate keys.
+         */
+        KEY_SELECTION("key_selection"),
+
+        /**
+         * Checking the signature.
+         */
+        SIGNATURE("signature"),
+
+        /**
+         * Mapping the verified claims to the authentication.
+         */
+        MAPPING("mapping"),
+
+        /**
+         * Introspecting an opaque token at the issuer.
+         */
+        INTROSPECTION("introspection");
+
+        private final String code;
+
+        Phase(String code) {
+            this.code = code;
+        }
+
+        /**
+         * Returns the phase code, e.g. for metric tags.
+         *
+         * @return The phase code.
+         */
+        public String getCode() {
+            return code;
+        }
+    }
+
+    /**
+     * Records the duration of a completed phase.
+     *
+     * @param phase The phase.
+     * @param nanos The duration, in nanoseconds.
+     */
+    void recordPhase(Phase phase, long nanos);
+
+    /**
+     * Records a token served from the verified token cache.
+     */
+    void recordCacheHit();
+
+    /**
+     * Records a rejected token.
+     *
+     * @param reason The rejection reason, {@code null} if the token was
+     *               rejected for another error.
+     */
+    void recordRejection(RejectionReason reason);
+
+    /**
+     * Records a resolution of the discovery metadata.
+     *
+     * @param issuer  The issuer.
+     * @param nanos   The duration, in nanoseconds.
+     * @param success {@code true} if the metadata was resolved.
+     */
+    void recordDiscovery(String issuer, long nanos, boolean success);
+
+    /**
+     * Records a JWK set fetch.
+     *
+     * @param issuer  The issuer.
+     * @param nanos   The duration, in nanoseconds.
+     * @param success {@code true} if the JWK set was fetched.
+     */
+    void recordJWKSetFetch(String issuer, long nanos, boolean success);
+
+    /**
+     * Starts monitoring the age and the key count of the JWK set of an
+     * issuer.
+     *
+     * @param issuer    The issuer.
+     * @param jwkSource The JWK source.
+     */
+    void monitor(String issuer, RefreshAheadJWKSource<?> jwkSource);
+}
@@ -0,0 +1,147 @@
+package com.dbhys.oauth.metrics;
+
+import com.dbhys.oauth.jwk.RefreshAheadJWKSource;
+import com.dbhys.oauth.validator.RejectionReason;
+import com.nimbusds.jose.jwk.JWKSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.ApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentication metrics on a Micrometer registry:
+ *
+ * <ul>
+ *     <li>{@code dbhys.oauth.authentication.phase}, timers with percentile
+ *         histograms, tagged by {@code phase}.
+ *     <li>{@code dbhys.oauth.authentication.cache.hits}, a counter.
+ *     <li>{@code dbhys.oauth.authentication.rejections}, counters tagged by
+ *         {@code reason}.
+ *     <li>{@code dbhys.oauth.discovery} and {@code dbhys.oauth.jwks.fetch},
+ *         timers tagged by {@code issuer} and {@code outcome}.
+ *     <li>{@code dbhys.oauth.jwks.age}, in seconds, and
+ *         {@code dbhys.oauth.jwks.keys}, gauges tagged by {@code issuer}.
+ * </ul>
+ *
+ * <p>The meters of the request path are registered up front, so recording
+ * doesn't look anything up.
+ */
+public class MicrometerAuthenticationMetrics implements AuthenticationMetrics {
+
+    private static final String OTHER_REASON = "other";
+
+    private final MeterRegistry registry;
+
+    private final Timer[] phaseTimers;
+
+    private final Counter cacheHits;
+
+    private final Counter[] rejections;
+
+    private final Counter otherRejections;
+
+    public MicrometerAuthenticationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Phase[] phases = Phase.values();
+        this.phaseTimers = new Timer[phases.length];
+        for (Phase phase : phases) {
+            phaseTimers[phase.ordinal()] = Timer.builder("dbhys.oauth.authentication.phase")
+                    .description("Duration of a phase of the token authentication")
+                    .tag("phase", phase.getCode())
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        this.cacheHits = Counter.builder("dbhys.oauth.authentication.cache.hits")
+                .description("Tokens served from the verified token cache")
+                .register(registry);
+        RejectionReason[] reasons = RejectionReason.values();
+        this.rejections = new Counter[reasons.length];
+        for (RejectionReason reason : reasons) {
+            rejections[reason.ordinal()] = rejectionCounter(reason.getCode());
+        }
+        this.otherRejections = rejectionCounter(OTHER_REASON);
+    }
+
+    /**
+     * Returns metrics on the meter registry of the application context.
+     *
+     * @param applicationContext The application context.
+     *
+     * @return The metrics, {@code null} if there is no meter registry.
+     */
+    public static AuthenticationMetrics lookup(ApplicationContext applicationContext) {
+        MeterRegistry registry = applicationContext.getBeanProvider(MeterRegistry.class).getIfAvailable();
+        return registry == null ? null : new MicrometerAuthenticationMetrics(registry);
+    }
+
+    private Counter rejectionCounter(String reason) {
+        return Counter.builder("dbhys.oauth.authentication.rejections")
+                .description("Rejected tokens")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    @Override
+    public void recordPhase(Phase phase, long nanos) {
+        phaseTimers[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    @Override
+    public void recordRejection(RejectionReason reason) {
+        (reason == null ? otherRejections : rejections[reason.ordinal()]).increment();
+    }
+
+    @Override
+    public void recordDiscovery(String issuer, long nanos, boolean success) {
+        Timer.builder("dbhys.oauth.discovery")
+                .description("Duration of the discovery metadata resolution")
+                .tags("issuer", issuer, "outcome", success ? "success" : "failure")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordJWKSetFetch(String issuer, long nanos, boolean success) {
+        Timer.builder("dbhys.oauth.jwks.fetch")
+                .description("Duration of the JWK set fetch")
+                .tags("issuer", issuer, "outcome", success ? "success" : "failure")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void monitor(String issuer, RefreshAheadJWKSource<?> jwkSource) {
+        Gauge.builder("dbhys.oauth.jwks.age", jwkSource, MicrometerAuthenticationMetrics::ageSeconds)
+                .description("Time since the JWK set was last fetched")
+                .tag("issuer", issuer)
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("dbhys.oauth.jwks.keys", jwkSource, MicrometerAuthenticationMetrics::keyCount)
+                .description("Keys in the JWK set")
+                .tag("issuer", issuer)
+                .register(registry);
+        FunctionCounter.builder("dbhys.oauth.jwks.not.modified", jwkSource, source -> source.getNotModifiedCount())
+                .description("JWK set fetches answered 304 Not Modified")
+                .tag("issuer", issuer)
+                .register(registry);
+    }
+
+    private static double ageSeconds(RefreshAheadJWKSource<?> jwkSource) {
+        long fetchedAt = jwkSource.getFetchedAt();
+        return fetchedAt == 0L ? Double.NaN : (System.currentTimeMillis() - fetchedAt) / 1000.0;
+    }
+
+    private static double keyCount(RefreshAheadJWKSource<?> jwkSource) {
+        JWKSet jwkSet = jwkSource.getJWKSet();
+        return jwkSet == null ? 0 : jwkSet.getKeys().size();
+    }
+}
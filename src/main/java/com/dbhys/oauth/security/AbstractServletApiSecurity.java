@@ -0,0 +1,152 @@
+package com.dbhys.oauth.security;
+
+import com.dbhys.oauth.http.HttpHeader;
+import com.dbhys.oauth.http.HttpMethod;
+import com.dbhys.oauth.http.MediaType;
+import com.dbhys.oauth.metrics.AuthenticationMetrics;
+import com.dbhys.oauth.util.CookieUtil;
+import com.dbhys.oauth.util.PathPatternMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Token extraction, validation and error responses shared by the servlet
+ * {@link ApiSecurityFilter filter} and {@link ApiSecurityInterceptor
+ * interceptor}.
+ */
+public abstract class AbstractServletApiSecurity implements ApplicationContextAware {
+    private final static Logger logger = LoggerFactory.getLogger(AbstractServletApiSecurity.class);
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+
+    private final ApiSecuritySupport support = new ApiSecuritySupport();
+
+    /**
+     * Returns {@code true} for CORS preflight requests, which pass without
+     * a token.
+     */
+    protected boolean isPreflight(HttpServletRequest request) {
+        return HttpMethod.OPTIONS.name().equalsIgnoreCase(request.getMethod());
+    }
+
+    /**
+     * Returns {@code false} for preflight requests and for the paths not
+     * included or excluded by the {@link PathPatternMatcher}.
+     */
+    protected boolean requiresAuthentication(HttpServletRequest request) {
+        if (isPreflight(request)) {
+            return false;
+        }
+        // Decoded and normalized by the container, unlike the request URI
+        String path = request.getServletPath();
+        String pathInfo = request.getPathInfo();
+        return support.requiresAuthentication(pathInfo == null ? path : path + pathInfo);
+    }
+
+    /**
+     * Authenticates the token of a request.
+     *
+     * @return The authentication, {@code null} if the request was rejected
+     *         and the error response written.
+     */
+    protected Authentication authenticate(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!support.awaitWarmup()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeader.RETRY_AFTER, "1");
+            responseError(request, response, ApiSecuritySupport.TEMPORARILY_UNAVAILABLE,
+                    ApiSecuritySupport.TEMPORARILY_UNAVAILABLE_DESCRIPTION);
+            return null;
+        }
+
+        final AuthenticationMetrics metrics = support.getMetrics();
+        final long start = metrics == null ? 0L : System.nanoTime();
+        final String authenticationHeader = request.getHeader(AUTHORIZATION_HEADER);
+        String credential = null;
+        int offset = 0;
+        if (ApiSecuritySupport.isBearer(authenticationHeader)) {
+            credential = authenticationHeader;
+            offset = ApiSecuritySupport.BEARER.length();
+        } else {
+            String cookieName = support.getCookieNameOfToken();
+            if (cookieName != null) {
+                Cookie oauthCookie = CookieUtil.getCookieByName(request, cookieName);
+                if (oauthCookie != null && StringUtils.hasLength(oauthCookie.getValue())) {
+                    credential = oauthCookie.getValue();
+                }
+            }
+        }
+        support.recordExtraction(metrics, start);
+        if (credential == null){
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            authErrorHandler(request, response, ApiSecuritySupport.LOGIN_REQUIRED, ApiSecuritySupport.LOGIN_REQUIRED_DESCRIPTION);
+            return null;
+        }
+        try {
+            Authentication authentication = support.getValidator().authenticate(credential, offset);
+            if (!support.isRevoked(authentication, metrics)) {
+                return authentication;
+            }
+        } catch (Exception e) {
+            support.logRejection(e);
+        }
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        authErrorHandler(request, response, ApiSecuritySupport.INVALID_TOKEN, ApiSecuritySupport.INVALID_TOKEN_DESCRIPTION);
+        return null;
+    }
+
+    protected boolean isAjax(HttpServletRequest request) {
+        return ApiSecuritySupport.isAjax(request.getHeader("X-Requested-With"));
+    }
+
+    protected void authErrorHandler(HttpServletRequest request, HttpServletResponse response, String error, String errorDescription) throws IOException {
+        if(isAjax(request)) {
+            responseError(request, response, error, errorDescription);
+        } else {
+            StringBuffer requestURL = request.getRequestURL();
+            String prefix = support.getAuthorizationRedirectPrefix();
+            response.sendRedirect(new StringBuilder(prefix.length() + requestURL.length())
+                    .append(prefix).append(requestURL).toString());
+        }
+    }
+
+    private void responseError(HttpServletRequest request, HttpServletResponse response,
+                               String error, String errorDescription) throws IOException {
+        String acceptMediaType = request.getHeader(HttpHeader.ACCEPT);
+        String contentType = request.getHeader(HttpHeader.CONTENT_TYPE);
+        if (acceptMediaType == null || acceptMediaType.trim().equals("") || acceptMediaType.contains(MediaType.ALL_VALUE)) {
+            acceptMediaType = (contentType != null && !contentType.trim().equals("")) ? contentType : MediaType.APPLICATION_JSON_UTF8_VALUE;
+        }
+
+        response.resetBuffer();
+        if (acceptMediaType.contains(MediaType.APPLICATION_JSON_VALUE) || acceptMediaType.contains(MediaType.APPLICATION_FORM_URLENCODED_VALUE)) {
+            response.getWriter().write(ApiSecuritySupport.toJson(error, errorDescription));
+        } else if (acceptMediaType.contains(MediaType.APPLICATION_XML_VALUE)) {
+            response.getWriter().write(ApiSecuritySupport.toXml(error, errorDescription));
+        } else if (acceptMediaType.contains("text/")) {
+            response.getWriter().write(ApiSecuritySupport.toText(error, errorDescription));
+        } else {
+            response.setHeader(HttpHeader.WWW_AUTHENTICATE, ApiSecuritySupport.toText(error, errorDescription));
+        }
+        try {
+            response.flushBuffer();
+        } catch (IOException e) {
+            logger.error("Couldn't write the error response", e);
+        }
+
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        support.setApplicationContext(applicationContext);
+    }
+}
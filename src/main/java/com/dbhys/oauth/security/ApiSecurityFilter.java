@@ -0,0 +1,48 @@
+package com.dbhys.oauth.security;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Authenticates requests at the front of the servlet filter chain, so
+ * rejected requests never reach the {@code DispatcherServlet} and its
+ * handler mapping. Registered by {@link ApiSecurityFilterRegistration}.
+ *
+ * <p>The rest of the chain runs with the authentication bound through
+ * {@link AuthenticationContext#call}, which works with both the
+ * thread-local and the scoped value context.
+ */
+public class ApiSecurityFilter extends AbstractServletApiSecurity implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+        if (!requiresAuthentication(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Authentication authentication = authenticate(request, response);
+        if (authentication == null) {
+            return;
+        }
+        try {
+            AuthenticationHelper.getContext().call(authentication, () -> {
+                chain.doFilter(request, response);
+                return null;
+            });
+        } catch (IOException | ServletException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServletException(e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.dbhys.oauth.security;
+
+import com.dbhys.oauth.config.AuthenticationResourceServerConfig;
+import org.springframework.beans.BeansException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registers the {@link ApiSecurityFilter} with the servlet container, on
+ * the configured URL patterns and at the configured order. Disabled with
+ * {@code dbhys.oauth.filter-enabled=false}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "dbhys.oauth", name = "filter-enabled", havingValue = "true", matchIfMissing = true)
+public class ApiSecurityFilterRegistration extends FilterRegistrationBean<ApiSecurityFilter> implements ApplicationContextAware {
+
+    public ApiSecurityFilterRegistration(AuthenticationResourceServerConfig config) {
+        super(new ApiSecurityFilter());
+        setName("apiSecurityFilter");
+        setUrlPatterns(config.getFilterUrlPatterns());
+        setOrder(config.getFilterOrder());
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        getFilter().setApplicationContext(applicationContext);
+    }
+}
@@ -1,123 +1,37 @@
 package com.dbhys.oauth.security;
 
-import com.dbhys.oauth.bean.OAuthClientMetadata;
-import com.dbhys.oauth.config.AuthenticationResourceServerConfig;
-import com.dbhys.oauth.http.HttpHeader;
-import com.dbhys.oauth.http.HttpMethod;
-import com.dbhys.oauth.http.MediaType;
-import com.dbhys.oauth.util.CookieUtil;
-import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
-import com.dbhys.oauth.validator.AuthenticationTokenValidator;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.BeansException;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.ApplicationContextAware;
-import org.springframework.http.HttpStatus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 
-import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.io.IOException;
 
 /**
+ * Authenticates requests after the {@code DispatcherServlet} mapped them to
+ * a handler, once registered with a {@code WebMvcConfigurer}. Prefer the
+ * auto-configured {@link ApiSecurityFilter}, which rejects requests before
+ * they are dispatched.
+ *
  * Created by Milas on 2019/3/14.
  */
 @Component
-public class ApiSecurityInterceptor implements ApplicationContextAware, HandlerInterceptor {
-    private final static Logger logger = LoggerFactory.getLogger(ApiSecurityInterceptor.class.toString());
-
-    private static String AUTHORIZATION_HEADER = "Authorization";
-    private static String BEARER = "BEARER ";
-
-    private ApplicationContext applicationContext;
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ApiSecurityInterceptor extends AbstractServletApiSecurity implements HandlerInterceptor {
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-        if (request.getMethod().toUpperCase().equals(HttpMethod.OPTIONS.name())) {
+        if (!requiresAuthentication(request)) {
             return true;
         }
-
-        final String authenticationHeader = request.getHeader(AUTHORIZATION_HEADER);
-        String token = null;
-        if (authenticationHeader != null && authenticationHeader.toUpperCase().startsWith(BEARER)) {
-            token = authenticationHeader.substring(7);
-        }
-        if (token == null) {
-            AuthenticationResourceServerConfig config = applicationContext.getBean(AuthenticationResourceServerConfig.class);
-            if (config != null && config.isEnableCookieToken()) {
-                Cookie oauthCookie = CookieUtil.getCookieByName(request, config.getCookieNameOfToken());
-                if (oauthCookie != null && !StringUtils.isEmpty(oauthCookie.getValue())) {
-                    token = oauthCookie.getValue();
-                }
-            }
-        }
-        if (token == null){
-            response.setStatus(HttpStatus.UNAUTHORIZED.value());
-            authErrorHandler(request, response, "login_required", "You should login at first!");
+        Authentication authentication = authenticate(request, response);
+        if (authentication == null) {
             return false;
         }
-        try {
-            AuthenticationTokenValidator validator = applicationContext.getBean(AuthenticationTokenValidator.class);
-            JWTClaimsSet jwtClaimsSet = validator.validate(SignedJWT.parse(token));
-            Authentication authentication = new Authentication(jwtClaimsSet.getSubject());
-            authentication.setName(jwtClaimsSet.getStringClaim("name"));
-            authentication.setIssuerAt(jwtClaimsSet.getIssueTime());
-            authentication.setExpireAt(jwtClaimsSet.getExpirationTime());
-            AuthenticationHelper.setAuthentication(authentication);
-            return true;
-        } catch (Exception e) {
-            logger.error("Invalid token: " + authenticationHeader);
-            e.printStackTrace();
-            response.setStatus(HttpStatus.FORBIDDEN.value());
-            authErrorHandler(request, response, "invalid_token", "Invalid token!");
-        }
-        return false;
-    }
-
-    protected boolean isAjax(HttpServletRequest request) {
-        return "XMLHttpRequest".equalsIgnoreCase(request.getHeader("X-Requested-With"));
-    }
-
-    protected void authErrorHandler(HttpServletRequest request, HttpServletResponse response, String error, String errorDescription) throws IOException {
-        if(isAjax(request)) {
-            responseError(request, response, error, errorDescription);
-        } else {
-            OAuthClientMetadata oAuthClientMetadata = applicationContext.getBean(OAuthClientMetadata.class);
-            String redirectUrl = request.getRequestURL().toString();
-            response.sendRedirect(oAuthClientMetadata.getAuthorizationUri() + "?redirect_uri=" + redirectUrl);
-        }
-    }
-
-    private void responseError(HttpServletRequest request, HttpServletResponse response,
-                               String error, String errorDescription) throws IOException {
-        String acceptMediaType = request.getHeader(HttpHeader.ACCEPT);
-        String contentType = request.getHeader(HttpHeader.CONTENT_TYPE);
-        if (acceptMediaType == null || acceptMediaType.trim().equals("") || acceptMediaType.contains(MediaType.ALL_VALUE)) {
-            acceptMediaType = (contentType != null && !contentType.trim().equals("")) ? contentType : MediaType.APPLICATION_JSON_UTF8_VALUE;
-        }
-
-        response.resetBuffer();
-        if (acceptMediaType.contains(MediaType.APPLICATION_JSON_VALUE) || acceptMediaType.contains(MediaType.APPLICATION_FORM_URLENCODED_VALUE)) {
-            response.getWriter().write(toJson(error, errorDescription));
-        } else if (acceptMediaType.contains(MediaType.APPLICATION_XML_VALUE)) {
-            response.getWriter().write(toXml(error, errorDescription));
-        } else if (acceptMediaType.contains("text/")) {
-            response.getWriter().write(toText(error, errorDescription));
-        } else {
-            response.setHeader(HttpHeader.WWW_AUTHENTICATE, toText(error, errorDescription));
-        }
-        try {
-            response.flushBuffer();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
+        // A scoped value context can't be bound from an interceptor and fails here
+        AuthenticationHelper.setAuthentication(authentication);
+        return true;
     }
 
     @Override
@@ -129,25 +43,4 @@ public class ApiSecurityInterceptor implements ApplicationContextAware, HandlerI
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
         AuthenticationHelper.setAuthentication(null);
     }
-
-    private String toJson(String error, String errorDescription) {
-        return "{\"error\": \"" + error + "\",\"error_description\" : \"" + errorDescription + "\"}";
-    }
-
-    /*private String toHtml(String error, String errorDescription) {
-        return "{\"error\": \"" + error + "\",\"error_description\" : \"" + errorDescription + "\"}";
-    }*/
-
-    private String toXml(String error, String errorDescription) {
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><error>" + error + "</error><error_description>" + errorDescription + "</error_description>";
-    }
-
-    private String toText(String error, String errorDescription) {
-        return "error=\"" + error + "\", error_description=\"" + errorDescription + "\"";
-    }
-
-    @Override
-    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
-        this.applicationContext = applicationContext;
-    }
 }
@@ -0,0 +1,252 @@
+package com.dbhys.oauth.security;
+
+import com.dbhys.oauth.bean.AuthenticationBootstrap;
+import com.dbhys.oauth.bean.OAuthClientMetadata;
+import com.dbhys.oauth.config.AuthenticationResourceServerConfig;
+import com.dbhys.oauth.metrics.AuthenticationMetrics;
+import com.dbhys.oauth.util.PathPatternMatcher;
+import com.dbhys.oauth.validator.InvalidTokenException;
+import com.dbhys.oauth.validator.RejectionReason;
+import com.dbhys.oauth.validator.RevocationList;
+import com.dbhys.oauth.validator.TokenAuthenticator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bean lookups and decisions shared by the servlet
+ * {@link AbstractServletApiSecurity} and the reactive
+ * {@link ApiSecurityWebFilter}, which only add the request and response
+ * handling of their stack.
+ *
+ * <p>The beans are looked up on first use, they are registered by
+ * {@code AuthenticationBeanFactory} after the filters were created.
+ */
+final class ApiSecuritySupport {
+    private final static Logger logger = LoggerFactory.getLogger(ApiSecuritySupport.class);
+
+    static final String BEARER = "Bearer ";
+    private static final String REDIRECT_URI_PARAMETER = "?redirect_uri=";
+
+    static final String LOGIN_REQUIRED = "login_required";
+    static final String LOGIN_REQUIRED_DESCRIPTION = "You should login at first!";
+    static final String INVALID_TOKEN = "invalid_token";
+    static final String INVALID_TOKEN_DESCRIPTION = "Invalid token!";
+    static final String TEMPORARILY_UNAVAILABLE = "temporarily_unavailable";
+    static final String TEMPORARILY_UNAVAILABLE_DESCRIPTION = "Authentication is warming up!";
+
+    private ApplicationContext applicationContext;
+
+    private volatile AuthenticationResourceServerConfig config;
+    private volatile TokenAuthenticator validator;
+    private volatile String authorizationRedirectPrefix;
+    // Set once the bootstrap is ready, then it's never consulted again.
+    private volatile boolean warmedUp;
+    // Looked up once, null without a meter registry.
+    private volatile AuthenticationMetrics metrics;
+    private volatile boolean metricsResolved;
+    // Compiled at startup by AuthenticationBeanFactory, null if absent.
+    private volatile PathPatternMatcher pathMatcher;
+    private volatile boolean pathMatcherResolved;
+    // Registered by AuthenticationBeanFactory if a revocation source is configured, null if absent.
+    private volatile RevocationList revocationList;
+    private volatile boolean revocationListResolved;
+
+    void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    /**
+     * Returns {@code true} if the Authorization header carries a bearer
+     * token, read from {@link #BEARER the offset of its prefix}.
+     */
+    static boolean isBearer(String authorizationHeader) {
+        return authorizationHeader != null && authorizationHeader.regionMatches(true, 0, BEARER, 0, BEARER.length());
+    }
+
+    /**
+     * Returns {@code false} for the paths not included or excluded by the
+     * {@link PathPatternMatcher}.
+     *
+     * @param path The decoded path within the application.
+     */
+    boolean requiresAuthentication(String path) {
+        PathPatternMatcher pathMatcher = getPathMatcher();
+        return pathMatcher == null || pathMatcher.requiresAuthentication(path);
+    }
+
+    /**
+     * Returns the bootstrap while it, or that of another issuer, is warming
+     * up.
+     *
+     * @return The bootstrap, {@code null} once ready or if there is none.
+     */
+    AuthenticationBootstrap getWarmingBootstrap() {
+        if (warmedUp) {
+            return null;
+        }
+        AuthenticationBootstrap bootstrap = applicationContext.getBeanProvider(AuthenticationBootstrap.class).getIfAvailable();
+        if (bootstrap == null || bootstrap.isReady()) {
+            warmedUp = true;
+            return null;
+        }
+        return bootstrap;
+    }
+
+    /**
+     * Returns {@code true} if requests are rejected at once while warming
+     * up, rather than waiting up to the warm-up timeout.
+     */
+    boolean rejectsWhileWarming() {
+        return getConfig().getWarmupBehavior() == AuthenticationResourceServerConfig.WarmupBehavior.REJECT;
+    }
+
+    long getWarmupTimeout() {
+        return getConfig().getWarmupTimeout();
+    }
+
+    /**
+     * Waits for the bootstrap to be ready, as configured.
+     *
+     * @return {@code true} if ready.
+     */
+    boolean awaitWarmup() {
+        AuthenticationBootstrap bootstrap = getWarmingBootstrap();
+        if (bootstrap == null) {
+            return true;
+        }
+        if (rejectsWhileWarming() || !bootstrap.awaitReady(getWarmupTimeout(), TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        warmedUp = true;
+        return true;
+    }
+
+    /**
+     * Returns the name of the cookie carrying the token when there is no
+     * Authorization header.
+     *
+     * @return The cookie name, {@code null} if cookie tokens aren't enabled.
+     */
+    String getCookieNameOfToken() {
+        AuthenticationResourceServerConfig config = getConfig();
+        return config != null && config.isEnableCookieToken() ? config.getCookieNameOfToken() : null;
+    }
+
+    /**
+     * Records the time taken to extract the token, since the specified
+     * {@link System#nanoTime()}.
+     */
+    void recordExtraction(AuthenticationMetrics metrics, long start) {
+        if (metrics != null) {
+            metrics.recordPhase(AuthenticationMetrics.Phase.EXTRACTION, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the token of an authentication was revoked,
+     * also for cached authentications, a token may be revoked since.
+     */
+    boolean isRevoked(Authentication authentication, AuthenticationMetrics metrics) {
+        RevocationList revocationList = getRevocationList();
+        if (revocationList == null || !revocationList.isRevoked(authentication)) {
+            return false;
+        }
+        logger.debug("Rejected token: {}", RejectionReason.REVOKED.getCode());
+        if (metrics != null) {
+            metrics.recordRejection(RejectionReason.REVOKED);
+        }
+        return true;
+    }
+
+    /**
+     * Logs why a token was rejected.
+     */
+    void logRejection(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof InvalidTokenException) {
+            // Expected for bad or replayed tokens, keep it cheap and never log the token itself
+            logger.debug("Rejected token: {}", ((InvalidTokenException) cause).getReason().getCode());
+        } else {
+            logger.error("Token validation failed: {}", cause.toString());
+        }
+    }
+
+    AuthenticationMetrics getMetrics() {
+        if (!metricsResolved) {
+            metrics = applicationContext.getBeanProvider(AuthenticationMetrics.class).getIfAvailable();
+            metricsResolved = true;
+        }
+        return metrics;
+    }
+
+    private PathPatternMatcher getPathMatcher() {
+        if (!pathMatcherResolved) {
+            pathMatcher = applicationContext.getBeanProvider(PathPatternMatcher.class).getIfAvailable();
+            pathMatcherResolved = true;
+        }
+        return pathMatcher;
+    }
+
+    private RevocationList getRevocationList() {
+        if (!revocationListResolved) {
+            revocationList = applicationContext.getBeanProvider(RevocationList.class).getIfAvailable();
+            revocationListResolved = true;
+        }
+        return revocationList;
+    }
+
+    private AuthenticationResourceServerConfig getConfig() {
+        AuthenticationResourceServerConfig config = this.config;
+        if (config == null) {
+            config = applicationContext.getBean(AuthenticationResourceServerConfig.class);
+            this.config = config;
+        }
+        return config;
+    }
+
+    TokenAuthenticator getValidator() {
+        TokenAuthenticator validator = this.validator;
+        if (validator == null) {
+            validator = applicationContext.getBean(TokenAuthenticator.class);
+            this.validator = validator;
+        }
+        return validator;
+    }
+
+    /**
+     * Returns the authorization endpoint URI to redirect to, up to the
+     * redirect URI.
+     */
+    String getAuthorizationRedirectPrefix() {
+        String prefix = this.authorizationRedirectPrefix;
+        if (prefix == null) {
+            String authorizationUri = applicationContext.getBean(OAuthClientMetadata.class).getAuthorizationUri();
+            prefix = authorizationUri + REDIRECT_URI_PARAMETER;
+            if (authorizationUri != null) {
+                // Not known yet while warming up
+                this.authorizationRedirectPrefix = prefix;
+            }
+        }
+        return prefix;
+    }
+
+    static boolean isAjax(String requestedWith) {
+        return "XMLHttpRequest".equalsIgnoreCase(requestedWith);
+    }
+
+    static String toJson(String error, String errorDescription) {
+        return "{\"error\": \"" + error + "\",\"error_description\" : \"" + errorDescription + "\"}";
+    }
+
+    static String toXml(String error, String errorDescription) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><error>" + error + "</error><error_description>" + errorDescription + "</error_description>";
+    }
+
+    static String toText(String error, String errorDescription) {
+        return "error=\"" + error + "\", error_description=\"" + errorDescription + "\"";
+    }
+}
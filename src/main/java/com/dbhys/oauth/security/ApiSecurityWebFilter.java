@@ -0,0 +1,165 @@
+package com.dbhys.oauth.security;
+
+import com.dbhys.oauth.bean.AuthenticationBootstrap;
+import com.dbhys.oauth.http.HttpHeader;
+import com.dbhys.oauth.metrics.AuthenticationMetrics;
+import com.dbhys.oauth.validator.TokenAuthenticator;
+import org.springframework.beans.BeansException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.RequestPath;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reactive counterpart of {@link ApiSecurityInterceptor} for WebFlux
+ * applications. Tokens are validated with
+ * {@link TokenAuthenticator#authenticateAsync(String, int)}, so an
+ * event loop thread never waits for a JWK set retrieval, and the
+ * authentication is published through the Reactor {@code Context}, see
+ * {@link ReactiveAuthenticationHelper}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ApiSecurityWebFilter implements ApplicationContextAware, WebFilter {
+
+    private final ApiSecuritySupport support = new ApiSecuritySupport();
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (HttpMethod.OPTIONS.equals(request.getMethod())) {
+            return chain.filter(exchange);
+        }
+        if (!support.requiresAuthentication(matchPath(request.getPath()))) {
+            return chain.filter(exchange);
+        }
+        AuthenticationBootstrap bootstrap = support.getWarmingBootstrap();
+        if (bootstrap != null) {
+            if (support.rejectsWhileWarming()) {
+                return warmingUp(exchange);
+            }
+            return Mono.fromCompletionStage(bootstrap.whenReady())
+                    .timeout(Duration.ofMillis(support.getWarmupTimeout()))
+                    .then(Mono.defer(() -> authenticate(exchange, chain)))
+                    .onErrorResume(TimeoutException.class, e -> warmingUp(exchange));
+        }
+        return authenticate(exchange, chain);
+    }
+
+    /**
+     * Returns the path within the application to match against the path
+     * patterns, decoded and without path parameters like the servlet path,
+     * e.g. {@code /api/admin} for {@code /api/admin;.js}.
+     */
+    static String matchPath(RequestPath path) {
+        PathContainer container = path.pathWithinApplication();
+        String value = container.value();
+        if (value.indexOf(';') < 0 && value.indexOf('%') < 0) {
+            // Nothing to remove or decode
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        for (PathContainer.Element element : container.elements()) {
+            builder.append(element instanceof PathContainer.PathSegment
+                    ? ((PathContainer.PathSegment) element).valueToMatch() : element.value());
+        }
+        return builder.toString();
+    }
+
+    private Mono<Void> authenticate(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+
+        final AuthenticationMetrics metrics = support.getMetrics();
+        final long start = metrics == null ? 0L : System.nanoTime();
+        final String authenticationHeader = request.getHeaders().getFirst(HttpHeader.AUTHORIZATION);
+        String credential = null;
+        int offset = 0;
+        if (ApiSecuritySupport.isBearer(authenticationHeader)) {
+            credential = authenticationHeader;
+            offset = ApiSecuritySupport.BEARER.length();
+        } else {
+            String cookieName = support.getCookieNameOfToken();
+            if (cookieName != null) {
+                HttpCookie oauthCookie = request.getCookies().getFirst(cookieName);
+                if (oauthCookie != null && StringUtils.hasLength(oauthCookie.getValue())) {
+                    credential = oauthCookie.getValue();
+                }
+            }
+        }
+        support.recordExtraction(metrics, start);
+        if (credential == null) {
+            return authErrorHandler(exchange, HttpStatus.UNAUTHORIZED,
+                    ApiSecuritySupport.LOGIN_REQUIRED, ApiSecuritySupport.LOGIN_REQUIRED_DESCRIPTION);
+        }
+
+        return Mono.fromCompletionStage(support.getValidator().authenticateAsync(credential, offset))
+                .onErrorResume(e -> {
+                    support.logRejection(e);
+                    return authErrorHandler(exchange, HttpStatus.FORBIDDEN,
+                            ApiSecuritySupport.INVALID_TOKEN, ApiSecuritySupport.INVALID_TOKEN_DESCRIPTION)
+                            .then(Mono.<Authentication>empty());
+                })
+                .flatMap(authentication -> {
+                    if (support.isRevoked(authentication, metrics)) {
+                        return authErrorHandler(exchange, HttpStatus.FORBIDDEN,
+                                ApiSecuritySupport.INVALID_TOKEN, ApiSecuritySupport.INVALID_TOKEN_DESCRIPTION);
+                    }
+                    return chain.filter(exchange)
+                            .contextWrite(context -> context.put(ReactiveAuthenticationHelper.CONTEXT_KEY, authentication));
+                });
+    }
+
+    private Mono<Void> warmingUp(ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeader.RETRY_AFTER, "1");
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        DataBuffer body = response.bufferFactory().wrap(ApiSecuritySupport.toJson(
+                ApiSecuritySupport.TEMPORARILY_UNAVAILABLE, ApiSecuritySupport.TEMPORARILY_UNAVAILABLE_DESCRIPTION)
+                .getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(body));
+    }
+
+    protected boolean isAjax(ServerHttpRequest request) {
+        return ApiSecuritySupport.isAjax(request.getHeaders().getFirst("X-Requested-With"));
+    }
+
+    protected Mono<Void> authErrorHandler(ServerWebExchange exchange, HttpStatus status, String error, String errorDescription) {
+        ServerHttpResponse response = exchange.getResponse();
+        if (isAjax(exchange.getRequest())) {
+            response.setStatusCode(status);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            DataBuffer body = response.bufferFactory().wrap(
+                    ApiSecuritySupport.toJson(error, errorDescription).getBytes(StandardCharsets.UTF_8));
+            return response.writeWith(Mono.just(body));
+        }
+        String prefix = support.getAuthorizationRedirectPrefix();
+        response.setStatusCode(HttpStatus.FOUND);
+        response.getHeaders().setLocation(URI.create(prefix + exchange.getRequest().getURI()));
+        return response.setComplete();
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        support.setApplicationContext(applicationContext);
+    }
+}
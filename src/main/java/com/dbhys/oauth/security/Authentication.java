@@ -1,50 +1,99 @@
 package com.dbhys.oauth.security;
 
+import com.dbhys.oauth.validator.TokenClaims;
+
 import java.util.Date;
 
 /**
+ * The authenticated principal of a request. Instances are immutable, so one
+ * instance can be shared by every request presenting the same token.
+ *
+ * <p>The setters of earlier versions were removed, a setter would change
+ * the principal of every request served from the verified token cache.
+ * Pass the values to a constructor instead.
  * Created by Milas on 2019/3/29.
  */
 public class Authentication {
 
-    private String username;
-    private String name;
-    private Date issuerAt;
-    private Date expireAt;
+    private final String username;
+    private final String name;
+    private final Date issuerAt;
+    private final Date expireAt;
+    private final TokenClaims claims;
+    private final ScopeSet scopes;
+    private final ScopeSet roles;
 
     public Authentication(String username){
-        this.username = username;
+        this(username, null, null, null);
     }
 
-    public String getUsername() {
-        return username;
+    public Authentication(String username, String name, Date issuerAt, Date expireAt) {
+        this(username, name, issuerAt, expireAt, null);
+    }
+
+    public Authentication(String username, String name, Date issuerAt, Date expireAt, TokenClaims claims) {
+        this(username, name, issuerAt, expireAt, claims, ScopeSet.EMPTY, ScopeSet.EMPTY);
     }
 
-    public void setUsername(String username) {
+    public Authentication(String username, String name, Date issuerAt, Date expireAt, TokenClaims claims,
+                          ScopeSet scopes, ScopeSet roles) {
         this.username = username;
+        this.name = name;
+        this.issuerAt = issuerAt == null ? null : new Date(issuerAt.getTime());
+        this.expireAt = expireAt == null ? null : new Date(expireAt.getTime());
+        this.claims = claims;
+        this.scopes = scopes == null ? ScopeSet.EMPTY : scopes;
+        this.roles = roles == null ? ScopeSet.EMPTY : roles;
+    }
+
+    public String getUsername() {
+        return username;
     }
 
     public String getName() {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public Date getIssuerAt() {
+        return issuerAt == null ? null : new Date(issuerAt.getTime());
     }
 
-    public Date getIssuerAt() {
-        return issuerAt;
+    public Date getExpireAt() {
+        return expireAt == null ? null : new Date(expireAt.getTime());
     }
 
-    public void setIssuerAt(Date issuerAt) {
-        this.issuerAt = issuerAt;
+    /**
+     * Returns the claims of the token, for claims beyond the ones above.
+     *
+     * @return The token claims, {@code null} if not available.
+     */
+    public TokenClaims getClaims() {
+        return claims;
     }
 
-    public Date getExpireAt() {
-        return expireAt;
+    /**
+     * Returns the granted scopes, from the {@code scope} claim by default.
+     *
+     * @return The scopes, empty if none.
+     */
+    public ScopeSet getScopes() {
+        return scopes;
+    }
+
+    /**
+     * Returns the granted roles, from the {@code roles} claim by default.
+     *
+     * @return The roles, empty if none.
+     */
+    public ScopeSet getRoles() {
+        return roles;
+    }
+
+    public boolean hasScope(String scope) {
+        return scopes.contains(scope);
     }
 
-    public void setExpireAt(Date expireAt) {
-        this.expireAt = expireAt;
+    public boolean hasRole(String role) {
+        return roles.contains(role);
     }
 }
@@ -0,0 +1,104 @@
+package com.dbhys.oauth.security;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Holder of the authentication of the current request, backed by a
+ * {@link ThreadLocalAuthenticationContext thread-local variable} or by a
+ * {@link ScopedValueAuthenticationContext scoped value}.
+ *
+ * <p>Binding the authentication with {@link #run run} or {@link #call call}
+ * works with both: the authentication is visible to the operation and
+ * nothing is left behind on the thread afterwards. With a scoped value, the
+ * subtasks forked by a {@code StructuredTaskScope} inside the operation see
+ * it too. Tasks handed to other executors should be {@link #wrap wrapped}.
+ */
+public interface AuthenticationContext {
+
+    /**
+     * Returns the authentication bound to the current thread.
+     *
+     * @return The authentication, {@code null} if none.
+     */
+    Authentication get();
+
+    /**
+     * Runs an operation with the specified authentication bound, then
+     * restores the previous one.
+     *
+     * @param authentication The authentication, {@code null} if none.
+     * @param operation      The operation. Must not be {@code null}.
+     */
+    void run(Authentication authentication, Runnable operation);
+
+    /**
+     * Calls an operation with the specified authentication bound, then
+     * restores the previous one.
+     *
+     * @param authentication The authentication, {@code null} if none.
+     * @param operation      The operation. Must not be {@code null}.
+     *
+     * @return The result of the operation.
+     *
+     * @throws Exception If the operation failed.
+     */
+    default <T> T call(Authentication authentication, Callable<T> operation) throws Exception {
+        Object[] result = new Object[1];
+        Exception[] failure = new Exception[1];
+        run(authentication, () -> {
+            try {
+                result[0] = operation.call();
+            } catch (Exception e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+
+    /**
+     * Binds the authentication to the current thread until it's set again,
+     * for callers which can't wrap the request in {@link #run run}, e.g. a
+     * {@code HandlerInterceptor}. Only mutable contexts support this.
+     *
+     * @param authentication The authentication, {@code null} to clear it.
+     *
+     * @throws UnsupportedOperationException If the context only binds with
+     *                                       {@link #run run} and
+     *                                       {@link #call call}.
+     */
+    default void set(Authentication authentication) {
+        throw new UnsupportedOperationException(getClass().getSimpleName()
+                + " binds the authentication with run or call only");
+    }
+
+    /**
+     * Returns a task running the specified one with the authentication of
+     * the current thread bound, e.g. to hand it to an executor.
+     *
+     * @param task The task. Must not be {@code null}.
+     *
+     * @return The wrapped task.
+     */
+    default Runnable wrap(Runnable task) {
+        Authentication authentication = get();
+        return () -> run(authentication, task);
+    }
+
+    /**
+     * Returns a task calling the specified one with the authentication of
+     * the current thread bound, e.g. to hand it to an executor.
+     *
+     * @param task The task. Must not be {@code null}.
+     *
+     * @return The wrapped task.
+     */
+    default <T> Callable<T> wrap(Callable<T> task) {
+        Authentication authentication = get();
+        return () -> call(authentication, task);
+    }
+}
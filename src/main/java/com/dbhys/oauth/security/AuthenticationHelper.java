@@ -1,23 +1,66 @@
 package com.dbhys.oauth.security;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.Callable;
 
 /**
+ * Access to the authentication of the current request, kept in the
+ * configured {@link AuthenticationContext}, thread-local by default.
+ *
  * Created by Milas on 2019/3/29.
  */
 public class AuthenticationHelper {
-    private final static Logger logger = LoggerFactory.getLogger(AuthenticationHelper.class);
 
-    private static ThreadLocal<Authentication> threadLocal = new ThreadLocal();
+    private static volatile AuthenticationContext context = new ThreadLocalAuthenticationContext();
 
-    public static void setAuthentication(Authentication authentication){
-        threadLocal.set(authentication);
+    private AuthenticationHelper() {
     }
 
-    public static Authentication getAuthentication(){
-        Authentication authentication = threadLocal.get();
-        logger.debug("username: {}", authentication.getUsername());
-        return threadLocal.get();
+    public static AuthenticationContext getContext() {
+        return context;
+    }
+
+    /**
+     * Replaces the authentication context, at startup before any request.
+     *
+     * @param context The context. Must not be {@code null}.
+     */
+    public static void setContext(AuthenticationContext context) {
+        if (context == null) {
+            throw new IllegalArgumentException("The authentication context must not be null");
+        }
+        AuthenticationHelper.context = context;
+    }
+
+    /**
+     * Binds the authentication to the current thread, {@code null} to clear
+     * it. Requires a mutable context, e.g. the thread-local one.
+     */
+    public static void setAuthentication(Authentication authentication) {
+        context.set(authentication);
+    }
+
+    /**
+     * Returns the authentication of the current request.
+     *
+     * @return The authentication, {@code null} if none.
+     */
+    public static Authentication getAuthentication() {
+        return context.get();
+    }
+
+    /**
+     * Returns a task running the specified one with the authentication of
+     * the current request, e.g. to hand it to an executor.
+     */
+    public static Runnable wrap(Runnable task) {
+        return context.wrap(task);
+    }
+
+    /**
+     * Returns a task calling the specified one with the authentication of
+     * the current request, e.g. to hand it to an executor.
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        return context.wrap(task);
     }
 }
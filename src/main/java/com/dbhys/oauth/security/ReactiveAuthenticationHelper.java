@@ -0,0 +1,23 @@
+package com.dbhys.oauth.security;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Access to the authentication {@link ApiSecurityWebFilter} publishes
+ * through the Reactor {@code Context}, the reactive counterpart of
+ * {@link AuthenticationHelper}.
+ */
+public class ReactiveAuthenticationHelper {
+
+    /**
+     * The context key of the authentication.
+     */
+    public static final Class<Authentication> CONTEXT_KEY = Authentication.class;
+
+    private ReactiveAuthenticationHelper() {
+    }
+
+    public static Mono<Authentication> getAuthentication() {
+        return Mono.deferContextual(context -> Mono.justOrEmpty(context.<Authentication>getOrEmpty(CONTEXT_KEY)));
+    }
+}
@@ -0,0 +1,29 @@
+package com.dbhys.oauth.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requires the authenticated token to grant all of the specified scopes
+ * and roles. On a controller class it applies to the handler methods
+ * without their own annotation. Enforced by
+ * {@link ScopeAuthorizationInterceptor}.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface RequiresScope {
+
+    /**
+     * The required scopes.
+     */
+    String[] value() default {};
+
+    /**
+     * The required roles.
+     */
+    String[] roles() default {};
+}
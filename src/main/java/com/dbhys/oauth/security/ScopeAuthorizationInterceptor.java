@@ -0,0 +1,176 @@
+package com.dbhys.oauth.security;
+
+import com.dbhys.oauth.http.HttpHeader;
+import com.dbhys.oauth.http.MediaType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Enforces {@link RequiresScope} on the handler methods, against the
+ * authentication the {@link ApiSecurityFilter} bound. The requirement of a
+ * handler method is resolved from its annotations once, then a check is a
+ * bitwise operation over the interned scopes.
+ *
+ * <p>The requirements of the request mappings are resolved when the
+ * application starts, before any request: granted names are only in the
+ * bitset if a requirement interned them, see {@link ScopeDictionary}.
+ *
+ * <p>Registers itself with Spring MVC at {@link #ORDER}, after the
+ * {@link ApiSecurityInterceptor} when the filter is disabled and the
+ * interceptor registered by hand.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ScopeAuthorizationInterceptor implements HandlerInterceptor, WebMvcConfigurer,
+        ApplicationContextAware, SmartInitializingSingleton {
+    private final static Logger logger = LoggerFactory.getLogger(ScopeAuthorizationInterceptor.class);
+
+    /**
+     * The order of this interceptor. Interceptors registered without an
+     * order, as {@link ApiSecurityInterceptor} usually is, have order 0 and
+     * run before it.
+     */
+    public static final int ORDER = 1000;
+
+    private ApplicationContext applicationContext;
+
+    // Keyed by bean type then method, an inherited method may be annotated differently per controller
+    private final ClassValue<Map<Method, Requirement>> requirements = new ClassValue<Map<Method, Requirement>>() {
+        @Override
+        protected Map<Method, Requirement> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this).order(ORDER);
+    }
+
+    /**
+     * Resolves the requirements of all request mappings, interning the
+     * required names before the first token is authenticated.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (RequestMappingInfoHandlerMapping mapping
+                : applicationContext.getBeansOfType(RequestMappingInfoHandlerMapping.class).values()) {
+            for (HandlerMethod handlerMethod : mapping.getHandlerMethods().values()) {
+                getRequirement(handlerMethod);
+            }
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        Requirement requirement = getRequirement((HandlerMethod) handler);
+        if (requirement == Requirement.NONE) {
+            return true;
+        }
+        Authentication authentication = AuthenticationHelper.getAuthentication();
+        if (authentication == null) {
+            reject(response, HttpStatus.UNAUTHORIZED, "login_required", "You should login at first!", requirement);
+            return false;
+        }
+        if (!authentication.getScopes().containsAll(requirement.scopes)
+                || !authentication.getRoles().containsAll(requirement.roles)) {
+            reject(response, HttpStatus.FORBIDDEN, "insufficient_scope", "Insufficient scope!", requirement);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the requirement of a handler method, resolved at startup or on
+     * first use.
+     */
+    Requirement getRequirement(HandlerMethod handlerMethod) {
+        Map<Method, Requirement> byMethod = requirements.get(handlerMethod.getBeanType());
+        Requirement requirement = byMethod.get(handlerMethod.getMethod());
+        if (requirement == null) {
+            requirement = byMethod.computeIfAbsent(handlerMethod.getMethod(), method -> resolve(handlerMethod));
+        }
+        return requirement;
+    }
+
+    private static Requirement resolve(HandlerMethod handlerMethod) {
+        RequiresScope annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), RequiresScope.class);
+        if (annotation == null) {
+            annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), RequiresScope.class);
+        }
+        if (annotation == null || (annotation.value().length == 0 && annotation.roles().length == 0)) {
+            return Requirement.NONE;
+        }
+        ScopeDictionary dictionary = ScopeDictionary.getInstance();
+        Requirement requirement = new Requirement(dictionary.require(Arrays.asList(annotation.value())),
+                dictionary.require(Arrays.asList(annotation.roles())),
+                String.join(" ", annotation.value()));
+        if (requirement.scopes == ScopeSet.UNSATISFIABLE || requirement.roles == ScopeSet.UNSATISFIABLE) {
+            logger.warn("The scope dictionary is full, the requirement of {} can never be satisfied", handlerMethod);
+        }
+        return requirement;
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String error, String errorDescription,
+                        Requirement requirement) throws IOException {
+        response.setStatus(status.value());
+        // RFC 6750 section 3
+        StringBuilder challenge = new StringBuilder("Bearer error=\"").append(error).append('"');
+        if (!requirement.scope.isEmpty()) {
+            challenge.append(", scope=\"").append(requirement.scope).append('"');
+        }
+        response.setHeader(HttpHeader.WWW_AUTHENTICATE, challenge.toString());
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        response.getWriter().write("{\"error\": \"" + error + "\",\"error_description\" : \"" + errorDescription + "\"}");
+    }
+
+    /**
+     * The scopes and roles a handler method requires.
+     */
+    static final class Requirement {
+
+        static final Requirement NONE = new Requirement(ScopeSet.EMPTY, ScopeSet.EMPTY, "");
+
+        private final ScopeSet scopes;
+
+        private final ScopeSet roles;
+
+        // For the WWW-Authenticate challenge
+        private final String scope;
+
+        Requirement(ScopeSet scopes, ScopeSet roles, String scope) {
+            this.scopes = scopes;
+            this.roles = roles;
+            this.scope = scope;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.dbhys.oauth.security;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interns scope and role names to bit indexes, so a {@link ScopeSet} is a
+ * bitset and a scope check a bitwise operation. The first 64 names fit in
+ * a single {@code long}.
+ *
+ * <p>Only required names are interned, e.g. those of the
+ * {@link RequiresScope} annotations when the application starts. Granted
+ * names are looked up and never interned, so tokens can't fill the
+ * dictionary: a granted name no requirement mentions is kept by name only,
+ * outside the bitset, as no requirement could ever ask for it.
+ *
+ * <p>The dictionary only grows, up to its capacity. A requirement naming a
+ * name beyond it is never satisfied.
+ *
+ * <p>Instances are thread-safe.
+ */
+public final class ScopeDictionary {
+
+    /**
+     * The default maximum number of interned names.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final ScopeDictionary INSTANCE = new ScopeDictionary(DEFAULT_CAPACITY);
+
+    private final ConcurrentHashMap<String, Integer> indexes = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<String> names;
+
+    private int size;
+
+    /**
+     * Creates a new scope dictionary.
+     *
+     * @param capacity The maximum number of interned names. Must be
+     *                 positive.
+     */
+    public ScopeDictionary(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        this.names = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Returns the dictionary shared by the validators and the scope
+     * requirements.
+     */
+    public static ScopeDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the index of the specified name.
+     *
+     * @param name The name.
+     *
+     * @return The index, -1 if the name isn't interned.
+     */
+    public int indexOf(final String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Interns the specified name.
+     *
+     * @param name The name. Must not be {@code null}.
+     *
+     * @return The index, -1 if the dictionary is full.
+     */
+    public int intern(final String name) {
+        Integer index = indexes.get(name);
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            index = indexes.get(name);
+            if (index != null) {
+                return index;
+            }
+            if (size == names.length()) {
+                return -1;
+            }
+            names.set(size, name);
+            indexes.put(name, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Returns the name of the specified index.
+     *
+     * @param index The index.
+     *
+     * @return The name, {@code null} if none.
+     */
+    public String nameOf(final int index) {
+        return index >= 0 && index < names.length() ? names.get(index) : null;
+    }
+
+    /**
+     * Returns the set of the specified granted names.
+     *
+     * @param names The names, {@code null} for the empty set.
+     *
+     * @return The set, the names that aren't interned kept by name only.
+     */
+    public ScopeSet toScopeSet(final Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return ScopeSet.EMPTY;
+        }
+        ScopeSet.Builder builder = new ScopeSet.Builder();
+        for (String name : names) {
+            builder.add(name, indexOf(name));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the set of the granted names of a claim value: a string of
+     * names delimited by spaces, as in the {@code scope} claim, or a list
+     * of names, as in a {@code roles} claim.
+     *
+     * @param value The claim value, {@code null} for the empty set.
+     *
+     * @return The set, the names that aren't interned kept by name only.
+     */
+    public ScopeSet parse(final Object value) {
+        if (value instanceof String) {
+            String names = (String) value;
+            ScopeSet.Builder builder = new ScopeSet.Builder();
+            int i = 0;
+            while (i < names.length()) {
+                int end = names.indexOf(' ', i);
+                if (end < 0) {
+                    end = names.length();
+                }
+                if (end > i) {
+                    String name = names.substring(i, end);
+                    builder.add(name, indexOf(name));
+                }
+                i = end + 1;
+            }
+            return builder.build();
+        } else if (value instanceof Collection) {
+            ScopeSet.Builder builder = new ScopeSet.Builder();
+            for (Object name : (Collection<?>) value) {
+                if (name instanceof String) {
+                    builder.add((String) name, indexOf((String) name));
+                }
+            }
+            return builder.build();
+        }
+        return ScopeSet.EMPTY;
+    }
+
+    /**
+     * Interns and requires the specified names. A name beyond the capacity
+     * makes the requirement unsatisfiable.
+     *
+     * @param names The required names, {@code null} for none.
+     *
+     * @return The required set.
+     */
+    public ScopeSet require(final Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return ScopeSet.EMPTY;
+        }
+        ScopeSet.Builder builder = new ScopeSet.Builder();
+        for (String name : names) {
+            int index = intern(name);
+            if (index < 0) {
+                return ScopeSet.UNSATISFIABLE;
+            }
+            builder.add(name, index);
+        }
+        return builder.build();
+    }
+}
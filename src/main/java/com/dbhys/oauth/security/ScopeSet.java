@@ -0,0 +1,140 @@
+package com.dbhys.oauth.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable set of scope or role names, as a bitset over the indexes of a
+ * {@link ScopeDictionary}. The first 64 indexes are held in a single
+ * {@code long}, so checking a requirement against the granted scopes is
+ * one bitwise operation in the common case.
+ *
+ * <p>The bitset only holds the interned names. The exact names are kept
+ * beside it, so {@link #contains} and {@link #toList} also answer for the
+ * granted names no requirement mentions.
+ */
+public final class ScopeSet {
+
+    /**
+     * The empty set.
+     */
+    public static final ScopeSet EMPTY = new ScopeSet(Collections.emptySet(), 0L, null);
+
+    /**
+     * A requirement no set satisfies, e.g. of a name the dictionary had no
+     * room for.
+     */
+    static final ScopeSet UNSATISFIABLE = new ScopeSet(Collections.emptySet(), 0L, null);
+
+    private final Set<String> names;
+
+    private final long bits;
+
+    // Indexes from 64 on, null if none
+    private final long[] more;
+
+    private ScopeSet(final Set<String> names, final long bits, final long[] more) {
+        this.names = names;
+        this.bits = bits;
+        this.more = more;
+    }
+
+    /**
+     * Returns {@code true} if this set contains all names of the specified
+     * one.
+     *
+     * @param required The required names. Must not be {@code null}.
+     */
+    public boolean containsAll(final ScopeSet required) {
+        if (required == UNSATISFIABLE || (bits & required.bits) != required.bits) {
+            return false;
+        }
+        long[] requiredMore = required.more;
+        if (requiredMore == null) {
+            return true;
+        }
+        if (more == null || more.length < requiredMore.length) {
+            return false;
+        }
+        for (int i = 0; i < requiredMore.length; i++) {
+            if ((more[i] & requiredMore[i]) != requiredMore[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if this set contains the specified name.
+     *
+     * @param name The name.
+     */
+    public boolean contains(final String name) {
+        return names.contains(name);
+    }
+
+    public boolean isEmpty() {
+        return names.isEmpty();
+    }
+
+    /**
+     * Returns the names of this set.
+     *
+     * @return The names, in the order they were granted or required.
+     */
+    public List<String> toList() {
+        if (names.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(names));
+    }
+
+    @Override
+    public String toString() {
+        return this == UNSATISFIABLE ? "[unsatisfiable]" : toList().toString();
+    }
+
+    /**
+     * Builder of a set, from names and their dictionary indexes.
+     */
+    static final class Builder {
+
+        private final Set<String> names = new LinkedHashSet<>();
+
+        private long bits;
+
+        private long[] more;
+
+        /**
+         * Adds a name and its index, the index ignored if negative.
+         */
+        Builder add(final String name, final int index) {
+            names.add(name);
+            if (index < 0) {
+                return this;
+            } else if (index < 64) {
+                bits |= 1L << index;
+                return this;
+            }
+            int word = (index >> 6) - 1;
+            if (more == null) {
+                more = new long[word + 1];
+            } else if (more.length <= word) {
+                more = Arrays.copyOf(more, word + 1);
+            }
+            more[word] |= 1L << index;
+            return this;
+        }
+
+        ScopeSet build() {
+            if (names.isEmpty()) {
+                return EMPTY;
+            }
+            return new ScopeSet(Collections.unmodifiableSet(names), bits, more);
+        }
+    }
+}
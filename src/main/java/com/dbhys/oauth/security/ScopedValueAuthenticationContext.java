@@ -0,0 +1,111 @@
+package com.dbhys.oauth.security;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Authentication context backed by a {@code java.lang.ScopedValue}
+ * (Java 21+). The authentication is bound with {@link #run run} or
+ * {@link #call call} only, costs nothing per thread and is inherited by the
+ * subtasks forked by a {@code StructuredTaskScope}.
+ *
+ * <p>The SDK is built for Java 17, so the scoped value is reached through
+ * method handles, resolved once.
+ */
+public class ScopedValueAuthenticationContext implements AuthenticationContext {
+
+    private static final MethodHandle NEW_INSTANCE;
+
+    private static final MethodHandle WHERE;
+
+    private static final MethodHandle RUN;
+
+    private static final MethodHandle IS_BOUND;
+
+    private static final MethodHandle GET;
+
+    static {
+        MethodHandle newInstance = null;
+        MethodHandle where = null;
+        MethodHandle run = null;
+        MethodHandle isBound = null;
+        MethodHandle get = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> scopedValueClass = Class.forName("java.lang.ScopedValue");
+            Class<?> carrierClass = Class.forName("java.lang.ScopedValue$Carrier");
+            newInstance = lookup.findStatic(scopedValueClass, "newInstance", MethodType.methodType(scopedValueClass))
+                    .asType(MethodType.methodType(Object.class));
+            where = lookup.findStatic(scopedValueClass, "where", MethodType.methodType(carrierClass, scopedValueClass, Object.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+            run = lookup.findVirtual(carrierClass, "run", MethodType.methodType(void.class, Runnable.class))
+                    .asType(MethodType.methodType(void.class, Object.class, Runnable.class));
+            isBound = lookup.findVirtual(scopedValueClass, "isBound", MethodType.methodType(boolean.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class));
+            get = lookup.findVirtual(scopedValueClass, "get", MethodType.methodType(Object.class))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            // A preview API refuses to work unless enabled
+            newInstance.invoke();
+        } catch (Throwable e) {
+            newInstance = null;
+        }
+        NEW_INSTANCE = newInstance;
+        WHERE = where;
+        RUN = run;
+        IS_BOUND = isBound;
+        GET = get;
+    }
+
+    private final Object scopedValue;
+
+    /**
+     * Creates a new scoped value authentication context.
+     *
+     * @throws UnsupportedOperationException If the runtime doesn't support
+     *                                       scoped values.
+     */
+    public ScopedValueAuthenticationContext() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Scoped values require Java 21 or later, with preview features enabled before Java 25");
+        }
+        try {
+            this.scopedValue = NEW_INSTANCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Couldn't create a scoped value", e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the runtime supports scoped values.
+     */
+    public static boolean isSupported() {
+        return NEW_INSTANCE != null;
+    }
+
+    @Override
+    public Authentication get() {
+        try {
+            if (!(boolean) IS_BOUND.invokeExact(scopedValue)) {
+                return null;
+            }
+            return (Authentication) (Object) GET.invokeExact(scopedValue);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void run(Authentication authentication, Runnable operation) {
+        try {
+            Object carrier = WHERE.invokeExact(scopedValue, (Object) authentication);
+            RUN.invokeExact(carrier, operation);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
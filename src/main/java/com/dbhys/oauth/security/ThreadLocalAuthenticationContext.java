@@ -0,0 +1,33 @@
+package com.dbhys.oauth.security;
+
+/**
+ * Authentication context backed by a thread-local variable, the default.
+ * A cleared authentication sets the variable to {@code null} rather than
+ * removing it, removing would allocate a new map entry on every request of
+ * a pooled thread. A virtual thread per request drops its map when it ends.
+ */
+public class ThreadLocalAuthenticationContext implements AuthenticationContext {
+
+    private final ThreadLocal<Authentication> authentication = new ThreadLocal<>();
+
+    @Override
+    public Authentication get() {
+        return authentication.get();
+    }
+
+    @Override
+    public void run(Authentication authentication, Runnable operation) {
+        Authentication previous = this.authentication.get();
+        set(authentication);
+        try {
+            operation.run();
+        } finally {
+            set(previous);
+        }
+    }
+
+    @Override
+    public void set(Authentication authentication) {
+        this.authentication.set(authentication);
+    }
+}
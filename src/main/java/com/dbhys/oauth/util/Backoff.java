@@ -0,0 +1,30 @@
+package com.dbhys.oauth.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter for retrying calls to the identity
+ * provider, so that a fleet of instances doesn't retry in lockstep.
+ */
+public final class Backoff {
+
+    private Backoff() {
+    }
+
+    /**
+     * Returns the delay before a retry: the initial delay doubled for each
+     * previous failure, capped, with its upper half randomised.
+     *
+     * @param failures     The number of consecutive failures, at least 1.
+     * @param initialDelay The delay after the first failure.
+     * @param maxDelay     The maximum delay.
+     *
+     * @return The delay, in the unit of the arguments.
+     */
+    public static long delay(final int failures, final long initialDelay, final long maxDelay) {
+        int doublings = Math.min(Math.max(failures - 1, 0), 30);
+        long ceiling = initialDelay > maxDelay >> doublings ? maxDelay : initialDelay << doublings;
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+}
@@ -0,0 +1,324 @@
+package com.dbhys.oauth.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Decides which request paths require authentication, from include and
+ * exclude patterns compiled once into a deterministic automaton over path
+ * segments. A path is matched in a single scan, one transition per
+ * segment, without allocating or backtracking.
+ *
+ * <p>Patterns are absolute paths whose segments are:
+ *
+ * <ul>
+ *     <li>a literal, e.g. {@code health};
+ *     <li>{@code *}, any single segment;
+ *     <li>{@code **}, any number of segments, including none;
+ *     <li>in the last segment only, a literal prefix and suffix around a
+ *         single {@code *}, e.g. {@code *.js}.
+ * </ul>
+ *
+ * <p>A path requires authentication if it matches an include pattern and
+ * no exclude pattern. Paths with {@code .} or {@code ..} segments always
+ * do, so an exclusion can't be used to reach other routes. Empty segments
+ * are ignored.
+ *
+ * <p>Instances are immutable and thread-safe.
+ */
+public final class PathPatternMatcher {
+
+    private static final int INCLUDE = 1;
+
+    private static final int EXCLUDE = 2;
+
+    private static final int UNSAFE = -1;
+
+    private final State start;
+
+    private PathPatternMatcher(final State start) {
+        this.start = start;
+    }
+
+    /**
+     * Compiles include and exclude patterns.
+     *
+     * @param includes The patterns of the protected paths, {@code null} or
+     *                 empty for all paths.
+     * @param excludes The patterns of the paths never authenticated,
+     *                 {@code null} if none.
+     *
+     * @return The matcher.
+     *
+     * @throws IllegalArgumentException If a pattern is invalid.
+     */
+    public static PathPatternMatcher compile(final Collection<String> includes, final Collection<String> excludes) {
+        Node root = new Node();
+        for (String pattern : includes == null || includes.isEmpty() ? Collections.singletonList("/**") : includes) {
+            add(root, pattern, INCLUDE);
+        }
+        if (excludes != null) {
+            for (String pattern : excludes) {
+                add(root, pattern, EXCLUDE);
+            }
+        }
+        return new PathPatternMatcher(determinize(root));
+    }
+
+    /**
+     * Returns {@code true} if the specified path requires authentication.
+     *
+     * @param path The request path within the application, e.g. the
+     *             servlet path. Must not be {@code null}.
+     */
+    public boolean requiresAuthentication(final String path) {
+        int outcome = match(path);
+        return outcome == UNSAFE || (outcome & (INCLUDE | EXCLUDE)) == INCLUDE;
+    }
+
+    private int match(final String path) {
+        final int length = path.length();
+        State state = start;
+        State previous = null;
+        int segmentStart = 0;
+        int segmentEnd = 0;
+        int i = 0;
+        while (i < length) {
+            if (path.charAt(i) == '/') {
+                i++;
+                continue;
+            }
+            int end = path.indexOf('/', i);
+            if (end < 0) {
+                end = length;
+            }
+            if (path.charAt(i) == '.' && (end - i == 1 || (end - i == 2 && path.charAt(i + 1) == '.'))) {
+                return UNSAFE;
+            }
+            previous = state;
+            state = state.next(path, i, end);
+            segmentStart = i;
+            segmentEnd = end;
+            i = end;
+        }
+        int outcome = state.accept;
+        if (previous != null) {
+            for (Affix affix : previous.affixes) {
+                if (affix.matches(path, segmentStart, segmentEnd)) {
+                    outcome |= affix.outcome;
+                }
+            }
+        }
+        return outcome;
+    }
+
+    private static void add(final Node root, final String pattern, final int outcome) {
+        if (pattern == null || !pattern.startsWith("/")) {
+            throw new IllegalArgumentException("The path pattern must start with '/': " + pattern);
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : pattern.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        Node node = root;
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            if (segment.equals("**")) {
+                if (node.anySegments == null) {
+                    node.anySegments = new Node();
+                    node.anySegments.loop = true;
+                }
+                node = node.anySegments;
+            } else if (segment.equals("*")) {
+                if (node.anySegment == null) {
+                    node.anySegment = new Node();
+                }
+                node = node.anySegment;
+            } else if (segment.indexOf('*') >= 0) {
+                int star = segment.indexOf('*');
+                if (i != segments.size() - 1 || segment.indexOf('*', star + 1) >= 0) {
+                    throw new IllegalArgumentException("Only the last segment of a path pattern may have a single partial wildcard: " + pattern);
+                }
+                node.affixes.add(new Affix(segment.substring(0, star), segment.substring(star + 1), outcome));
+                return;
+            } else {
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+        node.accept |= outcome;
+    }
+
+    /**
+     * Subset construction, each state of the automaton is a set of nodes
+     * of the pattern trie.
+     */
+    private static State determinize(final Node root) {
+        List<Node> nodes = new ArrayList<>();
+        number(root, nodes);
+        Map<BitSet, State> states = new HashMap<>();
+        Deque<BitSet> pending = new ArrayDeque<>();
+
+        BitSet startSet = closure(Collections.singleton(root), nodes);
+        states.put(startSet, new State());
+        pending.add(startSet);
+        while (!pending.isEmpty()) {
+            BitSet set = pending.poll();
+            State state = states.get(set);
+            Set<String> literals = new TreeSet<>();
+            List<Affix> affixes = new ArrayList<>();
+            for (int id = set.nextSetBit(0); id >= 0; id = set.nextSetBit(id + 1)) {
+                Node node = nodes.get(id);
+                state.accept |= node.accept;
+                literals.addAll(node.children.keySet());
+                affixes.addAll(node.affixes);
+            }
+            state.affixes = affixes.toArray(new Affix[0]);
+            state.literals = literals.toArray(new String[0]);
+            state.targets = new State[state.literals.length];
+            for (int i = 0; i < state.literals.length; i++) {
+                state.targets[i] = stateOf(step(set, state.literals[i], nodes), states, pending);
+            }
+            state.other = stateOf(step(set, null, nodes), states, pending);
+        }
+        return states.get(startSet);
+    }
+
+    private static State stateOf(final BitSet set, final Map<BitSet, State> states, final Deque<BitSet> pending) {
+        State state = states.get(set);
+        if (state == null) {
+            state = new State();
+            states.put(set, state);
+            pending.add(set);
+        }
+        return state;
+    }
+
+    private static BitSet step(final BitSet set, final String literal, final List<Node> nodes) {
+        Set<Node> targets = new LinkedHashSet<>();
+        for (int id = set.nextSetBit(0); id >= 0; id = set.nextSetBit(id + 1)) {
+            Node node = nodes.get(id);
+            if (literal != null && node.children.containsKey(literal)) {
+                targets.add(node.children.get(literal));
+            }
+            if (node.anySegment != null) {
+                targets.add(node.anySegment);
+            }
+            if (node.loop) {
+                targets.add(node);
+            }
+        }
+        return closure(targets, nodes);
+    }
+
+    private static BitSet closure(final Collection<Node> from, final List<Node> nodes) {
+        BitSet set = new BitSet(nodes.size());
+        for (Node node : from) {
+            for (Node n = node; n != null; n = n.anySegments) {
+                set.set(n.id);
+            }
+        }
+        return set;
+    }
+
+    private static void number(final Node node, final List<Node> nodes) {
+        node.id = nodes.size();
+        nodes.add(node);
+        for (Node child : node.children.values()) {
+            number(child, nodes);
+        }
+        if (node.anySegment != null) {
+            number(node.anySegment, nodes);
+        }
+        if (node.anySegments != null) {
+            number(node.anySegments, nodes);
+        }
+    }
+
+    /**
+     * Node of the pattern trie.
+     */
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+
+        private final List<Affix> affixes = new ArrayList<>();
+
+        // Reached by any single segment
+        private Node anySegment;
+
+        // Reached by no segment, then loops on any segment
+        private Node anySegments;
+
+        private boolean loop;
+
+        private int accept;
+
+        private int id;
+    }
+
+    /**
+     * State of the automaton.
+     */
+    private static final class State {
+
+        // Sorted, compared to the segment in place
+        private String[] literals;
+
+        private State[] targets;
+
+        // Taken by the segments which aren't a literal
+        private State other;
+
+        private int accept;
+
+        // Matched against the last segment, from the state before it
+        private Affix[] affixes;
+
+        private State next(final String path, final int start, final int end) {
+            final int length = end - start;
+            for (int i = 0; i < literals.length; i++) {
+                String literal = literals[i];
+                if (literal.length() == length && path.regionMatches(start, literal, 0, length)) {
+                    return targets[i];
+                }
+            }
+            return other;
+        }
+    }
+
+    /**
+     * A last segment with a literal prefix and suffix around a wildcard.
+     */
+    private static final class Affix {
+
+        private final String prefix;
+
+        private final String suffix;
+
+        private final int outcome;
+
+        private Affix(final String prefix, final String suffix, final int outcome) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.outcome = outcome;
+        }
+
+        private boolean matches(final String path, final int start, final int end) {
+            return end - start >= prefix.length() + suffix.length()
+                    && path.startsWith(prefix, start)
+                    && path.regionMatches(end - suffix.length(), suffix, 0, suffix.length());
+        }
+    }
+}
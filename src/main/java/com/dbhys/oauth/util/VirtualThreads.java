@@ -0,0 +1,109 @@
+package com.dbhys.oauth.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads when the runtime has them (Java 21+). The SDK is built
+ * for Java 17, so they are reached through reflection, once.
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+
+    private static final Method NAME;
+
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            // Before Java 21
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns {@code true} if the runtime supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Returns a factory of virtual threads.
+     *
+     * @param namePrefix The prefix of the thread names, followed by a
+     *                   counter.
+     *
+     * @return The thread factory.
+     *
+     * @throws UnsupportedOperationException If the runtime doesn't support
+     *                                       virtual threads.
+     */
+    public static ThreadFactory factory(final String namePrefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Couldn't create a virtual thread factory", e);
+        }
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per task.
+     *
+     * @param namePrefix The prefix of the thread names.
+     *
+     * @return The executor.
+     *
+     * @throws UnsupportedOperationException If the runtime doesn't support
+     *                                       virtual threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(final String namePrefix) {
+        ThreadFactory factory = factory(namePrefix);
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Couldn't create a virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Returns a factory of virtual threads if requested and supported, else
+     * of daemon platform threads.
+     *
+     * @param name    The thread name, used as prefix of virtual threads.
+     * @param virtual {@code true} to prefer virtual threads.
+     *
+     * @return The thread factory.
+     */
+    public static ThreadFactory factory(final String name, final boolean virtual) {
+        if (virtual && isSupported()) {
+            return factory(name + "-");
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
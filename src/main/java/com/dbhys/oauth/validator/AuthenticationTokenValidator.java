@@ -1,18 +1,56 @@
 package com.dbhys.oauth.validator;
 
+import com.dbhys.oauth.metrics.AuthenticationMetrics;
+import com.dbhys.oauth.security.Authentication;
+import com.dbhys.oauth.security.ScopeDictionary;
 import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
 import com.nimbusds.jose.proc.BadJOSEException;
+import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
+import com.nimbusds.jose.proc.JOSEObjectTypeVerifier;
 import com.nimbusds.jose.proc.JWEKeySelector;
 import com.nimbusds.jose.proc.JWSKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jwt.*;
 import com.nimbusds.jwt.proc.BadJWTException;
 import com.nimbusds.jwt.proc.ConfigurableJWTProcessor;
 import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+
+import java.security.Key;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
 /**
  * Authentication token validator.
  * Created by Milas on 2019/3/19.
  */
-public class AuthenticationTokenValidator{
+public class AuthenticationTokenValidator implements TokenAuthenticator {
+
+    /**
+     * The default maximum length of a raw token, in characters.
+     */
+    public static final int DEFAULT_MAX_TOKEN_LENGTH = 16384;
+
+    /**
+     * The default claim of the granted scopes, delimited by spaces.
+     */
+    public static final String DEFAULT_SCOPE_CLAIM = "scope";
+
+    /**
+     * The default claim of the granted roles, a list.
+     */
+    public static final String DEFAULT_ROLES_CLAIM = "roles";
+
     /**
      * The expected token issuer.
      */
@@ -22,13 +60,95 @@ public class AuthenticationTokenValidator{
     /**
      * The JWS key selector.
      */
-    private final JWSKeySelector jwsKeySelector;
+    private final JWSKeySelector<SecurityContext> jwsKeySelector;
 
 
     /**
      * The JWE key selector.
      */
-    private final JWEKeySelector jweKeySelector;
+    private final JWEKeySelector<SecurityContext> jweKeySelector;
+
+
+    /**
+     * The JWT processor, configured once and shared by all validations.
+     */
+    private final ConfigurableJWTProcessor<SecurityContext> jwtProcessor;
+
+
+    /**
+     * The JWS header type verifier, of the JWT processor and the bulk
+     * validations.
+     */
+    private final JOSEObjectTypeVerifier<SecurityContext> jwsTypeVerifier =
+            new DefaultJOSEObjectTypeVerifier<>(JOSEObjectType.JWT, null);
+
+
+    /**
+     * The JWS verifier factory of the JWT processor.
+     */
+    private final CachingJWSVerifierFactory jwsVerifierFactory = new CachingJWSVerifierFactory();
+
+
+    /**
+     * The token claims verifier.
+     */
+    private TokenClaimsVerifier claimsVerifier;
+
+
+    /**
+     * The claims projector of the token payload.
+     */
+    private ClaimsProjector claimsProjector = new ClaimsProjector();
+
+
+    /**
+     * The maximum length of a raw token, in characters.
+     */
+    private int maxTokenLength = DEFAULT_MAX_TOKEN_LENGTH;
+
+
+    /**
+     * The pool of the bulk validations.
+     */
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+
+    /**
+     * The executor of the asynchronous validations, {@code null} for the
+     * shared default one.
+     */
+    private Executor asyncExecutor;
+
+
+    /**
+     * The cache of verified tokens, {@code null} if disabled.
+     */
+    private VerifiedTokenCache tokenCache;
+
+
+    /**
+     * The cache of recently rejected tokens, {@code null} if disabled.
+     */
+    private RejectedTokenCache rejectedTokenCache;
+
+
+    /**
+     * The authentication metrics, {@code null} if disabled.
+     */
+    private AuthenticationMetrics metrics;
+
+
+    /**
+     * The claim holding the granted scopes.
+     */
+    private String scopeClaim = DEFAULT_SCOPE_CLAIM;
+
+
+    /**
+     * The claim holding the granted roles.
+     */
+    private String rolesClaim = DEFAULT_ROLES_CLAIM;
+
     /**
      * Creates a new abstract JWT validator.
      *
@@ -40,7 +160,8 @@ public class AuthenticationTokenValidator{
      * @param jweKeySelector The key selector for JWE decryption,
      *                       {@code null} if encrypted tokens are not
      */
-    public AuthenticationTokenValidator(String expectedIssuer, JWSKeySelector jwsKeySelector, JWEKeySelector jweKeySelector) {
+    public AuthenticationTokenValidator(String expectedIssuer, JWSKeySelector<SecurityContext> jwsKeySelector,
+                                        JWEKeySelector<SecurityContext> jweKeySelector) {
         if (expectedIssuer == null) {
             throw new IllegalArgumentException("The expected token issuer must not be null");
         }
@@ -48,6 +169,328 @@ public class AuthenticationTokenValidator{
         // Optional
         this.jwsKeySelector = jwsKeySelector;
         this.jweKeySelector = jweKeySelector;
+
+        this.claimsVerifier = new TokenClaimsVerifier(expectedIssuer);
+
+        this.jwtProcessor = new DefaultJWTProcessor<>();
+        this.jwtProcessor.setJWSKeySelector(jwsKeySelector);
+        this.jwtProcessor.setJWEKeySelector(jweKeySelector);
+        this.jwtProcessor.setJWSTypeVerifier(jwsTypeVerifier);
+        this.jwtProcessor.setJWSVerifierFactory(jwsVerifierFactory);
+        this.jwtProcessor.setJWTClaimsSetVerifier(claimsVerifier);
+    }
+
+    /**
+     * Authenticates the specified raw signed token. A token that was
+     * verified before and hasn't expired is served from the token cache
+     * without parsing or signature verification.
+     *
+     * <p>Other tokens go through stages of increasing cost, so that
+     * malformed, foreign or expired tokens are rejected before the
+     * signature check:
+     *
+     * <ol>
+     *     <li>Token length and segment count.
+     *     <li>Header and payload decoding, accepted algorithm and type.
+     *     <li>Issuer, audience and time window of the claims.
+     *     <li>Key lookup by the header and signature check.
+     * </ol>
+     *
+     * @param token The raw token. Must not be {@code null}.
+     *
+     * @return The authentication of the token subject.
+     *
+     * @throws java.text.ParseException If the token couldn't be parsed.
+     * @throws BadJOSEException         If the token is invalid or expired.
+     * @throws JOSEException            If an internal JOSE exception was
+     *                                  encountered.
+     */
+    public Authentication authenticate(final String token)
+            throws java.text.ParseException, BadJOSEException, JOSEException {
+
+        return authenticate(token, 0);
+    }
+
+    /**
+     * Authenticates the raw signed token found at the specified offset of
+     * a credential, e.g. after the {@code Bearer} scheme of an
+     * {@code Authorization} header. The token is only extracted from the
+     * credential if it isn't served from the token cache.
+     *
+     * @param credential The credential. Must not be {@code null}.
+     * @param offset     The offset of the raw token in the credential.
+     *
+     * @return The authentication of the token subject.
+     *
+     * @throws java.text.ParseException If the token couldn't be parsed.
+     * @throws BadJOSEException         If the token is invalid or expired.
+     * @throws JOSEException            If an internal JOSE exception was
+     *                                  encountered.
+     */
+    @Override
+    public Authentication authenticate(final String credential, final int offset)
+            throws java.text.ParseException, BadJOSEException, JOSEException {
+
+        final long now = System.currentTimeMillis();
+        Authentication authentication = lookup(credential, offset, now);
+        if (authentication != null) {
+            return authentication;
+        }
+        return verifyAndCache(credential, offset, now);
+    }
+
+    /**
+     * Authenticates the raw signed token found at the specified offset of
+     * a credential without blocking the calling thread. Cached and recently
+     * rejected tokens complete right away on the calling thread, all other
+     * tokens are verified on the {@link #getAsyncExecutor() async
+     * executor}, where a JWK set retrieval may block.
+     *
+     * @param credential The credential. Must not be {@code null}.
+     * @param offset     The offset of the raw token in the credential.
+     *
+     * @return The authentication of the token subject, completed
+     *         exceptionally if the token is invalid.
+     */
+    @Override
+    public CompletionStage<Authentication> authenticateAsync(final String credential, final int offset) {
+        final long now = System.currentTimeMillis();
+        try {
+            Authentication authentication = lookup(credential, offset, now);
+            if (authentication != null) {
+                return CompletableFuture.completedFuture(authentication);
+            }
+        } catch (InvalidTokenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return verifyAndCache(credential, offset, System.currentTimeMillis());
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, getAsyncExecutor());
+    }
+
+    /**
+     * Looks the token up in the token caches.
+     *
+     * @return The cached authentication, {@code null} if the token has to
+     *         be verified.
+     *
+     * @throws InvalidTokenException If the token was recently rejected.
+     */
+    private Authentication lookup(final String credential, final int offset, final long now)
+            throws InvalidTokenException {
+
+        final VerifiedTokenCache cache = tokenCache;
+        if (cache != null) {
+            Authentication authentication = cache.get(credential, offset, now);
+            if (authentication != null) {
+                if (metrics != null) {
+                    metrics.recordCacheHit();
+                }
+                return authentication;
+            }
+        }
+
+        final RejectedTokenCache rejectedCache = rejectedTokenCache;
+        if (rejectedCache != null) {
+            RejectionReason reason = rejectedCache.get(credential, offset, now);
+            if (reason != null) {
+                if (metrics != null) {
+                    metrics.recordRejection(reason);
+                }
+                throw new InvalidTokenException(reason, "Recently rejected token");
+            }
+        }
+        return null;
+    }
+
+    private Authentication verifyAndCache(final String credential, final int offset, final long now)
+            throws BadJOSEException, JOSEException {
+
+        final String token = offset == 0 ? credential : credential.substring(offset);
+
+        final AuthenticationMetrics metrics = this.metrics;
+        TokenClaims claims;
+        try {
+            claims = verify(token, metrics);
+        } catch (InvalidTokenException e) {
+            final RejectedTokenCache rejectedCache = rejectedTokenCache;
+            if (rejectedCache != null) {
+                rejectedCache.put(credential, offset, e.getReason(), now);
+            }
+            if (metrics != null) {
+                metrics.recordRejection(e.getReason());
+            }
+            throw e;
+        } catch (BadJOSEException | JOSEException e) {
+            if (metrics != null) {
+                metrics.recordRejection(null);
+            }
+            throw e;
+        }
+        final long start = metrics == null ? 0L : System.nanoTime();
+        Authentication authentication;
+        try {
+            // Looked up once per token, cached authentications keep their bitsets
+            authentication = new Authentication(claims.getSubject(),
+                    claims.getStringClaim("name"),
+                    claims.getIssueTime(),
+                    claims.getExpirationTime(),
+                    claims,
+                    ScopeDictionary.getInstance().parse(claims.getClaim(scopeClaim)),
+                    ScopeDictionary.getInstance().parse(claims.getClaim(rolesClaim)));
+        } catch (com.dbhys.oauth.ParseException e) {
+            if (metrics != null) {
+                metrics.recordRejection(RejectionReason.MALFORMED);
+            }
+            throw new InvalidTokenException(RejectionReason.MALFORMED, e.getMessage(), e);
+        }
+        mark(metrics, AuthenticationMetrics.Phase.MAPPING, start);
+
+        final VerifiedTokenCache cache = tokenCache;
+        long expirationTime = claims.getExpirationTimeMillis();
+        if (cache != null && expirationTime != Long.MAX_VALUE) {
+            // Cached as long as the claims verifier accepts it, clock skew included
+            cache.put(token, authentication, claimsVerifier.getAcceptedUntil(expirationTime), now);
+        }
+        return authentication;
+    }
+
+    /**
+     * Runs the validation stages on a raw signed token.
+     *
+     * @param token   The raw token. Must not be {@code null}.
+     * @param metrics The metrics to time the stages with, {@code null} if
+     *                none.
+     *
+     * @return The projected claims of the verified token.
+     *
+     * @throws BadJOSEException If the token is invalid or expired.
+     * @throws JOSEException    If an internal JOSE exception was
+     *                          encountered.
+     */
+    private TokenClaims verify(final String token, final AuthenticationMetrics metrics)
+            throws BadJOSEException, JOSEException {
+
+        long time = metrics == null ? 0L : System.nanoTime();
+
+        // Stage 1: shape of the raw token
+        if (token.length() > maxTokenLength) {
+            throw new InvalidTokenException(RejectionReason.TOO_LONG, "The token exceeds the maximum length");
+        }
+        if (countSegments(token) != 3) {
+            throw new InvalidTokenException(RejectionReason.MALFORMED, "Signed JWT expected");
+        }
+        if (getJWSKeySelector() == null) {
+            throw new BadJWTException("Verification of signed JWTs not configured");
+        }
+
+        // Stage 2: header
+        SignedJWT jwt;
+        try {
+            jwt = SignedJWT.parse(token);
+        } catch (java.text.ParseException e) {
+            throw new InvalidTokenException(RejectionReason.MALFORMED, e.getMessage(), e);
+        }
+        JWSHeader header = jwt.getHeader();
+        checkAlgorithm(header);
+        checkType(header);
+        time = mark(metrics, AuthenticationMetrics.Phase.PARSE, time);
+
+        // Stage 3: claims, projected from the payload bytes without building
+        // a JSON tree, no key lookup needed
+        TokenClaims claims = claimsProjector.project(token, jwt.getParsedParts()[1].decode());
+        claimsVerifier.verify(claims);
+        time = mark(metrics, AuthenticationMetrics.Phase.CLAIMS, time);
+
+        // Stage 4: key and signature
+        List<? extends Key> keys = selectKeys(header);
+        time = mark(metrics, AuthenticationMetrics.Phase.KEY_SELECTION, time);
+        verifySignature(jwt, keys);
+        mark(metrics, AuthenticationMetrics.Phase.SIGNATURE, time);
+        return claims;
+    }
+
+    /**
+     * Rejects a token signed with an algorithm the key selector doesn't
+     * accept, without looking up any key.
+     */
+    void checkAlgorithm(final JWSHeader header)
+            throws InvalidTokenException {
+
+        if (jwsKeySelector instanceof CachingJWSKeySelector
+                && !((CachingJWSKeySelector<?>) jwsKeySelector).getExpectedJWSAlgorithms().contains(header.getAlgorithm())) {
+            throw new InvalidTokenException(RejectionReason.UNSUPPORTED_ALGORITHM, "Unsupported JWS algorithm");
+        }
+    }
+
+    /**
+     * Checks the {@code typ} header of a signed token, as the JWT
+     * processor does.
+     */
+    void checkType(final JWSHeader header)
+            throws InvalidTokenException {
+
+        try {
+            jwsTypeVerifier.verify(header.getType(), null);
+        } catch (BadJOSEException e) {
+            throw new InvalidTokenException(RejectionReason.MALFORMED, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Selects the candidate keys for a token header.
+     */
+    @SuppressWarnings("unchecked")
+    List<? extends Key> selectKeys(final JWSHeader header)
+            throws BadJOSEException, JOSEException {
+
+        List<? extends Key> keys = jwsKeySelector.selectJWSKeys(header, null);
+        if (keys == null || keys.isEmpty()) {
+            throw new InvalidTokenException(RejectionReason.UNKNOWN_KEY, "No matching key for the token");
+        }
+        return keys;
+    }
+
+    /**
+     * Checks the signature of a token against the candidate keys.
+     */
+    void verifySignature(final SignedJWT jwt, final List<? extends Key> keys)
+            throws BadJOSEException, JOSEException {
+
+        JWSHeader header = jwt.getHeader();
+        for (Key key : keys) {
+            JWSVerifier verifier = jwsVerifierFactory.createJWSVerifier(header, key);
+            if (verifier != null && jwt.verify(verifier)) {
+                return;
+            }
+        }
+        throw new InvalidTokenException(RejectionReason.INVALID_SIGNATURE, "Invalid token signature");
+    }
+
+    /**
+     * Records the end of a phase started at the specified time.
+     *
+     * @return The current time, the start of the next phase.
+     */
+    private static long mark(final AuthenticationMetrics metrics, final AuthenticationMetrics.Phase phase, final long start) {
+        if (metrics == null) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        metrics.recordPhase(phase, now - start);
+        return now;
+    }
+
+    private static int countSegments(final String token) {
+        int segments = 1;
+        for (int i = token.indexOf('.'); i >= 0; i = token.indexOf('.', i + 1)) {
+            segments++;
+        }
+        return segments;
     }
 
     /**
@@ -76,6 +519,59 @@ public class AuthenticationTokenValidator{
     }
 
 
+    /**
+     * Validates the specified token on the {@link #getAsyncExecutor() async
+     * executor}, like {@link #validate(JWT)}.
+     *
+     * @param jwt The token. Must not be {@code null}.
+     *
+     * @return The claims set of the verified token, completed
+     *         exceptionally if the token is invalid.
+     */
+    public CompletionStage<JWTClaimsSet> validateAsync(final JWT jwt) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return validate(jwt);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, getAsyncExecutor());
+    }
+
+
+    /**
+     * Validates a batch of tokens on the {@link #getForkJoinPool() fork/join
+     * pool}. Signed tokens are grouped by algorithm and key ID, so the key
+     * of each group is resolved once, and the groups are split across the
+     * pool workers.
+     *
+     * @param jwts The tokens. Must not be {@code null}.
+     *
+     * @return The result of each token, in the order of the collection.
+     */
+    public List<ValidationResult> validateAll(final Collection<? extends JWT> jwts) {
+        return BulkValidation.run(this, jwts, null);
+    }
+
+
+    /**
+     * Validates a batch of tokens like {@link #validateAll(Collection)},
+     * handing each result to the consumer as soon as it is known instead
+     * of collecting them.
+     *
+     * @param jwts     The tokens. Must not be {@code null}.
+     * @param consumer The result consumer, called concurrently from the
+     *                 pool workers and in no particular order. Must not be
+     *                 {@code null}.
+     */
+    public void validateAll(final Collection<? extends JWT> jwts, final Consumer<? super ValidationResult> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("The result consumer must not be null");
+        }
+        BulkValidation.run(this, jwts, consumer);
+    }
+
+
     /**
      * Verifies the specified unsecured (plain) ID token.
      *
@@ -102,8 +598,7 @@ public class AuthenticationTokenValidator{
             throw new BadJWTException(e.getMessage(), e);
         }
 
-        //JWTClaimsSetVerifier<?> claimsVerifier = new JWTTokenClaimsVerifier(...));
-        //claimsVerifier.verify(jwtClaimsSet, null);
+        claimsVerifier.verify(jwtClaimsSet, null);
         return jwtClaimsSet;
     }
 
@@ -126,9 +621,6 @@ public class AuthenticationTokenValidator{
             throw new BadJWTException("Verification of signed JWTs not configured");
         }
 
-        ConfigurableJWTProcessor<?> jwtProcessor = new DefaultJWTProcessor();
-        jwtProcessor.setJWSKeySelector(getJWSKeySelector());
-        //jwtProcessor.setJWTClaimsSetVerifier());
         return jwtProcessor.process(jwt, null);
     }
 
@@ -154,21 +646,26 @@ public class AuthenticationTokenValidator{
             throw new BadJWTException("Verification of signed JWTs not configured");
         }
 
-        ConfigurableJWTProcessor<?> jwtProcessor = new DefaultJWTProcessor();
-        jwtProcessor.setJWSKeySelector(getJWSKeySelector());
-        jwtProcessor.setJWEKeySelector(getJWEKeySelector());
-        //jwtProcessor.setJWTClaimsSetVerifier());
-
         return jwtProcessor.process(jwt, null);
     }
 
+    /**
+     * Returns the expected token issuer.
+     *
+     * @return The expected issuer.
+     */
+    public String getExpectedIssuer() {
+        return expectedIssuer;
+    }
+
+
     /**
      * Returns the configured JWS key selector for signed token
      * verification.
      *
      * @return The JWS key selector, {@code null} if none.
      */
-    public JWSKeySelector getJWSKeySelector() {
+    public JWSKeySelector<SecurityContext> getJWSKeySelector() {
         return jwsKeySelector;
     }
 
@@ -179,8 +676,255 @@ public class AuthenticationTokenValidator{
      *
      * @return The JWE key selector, {@code null}.
      */
-    public JWEKeySelector getJWEKeySelector() {
+    public JWEKeySelector<SecurityContext> getJWEKeySelector() {
         return jweKeySelector;
     }
 
+
+    /**
+     * Returns the cache of verified tokens.
+     *
+     * @return The token cache, {@code null} if disabled.
+     */
+    public VerifiedTokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+
+    /**
+     * Sets the cache of verified tokens.
+     *
+     * @param tokenCache The token cache, {@code null} to disable caching.
+     */
+    public void setTokenCache(VerifiedTokenCache tokenCache) {
+        this.tokenCache = tokenCache;
+    }
+
+
+    /**
+     * Returns the cache of recently rejected tokens.
+     *
+     * @return The rejected token cache, {@code null} if disabled.
+     */
+    public RejectedTokenCache getRejectedTokenCache() {
+        return rejectedTokenCache;
+    }
+
+
+    /**
+     * Sets the cache of recently rejected tokens. Tokens rejected for an
+     * {@link InvalidTokenException} are then short-circuited with the same
+     * reason until the rejection expires.
+     *
+     * @param rejectedTokenCache The rejected token cache, {@code null} to
+     *                           disable it.
+     */
+    public void setRejectedTokenCache(RejectedTokenCache rejectedTokenCache) {
+        this.rejectedTokenCache = rejectedTokenCache;
+    }
+
+
+    /**
+     * Returns the authentication metrics.
+     *
+     * @return The metrics, {@code null} if disabled.
+     */
+    public AuthenticationMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    /**
+     * Sets the authentication metrics, timing the validation stages and
+     * counting the cache hits and rejections.
+     *
+     * @param metrics The metrics, {@code null} to disable them.
+     */
+    public void setMetrics(AuthenticationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+
+    /**
+     * Returns the token claims verifier.
+     *
+     * @return The claims verifier.
+     */
+    public TokenClaimsVerifier getClaimsVerifier() {
+        return claimsVerifier;
+    }
+
+
+    /**
+     * Sets the token claims verifier, e.g. to check the audience.
+     *
+     * @param claimsVerifier The claims verifier. Must not be {@code null}.
+     */
+    public void setClaimsVerifier(TokenClaimsVerifier claimsVerifier) {
+        if (claimsVerifier == null) {
+            throw new IllegalArgumentException("The claims verifier must not be null");
+        }
+        this.claimsVerifier = claimsVerifier;
+        this.jwtProcessor.setJWTClaimsSetVerifier(claimsVerifier);
+    }
+
+
+    /**
+     * Returns the claims projector of the token payload.
+     *
+     * @return The claims projector.
+     */
+    public ClaimsProjector getClaimsProjector() {
+        return claimsProjector;
+    }
+
+
+    /**
+     * Sets the claims projector of the token payload, e.g. to project
+     * claims the application reads on every request.
+     *
+     * @param claimsProjector The claims projector. Must not be
+     *                        {@code null}.
+     */
+    public void setClaimsProjector(ClaimsProjector claimsProjector) {
+        if (claimsProjector == null) {
+            throw new IllegalArgumentException("The claims projector must not be null");
+        }
+        this.claimsProjector = claimsProjector;
+    }
+
+
+    /**
+     * Returns the pool the bulk validations run on.
+     *
+     * @return The fork/join pool, the common pool by default.
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+
+    /**
+     * Sets the pool the bulk validations run on.
+     *
+     * @param forkJoinPool The fork/join pool. Must not be {@code null}.
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        if (forkJoinPool == null) {
+            throw new IllegalArgumentException("The fork/join pool must not be null");
+        }
+        this.forkJoinPool = forkJoinPool;
+    }
+
+
+    /**
+     * Returns the executor the asynchronous validations run on.
+     *
+     * @return The executor.
+     */
+    public Executor getAsyncExecutor() {
+        Executor executor = asyncExecutor;
+        return executor != null ? executor : DefaultAsyncExecutor.INSTANCE;
+    }
+
+
+    /**
+     * Sets the executor the asynchronous validations run on. It must
+     * tolerate tasks blocking on a JWK set retrieval, by default a shared
+     * pool of daemon threads is used.
+     *
+     * @param asyncExecutor The executor, {@code null} for the default one.
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+
+    /**
+     * Returns the claim holding the granted scopes.
+     *
+     * @return The claim name.
+     */
+    public String getScopeClaim() {
+        return scopeClaim;
+    }
+
+
+    /**
+     * Sets the claim holding the granted scopes, a string delimited by
+     * spaces or a list. Project it with the
+     * {@link #setClaimsProjector claims projector} to keep the payload from
+     * being parsed.
+     *
+     * @param scopeClaim The claim name. Must not be {@code null}.
+     */
+    public void setScopeClaim(String scopeClaim) {
+        if (scopeClaim == null) {
+            throw new IllegalArgumentException("The scope claim must not be null");
+        }
+        this.scopeClaim = scopeClaim;
+    }
+
+
+    /**
+     * Returns the claim holding the granted roles.
+     *
+     * @return The claim name.
+     */
+    public String getRolesClaim() {
+        return rolesClaim;
+    }
+
+
+    /**
+     * Sets the claim holding the granted roles, a list or a string
+     * delimited by spaces.
+     *
+     * @param rolesClaim The claim name. Must not be {@code null}.
+     */
+    public void setRolesClaim(String rolesClaim) {
+        if (rolesClaim == null) {
+            throw new IllegalArgumentException("The roles claim must not be null");
+        }
+        this.rolesClaim = rolesClaim;
+    }
+
+
+    /**
+     * Returns the maximum length of a raw token.
+     *
+     * @return The maximum length, in characters.
+     */
+    public int getMaxTokenLength() {
+        return maxTokenLength;
+    }
+
+
+    /**
+     * Sets the maximum length of a raw token. Longer tokens are rejected
+     * before they are decoded.
+     *
+     * @param maxTokenLength The maximum length, in characters. Must be
+     *                       positive.
+     */
+    public void setMaxTokenLength(int maxTokenLength) {
+        if (maxTokenLength <= 0) {
+            throw new IllegalArgumentException("The maximum token length must be positive");
+        }
+        this.maxTokenLength = maxTokenLength;
+    }
+
+    /**
+     * Created on first use of the asynchronous API only.
+     */
+    private static final class DefaultAsyncExecutor {
+
+        private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+        private static final Executor INSTANCE = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "dbhys-oauth-validator-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 }
@@ -0,0 +1,211 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import java.security.Key;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Fork/join validation of a batch of tokens. Signed tokens are grouped by
+ * (alg, kid), each group resolves its keys once and is then split in
+ * ranges that the pool workers steal from each other, so an uneven batch
+ * where most tokens share one key still spreads over all cores.
+ */
+final class BulkValidation {
+
+    /**
+     * Tokens verified by one task before it stops splitting.
+     */
+    private static final int THRESHOLD = 16;
+
+    private final AuthenticationTokenValidator validator;
+
+    private final ValidationResult[] results;
+
+    private final Consumer<? super ValidationResult> consumer;
+
+    private BulkValidation(AuthenticationTokenValidator validator, int size, Consumer<? super ValidationResult> consumer) {
+        this.validator = validator;
+        this.results = new ValidationResult[size];
+        this.consumer = consumer;
+    }
+
+    static List<ValidationResult> run(final AuthenticationTokenValidator validator,
+                                      final Collection<? extends JWT> jwts,
+                                      final Consumer<? super ValidationResult> consumer) {
+        if (jwts == null) {
+            throw new IllegalArgumentException("The tokens must not be null");
+        }
+        if (jwts.isEmpty()) {
+            return Collections.emptyList();
+        }
+        BulkValidation bulk = new BulkValidation(validator, jwts.size(), consumer);
+
+        Map<Map.Entry<JWSAlgorithm, String>, List<Item>> groups = new LinkedHashMap<>();
+        List<Item> others = new ArrayList<>();
+        int index = 0;
+        for (JWT jwt : jwts) {
+            Item item = new Item(index++, jwt);
+            if (jwt instanceof SignedJWT) {
+                JWSHeader header = ((SignedJWT) jwt).getHeader();
+                groups.computeIfAbsent(new AbstractMap.SimpleImmutableEntry<>(header.getAlgorithm(), header.getKeyID()),
+                        k -> new ArrayList<>()).add(item);
+            } else {
+                others.add(item);
+            }
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(groups.size() + 1);
+        for (List<Item> group : groups.values()) {
+            tasks.add(bulk.new GroupTask(group.toArray(new Item[0])));
+        }
+        if (!others.isEmpty()) {
+            tasks.add(bulk.new RangeTask(others.toArray(new Item[0]), null, null, 0, others.size()));
+        }
+        validator.getForkJoinPool().invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        return Arrays.asList(bulk.results);
+    }
+
+    private void publish(final ValidationResult result) {
+        results[result.getIndex()] = result;
+        if (consumer != null) {
+            consumer.accept(result);
+        }
+    }
+
+    private static final class Item {
+
+        private final int index;
+
+        private final JWT jwt;
+
+        private Item(int index, JWT jwt) {
+            this.index = index;
+            this.jwt = jwt;
+        }
+    }
+
+    /**
+     * Resolves the keys of a group of signed tokens, then verifies them.
+     */
+    private final class GroupTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Item[] items;
+
+        private GroupTask(Item[] items) {
+            this.items = items;
+        }
+
+        @Override
+        protected void compute() {
+            JWSHeader header = ((SignedJWT) items[0].jwt).getHeader();
+            List<? extends Key> keys;
+            try {
+                validator.checkAlgorithm(header);
+                keys = validator.selectKeys(header);
+            } catch (Exception e) {
+                for (Item item : items) {
+                    publish(ValidationResult.failure(item.index, item.jwt, e));
+                }
+                return;
+            }
+            new RangeTask(items, keys, null, 0, items.length).compute();
+        }
+    }
+
+    /**
+     * Verifies a range of tokens, splitting it while it's above the
+     * threshold.
+     */
+    private final class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Item[] items;
+
+        private final List<? extends Key> keys;
+
+        private final RangeTask next;
+
+        private final int from;
+
+        private final int to;
+
+        /**
+         * @param keys The keys of the group, {@code null} for tokens that
+         *             aren't grouped and are validated one by one.
+         */
+        private RangeTask(Item[] items, List<? extends Key> keys, RangeTask next, int from, int to) {
+            this.items = items;
+            this.keys = keys;
+            this.next = next;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int hi = to;
+            RangeTask forked = null;
+            // Fork off the upper halves, keep the lower part
+            while (hi - from > THRESHOLD) {
+                int mid = (from + hi) >>> 1;
+                forked = new RangeTask(items, keys, forked, mid, hi);
+                forked.fork();
+                hi = mid;
+            }
+            for (int i = from; i < hi; i++) {
+                publish(validate(items[i]));
+            }
+            for (RangeTask task = forked; task != null; task = task.next) {
+                task.join();
+            }
+        }
+
+        private ValidationResult validate(final Item item) {
+            try {
+                JWTClaimsSet claimsSet;
+                if (keys == null) {
+                    claimsSet = validator.validate(item.jwt);
+                } else {
+                    SignedJWT jwt = (SignedJWT) item.jwt;
+                    // Per token, the type isn't part of the group key
+                    validator.checkType(jwt.getHeader());
+                    try {
+                        claimsSet = jwt.getJWTClaimsSet();
+                    } catch (java.text.ParseException e) {
+                        throw new InvalidTokenException(RejectionReason.MALFORMED, e.getMessage(), e);
+                    }
+                    validator.getClaimsVerifier().verify(claimsSet, null);
+                    validator.verifySignature(jwt, keys);
+                }
+                return ValidationResult.success(item.index, item.jwt, claimsSet);
+            } catch (Exception e) {
+                return ValidationResult.failure(item.index, item.jwt, e);
+            }
+        }
+    }
+}
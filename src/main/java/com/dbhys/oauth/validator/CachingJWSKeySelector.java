@@ -0,0 +1,237 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.OctetSequenceKey;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JWS key selector keeping ready-built verifiers per (kid, alg), for the
+ * RSA, EC, EdDSA and HMAC algorithm families.
+ *
+ * <p>The JWK source is still consulted for every selection, which is a
+ * cheap lookup in its cached JWK set. The verifiers are only rebuilt when
+ * the matching JWKs are no longer the same instances, i.e. after the JWK
+ * set was refreshed, and the cache entry is then replaced as a whole.
+ * {@link #clear() Clear} the selector when the JWK set changed, so the
+ * verifiers of rotated-out keys don't pile up.
+ * Use with {@link CachingJWSVerifierFactory}.
+ *
+ * @param <C> The security context type.
+ */
+public class CachingJWSKeySelector<C extends SecurityContext> implements JWSKeySelector<C> {
+
+    private volatile Set<JWSAlgorithm> jwsAlgs;
+
+    private final JWKSource<C> jwkSource;
+
+    private final ConcurrentHashMap<KeyId, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new caching JWS key selector.
+     *
+     * @param jwsAlg    The expected JWS algorithm. Must not be {@code null}.
+     * @param jwkSource The JWK source. Must not be {@code null}.
+     */
+    public CachingJWSKeySelector(final JWSAlgorithm jwsAlg, final JWKSource<C> jwkSource) {
+        this(Collections.singleton(jwsAlg), jwkSource);
+    }
+
+    /**
+     * Creates a new caching JWS key selector.
+     *
+     * @param jwsAlgs   The accepted JWS algorithms, empty to accept none
+     *                  until {@link #setExpectedJWSAlgorithms set}, e.g.
+     *                  before the discovery metadata was retrieved. Must
+     *                  not be {@code null}.
+     * @param jwkSource The JWK source. Must not be {@code null}.
+     */
+    public CachingJWSKeySelector(final Set<JWSAlgorithm> jwsAlgs, final JWKSource<C> jwkSource) {
+        if (jwsAlgs == null) {
+            throw new IllegalArgumentException("The JWS algorithms must not be null");
+        }
+        if (jwkSource == null) {
+            throw new IllegalArgumentException("The JWK source must not be null");
+        }
+        this.jwsAlgs = Collections.unmodifiableSet(jwsAlgs);
+        this.jwkSource = jwkSource;
+    }
+
+    @Override
+    public List<? extends Key> selectJWSKeys(final JWSHeader header, final C context)
+            throws KeySourceException {
+
+        if (!jwsAlgs.contains(header.getAlgorithm())) {
+            return Collections.emptyList();
+        }
+        JWKMatcher jwkMatcher = JWKMatcher.forJWSHeader(header);
+        if (jwkMatcher == null) {
+            return Collections.emptyList();
+        }
+        List<JWK> jwks = jwkSource.get(new JWKSelector(jwkMatcher), context);
+        if (jwks.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        KeyId keyId = new KeyId(header.getKeyID(), header.getAlgorithm());
+        Entry entry = entries.get(keyId);
+        if (entry != null && entry.isFor(jwks)) {
+            return entry.keys;
+        }
+        entry = new Entry(jwks);
+        entries.put(keyId, entry);
+        return entry.keys;
+    }
+
+    /**
+     * Returns the accepted JWS algorithms.
+     *
+     * @return The JWS algorithms.
+     */
+    public Set<JWSAlgorithm> getExpectedJWSAlgorithms() {
+        return jwsAlgs;
+    }
+
+    /**
+     * Sets the accepted JWS algorithms.
+     *
+     * @param jwsAlgs The JWS algorithms. Must not be {@code null}.
+     */
+    public void setExpectedJWSAlgorithms(final Set<JWSAlgorithm> jwsAlgs) {
+        if (jwsAlgs == null) {
+            throw new IllegalArgumentException("The JWS algorithms must not be null");
+        }
+        this.jwsAlgs = Collections.unmodifiableSet(new LinkedHashSet<>(jwsAlgs));
+    }
+
+    /**
+     * Returns the JWK source.
+     *
+     * @return The JWK source.
+     */
+    public JWKSource<C> getJWKSource() {
+        return jwkSource;
+    }
+
+    /**
+     * Drops all prepared verifiers, e.g. when the JWK set changed.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private static JWSVerifier createVerifier(final JWK jwk)
+            throws JOSEException {
+
+        if (jwk instanceof RSAKey) {
+            return new RSASSAVerifier((RSAKey) jwk);
+        } else if (jwk instanceof ECKey) {
+            return new ECDSAVerifier((ECKey) jwk);
+        } else if (jwk instanceof OctetSequenceKey) {
+            return new MACVerifier((OctetSequenceKey) jwk);
+        } else if (jwk instanceof OctetKeyPair) {
+            return new EdDSAVerifier((OctetKeyPair) jwk);
+        }
+        return null;
+    }
+
+    private static Key toKey(final JWK jwk)
+            throws JOSEException {
+
+        if (jwk instanceof RSAKey) {
+            return ((RSAKey) jwk).toPublicKey();
+        } else if (jwk instanceof ECKey) {
+            return ((ECKey) jwk).toPublicKey();
+        } else if (jwk instanceof OctetKeyPair) {
+            return EdDSAVerifier.toPublicKey((OctetKeyPair) jwk);
+        }
+        return ((OctetSequenceKey) jwk).toSecretKey();
+    }
+
+    private static final class KeyId {
+
+        private final String kid;
+
+        private final JWSAlgorithm alg;
+
+        private KeyId(String kid, JWSAlgorithm alg) {
+            this.kid = kid;
+            this.alg = alg;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof KeyId)) {
+                return false;
+            }
+            KeyId other = (KeyId) o;
+            return Objects.equals(kid, other.kid) && alg.equals(other.alg);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(kid) + alg.hashCode();
+        }
+    }
+
+    private static final class Entry {
+
+        private final List<JWK> jwks;
+
+        private final List<VerifierKey> keys;
+
+        private Entry(List<JWK> jwks) {
+            List<VerifierKey> keys = new ArrayList<>(jwks.size());
+            for (JWK jwk : jwks) {
+                try {
+                    JWSVerifier verifier = createVerifier(jwk);
+                    if (verifier != null) {
+                        keys.add(new VerifierKey(jwk, toKey(jwk), verifier));
+                    }
+                } catch (JOSEException e) {
+                    // Skip keys that can't verify the algorithm
+                }
+            }
+            this.jwks = new ArrayList<>(jwks);
+            this.keys = Collections.unmodifiableList(keys);
+        }
+
+        private boolean isFor(List<JWK> current) {
+            if (current.size() != jwks.size()) {
+                return false;
+            }
+            for (int i = 0; i < current.size(); i++) {
+                if (current.get(i) != jwks.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
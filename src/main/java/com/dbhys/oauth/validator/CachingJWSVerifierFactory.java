@@ -0,0 +1,42 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.jca.JCAContext;
+import com.nimbusds.jose.proc.JWSVerifierFactory;
+
+import java.security.Key;
+import java.util.Set;
+
+/**
+ * JWS verifier factory returning the verifiers prepared by
+ * {@link CachingJWSKeySelector} instead of building a new one for every
+ * token. Keys from other selectors are passed to the default factory.
+ */
+public class CachingJWSVerifierFactory implements JWSVerifierFactory {
+
+    private final DefaultJWSVerifierFactory delegate = new DefaultJWSVerifierFactory();
+
+    @Override
+    public JWSVerifier createJWSVerifier(final JWSHeader header, final Key key)
+            throws JOSEException {
+
+        if (key instanceof VerifierKey) {
+            return ((VerifierKey) key).getVerifier();
+        }
+        return delegate.createJWSVerifier(header, key);
+    }
+
+    @Override
+    public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+        return delegate.supportedJWSAlgorithms();
+    }
+
+    @Override
+    public JCAContext getJCAContext() {
+        return delegate.getJCAContext();
+    }
+}
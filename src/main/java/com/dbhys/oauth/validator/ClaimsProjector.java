@@ -0,0 +1,471 @@
+package com.dbhys.oauth.validator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pulls a fixed set of top-level claims out of a JWT payload in one pass
+ * over the decoded bytes, without building a JSON tree. The values of other
+ * claims, e.g. large {@code groups} arrays, are skipped over. They remain
+ * available through the lazily parsed {@link TokenClaims#toJSONObject()}.
+ *
+ * <p>Projected values are strings, {@code Long} or {@code Double} numbers,
+ * booleans and lists of those. Objects, and arrays holding objects, are not
+ * projected and are read from the lazily parsed payload instead.
+ *
+ * <p>Instances are immutable and thread-safe.
+ */
+public final class ClaimsProjector {
+
+    /**
+     * The claims the validator and {@link com.dbhys.oauth.security.Authentication}
+     * need, always projected.
+     */
+    public static final List<String> REGISTERED_CLAIMS = Collections.unmodifiableList(
+            Arrays.asList("iss", "sub", "aud", "exp", "nbf", "iat", "name"));
+
+    /**
+     * Marks a claim present in the payload with a value that isn't
+     * projected.
+     */
+    static final Object UNPROJECTED = new Object();
+
+    /**
+     * The maximum nesting depth of projected arrays, so a crafted payload
+     * can't exhaust the stack before the signature is checked.
+     */
+    static final int MAX_DEPTH = 32;
+
+    private final String[] names;
+
+    private final byte[][] nameBytes;
+
+    /**
+     * Creates a new claims projector for the registered claims.
+     */
+    public ClaimsProjector() {
+        this(Collections.emptySet());
+    }
+
+    /**
+     * Creates a new claims projector.
+     *
+     * @param claims Claims to project besides the
+     *               {@link #REGISTERED_CLAIMS registered ones}. May be
+     *               {@code null}.
+     */
+    public ClaimsProjector(final Collection<String> claims) {
+        Set<String> all = new LinkedHashSet<>(REGISTERED_CLAIMS);
+        if (claims != null) {
+            all.addAll(claims);
+        }
+        this.names = all.toArray(new String[0]);
+        this.nameBytes = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            nameBytes[i] = names[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Returns the names of the projected claims.
+     *
+     * @return The claim names.
+     */
+    public List<String> getClaimNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    int indexOf(final String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Projects the claims of a decoded JWT payload.
+     *
+     * @param token   The raw token the payload belongs to, kept for the
+     *                lazily parsed view. Must not be {@code null}.
+     * @param payload The decoded payload. Must not be {@code null}.
+     *
+     * @return The projected claims.
+     *
+     * @throws InvalidTokenException If the payload isn't a JSON object or
+     *                               a registered claim has the wrong type.
+     */
+    public TokenClaims project(final String token, final byte[] payload)
+            throws InvalidTokenException {
+
+        Object[] values = new Object[names.length];
+        try {
+            new Scanner(payload).readObject(values, -1);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidTokenException(RejectionReason.MALFORMED, "Invalid token payload", e);
+        }
+        checkRegisteredTypes(values);
+        return new TokenClaims(this, token, values);
+    }
+
+    /**
+     * Reads the issuer claim of a decoded JWT payload, scanning no further
+     * than the claim. Used to route a token to the validator of its issuer,
+     * which then checks the issuer of the fully projected claims.
+     *
+     * @param payload The decoded payload. Must not be {@code null}.
+     *
+     * @return The issuer, {@code null} if not specified.
+     *
+     * @throws InvalidTokenException If the payload isn't a JSON object or
+     *                               the issuer isn't a string.
+     */
+    String projectIssuer(final byte[] payload)
+            throws InvalidTokenException {
+
+        Object[] values = new Object[names.length];
+        try {
+            new Scanner(payload).readObject(values, 0);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidTokenException(RejectionReason.MALFORMED, "Invalid token payload", e);
+        }
+        if (values[0] != null && !(values[0] instanceof String)) {
+            throw new InvalidTokenException(RejectionReason.MALFORMED, "Unexpected type of the iss claim");
+        }
+        return (String) values[0];
+    }
+
+    private void checkRegisteredTypes(final Object[] values)
+            throws InvalidTokenException {
+
+        // Same order as REGISTERED_CLAIMS
+        for (int i = 0; i < REGISTERED_CLAIMS.size(); i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            boolean valid;
+            switch (i) {
+                case 2:
+                    valid = value instanceof String || isStringList(value);
+                    break;
+                case 3:
+                case 4:
+                case 5:
+                    valid = value instanceof Number;
+                    break;
+                default:
+                    valid = value instanceof String;
+            }
+            if (!valid) {
+                throw new InvalidTokenException(RejectionReason.MALFORMED,
+                        "Unexpected type of the " + names[i] + " claim");
+            }
+        }
+    }
+
+    private static boolean isStringList(final Object value) {
+        if (!(value instanceof List)) {
+            return false;
+        }
+        for (Object item : (List<?>) value) {
+            if (!(item instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Single-use cursor over the payload bytes.
+     */
+    private final class Scanner {
+
+        private final byte[] b;
+
+        private int pos;
+
+        private Scanner(byte[] b) {
+            this.b = b;
+        }
+
+        /**
+         * Reads the projected claims of the object.
+         *
+         * @param stopAt The index of the claim to stop after, -1 to read
+         *               the whole object.
+         */
+        private void readObject(final Object[] values, final int stopAt) {
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (b[pos] == '}') {
+                pos++;
+                return;
+            }
+            while (true) {
+                skipWhitespace();
+                expect('"');
+                int keyStart = pos;
+                boolean escaped = skipStringBody();
+                int keyEnd = pos - 1;
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+
+                int index = match(keyStart, keyEnd, escaped);
+                if (index >= 0) {
+                    values[index] = readValue(0);
+                    if (index == stopAt) {
+                        return;
+                    }
+                } else {
+                    skipValue();
+                }
+
+                skipWhitespace();
+                byte c = b[pos++];
+                if (c == '}') {
+                    return;
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("Expected , or }");
+                }
+            }
+        }
+
+        private int match(final int start, final int end, final boolean escaped) {
+            if (escaped) {
+                return indexOf(unescape(new String(b, start, end - start, StandardCharsets.UTF_8)));
+            }
+            int length = end - start;
+            for (int i = 0; i < nameBytes.length; i++) {
+                byte[] name = nameBytes[i];
+                if (name.length == length && regionEquals(name, start)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean regionEquals(final byte[] name, final int start) {
+            for (int i = 0; i < name.length; i++) {
+                if (b[start + i] != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Object readValue(final int depth) {
+            byte c = b[pos];
+            switch (c) {
+                case '"':
+                    pos++;
+                    return readStringBody();
+                case '[':
+                    return readArray(depth + 1);
+                case '{':
+                    skipValue();
+                    return UNPROJECTED;
+                case 't':
+                    expectLiteral("true");
+                    return Boolean.TRUE;
+                case 'f':
+                    expectLiteral("false");
+                    return Boolean.FALSE;
+                case 'n':
+                    expectLiteral("null");
+                    return null;
+                default:
+                    return readNumber();
+            }
+        }
+
+        private Object readArray(final int depth) {
+            if (depth > MAX_DEPTH) {
+                throw new IllegalArgumentException("Nesting too deep");
+            }
+            int start = pos;
+            expect('[');
+            List<Object> list = new ArrayList<>();
+            skipWhitespace();
+            if (b[pos] == ']') {
+                pos++;
+                return Collections.emptyList();
+            }
+            while (true) {
+                skipWhitespace();
+                Object item = readValue(depth);
+                if (item == UNPROJECTED) {
+                    pos = start;
+                    skipValue();
+                    return UNPROJECTED;
+                }
+                list.add(item);
+                skipWhitespace();
+                byte c = b[pos++];
+                if (c == ']') {
+                    // Shared by every request presenting the token
+                    return Collections.unmodifiableList(list);
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("Expected , or ]");
+                }
+            }
+        }
+
+        private Object readNumber() {
+            int start = pos;
+            boolean integral = true;
+            while (pos < b.length) {
+                byte c = b[pos];
+                if (c >= '0' && c <= '9' || c == '-') {
+                    pos++;
+                } else if (c == '.' || c == 'e' || c == 'E' || c == '+') {
+                    integral = false;
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (pos == start) {
+                throw new IllegalArgumentException("Unexpected character");
+            }
+            String number = new String(b, start, pos - start, StandardCharsets.US_ASCII);
+            if (integral) {
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    // Beyond long, fall through
+                }
+            }
+            return Double.parseDouble(number);
+        }
+
+        private String readStringBody() {
+            int start = pos;
+            boolean escaped = skipStringBody();
+            String s = new String(b, start, pos - 1 - start, StandardCharsets.UTF_8);
+            return escaped ? unescape(s) : s;
+        }
+
+        /**
+         * Moves past the closing quote of a string whose opening quote was
+         * consumed.
+         *
+         * @return {@code true} if the string contains escapes.
+         */
+        private boolean skipStringBody() {
+            boolean escaped = false;
+            while (true) {
+                byte c = b[pos++];
+                if (c == '"') {
+                    return escaped;
+                }
+                if (c == '\\') {
+                    escaped = true;
+                    pos++;
+                }
+            }
+        }
+
+        private void skipValue() {
+            byte c = b[pos];
+            if (c == '"') {
+                pos++;
+                skipStringBody();
+                return;
+            }
+            if (c != '{' && c != '[') {
+                // Number or literal
+                while (pos < b.length) {
+                    c = b[pos];
+                    if (c == ',' || c == '}' || c == ']' || isWhitespace(c)) {
+                        return;
+                    }
+                    pos++;
+                }
+                return;
+            }
+            int depth = 0;
+            while (true) {
+                c = b[pos++];
+                if (c == '"') {
+                    skipStringBody();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void expectLiteral(final String literal) {
+            for (int i = 0; i < literal.length(); i++) {
+                expect(literal.charAt(i));
+            }
+        }
+
+        private void expect(final char expected) {
+            if (b[pos++] != expected) {
+                throw new IllegalArgumentException("Expected " + expected);
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < b.length && isWhitespace(b[pos])) {
+                pos++;
+            }
+        }
+    }
+
+    private static boolean isWhitespace(final byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static String unescape(final String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = s.charAt(++i);
+            switch (e) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default:
+                    sb.append(e);
+            }
+        }
+        return sb.toString();
+    }
+}
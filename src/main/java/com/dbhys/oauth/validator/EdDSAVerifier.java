@@ -0,0 +1,114 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jose.CriticalHeaderParamsAware;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.impl.CriticalHeaderParamsDeferral;
+import com.nimbusds.jose.jca.JCAContext;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.util.Base64URL;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * EdDSA ({@code Ed25519} and {@code Ed448}) JWS verifier on the EdDSA
+ * support of the JDK, so no extra crypto library is needed. Like the
+ * verifiers of the JOSE library, it rejects headers with unrecognized
+ * critical parameters.
+ */
+final class EdDSAVerifier implements JWSVerifier, CriticalHeaderParamsAware {
+
+    // DER prefixes of the X.509 SubjectPublicKeyInfo of the raw public keys
+    private static final byte[] ED25519_PREFIX = {
+            0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00};
+
+    private static final byte[] ED448_PREFIX = {
+            0x30, 0x43, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x71, 0x03, 0x3a, 0x00};
+
+    private final PublicKey publicKey;
+
+    private final JCAContext jcaContext = new JCAContext();
+
+    private final CriticalHeaderParamsDeferral critPolicy = new CriticalHeaderParamsDeferral();
+
+    EdDSAVerifier(final OctetKeyPair publicJWK)
+            throws JOSEException {
+
+        this.publicKey = toPublicKey(publicJWK);
+    }
+
+    static PublicKey toPublicKey(final OctetKeyPair publicJWK)
+            throws JOSEException {
+
+        byte[] prefix;
+        if (Curve.Ed25519.equals(publicJWK.getCurve())) {
+            prefix = ED25519_PREFIX;
+        } else if (Curve.Ed448.equals(publicJWK.getCurve())) {
+            prefix = ED448_PREFIX;
+        } else {
+            throw new JOSEException("Unsupported EdDSA curve: " + publicJWK.getCurve());
+        }
+        byte[] x = publicJWK.getDecodedX();
+        byte[] encoded = new byte[prefix.length + x.length];
+        System.arraycopy(prefix, 0, encoded, 0, prefix.length);
+        System.arraycopy(x, 0, encoded, prefix.length, x.length);
+        try {
+            return KeyFactory.getInstance("EdDSA").generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (GeneralSecurityException e) {
+            throw new JOSEException("Invalid EdDSA public key: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean verify(final JWSHeader header, final byte[] signingInput, final Base64URL signature)
+            throws JOSEException {
+
+        if (!JWSAlgorithm.EdDSA.equals(header.getAlgorithm())) {
+            throw new JOSEException("Unsupported JWS algorithm: " + header.getAlgorithm());
+        }
+        if (!critPolicy.headerPasses(header)) {
+            return false;
+        }
+        try {
+            // Signature instances aren't thread-safe
+            Signature verifier = Signature.getInstance("EdDSA");
+            verifier.initVerify(publicKey);
+            verifier.update(signingInput);
+            return verifier.verify(signature.decode());
+        } catch (SignatureException e) {
+            return false;
+        } catch (GeneralSecurityException e) {
+            throw new JOSEException("EdDSA verification failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Set<String> getProcessedCriticalHeaderParams() {
+        return critPolicy.getProcessedCriticalHeaderParams();
+    }
+
+    @Override
+    public Set<String> getDeferredCriticalHeaderParams() {
+        return critPolicy.getDeferredCriticalHeaderParams();
+    }
+
+    @Override
+    public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+        return Collections.singleton(JWSAlgorithm.EdDSA);
+    }
+
+    @Override
+    public JCAContext getJCAContext() {
+        return jcaContext;
+    }
+}
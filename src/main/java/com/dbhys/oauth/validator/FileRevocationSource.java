@@ -0,0 +1,54 @@
+package com.dbhys.oauth.validator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the revoked token IDs from a file, one per line, blank lines and
+ * lines starting with {@code #} ignored. The file is only read again after
+ * its modification time or size changed, then it replaces the list.
+ */
+public class FileRevocationSource implements RevocationSource {
+
+    private final Path file;
+
+    /**
+     * Creates a new file revocation source.
+     *
+     * @param file The file. Must not be {@code null}.
+     */
+    public FileRevocationSource(final Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("The revocation file must not be null");
+        }
+        this.file = file;
+    }
+
+    @Override
+    public RevocationUpdate poll(final String cursor) throws IOException {
+        String version = Files.getLastModifiedTime(file).toMillis() + ":" + Files.size(file);
+        if (version.equals(cursor)) {
+            return null;
+        }
+        List<String> revoked = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && line.charAt(0) != '#') {
+                    revoked.add(line);
+                }
+            }
+        }
+        return new RevocationUpdate(true, revoked, null, version);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,92 @@
+package com.dbhys.oauth.validator;
+
+/**
+ * Count-min sketch of 4-bit counters estimating how often a token hash was
+ * seen recently (TinyLFU). All counters are halved after a sample period so
+ * that the estimate follows the current popularity of a token.
+ *
+ * <p>Updates are not synchronized, a lost increment only makes the estimate
+ * slightly lower, which is acceptable for an admission policy.
+ */
+final class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int size;
+
+    /**
+     * Creates a new frequency sketch.
+     *
+     * @param maximumSize The maximum number of entries of the cache using
+     *                    this sketch. Must be positive.
+     */
+    FrequencySketch(final int maximumSize) {
+        int length = Integer.highestOneBit(Math.max(maximumSize, 16) - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * Math.max(maximumSize, 16);
+    }
+
+    /**
+     * Returns the estimated number of occurrences of the hash, at most 15.
+     *
+     * @param hash The token hash.
+     *
+     * @return The estimated frequency.
+     */
+    int frequency(final long hash) {
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = index(hash, i);
+            int slot = (int) h & tableMask;
+            int offset = (int) (h >>> 60) << 2;
+            frequency = Math.min(frequency, (int) ((table[slot] >>> offset) & 0xFL));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an occurrence of the hash.
+     *
+     * @param hash The token hash.
+     */
+    void increment(final long hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = index(hash, i);
+            int slot = (int) h & tableMask;
+            int offset = (int) (h >>> 60) << 2;
+            long mask = 0xFL << offset;
+            long value = table[slot];
+            if ((value & mask) != mask) {
+                table[slot] = value + (1L << offset);
+                added = true;
+            }
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = size >>> 1;
+    }
+
+    private static long index(final long hash, final int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,85 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.ParseException;
+import com.dbhys.oauth.util.JSONObjectUtils;
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import net.minidev.json.JSONObject;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Polls the revoked token IDs from a delta endpoint. The first request
+ * has no parameter, the next ones pass the cursor of the last response as
+ * the {@code since} query parameter. The endpoint answers a JSON object:
+ *
+ * <pre>
+ * {
+ *   "full"     : false,
+ *   "revoked"  : [ "jti-1", "jti-2" ],
+ *   "restored" : [ "jti-0" ],
+ *   "cursor"   : "1718800000"
+ * }
+ * </pre>
+ *
+ * <p>{@code full} is {@code true} if {@code revoked} is the complete list,
+ * e.g. for an unknown or too old cursor. {@code restored} lists the IDs no
+ * longer revoked, typically of tokens that expired since.
+ */
+public class HttpRevocationSource implements RevocationSource {
+
+    private final String uri;
+
+    private final ResourceRetriever resourceRetriever;
+
+    /**
+     * Creates a new HTTP revocation source.
+     *
+     * @param uri               The URI of the delta endpoint. Must not be
+     *                          {@code null}.
+     * @param resourceRetriever The resource retriever. Must not be
+     *                          {@code null}.
+     */
+    public HttpRevocationSource(final String uri, final ResourceRetriever resourceRetriever) {
+        if (uri == null || resourceRetriever == null) {
+            throw new IllegalArgumentException("The revocation URI and resource retriever must not be null");
+        }
+        this.uri = uri;
+        this.resourceRetriever = resourceRetriever;
+    }
+
+    @Override
+    public RevocationUpdate poll(final String cursor) throws IOException {
+        URL url = toURL(cursor);
+        Resource resource = resourceRetriever.retrieveResource(url);
+        try {
+            JSONObject json = JSONObjectUtils.parse(resource.getContent());
+            String next = JSONObjectUtils.getString(json, "cursor", null);
+            if (cursor != null && cursor.equals(next) && !JSONObjectUtils.containsKey(json, "revoked")
+                    && !JSONObjectUtils.containsKey(json, "restored")) {
+                return null;
+            }
+            return new RevocationUpdate(cursor == null || JSONObjectUtils.getBoolean(json, "full", false),
+                    JSONObjectUtils.getStringList(json, "revoked", null),
+                    JSONObjectUtils.getStringList(json, "restored", null),
+                    next);
+        } catch (ParseException e) {
+            throw new IOException("Invalid revocation response from " + uri + ": " + e.getMessage(), e);
+        }
+    }
+
+    private URL toURL(final String cursor) throws MalformedURLException {
+        if (cursor == null) {
+            return new URL(uri);
+        }
+        return new URL(uri + (uri.indexOf('?') < 0 ? '?' : '&') + "since=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8));
+    }
+
+    public String getUri() {
+        return uri;
+    }
+}
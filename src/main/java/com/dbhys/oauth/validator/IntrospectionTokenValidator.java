@@ -0,0 +1,406 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.bean.OAuthClientMetadata;
+import com.dbhys.oauth.http.ContentType;
+import com.dbhys.oauth.http.HTTPRequest;
+import com.dbhys.oauth.http.HTTPResponse;
+import com.dbhys.oauth.http.HTTPTransport;
+import com.dbhys.oauth.metrics.AuthenticationMetrics;
+import com.dbhys.oauth.security.Authentication;
+import com.dbhys.oauth.security.ScopeDictionary;
+import com.dbhys.oauth.util.JSONObjectUtils;
+import com.dbhys.oauth.util.URLUtils;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.proc.BadJOSEException;
+import net.minidev.json.JSONObject;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates opaque reference tokens with the token introspection endpoint
+ * of the issuer (RFC 7662), as advertised by its discovery document.
+ *
+ * <p>Introspection costs a network round trip, so:
+ *
+ * <ul>
+ *     <li>active tokens are cached until their {@code exp}, at most for the
+ *         maximum time to live, since a revocation only shows on the next
+ *         introspection;
+ *     <li>inactive tokens are remembered by the rejected token cache;
+ *     <li>concurrent requests presenting the same uncached token share one
+ *         introspection;
+ *     <li>the {@link HTTPTransport} keeps the connections to the endpoint
+ *         alive and reuses them.
+ * </ul>
+ *
+ * <p>Failed introspections, e.g. timeouts, are never cached. Instances are
+ * thread-safe.
+ */
+public class IntrospectionTokenValidator implements TokenAuthenticator {
+
+    /**
+     * The default maximum time an active token is cached, in seconds.
+     */
+    public static final int DEFAULT_MAX_CACHE_TTL = 60;
+
+    private final String expectedIssuer;
+
+    private final OAuthClientMetadata metadata;
+
+    private final String clientAuthorization;
+
+    private final int connectTimeout;
+
+    private final int readTimeout;
+
+    private volatile HTTPTransport transport;
+
+    // Introspections in flight, by raw token
+    private final ConcurrentHashMap<String, CompletableFuture<Authentication>> inFlight = new ConcurrentHashMap<>();
+
+    private VerifiedTokenCache tokenCache;
+
+    private RejectedTokenCache rejectedTokenCache;
+
+    private long maxCacheTtlMillis = TimeUnit.SECONDS.toMillis(DEFAULT_MAX_CACHE_TTL);
+
+    private String scopeClaim = AuthenticationTokenValidator.DEFAULT_SCOPE_CLAIM;
+
+    private String rolesClaim = AuthenticationTokenValidator.DEFAULT_ROLES_CLAIM;
+
+    private int maxTokenLength = AuthenticationTokenValidator.DEFAULT_MAX_TOKEN_LENGTH;
+
+    private volatile AuthenticationMetrics metrics;
+
+    /**
+     * Creates a new introspection token validator.
+     *
+     * @param expectedIssuer The expected token issuer. Must not be
+     *                       {@code null}.
+     * @param metadata       The discovery metadata of the issuer, whose
+     *                       introspection endpoint is read on every
+     *                       introspection. Must not be {@code null}.
+     * @param clientId       The client ID of this resource server at the
+     *                       issuer. Must not be {@code null}.
+     * @param clientSecret   The client secret. Must not be {@code null}.
+     * @param connectTimeout The HTTP connect timeout, in milliseconds. Zero
+     *                       implies no timeout.
+     * @param readTimeout    The HTTP response timeout, in milliseconds. Zero
+     *                       implies no timeout.
+     */
+    public IntrospectionTokenValidator(final String expectedIssuer,
+                                       final OAuthClientMetadata metadata,
+                                       final String clientId,
+                                       final String clientSecret,
+                                       final int connectTimeout,
+                                       final int readTimeout) {
+        if (expectedIssuer == null) {
+            throw new IllegalArgumentException("The expected token issuer must not be null");
+        }
+        if (metadata == null) {
+            throw new IllegalArgumentException("The issuer metadata must not be null");
+        }
+        if (clientId == null || clientSecret == null) {
+            throw new IllegalArgumentException("The introspection client credentials must not be null");
+        }
+        this.expectedIssuer = expectedIssuer;
+        this.metadata = metadata;
+        // RFC 6749 section 2.3.1, both form-encoded before the basic encoding
+        this.clientAuthorization = "Basic " + Base64.getEncoder().encodeToString(
+                (URLEncoder.encode(clientId, StandardCharsets.UTF_8) + ":"
+                        + URLEncoder.encode(clientSecret, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8));
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public Authentication authenticate(final String credential, final int offset)
+            throws java.text.ParseException, BadJOSEException, JOSEException {
+
+        try {
+            return authenticateAsync(credential, offset).toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BadJOSEException) {
+                throw (BadJOSEException) cause;
+            } else if (cause instanceof JOSEException) {
+                throw (JOSEException) cause;
+            }
+            throw new JOSEException("Token introspection failed: " + cause, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JOSEException("Interrupted while introspecting the token", e);
+        }
+    }
+
+    /**
+     * Authenticates the opaque token found at the specified offset of a
+     * credential. Cached and recently rejected tokens complete right away,
+     * other tokens complete on the threads of the HTTP client.
+     */
+    @Override
+    public CompletionStage<Authentication> authenticateAsync(final String credential, final int offset) {
+        final long now = System.currentTimeMillis();
+        final AuthenticationMetrics metrics = this.metrics;
+        if (credential.length() - offset > maxTokenLength) {
+            return reject(RejectionReason.TOO_LONG, "The token exceeds the maximum length");
+        }
+        final VerifiedTokenCache cache = tokenCache;
+        if (cache != null) {
+            Authentication authentication = cache.get(credential, offset, now);
+            if (authentication != null) {
+                if (metrics != null) {
+                    metrics.recordCacheHit();
+                }
+                return CompletableFuture.completedFuture(authentication);
+            }
+        }
+        final RejectedTokenCache rejectedCache = rejectedTokenCache;
+        if (rejectedCache != null) {
+            RejectionReason reason = rejectedCache.get(credential, offset, now);
+            if (reason != null) {
+                return reject(reason, "Recently rejected token");
+            }
+        }
+
+        String token = credential.substring(offset);
+        CompletableFuture<Authentication> result = inFlight.get(token);
+        if (result == null) {
+            CompletableFuture<Authentication> created = new CompletableFuture<>();
+            result = inFlight.putIfAbsent(token, created);
+            if (result == null) {
+                result = created;
+                introspect(token, created);
+            }
+        }
+        // Callers must not complete the shared future
+        return result.minimalCompletionStage();
+    }
+
+    private CompletionStage<Authentication> reject(final RejectionReason reason, final String message) {
+        final AuthenticationMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordRejection(reason);
+        }
+        return CompletableFuture.failedFuture(new InvalidTokenException(reason, message));
+    }
+
+    private void introspect(final String token, final CompletableFuture<Authentication> result) {
+        final long start = System.nanoTime();
+        HTTPRequest request;
+        try {
+            request = newRequest(token);
+        } catch (JOSEException e) {
+            inFlight.remove(token, result);
+            result.completeExceptionally(e);
+            return;
+        }
+        final HTTPTransport transport = this.transport;
+        (transport != null ? transport : HTTPRequest.getDefaultTransport()).sendAsync(request)
+                .whenComplete((response, e) -> {
+                    try {
+                        if (e != null) {
+                            throw new JOSEException("Token introspection failed: " + e, e);
+                        }
+                        result.complete(toAuthentication(token, response));
+                    } catch (Exception failure) {
+                        final AuthenticationMetrics metrics = this.metrics;
+                        if (metrics != null) {
+                            metrics.recordRejection(failure instanceof InvalidTokenException
+                                    ? ((InvalidTokenException) failure).getReason() : null);
+                        }
+                        result.completeExceptionally(failure);
+                    } finally {
+                        // After the caches were filled, so a late caller hits them
+                        inFlight.remove(token, result);
+                        final AuthenticationMetrics metrics = this.metrics;
+                        if (metrics != null) {
+                            metrics.recordPhase(AuthenticationMetrics.Phase.INTROSPECTION, System.nanoTime() - start);
+                        }
+                    }
+                });
+    }
+
+    private HTTPRequest newRequest(final String token)
+            throws JOSEException {
+
+        String endpoint = metadata.getIntrospectionUri();
+        if (endpoint == null) {
+            throw new JOSEException("The issuer " + expectedIssuer + " doesn't advertise an introspection endpoint");
+        }
+        Map<String, List<String>> parameters = new LinkedHashMap<>();
+        parameters.put("token", Collections.singletonList(token));
+        parameters.put("token_type_hint", Collections.singletonList("access_token"));
+        HTTPRequest request;
+        try {
+            request = new HTTPRequest(HTTPRequest.Method.POST, new URL(endpoint));
+        } catch (MalformedURLException e) {
+            throw new JOSEException("Invalid introspection endpoint: " + e.getMessage(), e);
+        }
+        request.setAuthorization(clientAuthorization);
+        request.setAccept("application/json");
+        request.setContentType(ContentType.APPLICATION_URLENCODED);
+        request.setQuery(URLUtils.serializeParameters(parameters));
+        request.setConnectTimeout(connectTimeout);
+        request.setReadTimeout(readTimeout);
+        return request;
+    }
+
+    /**
+     * Maps an introspection response, caching the outcome.
+     */
+    private Authentication toAuthentication(final String token, final HTTPResponse response)
+            throws BadJOSEException, JOSEException {
+
+        if (response.getStatusCode() != 200) {
+            throw new JOSEException("Token introspection failed: Status code " + response.getStatusCode());
+        }
+        final long now = System.currentTimeMillis();
+        try {
+            JSONObject json = JSONObjectUtils.parse(response.getContent());
+            if (!JSONObjectUtils.getBoolean(json, "active", false)) {
+                throw rejected(token, RejectionReason.INACTIVE, "Inactive token", now);
+            }
+            String issuer = JSONObjectUtils.getString(json, "iss", null);
+            if (issuer != null && !issuer.equals(expectedIssuer)) {
+                throw rejected(token, RejectionReason.INVALID_ISSUER, "Unexpected token issuer", now);
+            }
+            long exp = JSONObjectUtils.getLong(json, "exp", 0L) * 1000L;
+            if (exp != 0L && exp <= now) {
+                throw rejected(token, RejectionReason.EXPIRED, "Expired token", now);
+            }
+            long iat = JSONObjectUtils.getLong(json, "iat", 0L) * 1000L;
+            String subject = JSONObjectUtils.getString(json, "sub", null);
+            String username = JSONObjectUtils.getString(json, "username", null);
+            Authentication authentication = new Authentication(subject != null ? subject : username,
+                    username,
+                    iat == 0L ? null : new Date(iat),
+                    exp == 0L ? null : new Date(exp),
+                    null,
+                    ScopeDictionary.getInstance().parse(json.get(scopeClaim)),
+                    ScopeDictionary.getInstance().parse(json.get(rolesClaim)));
+
+            final VerifiedTokenCache cache = tokenCache;
+            if (cache != null) {
+                long expiresAt = now + maxCacheTtlMillis;
+                cache.put(token, authentication, exp == 0L ? expiresAt : Math.min(exp, expiresAt), now);
+            }
+            return authentication;
+        } catch (com.dbhys.oauth.ParseException e) {
+            throw new JOSEException("Invalid introspection response: " + e.getMessage(), e);
+        }
+    }
+
+    private InvalidTokenException rejected(final String token, final RejectionReason reason, final String message,
+                                           final long now) {
+        final RejectedTokenCache rejectedCache = rejectedTokenCache;
+        if (rejectedCache != null) {
+            rejectedCache.put(token, 0, reason, now);
+        }
+        return new InvalidTokenException(reason, message);
+    }
+
+    /**
+     * Returns the expected token issuer.
+     *
+     * @return The issuer.
+     */
+    public String getExpectedIssuer() {
+        return expectedIssuer;
+    }
+
+    /**
+     * Returns the number of introspections in flight.
+     *
+     * @return The count.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public VerifiedTokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    /**
+     * Sets the cache of active tokens.
+     *
+     * @param tokenCache The cache, {@code null} to introspect every
+     *                   request.
+     */
+    public void setTokenCache(VerifiedTokenCache tokenCache) {
+        this.tokenCache = tokenCache;
+    }
+
+    public RejectedTokenCache getRejectedTokenCache() {
+        return rejectedTokenCache;
+    }
+
+    /**
+     * Sets the cache of inactive tokens.
+     *
+     * @param rejectedTokenCache The cache, {@code null} to introspect
+     *                           inactive tokens again.
+     */
+    public void setRejectedTokenCache(RejectedTokenCache rejectedTokenCache) {
+        this.rejectedTokenCache = rejectedTokenCache;
+    }
+
+    /**
+     * Sets the maximum time an active token is cached, the longest a
+     * revocation can go unnoticed.
+     *
+     * @param maxCacheTtl The time to live, in seconds. Must be positive.
+     */
+    public void setMaxCacheTtl(int maxCacheTtl) {
+        if (maxCacheTtl <= 0) {
+            throw new IllegalArgumentException("The maximum cache time to live must be positive");
+        }
+        this.maxCacheTtlMillis = TimeUnit.SECONDS.toMillis(maxCacheTtl);
+    }
+
+    public void setScopeClaim(String scopeClaim) {
+        this.scopeClaim = scopeClaim;
+    }
+
+    public void setRolesClaim(String rolesClaim) {
+        this.rolesClaim = rolesClaim;
+    }
+
+    public void setMaxTokenLength(int maxTokenLength) {
+        this.maxTokenLength = maxTokenLength;
+    }
+
+    public HTTPTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the transport of the introspection requests.
+     *
+     * @param transport The transport, {@code null} for the
+     *                  {@link HTTPRequest#getDefaultTransport() default
+     *                  one}.
+     */
+    public void setTransport(HTTPTransport transport) {
+        this.transport = transport;
+    }
+
+    public void setMetrics(AuthenticationMetrics metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,50 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jwt.proc.BadJWTException;
+
+/**
+ * Rejection of a token, with the reason. The stack trace isn't filled in,
+ * rejections are expected and can come in floods.
+ */
+public class InvalidTokenException extends BadJWTException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RejectionReason reason;
+
+    /**
+     * Creates a new invalid token exception.
+     *
+     * @param reason  The rejection reason. Must not be {@code null}.
+     * @param message The exception message.
+     */
+    public InvalidTokenException(final RejectionReason reason, final String message) {
+        this(reason, message, null);
+    }
+
+    /**
+     * Creates a new invalid token exception.
+     *
+     * @param reason  The rejection reason. Must not be {@code null}.
+     * @param message The exception message.
+     * @param cause   The exception cause, {@code null} if none.
+     */
+    public InvalidTokenException(final RejectionReason reason, final String message, final Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    /**
+     * Returns the rejection reason.
+     *
+     * @return The rejection reason.
+     */
+    public RejectionReason getReason() {
+        return reason;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,224 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.metrics.AuthenticationMetrics;
+import com.dbhys.oauth.security.Authentication;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.proc.BadJOSEException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Validates tokens of several issuers, each with its own validator, i.e.
+ * its own discovery metadata, JWK set, accepted algorithms and token caches.
+ *
+ * <p>A token is routed by its unverified {@code iss} claim, read from the
+ * decoded payload without parsing it into a JSON tree, and looked up in a
+ * hash map. Only the start of the payload is decoded, and more of it only
+ * if the issuer isn't found there. Routing is safe without verification, the chosen validator
+ * still checks the issuer and the signature against the keys of that
+ * issuer only.
+ *
+ * <p>Instances are thread-safe.
+ */
+public class MultiIssuerTokenValidator implements TokenAuthenticator {
+
+    private static final ClaimsProjector ISSUER_PROJECTOR = new ClaimsProjector();
+
+    // Payload characters decoded first, doubled until the issuer is found
+    private static final int INITIAL_SCAN_LENGTH = 256;
+
+    private static final byte[] BASE64URL = new byte[128];
+
+    static {
+        Arrays.fill(BASE64URL, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64URL[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final Map<String, AuthenticationTokenValidator> validators;
+
+    private final int maxTokenLength;
+
+    private volatile AuthenticationMetrics metrics;
+
+    /**
+     * Creates a new multi-issuer token validator.
+     *
+     * @param validators The validators of the accepted issuers. Must not be
+     *                   {@code null} or empty, or have two validators of
+     *                   the same issuer.
+     */
+    public MultiIssuerTokenValidator(final Collection<AuthenticationTokenValidator> validators) {
+        if (validators == null || validators.isEmpty()) {
+            throw new IllegalArgumentException("At least one token validator is required");
+        }
+        Map<String, AuthenticationTokenValidator> byIssuer = new HashMap<>();
+        int maxLength = 0;
+        for (AuthenticationTokenValidator validator : validators) {
+            if (byIssuer.put(validator.getExpectedIssuer(), validator) != null) {
+                throw new IllegalArgumentException("Duplicate token issuer: " + validator.getExpectedIssuer());
+            }
+            maxLength = Math.max(maxLength, validator.getMaxTokenLength());
+        }
+        this.validators = Collections.unmodifiableMap(byIssuer);
+        this.maxTokenLength = maxLength;
+    }
+
+    @Override
+    public Authentication authenticate(final String credential, final int offset)
+            throws java.text.ParseException, BadJOSEException, JOSEException {
+
+        return route(credential, offset).authenticate(credential, offset);
+    }
+
+    @Override
+    public CompletionStage<Authentication> authenticateAsync(final String credential, final int offset) {
+        AuthenticationTokenValidator validator;
+        try {
+            validator = route(credential, offset);
+        } catch (InvalidTokenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return validator.authenticateAsync(credential, offset);
+    }
+
+    /**
+     * Returns the validator of the issuer of the token found at the
+     * specified offset of a credential.
+     *
+     * @param credential The credential. Must not be {@code null}.
+     * @param offset     The offset of the raw token in the credential.
+     *
+     * @return The validator.
+     *
+     * @throws InvalidTokenException If the token is malformed or its
+     *                               issuer isn't accepted.
+     */
+    public AuthenticationTokenValidator route(final String credential, final int offset)
+            throws InvalidTokenException {
+
+        try {
+            return lookup(credential, offset);
+        } catch (InvalidTokenException e) {
+            final AuthenticationMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.recordRejection(e.getReason());
+            }
+            throw e;
+        }
+    }
+
+    private AuthenticationTokenValidator lookup(final String credential, final int offset)
+            throws InvalidTokenException {
+
+        if (credential.length() - offset > maxTokenLength) {
+            throw new InvalidTokenException(RejectionReason.TOO_LONG, "The token exceeds the maximum length");
+        }
+        int start = credential.indexOf('.', offset) + 1;
+        int end = start == 0 ? -1 : credential.indexOf('.', start);
+        if (end < 0) {
+            throw new InvalidTokenException(RejectionReason.MALFORMED, "Signed JWT expected");
+        }
+        String issuer;
+        for (int length = INITIAL_SCAN_LENGTH; ; length *= 2) {
+            boolean whole = length >= end - start;
+            byte[] payload = decode(credential, start, whole ? end : start + length, whole);
+            try {
+                issuer = ISSUER_PROJECTOR.projectIssuer(payload);
+                break;
+            } catch (InvalidTokenException e) {
+                if (whole) {
+                    throw e;
+                }
+                // The prefix ended before the issuer
+            }
+        }
+        AuthenticationTokenValidator validator = issuer == null ? null : validators.get(issuer);
+        if (validator == null) {
+            throw new InvalidTokenException(RejectionReason.INVALID_ISSUER, "Unexpected token issuer");
+        }
+        return validator;
+    }
+
+    /**
+     * Decodes the Base64URL characters of a credential between the
+     * specified offsets. Only the last part of a payload may end with a
+     * partial group or padding.
+     */
+    private static byte[] decode(final String credential, final int from, final int to, final boolean last)
+            throws InvalidTokenException {
+
+        int end = to;
+        while (last && end > from && credential.charAt(end - 1) == '=') {
+            end--;
+        }
+        int remainder = (end - from) % 4;
+        if (remainder == 1) {
+            throw new InvalidTokenException(RejectionReason.MALFORMED, "Invalid token payload");
+        }
+        byte[] bytes = new byte[(end - from) / 4 * 3 + (remainder == 0 ? 0 : remainder - 1)];
+        int bits = 0;
+        int count = 0;
+        int out = 0;
+        for (int i = from; i < end; i++) {
+            char c = credential.charAt(i);
+            int value = c < 128 ? BASE64URL[c] : -1;
+            if (value < 0) {
+                throw new InvalidTokenException(RejectionReason.MALFORMED, "Invalid token payload");
+            }
+            bits = bits << 6 | value;
+            if (++count == 4) {
+                bytes[out++] = (byte) (bits >> 16);
+                bytes[out++] = (byte) (bits >> 8);
+                bytes[out++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 3) {
+            bytes[out++] = (byte) (bits >> 10);
+            bytes[out] = (byte) (bits >> 2);
+        } else if (count == 2) {
+            bytes[out] = (byte) (bits >> 4);
+        }
+        return bytes;
+    }
+
+    /**
+     * Sets the metrics counting the tokens rejected while routing. The
+     * validators of the issuers have their own.
+     *
+     * @param metrics The metrics, {@code null} to disable them.
+     */
+    public void setMetrics(final AuthenticationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the validator of the specified issuer.
+     *
+     * @param issuer The issuer.
+     *
+     * @return The validator, {@code null} if the issuer isn't accepted.
+     */
+    public AuthenticationTokenValidator getValidator(final String issuer) {
+        return validators.get(issuer);
+    }
+
+    /**
+     * Returns the validators by issuer.
+     *
+     * @return The validators.
+     */
+    public Map<String, AuthenticationTokenValidator> getValidators() {
+        return validators;
+    }
+}
@@ -0,0 +1,156 @@
+package com.dbhys.oauth.validator;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Short-lived cache of recently rejected tokens, so a client retrying a bad
+ * token in a loop doesn't cost a parse and a failed signature check each
+ * time.
+ *
+ * <p>Only the 64-bit hash of a token is kept, never the token, in a
+ * 2-way set associative table allocated up front. Unique garbage tokens
+ * just overwrite older entries, so the memory use is fixed whatever the
+ * traffic. A hit is confirmed by the token length and a second,
+ * independent hash, so a hash collision doesn't reject a valid token.
+ *
+ * <p>Only {@link RejectionReason#isCacheable() cacheable} rejections are
+ * remembered, a token not valid yet or signed with a key not published
+ * yet must be checked again.
+ */
+public class RejectedTokenCache {
+
+    private static final int WAYS = 2;
+
+    private final AtomicReferenceArray<Entry> table;
+
+    private final int setMask;
+
+    private final long timeToLiveMillis;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * Creates a new rejected token cache.
+     *
+     * @param maximumSize The maximum number of rejected tokens, rounded up
+     *                    to a power of two. Must be positive.
+     * @param timeToLive  How long a rejection is remembered, in seconds.
+     *                    Must be positive.
+     */
+    public RejectedTokenCache(final int maximumSize, final int timeToLive) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximum size of the rejected token cache must be positive");
+        }
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("The time to live of rejected tokens must be positive");
+        }
+        int sets = Math.max(1, Integer.highestOneBit((maximumSize + WAYS - 1) / WAYS - 1) << 1);
+        this.table = new AtomicReferenceArray<>(sets * WAYS);
+        this.setMask = sets - 1;
+        this.timeToLiveMillis = timeToLive * 1000L;
+    }
+
+    /**
+     * Returns the reason the token found at the specified offset of a
+     * credential was recently rejected for.
+     *
+     * @param credential The credential. Must not be {@code null}.
+     * @param offset     The offset of the raw token in the credential.
+     * @param now        The current time, in milliseconds since the epoch.
+     *
+     * @return The rejection reason, {@code null} if the token wasn't
+     *         recently rejected.
+     */
+    public RejectionReason get(final String credential, final int offset, final long now) {
+        long hash = TokenHash.hash(credential, offset);
+        int base = indexOf(hash);
+        for (int i = base; i < base + WAYS; i++) {
+            Entry entry = table.get(i);
+            if (entry != null && entry.hash == hash && entry.expiresAt > now
+                    && entry.length == credential.length() - offset
+                    && entry.checkHash == TokenHash.checkHash(credential, offset)) {
+                hitCount.increment();
+                return entry.reason;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remembers the rejection of the token found at the specified offset
+     * of a credential, unless the reason isn't
+     * {@link RejectionReason#isCacheable() cacheable}.
+     *
+     * @param credential The credential. Must not be {@code null}.
+     * @param offset     The offset of the raw token in the credential.
+     * @param reason     The rejection reason. Must not be {@code null}.
+     * @param now        The current time, in milliseconds since the epoch.
+     */
+    public void put(final String credential, final int offset, final RejectionReason reason, final long now) {
+        if (!reason.isCacheable()) {
+            return;
+        }
+        long hash = TokenHash.hash(credential, offset);
+        int base = indexOf(hash);
+        Entry candidate = new Entry(hash, TokenHash.checkHash(credential, offset), credential.length() - offset,
+                reason, now + timeToLiveMillis);
+        int victim = base;
+        long victimExpiresAt = Long.MAX_VALUE;
+        for (int i = base; i < base + WAYS; i++) {
+            Entry entry = table.get(i);
+            if (entry == null || entry.hash == hash || entry.expiresAt <= now) {
+                victim = i;
+                break;
+            }
+            if (entry.expiresAt < victimExpiresAt) {
+                victim = i;
+                victimExpiresAt = entry.expiresAt;
+            }
+        }
+        table.set(victim, candidate);
+    }
+
+    /**
+     * Forgets all rejections, e.g. after the JWK set changed.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+    }
+
+    /**
+     * Returns the number of tokens short-circuited as recently rejected.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    private int indexOf(final long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & setMask) * WAYS;
+    }
+
+    private static final class Entry {
+
+        private final long hash;
+
+        private final long checkHash;
+
+        private final int length;
+
+        private final RejectionReason reason;
+
+        private final long expiresAt;
+
+        private Entry(long hash, long checkHash, int length, RejectionReason reason, long expiresAt) {
+            this.hash = hash;
+            this.checkHash = checkHash;
+            this.length = length;
+            this.reason = reason;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
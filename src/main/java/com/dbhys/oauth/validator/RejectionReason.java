@@ -0,0 +1,97 @@
+package com.dbhys.oauth.validator;
+
+/**
+ * Reasons for rejecting a token.
+ */
+public enum RejectionReason {
+
+    /**
+     * The token isn't a well-formed signed JWT.
+     */
+    MALFORMED("malformed"),
+
+    /**
+     * The token exceeds the maximum accepted length.
+     */
+    TOO_LONG("too_long"),
+
+    /**
+     * The token is signed with an algorithm that isn't accepted.
+     */
+    UNSUPPORTED_ALGORITHM("unsupported_algorithm", false),
+
+    /**
+     * No key of the JWK set matches the token header.
+     */
+    UNKNOWN_KEY("unknown_key", false),
+
+    /**
+     * The token was issued by another issuer.
+     */
+    INVALID_ISSUER("invalid_issuer"),
+
+    /**
+     * The token isn't intended for this resource server.
+     */
+    INVALID_AUDIENCE("invalid_audience"),
+
+    /**
+     * The token has expired.
+     */
+    EXPIRED("expired"),
+
+    /**
+     * The token isn't valid yet.
+     */
+    NOT_YET_VALID("not_yet_valid", false),
+
+    /**
+     * The token signature doesn't verify.
+     */
+    INVALID_SIGNATURE("invalid_signature"),
+
+    /**
+     * The introspection endpoint reports the opaque token as inactive.
+     */
+    INACTIVE("inactive"),
+
+    /**
+     * The token ID is on the revocation list.
+     */
+    REVOKED("revoked");
+
+    private final String code;
+
+    private final boolean cacheable;
+
+    RejectionReason(String code) {
+        this(code, true);
+    }
+
+    RejectionReason(String code, boolean cacheable) {
+        this.code = code;
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * Returns the reason code, e.g. for logs and metrics.
+     *
+     * @return The reason code.
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Returns {@code true} if a token rejected for this reason stays
+     * invalid, so the rejection can be remembered by the
+     * {@link RejectedTokenCache}. A token not valid yet becomes valid, an
+     * unknown key or algorithm may be published by the next JWK set or
+     * discovery metadata.
+     *
+     * @return {@code true} if the rejection can be cached.
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+}
@@ -0,0 +1,230 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.ParseException;
+import com.dbhys.oauth.security.Authentication;
+import com.dbhys.oauth.util.Backoff;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deny-list of revoked token IDs ({@code jti}), so a compromised token can
+ * be rejected before it expires, including when its authentication is
+ * served from the token cache.
+ *
+ * <p>The list is an immutable snapshot of a Bloom filter and the exact set
+ * of IDs. A lookup reads the snapshot reference once and tests a few bits;
+ * only a possible hit is confirmed against the exact set, so the common
+ * case costs a hash of the ID and never takes a lock. Updates polled from
+ * the {@link RevocationSource} build a new snapshot, swapped in
+ * atomically.
+ *
+ * <p>Instances are thread-safe.
+ */
+public class RevocationList implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevocationList.class);
+
+    /**
+     * The claim identifying a token, project it to avoid parsing the
+     * payload on every check.
+     */
+    public static final String JWT_ID_CLAIM = "jti";
+
+    private final RevocationSource source;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private ScheduledExecutorService scheduler;
+
+    // Guarded by this
+    private String cursor;
+
+    private int failures;
+
+    /**
+     * Creates a new, empty revocation list.
+     *
+     * @param source The source of the revoked IDs. Must not be
+     *               {@code null}.
+     */
+    public RevocationList(final RevocationSource source) {
+        if (source == null) {
+            throw new IllegalArgumentException("The revocation source must not be null");
+        }
+        this.source = source;
+    }
+
+    /**
+     * Returns {@code true} if the specified token ID is revoked.
+     *
+     * @param jti The token ID, {@code null} if the token has none.
+     */
+    public boolean isRevoked(final String jti) {
+        final Snapshot snapshot = this.snapshot;
+        return jti != null && snapshot != Snapshot.EMPTY && snapshot.contains(jti);
+    }
+
+    /**
+     * Returns {@code true} if the token of the specified authentication is
+     * revoked, by its {@code jti} claim.
+     *
+     * @param authentication The authentication. Must not be {@code null}.
+     */
+    public boolean isRevoked(final Authentication authentication) {
+        final Snapshot snapshot = this.snapshot;
+        if (snapshot == Snapshot.EMPTY || authentication.getClaims() == null) {
+            return false;
+        }
+        String jti;
+        try {
+            jti = authentication.getClaims().getStringClaim(JWT_ID_CLAIM);
+        } catch (ParseException e) {
+            // Not a string, so never listed
+            return false;
+        }
+        return jti != null && snapshot.contains(jti);
+    }
+
+    /**
+     * Polls the source once on the calling thread and applies the update.
+     *
+     * @return {@code true} if the poll succeeded, {@code false} if it
+     *         failed and the current list was kept.
+     */
+    public synchronized boolean refresh() {
+        RevocationUpdate update;
+        try {
+            update = source.poll(cursor);
+        } catch (Exception e) {
+            // Resynchronize with a complete list, a delta may have been lost
+            cursor = null;
+            logger.warn("Revocation list refresh failed, keeping the current list: {}", e.getMessage());
+            return false;
+        }
+        if (update != null) {
+            apply(update);
+            cursor = update.getCursor();
+        }
+        return true;
+    }
+
+    /**
+     * Applies an update, e.g. pushed instead of polled.
+     *
+     * @param update The update. Must not be {@code null}.
+     */
+    public synchronized void apply(final RevocationUpdate update) {
+        Set<String> ids = update.isFull() ? new HashSet<>() : new HashSet<>(snapshot.ids);
+        if (!update.isFull()) {
+            ids.removeAll(update.getRestored());
+        }
+        ids.addAll(update.getRevoked());
+        snapshot = ids.isEmpty() ? Snapshot.EMPTY : new Snapshot(ids);
+    }
+
+    /**
+     * Polls the source right away on a background thread, then at the
+     * specified interval. Failed polls are retried with backoff, up to the
+     * interval.
+     *
+     * @param interval      The poll interval, in milliseconds. Must be
+     *                      positive.
+     * @param threadFactory The factory of the polling thread.
+     */
+    public synchronized void start(final long interval, final ThreadFactory threadFactory) {
+        if (interval <= 0L) {
+            throw new IllegalArgumentException("The revocation list poll interval must be positive");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("The revocation list is already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        scheduler.execute(() -> scheduleNext(interval, refresh()));
+    }
+
+    private void scheduleNext(final long interval, final boolean polled) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        failures = polled ? 0 : failures + 1;
+        long delay = polled ? interval : Backoff.delay(failures, Math.min(1000L, interval), interval);
+        scheduler.schedule(() -> scheduleNext(interval, refresh()), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of revoked IDs.
+     *
+     * @return The size.
+     */
+    public int size() {
+        return snapshot.ids.size();
+    }
+
+    public RevocationSource getSource() {
+        return source;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Immutable Bloom filter over the IDs, with the IDs to confirm a hit.
+     */
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptySet());
+
+        // Bits per ID and probes: a false positive rate around 0.2%
+        private static final int BITS_PER_ID = 16;
+
+        private static final int PROBES = 4;
+
+        private final long[] bits;
+
+        private final int mask;
+
+        private final Set<String> ids;
+
+        private Snapshot(final Set<String> ids) {
+            int size = Integer.highestOneBit(Math.max(64, ids.size() * BITS_PER_ID - 1) << 1);
+            this.bits = new long[size >>> 6];
+            this.mask = size - 1;
+            this.ids = ids;
+            for (String id : ids) {
+                long hash = TokenHash.hash(id, 0);
+                int h1 = (int) hash;
+                int h2 = (int) (hash >>> 32) | 1;
+                for (int i = 0; i < PROBES; i++) {
+                    int bit = (h1 + i * h2) & mask;
+                    bits[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+
+        private boolean contains(final String id) {
+            long hash = TokenHash.hash(id, 0);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < PROBES; i++) {
+                int bit = (h1 + i * h2) & mask;
+                if ((bits[bit >>> 6] & (1L << bit)) == 0L) {
+                    return false;
+                }
+            }
+            return ids.contains(id);
+        }
+    }
+}
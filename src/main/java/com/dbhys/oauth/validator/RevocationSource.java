@@ -0,0 +1,21 @@
+package com.dbhys.oauth.validator;
+
+import java.io.IOException;
+
+/**
+ * Source of the revoked token IDs, polled by a {@link RevocationList}.
+ */
+public interface RevocationSource {
+
+    /**
+     * Polls the changes since the specified cursor.
+     *
+     * @param cursor The cursor of the last update, {@code null} on the
+     *               first poll or after a failure of the source.
+     *
+     * @return The update, {@code null} if nothing changed.
+     *
+     * @throws IOException If the source couldn't be read.
+     */
+    RevocationUpdate poll(String cursor) throws IOException;
+}
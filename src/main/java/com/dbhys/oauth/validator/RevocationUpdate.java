@@ -0,0 +1,57 @@
+package com.dbhys.oauth.validator;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A change of the revoked token IDs ({@code jti}), polled from a
+ * {@link RevocationSource}.
+ */
+public final class RevocationUpdate {
+
+    private final boolean full;
+
+    private final Collection<String> revoked;
+
+    private final Collection<String> restored;
+
+    private final String cursor;
+
+    /**
+     * Creates a new revocation update.
+     *
+     * @param full     {@code true} if the revoked IDs are the complete
+     *                 list, replacing the current one, {@code false} for a
+     *                 delta.
+     * @param revoked  The newly revoked IDs, {@code null} if none.
+     * @param restored The IDs no longer revoked, e.g. of expired tokens,
+     *                 {@code null} if none. Ignored for a complete list.
+     * @param cursor   The cursor to poll the next delta from, {@code null}
+     *                 if the source has none.
+     */
+    public RevocationUpdate(final boolean full,
+                            final Collection<String> revoked,
+                            final Collection<String> restored,
+                            final String cursor) {
+        this.full = full;
+        this.revoked = revoked == null ? Collections.emptyList() : revoked;
+        this.restored = restored == null ? Collections.emptyList() : restored;
+        this.cursor = cursor;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public Collection<String> getRevoked() {
+        return revoked;
+    }
+
+    public Collection<String> getRestored() {
+        return restored;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+}
@@ -0,0 +1,45 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.security.Authentication;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.proc.BadJOSEException;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Authenticates raw bearer tokens. Implemented by the validator of a single
+ * issuer and by the {@link MultiIssuerTokenValidator router} over several
+ * issuers, the security interceptor and filter only depend on this.
+ */
+public interface TokenAuthenticator {
+
+    /**
+     * Authenticates the raw signed token found at the specified offset of
+     * a credential, e.g. after the {@code Bearer} scheme of an
+     * {@code Authorization} header.
+     *
+     * @param credential The credential. Must not be {@code null}.
+     * @param offset     The offset of the raw token in the credential.
+     *
+     * @return The authentication of the token subject.
+     *
+     * @throws java.text.ParseException If the token couldn't be parsed.
+     * @throws BadJOSEException         If the token is invalid or expired.
+     * @throws JOSEException            If an internal JOSE exception was
+     *                                  encountered.
+     */
+    Authentication authenticate(String credential, int offset)
+            throws java.text.ParseException, BadJOSEException, JOSEException;
+
+    /**
+     * Authenticates the raw signed token found at the specified offset of
+     * a credential without blocking the calling thread.
+     *
+     * @param credential The credential. Must not be {@code null}.
+     * @param offset     The offset of the raw token in the credential.
+     *
+     * @return The authentication of the token subject, completed
+     *         exceptionally if the token is invalid.
+     */
+    CompletionStage<Authentication> authenticateAsync(String credential, int offset);
+}
@@ -0,0 +1,204 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.ParseException;
+import com.dbhys.oauth.util.JSONObjectUtils;
+import com.nimbusds.jose.util.Base64URL;
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Claims of a token, as projected by {@link ClaimsProjector}. The projected
+ * claims are read without any parsing, all other claims come from the full
+ * payload, which is only parsed the first time one of them is asked for.
+ *
+ * <p>Instances are immutable apart from the lazily parsed payload, and
+ * thread-safe.
+ */
+public final class TokenClaims {
+
+    private final ClaimsProjector projector;
+
+    private final String token;
+
+    private final Object[] values;
+
+    private volatile JSONObject jsonObject;
+
+    TokenClaims(final ClaimsProjector projector, final String token, final Object[] values) {
+        this.projector = projector;
+        this.token = token;
+        this.values = values;
+    }
+
+    /**
+     * Returns the issuer ({@code iss}) claim.
+     *
+     * @return The issuer, {@code null} if not specified.
+     */
+    public String getIssuer() {
+        return (String) values[0];
+    }
+
+    /**
+     * Returns the subject ({@code sub}) claim.
+     *
+     * @return The subject, {@code null} if not specified.
+     */
+    public String getSubject() {
+        return (String) values[1];
+    }
+
+    /**
+     * Returns the audience ({@code aud}) claim.
+     *
+     * @return The audience, empty if not specified.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getAudience() {
+        Object aud = values[2];
+        if (aud instanceof String) {
+            return Collections.singletonList((String) aud);
+        }
+        return aud == null ? Collections.emptyList() : (List<String>) aud;
+    }
+
+    /**
+     * Returns the expiration time ({@code exp}) claim.
+     *
+     * @return The expiration time in milliseconds since the epoch,
+     *         {@link Long#MAX_VALUE} if not specified.
+     */
+    public long getExpirationTimeMillis() {
+        return toMillis(values[3], Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the not-before time ({@code nbf}) claim.
+     *
+     * @return The not-before time in milliseconds since the epoch,
+     *         {@link Long#MIN_VALUE} if not specified.
+     */
+    public long getNotBeforeTimeMillis() {
+        return toMillis(values[4], Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the issued-at time ({@code iat}) claim.
+     *
+     * @return The issued-at time, {@code null} if not specified.
+     */
+    public Date getIssueTime() {
+        return values[5] == null ? null : new Date(toMillis(values[5], 0L));
+    }
+
+    /**
+     * Returns the expiration time ({@code exp}) claim.
+     *
+     * @return The expiration time, {@code null} if not specified.
+     */
+    public Date getExpirationTime() {
+        return values[3] == null ? null : new Date(toMillis(values[3], 0L));
+    }
+
+    /**
+     * Returns the specified claim. A projected array is unmodifiable, an
+     * object or array from the payload is a copy, as both are shared by
+     * every request presenting the token.
+     *
+     * @param name The claim name. Must not be {@code null}.
+     *
+     * @return The claim value, {@code null} if not specified.
+     *
+     * @throws ParseException If the claim isn't projected and the payload
+     *                        couldn't be parsed.
+     */
+    public Object getClaim(final String name)
+            throws ParseException {
+
+        int index = projector.indexOf(name);
+        if (index >= 0 && values[index] != ClaimsProjector.UNPROJECTED) {
+            return values[index];
+        }
+        return copy(parsed().get(name));
+    }
+
+    /**
+     * Returns the specified string claim.
+     *
+     * @param name The claim name. Must not be {@code null}.
+     *
+     * @return The claim value, {@code null} if not specified.
+     *
+     * @throws ParseException If the claim isn't a string or the payload
+     *                        couldn't be parsed.
+     */
+    public String getStringClaim(final String name)
+            throws ParseException {
+
+        Object value = getClaim(name);
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        throw new ParseException("The " + name + " claim is not a string");
+    }
+
+    /**
+     * Returns all claims of the payload. The payload is parsed on the first
+     * call, each call returns a new copy, as the parsed payload is shared by
+     * every request presenting the token.
+     *
+     * @return The claims as a JSON object.
+     *
+     * @throws ParseException If the payload couldn't be parsed.
+     */
+    public JSONObject toJSONObject()
+            throws ParseException {
+
+        return (JSONObject) copy(parsed());
+    }
+
+    private JSONObject parsed()
+            throws ParseException {
+
+        JSONObject claims = jsonObject;
+        if (claims == null) {
+            int start = token.indexOf('.') + 1;
+            int end = token.indexOf('.', start);
+            claims = JSONObjectUtils.parse(new Base64URL(token.substring(start, end)).decodeToString());
+            jsonObject = claims;
+        }
+        return claims;
+    }
+
+    private static Object copy(final Object value) {
+        if (value instanceof Map) {
+            JSONObject copy = new JSONObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(String.valueOf(entry.getKey()), copy(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof List) {
+            JSONArray copy = new JSONArray();
+            for (Object item : (List<?>) value) {
+                copy.add(copy(item));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    private static long toMillis(final Object seconds, final long def) {
+        if (seconds instanceof Long) {
+            return (Long) seconds * 1000L;
+        } else if (seconds instanceof Number) {
+            return (long) (((Number) seconds).doubleValue() * 1000L);
+        }
+        return def;
+    }
+}
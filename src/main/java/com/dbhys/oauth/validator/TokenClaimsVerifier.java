@@ -0,0 +1,195 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.proc.JWTClaimsSetVerifier;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Verifies the issuer, audience and time window of a token, with a
+ * tolerated clock skew. The checks are cheap so the validator runs them
+ * before the signature check.
+ *
+ * <p>A token without an {@code exp} claim is accepted unless the
+ * expiration time is required, as by the verifier of earlier versions. It
+ * never expires then, so require it unless the issuer can't set it.
+ */
+public class TokenClaimsVerifier implements JWTClaimsSetVerifier<SecurityContext> {
+
+    /**
+     * The default maximum clock skew, in seconds.
+     */
+    public static final int DEFAULT_MAX_CLOCK_SKEW = 60;
+
+    private final String expectedIssuer;
+
+    private final Set<String> acceptedAudience;
+
+    private final long maxClockSkewMillis;
+
+    private final boolean expirationTimeRequired;
+
+    /**
+     * Creates a new token claims verifier accepting any audience and the
+     * default clock skew.
+     *
+     * @param expectedIssuer The expected token issuer. Must not be
+     *                       {@code null}.
+     */
+    public TokenClaimsVerifier(final String expectedIssuer) {
+        this(expectedIssuer, null, DEFAULT_MAX_CLOCK_SKEW);
+    }
+
+    /**
+     * Creates a new token claims verifier.
+     *
+     * @param expectedIssuer   The expected token issuer. Must not be
+     *                         {@code null}.
+     * @param acceptedAudience The accepted audience values, {@code null}
+     *                         or empty if the audience isn't checked.
+     * @param maxClockSkew     The maximum clock skew, in seconds. Must not
+     *                         be negative.
+     */
+    public TokenClaimsVerifier(final String expectedIssuer, final Set<String> acceptedAudience, final int maxClockSkew) {
+        this(expectedIssuer, acceptedAudience, maxClockSkew, false);
+    }
+
+    /**
+     * Creates a new token claims verifier.
+     *
+     * @param expectedIssuer         The expected token issuer. Must not be
+     *                               {@code null}.
+     * @param acceptedAudience       The accepted audience values,
+     *                               {@code null} or empty if the audience
+     *                               isn't checked.
+     * @param maxClockSkew           The maximum clock skew, in seconds.
+     *                               Must not be negative.
+     * @param expirationTimeRequired {@code true} to reject tokens without
+     *                               an {@code exp} claim.
+     */
+    public TokenClaimsVerifier(final String expectedIssuer, final Set<String> acceptedAudience, final int maxClockSkew,
+                               final boolean expirationTimeRequired) {
+        if (expectedIssuer == null) {
+            throw new IllegalArgumentException("The expected token issuer must not be null");
+        }
+        if (maxClockSkew < 0) {
+            throw new IllegalArgumentException("The maximum clock skew must be zero or positive");
+        }
+        this.expectedIssuer = expectedIssuer;
+        this.acceptedAudience = acceptedAudience == null ? Collections.emptySet() : Collections.unmodifiableSet(acceptedAudience);
+        this.maxClockSkewMillis = maxClockSkew * 1000L;
+        this.expirationTimeRequired = expirationTimeRequired;
+    }
+
+    @Override
+    public void verify(final JWTClaimsSet claimsSet, final SecurityContext context)
+            throws InvalidTokenException {
+
+        Date expirationTime = claimsSet.getExpirationTime();
+        Date notBeforeTime = claimsSet.getNotBeforeTime();
+        verify(claimsSet.getIssuer(), claimsSet.getAudience(),
+                expirationTime == null ? Long.MAX_VALUE : expirationTime.getTime(),
+                notBeforeTime == null ? Long.MIN_VALUE : notBeforeTime.getTime());
+    }
+
+    /**
+     * Verifies the projected claims of a token.
+     *
+     * @param claims The projected claims. Must not be {@code null}.
+     *
+     * @throws InvalidTokenException If a claim check failed.
+     */
+    public void verify(final TokenClaims claims)
+            throws InvalidTokenException {
+
+        verify(claims.getIssuer(), claims.getAudience(),
+                claims.getExpirationTimeMillis(), claims.getNotBeforeTimeMillis());
+    }
+
+    private void verify(final String issuer, final List<String> audience, final long expirationTime, final long notBeforeTime)
+            throws InvalidTokenException {
+
+        if (!expectedIssuer.equals(issuer)) {
+            throw new InvalidTokenException(RejectionReason.INVALID_ISSUER, "Unexpected token issuer");
+        }
+
+        if (!acceptedAudience.isEmpty() && !isAcceptedAudience(audience)) {
+            throw new InvalidTokenException(RejectionReason.INVALID_AUDIENCE, "Token not intended for this audience");
+        }
+
+        if (expirationTime == Long.MAX_VALUE && expirationTimeRequired) {
+            throw new InvalidTokenException(RejectionReason.MALFORMED, "Missing token expiration time");
+        }
+        final long now = System.currentTimeMillis();
+        if (expirationTime <= now - maxClockSkewMillis) {
+            throw new InvalidTokenException(RejectionReason.EXPIRED, "Expired token");
+        }
+        if (notBeforeTime > now + maxClockSkewMillis) {
+            throw new InvalidTokenException(RejectionReason.NOT_YET_VALID, "Token not valid yet");
+        }
+    }
+
+    private boolean isAcceptedAudience(final List<String> audience) {
+        if (audience == null) {
+            return false;
+        }
+        for (String value : audience) {
+            if (acceptedAudience.contains(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the expected token issuer.
+     *
+     * @return The expected issuer.
+     */
+    public String getExpectedIssuer() {
+        return expectedIssuer;
+    }
+
+    /**
+     * Returns the accepted audience values.
+     *
+     * @return The accepted audience, empty if the audience isn't checked.
+     */
+    public Set<String> getAcceptedAudience() {
+        return acceptedAudience;
+    }
+
+    /**
+     * Returns the maximum clock skew.
+     *
+     * @return The maximum clock skew, in seconds.
+     */
+    public int getMaxClockSkew() {
+        return (int) (maxClockSkewMillis / 1000L);
+    }
+
+    /**
+     * Returns {@code true} if tokens without an {@code exp} claim are
+     * rejected.
+     */
+    public boolean isExpirationTimeRequired() {
+        return expirationTimeRequired;
+    }
+
+    /**
+     * Returns the time until which a token is accepted, its expiration time
+     * plus the clock skew, e.g. to cache it as long.
+     *
+     * @param expirationTime The expiration time, in milliseconds since the
+     *                       epoch, {@link Long#MAX_VALUE} if none.
+     *
+     * @return The time in milliseconds since the epoch, exclusive.
+     */
+    public long getAcceptedUntil(final long expirationTime) {
+        return expirationTime > Long.MAX_VALUE - maxClockSkewMillis ? Long.MAX_VALUE : expirationTime + maxClockSkewMillis;
+    }
+}
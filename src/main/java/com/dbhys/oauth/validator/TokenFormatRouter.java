@@ -0,0 +1,74 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.security.Authentication;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.proc.BadJOSEException;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Routes a token by its format: compact JWTs, i.e. with 2 or 4 dots, to
+ * the JWT authenticator, and other, opaque tokens to the introspection
+ * authenticator. Counting the dots is the only work done before routing.
+ *
+ * <p>Instances are thread-safe.
+ */
+public class TokenFormatRouter implements TokenAuthenticator {
+
+    private final TokenAuthenticator jwtAuthenticator;
+
+    private final TokenAuthenticator opaqueAuthenticator;
+
+    /**
+     * Creates a new token format router.
+     *
+     * @param jwtAuthenticator    The authenticator of JWTs. Must not be
+     *                            {@code null}.
+     * @param opaqueAuthenticator The authenticator of opaque tokens. Must
+     *                            not be {@code null}.
+     */
+    public TokenFormatRouter(final TokenAuthenticator jwtAuthenticator, final TokenAuthenticator opaqueAuthenticator) {
+        if (jwtAuthenticator == null || opaqueAuthenticator == null) {
+            throw new IllegalArgumentException("The token authenticators must not be null");
+        }
+        this.jwtAuthenticator = jwtAuthenticator;
+        this.opaqueAuthenticator = opaqueAuthenticator;
+    }
+
+    @Override
+    public Authentication authenticate(final String credential, final int offset)
+            throws java.text.ParseException, BadJOSEException, JOSEException {
+
+        return route(credential, offset).authenticate(credential, offset);
+    }
+
+    @Override
+    public CompletionStage<Authentication> authenticateAsync(final String credential, final int offset) {
+        return route(credential, offset).authenticateAsync(credential, offset);
+    }
+
+    /**
+     * Returns the authenticator of the token found at the specified offset
+     * of a credential.
+     *
+     * @param credential The credential. Must not be {@code null}.
+     * @param offset     The offset of the raw token in the credential.
+     *
+     * @return The authenticator.
+     */
+    public TokenAuthenticator route(final String credential, final int offset) {
+        int dots = 0;
+        for (int i = credential.indexOf('.', offset); i >= 0; i = credential.indexOf('.', i + 1)) {
+            dots++;
+        }
+        return dots == 2 || dots == 4 ? jwtAuthenticator : opaqueAuthenticator;
+    }
+
+    public TokenAuthenticator getJwtAuthenticator() {
+        return jwtAuthenticator;
+    }
+
+    public TokenAuthenticator getOpaqueAuthenticator() {
+        return opaqueAuthenticator;
+    }
+}
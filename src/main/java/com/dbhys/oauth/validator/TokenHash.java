@@ -0,0 +1,68 @@
+package com.dbhys.oauth.validator;
+
+/**
+ * Fast 64-bit hash of raw token characters, used to key the token caches.
+ * The hash is not cryptographic, callers must confirm a hit against the
+ * stored token.
+ */
+final class TokenHash {
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    // Of the check hash, independent of the main one
+    private static final long CHECK_SEED = 0xD6E8FEB86659FD93L;
+
+    private static final long M1 = 0xBF58476D1CE4E5B9L;
+
+    private static final long M2 = 0x94D049BB133111EBL;
+
+    private TokenHash() {
+    }
+
+    /**
+     * Hashes the characters of the specified string from the given offset
+     * to its end. Four independent lanes are mixed so the loop is not
+     * bound by the latency of a single multiply chain.
+     *
+     * @param s      The string. Must not be {@code null}.
+     * @param offset The offset of the first character to hash.
+     *
+     * @return The 64-bit hash.
+     */
+    static long hash(final String s, final int offset) {
+        return hash(s, offset, SEED);
+    }
+
+    /**
+     * Hashes the characters of the specified string from the given offset
+     * to its end with another seed than {@link #hash}, to confirm a hit of
+     * a cache keeping hashes only.
+     *
+     * @param s      The string. Must not be {@code null}.
+     * @param offset The offset of the first character to hash.
+     *
+     * @return The 64-bit check hash.
+     */
+    static long checkHash(final String s, final int offset) {
+        return hash(s, offset, CHECK_SEED);
+    }
+
+    private static long hash(final String s, final int offset, final long seed) {
+        final int end = s.length();
+        long h0 = seed, h1 = seed + 1, h2 = seed + 2, h3 = seed + 3;
+        int i = offset;
+        for (; i + 3 < end; i += 4) {
+            h0 = (h0 ^ s.charAt(i)) * M1;
+            h1 = (h1 ^ s.charAt(i + 1)) * M1;
+            h2 = (h2 ^ s.charAt(i + 2)) * M1;
+            h3 = (h3 ^ s.charAt(i + 3)) * M1;
+        }
+        for (; i < end; i++) {
+            h0 = (h0 ^ s.charAt(i)) * M1;
+        }
+        long h = h0 ^ Long.rotateLeft(h1, 16) ^ Long.rotateLeft(h2, 32) ^ Long.rotateLeft(h3, 48) ^ (end - offset);
+        h = (h ^ (h >>> 30)) * M1;
+        h = (h ^ (h >>> 27)) * M2;
+        return h ^ (h >>> 31);
+    }
+}
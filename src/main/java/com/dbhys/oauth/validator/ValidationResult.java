@@ -0,0 +1,80 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+
+/**
+ * Outcome of validating one token of a batch, either the verified claims or
+ * the reason the token was rejected.
+ */
+public final class ValidationResult {
+
+    private final int index;
+
+    private final JWT jwt;
+
+    private final JWTClaimsSet claimsSet;
+
+    private final Exception exception;
+
+    private ValidationResult(int index, JWT jwt, JWTClaimsSet claimsSet, Exception exception) {
+        this.index = index;
+        this.jwt = jwt;
+        this.claimsSet = claimsSet;
+        this.exception = exception;
+    }
+
+    static ValidationResult success(final int index, final JWT jwt, final JWTClaimsSet claimsSet) {
+        return new ValidationResult(index, jwt, claimsSet, null);
+    }
+
+    static ValidationResult failure(final int index, final JWT jwt, final Exception exception) {
+        return new ValidationResult(index, jwt, null, exception);
+    }
+
+    /**
+     * Returns the position of the token in the validated batch.
+     *
+     * @return The index.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the validated token.
+     *
+     * @return The token.
+     */
+    public JWT getJWT() {
+        return jwt;
+    }
+
+    /**
+     * Returns {@code true} if the token is valid.
+     *
+     * @return {@code true} if valid.
+     */
+    public boolean isValid() {
+        return exception == null;
+    }
+
+    /**
+     * Returns the claims set of a valid token.
+     *
+     * @return The claims set, {@code null} if the token is invalid.
+     */
+    public JWTClaimsSet getClaimsSet() {
+        return claimsSet;
+    }
+
+    /**
+     * Returns why the token is invalid, e.g. an
+     * {@link InvalidTokenException} with its {@link RejectionReason}.
+     *
+     * @return The exception, {@code null} if the token is valid.
+     */
+    public Exception getException() {
+        return exception;
+    }
+}
@@ -0,0 +1,210 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.security.Authentication;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of successfully verified tokens.
+ *
+ * <p>Entries are keyed by a 64-bit hash of the raw token and held in a
+ * 4-way set associative table, a hit is confirmed against the stored token
+ * so a hash collision can never return another caller's authentication.
+ * Each entry expires when the token is no longer accepted, at its
+ * {@code exp} plus the tolerated clock skew. When a set is full a new
+ * token is only admitted if it was seen more often recently than the least
+ * frequent resident (TinyLFU), so a scan of one-off tokens can't flush the
+ * hot ones.
+ *
+ * <p>A hit returns the shared immutable {@link Authentication} without any
+ * parsing or crypto work and without allocating.
+ */
+public class VerifiedTokenCache {
+
+    private static final int WAYS = 4;
+
+    private final AtomicReferenceArray<Entry> table;
+
+    private final int setMask;
+
+    private final FrequencySketch sketch;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Creates a new verified token cache.
+     *
+     * @param maximumSize The maximum number of cached tokens, rounded up to
+     *                    a power of two. Must be positive.
+     */
+    public VerifiedTokenCache(final int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximum size of the token cache must be positive");
+        }
+        int sets = Math.max(1, Integer.highestOneBit((maximumSize + WAYS - 1) / WAYS - 1) << 1);
+        this.table = new AtomicReferenceArray<>(sets * WAYS);
+        this.setMask = sets - 1;
+        this.sketch = new FrequencySketch(sets * WAYS);
+    }
+
+    /**
+     * Returns the cached authentication for the specified token.
+     *
+     * @param token The raw token. Must not be {@code null}.
+     * @param now   The current time, in milliseconds since the epoch.
+     *
+     * @return The authentication, {@code null} if the token isn't cached
+     *         or has expired.
+     */
+    public Authentication get(final String token, final long now) {
+        return get(token, 0, now);
+    }
+
+    /**
+     * Returns the cached authentication for the token found at the
+     * specified offset of a credential, e.g. after the {@code Bearer}
+     * scheme of an {@code Authorization} header, without extracting it.
+     *
+     * @param credential The credential. Must not be {@code null}.
+     * @param offset     The offset of the raw token in the credential.
+     * @param now        The current time, in milliseconds since the epoch.
+     *
+     * @return The authentication, {@code null} if the token isn't cached
+     *         or has expired.
+     */
+    public Authentication get(final String credential, final int offset, final long now) {
+        long hash = TokenHash.hash(credential, offset);
+        int base = indexOf(hash);
+        int length = credential.length() - offset;
+        sketch.increment(hash);
+        for (int i = base; i < base + WAYS; i++) {
+            Entry entry = table.get(i);
+            if (entry != null && entry.hash == hash && entry.token.length() == length
+                    && credential.regionMatches(offset, entry.token, 0, length)) {
+                if (entry.expiresAt > now) {
+                    hitCount.increment();
+                    return entry.authentication;
+                }
+                table.compareAndSet(i, entry, null);
+                break;
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * Caches the authentication of a verified token until it expires.
+     *
+     * @param token          The raw token. Must not be {@code null}.
+     * @param authentication The authentication. Must not be {@code null}.
+     * @param expiresAt      The time the token is no longer accepted, in
+     *                       milliseconds since the epoch.
+     * @param now            The current time, in milliseconds since the
+     *                       epoch.
+     */
+    public void put(final String token, final Authentication authentication, final long expiresAt, final long now) {
+        if (expiresAt <= now) {
+            return;
+        }
+        long hash = TokenHash.hash(token, 0);
+        int base = indexOf(hash);
+        Entry candidate = new Entry(hash, token, authentication, expiresAt);
+
+        int victimIndex = -1;
+        Entry victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (int i = base; i < base + WAYS; i++) {
+            Entry entry = table.get(i);
+            if (entry == null || entry.expiresAt <= now || entry.hash == hash) {
+                if (table.compareAndSet(i, entry, candidate)) {
+                    return;
+                }
+                continue;
+            }
+            int frequency = sketch.frequency(entry.hash);
+            if (frequency < victimFrequency) {
+                victimIndex = i;
+                victim = entry;
+                victimFrequency = frequency;
+            }
+        }
+        if (victim != null && sketch.frequency(hash) > victimFrequency
+                && table.compareAndSet(victimIndex, victim, candidate)) {
+            evictionCount.increment();
+        }
+    }
+
+    /**
+     * Removes all cached tokens.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found a cached token.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of lookups that found no cached token.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of unexpired tokens evicted to admit more frequent
+     * ones.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Returns the maximum number of cached tokens.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return table.length();
+    }
+
+    private int indexOf(final long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & setMask) * WAYS;
+    }
+
+    private static final class Entry {
+
+        private final long hash;
+
+        private final String token;
+
+        private final Authentication authentication;
+
+        private final long expiresAt;
+
+        private Entry(long hash, String token, Authentication authentication, long expiresAt) {
+            this.hash = hash;
+            this.token = token;
+            this.authentication = authentication;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.jwk.JWK;
+
+import java.security.Key;
+
+/**
+ * Key handed out by {@link CachingJWSKeySelector}. Besides the JCA key it
+ * carries the JWK it was made from and a ready-built verifier, which
+ * {@link CachingJWSVerifierFactory} hands to the JWT processor as is.
+ */
+final class VerifierKey implements Key {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient JWK jwk;
+
+    private final Key key;
+
+    private final transient JWSVerifier verifier;
+
+    VerifierKey(final JWK jwk, final Key key, final JWSVerifier verifier) {
+        this.jwk = jwk;
+        this.key = key;
+        this.verifier = verifier;
+    }
+
+    JWK getJWK() {
+        return jwk;
+    }
+
+    JWSVerifier getVerifier() {
+        return verifier;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return key.getAlgorithm();
+    }
+
+    @Override
+    public String getFormat() {
+        return key.getFormat();
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        return key.getEncoded();
+    }
+}
@@ -0,0 +1,53 @@
+package com.dbhys.oauth;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import java.util.Date;
+
+/**
+ * RS256 signing key and token minting shared by the tests.
+ */
+public final class TokenFixture {
+
+    public static final String ISSUER = "http://oauth.dbhys.local:5556";
+
+    private final RSAKey rsaKey;
+
+    public TokenFixture() throws JOSEException {
+        this.rsaKey = new RSAKeyGenerator(2048).keyID("rs-1").generate();
+    }
+
+    public JWKSource<SecurityContext> jwkSource() {
+        return new ImmutableJWKSet<>(new JWKSet(rsaKey.toPublicJWK()));
+    }
+
+    /**
+     * Mints a token of the fixture issuer valid for an hour.
+     */
+    public String mint(String subject) throws JOSEException {
+        long now = System.currentTimeMillis();
+        return mint(new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject(subject)
+                .issueTime(new Date(now))
+                .expirationTime(new Date(now + 3_600_000L))
+                .build());
+    }
+
+    public String mint(JWTClaimsSet claimsSet) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(rsaKey.getKeyID()).build(), claimsSet);
+        jwt.sign(new RSASSASigner(rsaKey));
+        return jwt.serialize();
+    }
+}
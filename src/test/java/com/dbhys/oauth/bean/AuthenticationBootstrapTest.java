@@ -0,0 +1,96 @@
+package com.dbhys.oauth.bean;
+
+import com.dbhys.oauth.config.AuthenticationResourceServerConfig;
+import com.dbhys.oauth.http.TransportResourceRetriever;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuthenticationBootstrapTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void waitsForTheOtherIssuers() throws Exception {
+        AuthenticationResourceServerConfig config = new AuthenticationResourceServerConfig();
+        config.setIssuer("https://idp.example.com");
+        config.setJwksFile(writeJWKSet("primary.json").toString());
+        AuthenticationResourceServerConfig.Issuer other = new AuthenticationResourceServerConfig.Issuer();
+        other.setIssuer("https://other.example.com");
+
+        TransportResourceRetriever resourceRetriever = new TransportResourceRetriever(500, 500, 0);
+        try (AuthenticationBootstrap bootstrap = new AuthenticationBootstrap(config, resourceRetriever);
+             AuthenticationBootstrap otherBootstrap = new AuthenticationBootstrap(config, other, resourceRetriever)) {
+            otherBootstrap.setTransport(request -> {
+                throw new IOException("unavailable");
+            });
+            bootstrap.readyWith(otherBootstrap);
+            otherBootstrap.start();
+            bootstrap.start();
+
+            // Its own JWK set is loaded at once, the other issuer's discovery keeps failing
+            assertFalse(bootstrap.awaitReady(200, TimeUnit.MILLISECONDS));
+            assertEquals(AuthenticationBootstrap.State.WARMING, bootstrap.getState());
+            assertFalse(bootstrap.whenReady().toCompletableFuture().isDone());
+            long deadline = System.currentTimeMillis() + 5_000L;
+            while (bootstrap.getLastError() == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertEquals("unavailable", bootstrap.getLastError().getMessage());
+        }
+    }
+
+    @Test
+    void readyOnceTheOtherIssuersAre() throws Exception {
+        AuthenticationResourceServerConfig config = new AuthenticationResourceServerConfig();
+        config.setIssuer("https://idp.example.com");
+        config.setJwksFile(writeJWKSet("primary.json").toString());
+        AuthenticationResourceServerConfig.Issuer other = new AuthenticationResourceServerConfig.Issuer();
+        other.setIssuer("https://other.example.com");
+        other.setJwksFile(writeJWKSet("other.json").toString());
+
+        TransportResourceRetriever resourceRetriever = new TransportResourceRetriever(500, 500, 0);
+        try (AuthenticationBootstrap bootstrap = new AuthenticationBootstrap(config, resourceRetriever);
+             AuthenticationBootstrap otherBootstrap = new AuthenticationBootstrap(config, other, resourceRetriever)) {
+            bootstrap.readyWith(otherBootstrap);
+            bootstrap.start();
+            assertFalse(bootstrap.isReady());
+            otherBootstrap.start();
+            assertTrue(bootstrap.awaitReady(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void namesAnInvalidJWKSetFile() throws Exception {
+        Path jwksFile = dir.resolve("jwks.json");
+        Files.write(jwksFile, "{\"keys\": [".getBytes(StandardCharsets.UTF_8));
+        AuthenticationResourceServerConfig config = new AuthenticationResourceServerConfig();
+        config.setIssuer("https://idp.example.com");
+        config.setJwksFile(jwksFile.toString());
+
+        ParseException e = assertThrows(ParseException.class,
+                () -> new AuthenticationBootstrap(config, new TransportResourceRetriever(500, 500, 0)));
+        assertTrue(e.getMessage().contains(jwksFile.toString()), e.getMessage());
+    }
+
+    private Path writeJWKSet(String name) throws Exception {
+        Path jwksFile = dir.resolve(name);
+        Files.write(jwksFile, new JWKSet(new RSAKeyGenerator(2048).keyID(name).generate().toPublicJWK())
+                .toString().getBytes(StandardCharsets.UTF_8));
+        return jwksFile;
+    }
+}
@@ -0,0 +1,249 @@
+package com.dbhys.oauth.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpClientTransportTest {
+
+    private static final String JWKS = "{\"keys\":[]}";
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/jwks", exchange -> {
+            byte[] body = JWKS.getBytes(StandardCharsets.UTF_8);
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+                try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+                    out.write(body);
+                }
+                body = gzipped.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "test-http"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void sendsToLocalEndpoint() throws Exception {
+        HttpClientTransport transport = new HttpClientTransport(null, null, executor);
+        HTTPResponse response = transport.send(get("http"));
+        assertEquals(200, response.getStatusCode());
+        assertEquals(JWKS, response.getContent());
+        assertNull(response.getHeaderValue(HttpHeader.CONTENT_ENCODING));
+
+        response = transport.sendAsync(get("http")).get(5, TimeUnit.SECONDS);
+        assertEquals(JWKS, response.getContent());
+    }
+
+    @Test
+    void sendsHttpsWithTheClientByDefault() throws Exception {
+        AtomicInteger engines = new AtomicInteger();
+        HttpClientTransport transport = new HttpClientTransport(null, new RecordingSSLContext(engines), executor);
+        // The plain HTTP endpoint fails the handshake, after the client opened its TLS engine
+        assertThrows(IOException.class, () -> transport.send(get("https")));
+        assertTrue(engines.get() > 0, "HTTPS request not sent with the HttpClient");
+    }
+
+    @Test
+    void fallbackDoesNotBlockTheCaller() throws Exception {
+        AtomicReference<Thread> connectingThread = new AtomicReference<>();
+        HTTPRequest request = get("https");
+        // Takes the request to HttpURLConnection, failing the connection
+        request.setSSLSocketFactory(new RefusingSocketFactory(connectingThread));
+
+        CompletableFuture<HTTPResponse> response = new HttpClientTransport(null, null, executor).sendAsync(request);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException, String.valueOf(e.getCause()));
+        assertEquals("test-http", connectingThread.get().getName());
+
+        connectingThread.set(null);
+        CompletableFuture<HTTPResponse> withoutExecutor = new HttpClientTransport().sendAsync(request);
+        assertThrows(ExecutionException.class, () -> withoutExecutor.get(5, TimeUnit.SECONDS));
+        assertTrue(connectingThread.get() != Thread.currentThread());
+    }
+
+    private HTTPRequest get(final String scheme) throws IOException {
+        HTTPRequest request = new HTTPRequest(HTTPRequest.Method.GET,
+                new URL(scheme + "://127.0.0.1:" + server.getAddress().getPort() + "/jwks"));
+        request.setConnectTimeout(2_000);
+        request.setReadTimeout(2_000);
+        return request;
+    }
+
+    /**
+     * Default SSL context counting the engines created for connections.
+     */
+    private static final class RecordingSSLContext extends SSLContext {
+
+        RecordingSSLContext(final AtomicInteger engines) throws NoSuchAlgorithmException {
+            super(new RecordingSpi(SSLContext.getDefault(), engines), SSLContext.getDefault().getProvider(), "Default");
+        }
+    }
+
+    private static final class RecordingSpi extends SSLContextSpi {
+
+        private final SSLContext delegate;
+
+        private final AtomicInteger engines;
+
+        RecordingSpi(final SSLContext delegate, final AtomicInteger engines) {
+            this.delegate = delegate;
+            this.engines = engines;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) {
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            engines.incrementAndGet();
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+
+    /**
+     * Records the thread creating a socket, then fails.
+     */
+    private static final class RefusingSocketFactory extends SSLSocketFactory {
+
+        private final AtomicReference<Thread> thread;
+
+        RefusingSocketFactory(final AtomicReference<Thread> thread) {
+            this.thread = thread;
+        }
+
+        private Socket refuse() throws IOException {
+            thread.set(Thread.currentThread());
+            throw new IOException("Refused by the test");
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return refuse();
+        }
+
+        @Override
+        public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+            return refuse();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return refuse();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return refuse();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return refuse();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return refuse();
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return new String[0];
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return new String[0];
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.dbhys.oauth.jwk;
+
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RefreshAheadJWKSourceTest {
+
+    /**
+     * Serves a set with a new key ID on each fetch, the n-th fetch
+     * serving key ID "k" + n.
+     */
+    private static final class VersionedRetriever implements ResourceRetriever {
+
+        final AtomicInteger fetches = new AtomicInteger();
+
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        final CountDownLatch release;
+
+        final RSAKey rsaKey;
+
+        VersionedRetriever(final CountDownLatch release)
+                throws Exception {
+
+            this.release = release;
+            this.rsaKey = new RSAKeyGenerator(2048).generate().toPublicJWK();
+        }
+
+        @Override
+        public Resource retrieveResource(final URL url) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                int version = fetches.incrementAndGet();
+                release.await(5, TimeUnit.SECONDS);
+                Thread.sleep(2);
+                JWKSet jwkSet = new JWKSet(new RSAKey.Builder(rsaKey).keyID("k" + version).build());
+                return new Resource(jwkSet.toString(), "application/json");
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    @Test
+    void serializesConcurrentRefreshes()
+            throws Exception {
+
+        VersionedRetriever retriever = new VersionedRetriever(new CountDownLatch(0));
+        try (RefreshAheadJWKSource<SecurityContext> source = new RefreshAheadJWKSource<>(
+                new URL("http://idp.local/jwks"), retriever, 5, TimeUnit.MINUTES)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                threads.add(new Thread(source::refresh));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(1, retriever.maxInFlight.get());
+            assertEquals(8, retriever.fetches.get());
+            // The last fetch wins
+            assertEquals("k8", source.getJWKSet().getKeys().get(0).getKeyID());
+        }
+    }
+
+    @Test
+    void unknownKeyLookupUsesTheRefreshItWaitedOn()
+            throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        VersionedRetriever retriever = new VersionedRetriever(release);
+        try (RefreshAheadJWKSource<SecurityContext> source = new RefreshAheadJWKSource<>(
+                new URL("http://idp.local/jwks"), retriever, 5, TimeUnit.MINUTES)) {
+            Thread refresh = new Thread(source::refresh);
+            refresh.start();
+            while (retriever.fetches.get() == 0) {
+                Thread.sleep(1);
+            }
+            AtomicInteger found = new AtomicInteger();
+            Thread lookup = new Thread(() -> found.set(
+                    source.get(new JWKSelector(new JWKMatcher.Builder().keyID("k1").build()), null).size()));
+            lookup.start();
+            Thread.sleep(20);
+            release.countDown();
+            refresh.join();
+            lookup.join();
+            assertEquals(1, found.get());
+            assertEquals(1, retriever.fetches.get());
+            assertEquals(1, source.getUnknownKeyFetchCount());
+        }
+    }
+
+    @Test
+    void failingListenerDoesNotEndTheRefreshes()
+            throws Exception {
+
+        VersionedRetriever retriever = new VersionedRetriever(new CountDownLatch(0));
+        try (RefreshAheadJWKSource<SecurityContext> source = new RefreshAheadJWKSource<>(
+                new URL("http://idp.local/jwks"), retriever, 5, TimeUnit.MINUTES)) {
+            AtomicInteger calls = new AtomicInteger();
+            source.addListener(jwkSet -> {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("listener failed");
+                }
+            });
+            source.startInBackground();
+            long deadline = System.currentTimeMillis() + 5_000L;
+            while (retriever.fetches.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // Retried with backoff rather than waiting out the lifespan
+            assertTrue(retriever.fetches.get() >= 2);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.dbhys.oauth.security;
+
+import com.dbhys.oauth.TokenFixture;
+import com.dbhys.oauth.bean.OAuthClientMetadata;
+import com.dbhys.oauth.config.AuthenticationResourceServerConfig;
+import com.dbhys.oauth.validator.AuthenticationTokenValidator;
+import com.dbhys.oauth.validator.CachingJWSKeySelector;
+import com.dbhys.oauth.validator.VerifiedTokenCache;
+import com.nimbusds.jose.JWSAlgorithm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ApiSecurityInterceptorTest {
+
+    // Bytes allowed per cached-token request, the success path must not allocate
+    private static final double ALLOCATION_BUDGET = 1.0;
+
+    private GenericApplicationContext context;
+
+    private ApiSecurityInterceptor interceptor;
+
+    private TokenFixture fixture;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fixture = new TokenFixture();
+        AuthenticationResourceServerConfig config = new AuthenticationResourceServerConfig();
+        config.setIssuer(TokenFixture.ISSUER);
+        AuthenticationTokenValidator validator = new AuthenticationTokenValidator(TokenFixture.ISSUER,
+                new CachingJWSKeySelector<>(JWSAlgorithm.RS256, fixture.jwkSource()), null);
+        validator.setTokenCache(new VerifiedTokenCache(1024));
+
+        context = new GenericApplicationContext();
+        context.getBeanFactory().registerSingleton("config", config);
+        context.getBeanFactory().registerSingleton("authenticationTokenValidator", validator);
+        context.getBeanFactory().registerSingleton("oAuthClientMetadata",
+                new OAuthClientMetadata(TokenFixture.ISSUER, new String[]{"RS256"}, TokenFixture.ISSUER + "/jwks"));
+        context.refresh();
+
+        interceptor = new ApiSecurityInterceptor();
+        interceptor.setApplicationContext(context);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void acceptsValidToken() throws Exception {
+        StubHttpServletRequest request = new StubHttpServletRequest("GET", "/api")
+                .header("Authorization", "Bearer " + fixture.mint("alice"));
+        assertTrue(interceptor.preHandle(request, new StubHttpServletResponse(), null));
+        assertEquals("alice", AuthenticationHelper.getAuthentication().getUsername());
+        interceptor.afterCompletion(request, new StubHttpServletResponse(), null, null);
+    }
+
+    @Test
+    void rejectsMissingToken() throws Exception {
+        StubHttpServletRequest request = new StubHttpServletRequest("GET", "/api")
+                .header("X-Requested-With", "XMLHttpRequest")
+                .header("Accept", "application/json");
+        StubHttpServletResponse response = new StubHttpServletResponse();
+        assertFalse(interceptor.preHandle(request, response, null));
+        assertEquals(401, response.getStatus());
+        assertTrue(response.getBody().contains("login_required"));
+    }
+
+    @Test
+    void cachedTokenPathDoesNotAllocate() throws Exception {
+        StubHttpServletRequest request = new StubHttpServletRequest("GET", "/api")
+                .header("Authorization", "Bearer " + fixture.mint("alice"));
+        StubHttpServletResponse response = new StubHttpServletResponse();
+        // Until compiled, escape analysis only applies to compiled code
+        for (int i = 0; i < 200_000; i++) {
+            handle(request, response);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int iterations = 100_000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            handle(request, response);
+        }
+        double perRequest = (double) (threads.getCurrentThreadAllocatedBytes() - before) / iterations;
+        assertTrue(perRequest <= ALLOCATION_BUDGET, "preHandle allocates " + perRequest + " B/op");
+    }
+
+    private void handle(StubHttpServletRequest request, StubHttpServletResponse response) throws Exception {
+        if (!interceptor.preHandle(request, response, null)) {
+            throw new AssertionError("The token was rejected");
+        }
+        interceptor.afterCompletion(request, response, null, null);
+    }
+}
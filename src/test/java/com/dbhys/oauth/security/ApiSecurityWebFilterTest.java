@@ -0,0 +1,34 @@
+package com.dbhys.oauth.security;
+
+import com.dbhys.oauth.util.PathPatternMatcher;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.RequestPath;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ApiSecurityWebFilterTest {
+
+    @Test
+    void matchPathRemovesPathParameters() {
+        assertEquals("/api/admin", ApiSecurityWebFilter.matchPath(RequestPath.parse("/api/admin;.js", null)));
+        assertEquals("/api/admin/users", ApiSecurityWebFilter.matchPath(RequestPath.parse("/api;x=1/admin;.css/users", null)));
+        assertEquals("/api/admin", ApiSecurityWebFilter.matchPath(RequestPath.parse("/app/api/admin;.js", "/app")));
+    }
+
+    @Test
+    void matchPathDecodesSegments() {
+        assertEquals("/api/app.js", ApiSecurityWebFilter.matchPath(RequestPath.parse("/api/app%2Ejs", null)));
+        assertEquals("/api/../admin", ApiSecurityWebFilter.matchPath(RequestPath.parse("/api/%2e%2e/admin", null)));
+    }
+
+    @Test
+    void pathParametersDontReachExcludedPaths() {
+        PathPatternMatcher matcher = PathPatternMatcher.compile(null, Collections.singletonList("/**/*.js"));
+        for (String path : new String[]{"/api/admin;.js", "/api/admin;jsessionid=1.js", "/api/admin%3B.js/..", "/api/x/%2e%2e/admin"}) {
+            assertTrue(matcher.requiresAuthentication(ApiSecurityWebFilter.matchPath(RequestPath.parse(path, null))), path);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.dbhys.oauth.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScopeAuthorizationInterceptorTest {
+
+    @Controller
+    @RequiresScope("inventory:read")
+    static class InventoryController {
+
+        @GetMapping("/inventory")
+        public String list() {
+            return "list";
+        }
+
+        @GetMapping("/inventory/restock")
+        @RequiresScope(value = "inventory:write", roles = "inventory-admin")
+        public String restock() {
+            return "restock";
+        }
+    }
+
+    @Controller
+    static class ReportController {
+
+        @GetMapping("/reports/export")
+        @RequiresScope(value = "reports:export", roles = "reports-admin")
+        public String export() {
+            return "export";
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        AuthenticationHelper.setAuthentication(null);
+    }
+
+    @Test
+    void internsRequirementsAtStartup() {
+        try (GenericApplicationContext context = new GenericApplicationContext()) {
+            context.registerBean(ReportController.class);
+            context.registerBean(RequestMappingHandlerMapping.class);
+            context.registerBean(ScopeAuthorizationInterceptor.class);
+            context.refresh();
+        }
+        // Before any request
+        ScopeDictionary dictionary = ScopeDictionary.getInstance();
+        assertTrue(dictionary.indexOf("reports:export") >= 0);
+        assertTrue(dictionary.indexOf("reports-admin") >= 0);
+    }
+
+    @Test
+    void checksScopesAndRoles() throws Exception {
+        ScopeAuthorizationInterceptor interceptor = new ScopeAuthorizationInterceptor();
+        HandlerMethod list = new HandlerMethod(new InventoryController(), "list");
+        HandlerMethod restock = new HandlerMethod(new InventoryController(), "restock");
+        // As resolved at startup
+        interceptor.getRequirement(list);
+        interceptor.getRequirement(restock);
+
+        StubHttpServletResponse response = new StubHttpServletResponse();
+        assertFalse(interceptor.preHandle(new StubHttpServletRequest("GET", "/inventory"), response, list));
+        assertEquals(401, response.getStatus());
+
+        authenticate("inventory:read unrelated:scope", "inventory-admin");
+        assertTrue(interceptor.preHandle(new StubHttpServletRequest("GET", "/inventory"), new StubHttpServletResponse(), list));
+        response = new StubHttpServletResponse();
+        assertFalse(interceptor.preHandle(new StubHttpServletRequest("GET", "/inventory/restock"), response, restock));
+        assertEquals(403, response.getStatus());
+        assertEquals("Bearer error=\"insufficient_scope\", scope=\"inventory:write\"", response.getHeader("WWW-Authenticate"));
+
+        authenticate("inventory:write", "inventory-admin");
+        assertTrue(interceptor.preHandle(new StubHttpServletRequest("GET", "/inventory/restock"), new StubHttpServletResponse(), restock));
+        assertEquals(-1, ScopeDictionary.getInstance().indexOf("unrelated:scope"));
+    }
+
+    private static void authenticate(String scope, String role) {
+        ScopeDictionary dictionary = ScopeDictionary.getInstance();
+        AuthenticationHelper.setAuthentication(new Authentication("alice", null, null, null, null,
+                dictionary.parse(scope), dictionary.parse(Collections.singletonList(role))));
+    }
+}
@@ -0,0 +1,79 @@
+package com.dbhys.oauth.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScopeDictionaryTest {
+
+    @Test
+    void grantedNamesAreLookedUpOnly() {
+        ScopeDictionary dictionary = new ScopeDictionary(8);
+        ScopeSet required = dictionary.require(Collections.singletonList("read"));
+        ScopeSet granted = dictionary.parse("read write  admin ");
+        assertTrue(granted.containsAll(required));
+        assertEquals(Arrays.asList("read", "write", "admin"), granted.toList());
+        assertEquals(-1, dictionary.indexOf("write"));
+        assertTrue(granted.contains("write"));
+        assertFalse(granted.contains("delete"));
+    }
+
+    @Test
+    void grantedNamesCantFillTheDictionary() {
+        ScopeDictionary dictionary = new ScopeDictionary(4);
+        List<String> flood = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            flood.add("junk-" + i);
+        }
+        assertEquals(flood, dictionary.parse(flood).toList());
+        assertTrue(dictionary.parse(String.join(" ", flood)).contains("junk-9999"));
+        assertEquals(-1, dictionary.indexOf("junk-1"));
+        ScopeSet required = dictionary.require(Arrays.asList("orders:read", "orders:write"));
+        assertTrue(dictionary.parse("junk-1 orders:write orders:read").containsAll(required));
+    }
+
+    @Test
+    void fullDictionaryMakesLaterRequirementsUnsatisfiable() {
+        ScopeDictionary dictionary = new ScopeDictionary(2);
+        ScopeSet required = dictionary.require(Arrays.asList("read", "write"));
+        ScopeSet beyond = dictionary.require(Arrays.asList("read", "admin"));
+        assertSame(ScopeSet.UNSATISFIABLE, beyond);
+        ScopeSet granted = dictionary.parse(Arrays.asList("read", "write", "admin"));
+        assertTrue(granted.containsAll(required));
+        assertFalse(granted.containsAll(beyond));
+    }
+
+    @Test
+    void setsBeyondSixtyFourNames() {
+        ScopeDictionary dictionary = new ScopeDictionary(256);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            names.add("s" + i);
+        }
+        dictionary.require(names);
+        ScopeSet granted = dictionary.parse(names);
+        assertEquals(names, granted.toList());
+        assertTrue(granted.contains("s149"));
+        assertTrue(granted.containsAll(dictionary.require(Arrays.asList("s3", "s130"))));
+        ScopeSet low = dictionary.parse("s1 s2");
+        assertFalse(low.containsAll(dictionary.require(Collections.singletonList("s130"))));
+        assertTrue(low.containsAll(ScopeSet.EMPTY));
+    }
+
+    @Test
+    void ignoresOtherClaimTypes() {
+        ScopeDictionary dictionary = new ScopeDictionary(4);
+        dictionary.require(Collections.singletonList("read"));
+        assertSame(ScopeSet.EMPTY, dictionary.parse(null));
+        assertSame(ScopeSet.EMPTY, dictionary.parse(42L));
+        assertEquals(Collections.singletonList("read"), dictionary.parse(Arrays.asList(7L, "read", null)).toList());
+    }
+}
@@ -0,0 +1,61 @@
+package com.dbhys.oauth.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Request with a method, a servlet path and headers, other methods are
+ * unsupported. Unlike the Spring mock, {@link #getHeader} doesn't allocate,
+ * so the allocations of the code under test can be measured.
+ */
+final class StubHttpServletRequest extends HttpServletRequestWrapper {
+
+    private final String method;
+
+    private final String servletPath;
+
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    StubHttpServletRequest(String method, String servletPath) {
+        super((HttpServletRequest) Proxy.newProxyInstance(StubHttpServletRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, m, args) -> {
+                    throw new UnsupportedOperationException(m.getName());
+                }));
+        this.method = method;
+        this.servletPath = servletPath;
+    }
+
+    StubHttpServletRequest header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getServletPath() {
+        return servletPath;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return null;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        return new StringBuffer("http://localhost").append(servletPath);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+}
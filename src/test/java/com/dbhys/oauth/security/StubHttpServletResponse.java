@@ -0,0 +1,84 @@
+package com.dbhys.oauth.security;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Response recording its status, headers, body and redirect, other methods
+ * are unsupported.
+ */
+final class StubHttpServletResponse extends HttpServletResponseWrapper {
+
+    private int status = 200;
+
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private final StringWriter body = new StringWriter();
+
+    private String redirect;
+
+    StubHttpServletResponse() {
+        super((HttpServletResponse) Proxy.newProxyInstance(StubHttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, m, args) -> {
+                    throw new UnsupportedOperationException(m.getName());
+                }));
+    }
+
+    @Override
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public void setContentType(String type) {
+        headers.put("Content-Type", type);
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        return new PrintWriter(body);
+    }
+
+    @Override
+    public void resetBuffer() {
+    }
+
+    @Override
+    public void flushBuffer() {
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        this.status = 302;
+        this.redirect = location;
+    }
+
+    String getBody() {
+        return body.toString();
+    }
+
+    String getRedirect() {
+        return redirect;
+    }
+}
@@ -0,0 +1,57 @@
+package com.dbhys.oauth.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathPatternMatcherTest {
+
+    private final PathPatternMatcher matcher = PathPatternMatcher.compile(
+            Collections.singletonList("/api/**"),
+            Arrays.asList("/api/public/*", "/**/*.js", "/api/health"));
+
+    @Test
+    void requiresAuthenticationForIncludedPaths() {
+        assertTrue(matcher.requiresAuthentication("/api/admin"));
+        assertTrue(matcher.requiresAuthentication("/api/public/docs/index"));
+        assertTrue(matcher.requiresAuthentication("/api/health/details"));
+        assertFalse(matcher.requiresAuthentication("/static/app"));
+        assertFalse(matcher.requiresAuthentication("/"));
+    }
+
+    @Test
+    void skipsExcludedPaths() {
+        assertFalse(matcher.requiresAuthentication("/api/public/docs"));
+        assertFalse(matcher.requiresAuthentication("/api/health"));
+        assertFalse(matcher.requiresAuthentication("/api/assets/app.js"));
+        assertFalse(matcher.requiresAuthentication("//api///health/"));
+        assertTrue(matcher.requiresAuthentication("/api/assets/app.jsx"));
+    }
+
+    @Test
+    void neverSkipsDotSegments() {
+        assertTrue(matcher.requiresAuthentication("/api/public/../admin"));
+        assertTrue(matcher.requiresAuthentication("/api/health/.."));
+        assertTrue(matcher.requiresAuthentication("/api/./assets/app.js"));
+        assertTrue(matcher.requiresAuthentication("/static/../api/admin"));
+    }
+
+    @Test
+    void includesAllPathsByDefault() {
+        PathPatternMatcher all = PathPatternMatcher.compile(null, Collections.singletonList("/actuator/**"));
+        assertTrue(all.requiresAuthentication("/anything"));
+        assertFalse(all.requiresAuthentication("/actuator"));
+        assertFalse(all.requiresAuthentication("/actuator/health"));
+    }
+
+    @Test
+    void rejectsInvalidPatterns() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PathPatternMatcher.compile(Collections.singletonList("api/**"), null));
+    }
+}
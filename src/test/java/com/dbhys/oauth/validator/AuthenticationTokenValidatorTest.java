@@ -0,0 +1,62 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.TokenFixture;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AuthenticationTokenValidatorTest {
+
+    private RSAKey rsaKey;
+
+    private AuthenticationTokenValidator validator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rsaKey = new RSAKeyGenerator(2048).keyID("rs-1").generate();
+        validator = new AuthenticationTokenValidator(TokenFixture.ISSUER,
+                new CachingJWSKeySelector<>(JWSAlgorithm.RS256, new ImmutableJWKSet<>(new JWKSet(rsaKey.toPublicJWK()))), null);
+    }
+
+    @Test
+    void acceptsJWTOrMissingType() throws Exception {
+        assertEquals("alice", validator.authenticate(mint(null)).getUsername());
+        assertEquals("alice", validator.authenticate(mint(JOSEObjectType.JWT)).getUsername());
+    }
+
+    @Test
+    void rejectsForeignType() throws Exception {
+        for (JOSEObjectType type : new JOSEObjectType[]{new JOSEObjectType("at+jwt"), JOSEObjectType.JOSE_JSON}) {
+            String token = mint(type);
+            InvalidTokenException e = assertThrows(InvalidTokenException.class, () -> validator.authenticate(token));
+            assertEquals(RejectionReason.MALFORMED, e.getReason());
+            assertThrows(Exception.class, () -> validator.validate(SignedJWT.parse(token)));
+        }
+    }
+
+    private String mint(JOSEObjectType type) throws Exception {
+        long now = System.currentTimeMillis();
+        JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                .issuer(TokenFixture.ISSUER)
+                .subject("alice")
+                .expirationTime(new Date(now + 3_600_000L))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(rsaKey.getKeyID()).type(type).build(), claimsSet);
+        jwt.sign(new RSASSASigner(rsaKey));
+        return jwt.serialize();
+    }
+}
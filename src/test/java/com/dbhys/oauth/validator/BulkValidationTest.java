@@ -0,0 +1,144 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.TokenFixture;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkValidationTest {
+
+    private RSAKey rsaKey1;
+
+    private RSAKey rsaKey2;
+
+    private ECKey ecKey;
+
+    private AuthenticationTokenValidator validator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rsaKey1 = new RSAKeyGenerator(2048).keyID("rs-1").generate();
+        rsaKey2 = new RSAKeyGenerator(2048).keyID("rs-2").generate();
+        ecKey = new ECKeyGenerator(Curve.P_256).keyID("ec-1").generate();
+        JWKSet jwkSet = new JWKSet(Arrays.<JWK>asList(rsaKey1.toPublicJWK(), rsaKey2.toPublicJWK(), ecKey.toPublicJWK()));
+        validator = new AuthenticationTokenValidator(TokenFixture.ISSUER,
+                new CachingJWSKeySelector<>(new HashSet<>(Arrays.asList(JWSAlgorithm.RS256, JWSAlgorithm.ES256)),
+                        new ImmutableJWKSet<>(jwkSet)), null);
+    }
+
+    @Test
+    void validatesMixedKeyAndAlgorithmGroups() throws Exception {
+        List<JWT> jwts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            jwts.add(mint(rsaKey1, JWSAlgorithm.RS256, null, "rs1-" + i));
+            jwts.add(mint(rsaKey2, JWSAlgorithm.RS256, null, "rs2-" + i));
+            jwts.add(mint(ecKey, JWSAlgorithm.ES256, null, "ec-" + i));
+        }
+
+        List<ValidationResult> results = validator.validateAll(jwts);
+        assertEquals(jwts.size(), results.size());
+        for (int i = 0; i < jwts.size(); i++) {
+            ValidationResult result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertSame(jwts.get(i), result.getJWT());
+            assertTrue(result.isValid(), String.valueOf(result.getException()));
+            assertEquals(((SignedJWT) jwts.get(i)).getJWTClaimsSet().getSubject(), result.getClaimsSet().getSubject());
+        }
+    }
+
+    @Test
+    void rejectsOnlyTheBadTokenOfAGroup() throws Exception {
+        List<JWT> jwts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            jwts.add(mint(rsaKey1, JWSAlgorithm.RS256, null, "alice-" + i));
+        }
+        // Same alg and kid, signed by another key
+        RSAKey impostor = new RSAKeyGenerator(2048).keyID("rs-1").generate();
+        jwts.set(17, mint(impostor, JWSAlgorithm.RS256, null, "mallory"));
+
+        List<ValidationResult> results = validator.validateAll(jwts);
+        for (int i = 0; i < jwts.size(); i++) {
+            assertEquals(i != 17, results.get(i).isValid(), "token " + i);
+        }
+        assertTrue(results.get(17).getException() instanceof InvalidTokenException);
+    }
+
+    @Test
+    void matchesSingleTokenValidation() throws Exception {
+        long now = System.currentTimeMillis();
+        List<JWT> jwts = Arrays.asList(
+                mint(rsaKey1, JWSAlgorithm.RS256, null, "valid"),
+                mint(rsaKey1, JWSAlgorithm.RS256, JOSEObjectType.JWT, "typed"),
+                // Rejected by the type verifier of the JWT processor
+                mint(rsaKey1, JWSAlgorithm.RS256, new JOSEObjectType("secevent+jwt"), "foreign-type"),
+                mint(rsaKey2, JWSAlgorithm.RS256, null, new JWTClaimsSet.Builder()
+                        .issuer(TokenFixture.ISSUER).subject("expired").expirationTime(new Date(now - 3_600_000L)).build()),
+                mint(rsaKey2, JWSAlgorithm.RS256, null, new JWTClaimsSet.Builder()
+                        .issuer("https://other.example.com").subject("foreign").expirationTime(new Date(now + 3_600_000L)).build()),
+                mint(new RSAKeyGenerator(2048).keyID("unknown").generate(), JWSAlgorithm.RS256, null, "unknown-key"),
+                mint(ecKey, JWSAlgorithm.ES256, null, "ec"));
+
+        List<ValidationResult> results = validator.validateAll(jwts);
+        for (int i = 0; i < jwts.size(); i++) {
+            boolean valid;
+            try {
+                validator.validate(jwts.get(i));
+                valid = true;
+            } catch (Exception e) {
+                valid = false;
+            }
+            assertEquals(valid, results.get(i).isValid(), "token " + i);
+        }
+        assertTrue(results.get(0).isValid());
+        assertTrue(results.get(1).isValid());
+        assertFalse(results.get(2).isValid());
+        assertFalse(results.get(3).isValid());
+        assertFalse(results.get(4).isValid());
+        assertFalse(results.get(5).isValid());
+        assertTrue(results.get(6).isValid());
+    }
+
+    private static SignedJWT mint(JWK key, JWSAlgorithm alg, JOSEObjectType type, String subject) throws Exception {
+        long now = System.currentTimeMillis();
+        return mint(key, alg, type, new JWTClaimsSet.Builder()
+                .issuer(TokenFixture.ISSUER)
+                .subject(subject)
+                .issueTime(new Date(now))
+                .expirationTime(new Date(now + 3_600_000L))
+                .build());
+    }
+
+    private static SignedJWT mint(JWK key, JWSAlgorithm alg, JOSEObjectType type, JWTClaimsSet claimsSet) throws Exception {
+        JWSSigner signer = key instanceof ECKey ? new ECDSASigner((ECKey) key) : new RSASSASigner((RSAKey) key);
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(alg).keyID(key.getKeyID()).type(type).build(), claimsSet);
+        jwt.sign(signer);
+        return jwt;
+    }
+}
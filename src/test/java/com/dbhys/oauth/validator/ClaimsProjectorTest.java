@@ -0,0 +1,72 @@
+package com.dbhys.oauth.validator;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ClaimsProjectorTest {
+
+    private final ClaimsProjector projector = new ClaimsProjector(Collections.singleton("scope"));
+
+    @Test
+    void projectsRegisteredAndConfiguredClaims()
+            throws Exception {
+
+        TokenClaims claims = projector.project("h.p.s", bytes(
+                "{\"iss\":\"https://issuer\",\"groups\":[{\"a\":[1]},\"x\"],\"sub\":\"al\\u0069ce\","
+                        + "\"aud\":[\"api\",\"web\"],\"exp\":1700000000,\"scope\":\"read write\"}"));
+        assertEquals("https://issuer", claims.getIssuer());
+        assertEquals("alice", claims.getSubject());
+        assertEquals(Arrays.asList("api", "web"), claims.getAudience());
+        assertEquals(1_700_000_000_000L, claims.getExpirationTimeMillis());
+        assertEquals("read write", claims.getClaim("scope"));
+    }
+
+    @Test
+    void readsIssuerOnly()
+            throws Exception {
+
+        assertEquals("https://issuer", projector.projectIssuer(bytes("{\"iss\":\"https://issuer\",\"sub\":")));
+        assertNull(projector.projectIssuer(bytes("{}")));
+    }
+
+    @Test
+    void rejectsDeeplyNestedArrays() {
+        String nested = "[".repeat(6000);
+        InvalidTokenException e = assertThrows(InvalidTokenException.class,
+                () -> projector.project("h.p.s", bytes("{\"aud\":" + nested + "}")));
+        assertSame(RejectionReason.MALFORMED, e.getReason());
+        e = assertThrows(InvalidTokenException.class,
+                () -> projector.projectIssuer(bytes("{\"iss\":" + nested + "}")));
+        assertSame(RejectionReason.MALFORMED, e.getReason());
+    }
+
+    @Test
+    void acceptsNestingUpToTheLimit()
+            throws Exception {
+
+        String nested = "[".repeat(ClaimsProjector.MAX_DEPTH) + "]".repeat(ClaimsProjector.MAX_DEPTH);
+        TokenClaims claims = projector.project("h.p.s", bytes("{\"scope\":" + nested + "}"));
+        assertEquals(1, ((java.util.List<?>) claims.getClaim("scope")).size());
+    }
+
+    @Test
+    void rejectsTruncatedAndWronglyTypedPayloads() {
+        for (String payload : new String[]{"", "[]", "{\"iss\":", "{\"sub\":\"alice", "{\"exp\":\"soon\"}"}) {
+            InvalidTokenException e = assertThrows(InvalidTokenException.class,
+                    () -> projector.project("h.p.s", bytes(payload)), payload);
+            assertSame(RejectionReason.MALFORMED, e.getReason());
+        }
+    }
+
+    private static byte[] bytes(final String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,51 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.util.Base64URL;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EdDSAVerifierTest {
+
+    @Test
+    void rejectsUnrecognizedCriticalParameters() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        byte[] encoded = keyPair.getPublic().getEncoded();
+        // The raw key follows the 12 byte X.509 prefix
+        OctetKeyPair publicJWK = new OctetKeyPair.Builder(Curve.Ed25519,
+                Base64URL.encode(Arrays.copyOfRange(encoded, 12, encoded.length))).build();
+        EdDSAVerifier verifier = new EdDSAVerifier(publicJWK);
+
+        JWSHeader header = new JWSHeader(JWSAlgorithm.EdDSA);
+        assertTrue(verifier.verify(header, signingInput(header), signature(keyPair, header)));
+
+        JWSHeader critical = new JWSHeader.Builder(JWSAlgorithm.EdDSA)
+                .criticalParams(Collections.singleton("urn:example:policy"))
+                .customParam("urn:example:policy", "strict")
+                .build();
+        assertFalse(verifier.verify(critical, signingInput(critical), signature(keyPair, critical)));
+    }
+
+    private static byte[] signingInput(JWSHeader header) {
+        return (header.toBase64URL() + "." + Base64URL.encode("{\"sub\":\"alice\"}")).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static Base64URL signature(KeyPair keyPair, JWSHeader header) throws Exception {
+        Signature signer = Signature.getInstance("Ed25519");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(signingInput(header));
+        return Base64URL.encode(signer.sign());
+    }
+}
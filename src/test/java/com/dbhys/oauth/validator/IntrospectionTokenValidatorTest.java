@@ -0,0 +1,152 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.bean.OAuthClientMetadata;
+import com.dbhys.oauth.http.HTTPRequest;
+import com.dbhys.oauth.http.HTTPResponse;
+import com.dbhys.oauth.http.InMemoryTransport;
+import com.dbhys.oauth.security.Authentication;
+import com.dbhys.oauth.security.ScopeDictionary;
+import com.nimbusds.jose.JOSEException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntrospectionTokenValidatorTest {
+
+    private static final String ISSUER = "https://idp.example";
+
+    private static final String ENDPOINT = ISSUER + "/introspect";
+
+    private final InMemoryTransport transport = new InMemoryTransport();
+
+    private final AtomicReference<HTTPRequest> lastRequest = new AtomicReference<>();
+
+    private IntrospectionTokenValidator validator;
+
+    @BeforeEach
+    void setUp() {
+        OAuthClientMetadata metadata = new OAuthClientMetadata(ISSUER, new String[]{"RS256"}, ISSUER + "/jwks");
+        metadata.setIntrospectionUri(ENDPOINT);
+        validator = new IntrospectionTokenValidator(ISSUER, metadata, "resource-server", "s3cret", 1_000, 1_000);
+        validator.setTransport(transport);
+        validator.setTokenCache(new VerifiedTokenCache(16));
+        validator.setRejectedTokenCache(new RejectedTokenCache(16, 30));
+    }
+
+    @Test
+    void authenticatesActiveToken() throws Exception {
+        ScopeDictionary.getInstance().require(Collections.singletonList("orders:read"));
+        long exp = System.currentTimeMillis() / 1000L + 3600L;
+        respond(request -> json("{\"active\":true,\"sub\":\"alice\",\"iss\":\"" + ISSUER + "\",\"exp\":" + exp
+                + ",\"scope\":\"orders:read orders:write\"}"));
+
+        Authentication authentication = authenticate("Bearer opaque-1");
+        assertEquals("alice", authentication.getUsername());
+        assertTrue(authentication.hasScope("orders:read"));
+        assertTrue(authentication.hasScope("orders:write"));
+        assertEquals(exp * 1000L, authentication.getExpireAt().getTime());
+        HTTPRequest request = lastRequest.get();
+        assertEquals(HTTPRequest.Method.POST, request.getMethod());
+        assertEquals("Basic cmVzb3VyY2Utc2VydmVyOnMzY3JldA==", request.getAuthorization());
+        assertEquals("token=opaque-1&token_type_hint=access_token", request.getQuery());
+
+        // Served from the token cache
+        assertSame(authentication, authenticate("Bearer opaque-1"));
+        assertEquals(1, transport.getRequestCount());
+    }
+
+    @Test
+    void rejectsInactiveAndForeignTokens() throws Exception {
+        respond(request -> json("{\"active\":false}"));
+        assertEquals(RejectionReason.INACTIVE, rejection("Bearer revoked"));
+        // Remembered
+        assertEquals(RejectionReason.INACTIVE, rejection("Bearer revoked"));
+        assertEquals(1, transport.getRequestCount());
+
+        respond(request -> json("{\"active\":true,\"sub\":\"mallory\",\"iss\":\"https://other.example\"}"));
+        assertEquals(RejectionReason.INVALID_ISSUER, rejection("Bearer foreign"));
+    }
+
+    @Test
+    void doesNotCacheEndpointFailures() throws Exception {
+        respond(request -> new HTTPResponse(503));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> authenticate("Bearer opaque-2"));
+        assertTrue(e.getCause() instanceof JOSEException);
+        assertFalse(e.getCause() instanceof InvalidTokenException);
+
+        respond(request -> json("{\"active\":true,\"sub\":\"alice\"}"));
+        assertEquals("alice", authenticate("Bearer opaque-2").getUsername());
+        assertEquals(2, transport.getRequestCount());
+    }
+
+    @Test
+    void coalescesConcurrentIntrospections() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        respond(request -> {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return json("{\"active\":true,\"sub\":\"bob\"}");
+        });
+        // The in-memory transport answers on the calling thread
+        CompletableFuture<Authentication> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return authenticate("Bearer opaque-3");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<Authentication>> others = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            others.add(validator.authenticateAsync("Bearer opaque-3", 7).toCompletableFuture());
+        }
+        release.countDown();
+        Authentication authentication = first.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Authentication> other : others) {
+            assertSame(authentication, other.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, transport.getRequestCount());
+    }
+
+    private void respond(final Function<HTTPRequest, HTTPResponse> endpoint) {
+        transport.register(ENDPOINT, request -> {
+            lastRequest.set(request);
+            return endpoint.apply(request);
+        });
+    }
+
+    private static HTTPResponse json(final String content) {
+        HTTPResponse response = new HTTPResponse(200);
+        response.setContent(content);
+        return response;
+    }
+
+    private Authentication authenticate(final String credential) throws Exception {
+        return validator.authenticateAsync(credential, 7).toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    private RejectionReason rejection(final String credential) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> authenticate(credential));
+        return ((InvalidTokenException) e.getCause()).getReason();
+    }
+}
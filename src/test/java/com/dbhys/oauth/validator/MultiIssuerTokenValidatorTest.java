@@ -0,0 +1,79 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MultiIssuerTokenValidatorTest {
+
+    private static final String HEADER = "eyJhbGciOiJSUzI1NiJ9";
+
+    private final AuthenticationTokenValidator first = validator("https://first.example");
+
+    private final AuthenticationTokenValidator second = validator("https://second.example");
+
+    private final MultiIssuerTokenValidator router = new MultiIssuerTokenValidator(Arrays.asList(first, second));
+
+    @Test
+    void routesByIssuer()
+            throws Exception {
+
+        assertSame(first, router.route(token("{\"iss\":\"https://first.example\",\"sub\":\"alice\"}"), 0));
+        assertSame(second, router.route("Bearer " + token("{\"iss\":\"https://second.example\"}"), "Bearer ".length()));
+    }
+
+    @Test
+    void routesByIssuerAfterLargeClaims()
+            throws Exception {
+
+        // Payloads of every length modulo 4 with the issuer past the first decoded part
+        StringBuilder groups = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            groups.append(i == 0 ? "" : ",").append("\"group-").append(i).append('"');
+        }
+        groups.append(']');
+        for (int pad = 0; pad < 4; pad++) {
+            String payload = "{\"groups\":" + groups + ",\"sub\":\"" + "a".repeat(pad) + "\",\"iss\":\"https://second.example\"}";
+            assertSame(second, router.route(token(payload), 0), payload);
+            String padded = HEADER + "." + Base64.getUrlEncoder().encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".c2ln";
+            assertSame(second, router.route(padded, 0), payload);
+        }
+    }
+
+    @Test
+    void rejectsUnknownOrMissingIssuer() {
+        for (String payload : new String[]{"{\"iss\":\"https://other.example\"}", "{\"sub\":\"alice\"}"}) {
+            InvalidTokenException e = assertThrows(InvalidTokenException.class, () -> router.route(token(payload), 0));
+            assertSame(RejectionReason.INVALID_ISSUER, e.getReason());
+        }
+    }
+
+    @Test
+    void rejectsMalformedPayloads() {
+        String nested = "{\"groups\":" + "[".repeat(6000) + "}";
+        for (String token : new String[]{HEADER, HEADER + ".e*J9.c2ln", HEADER + ".eyJ9a.c2ln", token(nested), token("{\"iss\":7}")}) {
+            InvalidTokenException e = assertThrows(InvalidTokenException.class, () -> router.route(token, 0), token);
+            assertEquals(RejectionReason.MALFORMED, e.getReason());
+        }
+    }
+
+    private static String token(final String payload) {
+        return HEADER + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".c2ln";
+    }
+
+    private static AuthenticationTokenValidator validator(final String issuer) {
+        return new AuthenticationTokenValidator(issuer, new JWSVerificationKeySelector<SecurityContext>(JWSAlgorithm.RS256,
+                new ImmutableJWKSet<>(new JWKSet())), null);
+    }
+}
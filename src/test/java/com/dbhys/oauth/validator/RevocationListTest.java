@@ -0,0 +1,116 @@
+package com.dbhys.oauth.validator;
+
+import com.dbhys.oauth.security.Authentication;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RevocationListTest {
+
+    @Test
+    void appliesFullListsAndDeltas() {
+        RevocationList list = new RevocationList(cursor -> null);
+        assertFalse(list.isRevoked("a"));
+        list.apply(new RevocationUpdate(true, Arrays.asList("a", "b"), null, "1"));
+        assertTrue(list.isRevoked("a"));
+        assertTrue(list.isRevoked("b"));
+        assertFalse(list.isRevoked((String) null));
+
+        list.apply(new RevocationUpdate(false, Collections.singletonList("c"), Collections.singletonList("a"), "2"));
+        assertFalse(list.isRevoked("a"));
+        assertTrue(list.isRevoked("c"));
+        assertEquals(2, list.size());
+
+        // A complete list replaces the current one, restored IDs are ignored
+        list.apply(new RevocationUpdate(true, Collections.singletonList("d"), Collections.singletonList("d"), "3"));
+        assertFalse(list.isRevoked("b"));
+        assertTrue(list.isRevoked("d"));
+        assertEquals(1, list.size());
+
+        list.apply(new RevocationUpdate(false, null, Collections.singletonList("d"), "4"));
+        assertFalse(list.isRevoked("d"));
+        assertEquals(0, list.size());
+    }
+
+    @Test
+    void largeListHasNoFalseNegativesOrPositives() {
+        List<String> revoked = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            revoked.add("jti-" + i);
+        }
+        RevocationList list = new RevocationList(cursor -> null);
+        list.apply(new RevocationUpdate(true, revoked, null, null));
+        for (String jti : revoked) {
+            assertTrue(list.isRevoked(jti), jti);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertFalse(list.isRevoked("other-" + i));
+        }
+        // Crafted IDs are confirmed against the exact set like any other
+        assertFalse(list.isRevoked(""));
+        assertFalse(list.isRevoked("jti-1".repeat(10_000)));
+        assertFalse(list.isRevoked("jti-1\u0000"));
+        assertFalse(list.isRevoked("jtı-1"));
+    }
+
+    @Test
+    void checksTheProjectedJwtId() throws Exception {
+        RevocationList list = new RevocationList(cursor -> null);
+        list.apply(new RevocationUpdate(true, Collections.singletonList("revoked-1"), null, null));
+        ClaimsProjector projector = new ClaimsProjector(Collections.singleton(RevocationList.JWT_ID_CLAIM));
+        assertTrue(list.isRevoked(authentication(projector, "{\"sub\":\"alice\",\"jti\":\"revoked-1\"}")));
+        assertFalse(list.isRevoked(authentication(projector, "{\"sub\":\"alice\",\"jti\":\"valid-1\"}")));
+        assertFalse(list.isRevoked(authentication(projector, "{\"sub\":\"alice\"}")));
+        // Not a string, never listed
+        assertFalse(list.isRevoked(authentication(projector, "{\"sub\":\"alice\",\"jti\":7}")));
+        assertFalse(list.isRevoked(new Authentication("alice")));
+    }
+
+    @Test
+    void resynchronizesAfterAFailedPoll() {
+        Deque<Object> answers = new ArrayDeque<>(Arrays.asList(
+                new RevocationUpdate(true, Collections.singletonList("a"), null, "c1"),
+                new RevocationUpdate(false, Collections.singletonList("b"), null, "c2"),
+                new IOException("unavailable"),
+                new RevocationUpdate(true, Collections.singletonList("c"), null, "c3")));
+        List<String> cursors = new ArrayList<>();
+        RevocationList list = new RevocationList(cursor -> {
+            cursors.add(cursor);
+            Object answer = answers.poll();
+            if (answer instanceof IOException) {
+                throw (IOException) answer;
+            }
+            return (RevocationUpdate) answer;
+        });
+        assertTrue(list.refresh());
+        assertTrue(list.refresh());
+        assertTrue(list.isRevoked("a") && list.isRevoked("b"));
+        assertFalse(list.refresh());
+        // Kept until the next poll succeeds
+        assertTrue(list.isRevoked("b"));
+        assertTrue(list.refresh());
+        assertFalse(list.isRevoked("a"));
+        assertTrue(list.isRevoked("c"));
+        assertEquals(Arrays.asList(null, "c1", "c2", null), cursors);
+        assertNull(answers.poll());
+    }
+
+    private static Authentication authentication(final ClaimsProjector projector, final String payload)
+            throws Exception {
+
+        TokenClaims claims = projector.project("h.p.s", payload.getBytes(StandardCharsets.UTF_8));
+        return new Authentication(claims.getSubject(), null, null, null, claims);
+    }
+}
@@ -0,0 +1,54 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jose.util.Base64URL;
+import net.minidev.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokenClaimsTest {
+
+    private static final String PAYLOAD = "{\"sub\":\"alice\",\"roles\":[\"admin\"],\"address\":{\"country\":\"NL\"}}";
+
+    private static final String TOKEN = "eyJhbGciOiJSUzI1NiJ9."
+            + Base64URL.encode(PAYLOAD.getBytes(StandardCharsets.UTF_8)) + ".c2ln";
+
+    @Test
+    void toJSONObjectReturnsACopy()
+            throws Exception {
+
+        TokenClaims claims = new ClaimsProjector().project(TOKEN, PAYLOAD.getBytes(StandardCharsets.UTF_8));
+
+        JSONObject json = claims.toJSONObject();
+        json.put("sub", "mallory");
+        json.remove("roles");
+        ((JSONObject) json.get("address")).put("country", "XX");
+
+        JSONObject again = claims.toJSONObject();
+        assertEquals("alice", again.get("sub"));
+        assertEquals(List.of("admin"), again.get("roles"));
+        assertEquals("NL", ((Map<?, ?>) again.get("address")).get("country"));
+        assertEquals(List.of("admin"), claims.getClaim("roles"));
+        assertNull(claims.getClaim("missing"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getClaimDoesNotExposeTheSharedValues()
+            throws Exception {
+
+        TokenClaims claims = new ClaimsProjector(List.of("roles"))
+                .project(TOKEN, PAYLOAD.getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(UnsupportedOperationException.class, () -> ((List<Object>) claims.getClaim("roles")).add("root"));
+        ((Map<String, Object>) claims.getClaim("address")).put("country", "XX");
+        assertEquals(List.of("admin"), claims.getClaim("roles"));
+        assertEquals("NL", ((Map<?, ?>) claims.getClaim("address")).get("country"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.dbhys.oauth.validator;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokenClaimsVerifierTest {
+
+    private static final String ISSUER = "https://idp.example.com";
+
+    // Keeps the boundary checks clear of the time the test takes
+    private static final long MARGIN = 2_000L;
+
+    private final TokenClaimsVerifier verifier = new TokenClaimsVerifier(ISSUER,
+            new HashSet<>(Arrays.asList("orders", "billing")), 60);
+
+    @Test
+    void acceptsValidClaims() throws Exception {
+        long now = System.currentTimeMillis();
+        verifier.verify(claims(ISSUER, "billing", now + 3_600_000L, now - 1_000L), null);
+        verifier.verify(new JWTClaimsSet.Builder().issuer(ISSUER)
+                .audience(Arrays.asList("inventory", "orders")).expirationTime(new Date(now + 60_000L)).build(), null);
+    }
+
+    @Test
+    void rejectsIssuerMismatch() {
+        long now = System.currentTimeMillis();
+        assertRejected(RejectionReason.INVALID_ISSUER, claims("https://other.example.com", "orders", now + 60_000L, null));
+        assertRejected(RejectionReason.INVALID_ISSUER, claims(null, "orders", now + 60_000L, null));
+    }
+
+    @Test
+    void rejectsAudienceMismatch() {
+        long now = System.currentTimeMillis();
+        assertRejected(RejectionReason.INVALID_AUDIENCE, claims(ISSUER, "inventory", now + 60_000L, null));
+        assertRejected(RejectionReason.INVALID_AUDIENCE, claims(ISSUER, null, now + 60_000L, null));
+    }
+
+    @Test
+    void acceptsAnyAudienceIfNoneConfigured() throws Exception {
+        long now = System.currentTimeMillis();
+        new TokenClaimsVerifier(ISSUER).verify(claims(ISSUER, null, now + 60_000L, null), null);
+    }
+
+    @Test
+    void toleratesClockSkewOnExpiration() throws Exception {
+        long now = System.currentTimeMillis();
+        verifier.verify(claims(ISSUER, "orders", now - 60_000L + MARGIN, null), null);
+        assertRejected(RejectionReason.EXPIRED, claims(ISSUER, "orders", now - 60_000L - MARGIN, null));
+
+        TokenClaimsVerifier strict = new TokenClaimsVerifier(ISSUER, null, 0);
+        assertThrows(InvalidTokenException.class, () -> strict.verify(claims(ISSUER, null, now - MARGIN, null), null));
+    }
+
+    @Test
+    void toleratesClockSkewOnNotBefore() throws Exception {
+        long now = System.currentTimeMillis();
+        verifier.verify(claims(ISSUER, "orders", now + 3_600_000L, now + 60_000L - MARGIN), null);
+        assertRejected(RejectionReason.NOT_YET_VALID, claims(ISSUER, "orders", now + 3_600_000L, now + 60_000L + MARGIN));
+    }
+
+    @Test
+    void requiresExpirationTimeIfConfigured() throws Exception {
+        String payload = "{\"iss\":\"" + ISSUER + "\",\"sub\":\"alice\"}";
+        TokenClaims claims = new ClaimsProjector().project("e30." + payload + ".c2ln", payload.getBytes(StandardCharsets.UTF_8));
+
+        new TokenClaimsVerifier(ISSUER).verify(claims);
+        TokenClaimsVerifier required = new TokenClaimsVerifier(ISSUER, null, 60, true);
+        InvalidTokenException e = assertThrows(InvalidTokenException.class, () -> required.verify(claims));
+        assertEquals(RejectionReason.MALFORMED, e.getReason());
+        assertThrows(InvalidTokenException.class,
+                () -> required.verify(new JWTClaimsSet.Builder().issuer(ISSUER).build(), null));
+    }
+
+    @Test
+    void acceptedUntilIncludesClockSkew() {
+        assertEquals(1_060_000L, verifier.getAcceptedUntil(1_000_000L));
+        assertEquals(Long.MAX_VALUE, verifier.getAcceptedUntil(Long.MAX_VALUE));
+        assertEquals(1_000_000L, new TokenClaimsVerifier(ISSUER, Collections.emptySet(), 0).getAcceptedUntil(1_000_000L));
+    }
+
+    private void assertRejected(RejectionReason reason, JWTClaimsSet claimsSet) {
+        InvalidTokenException e = assertThrows(InvalidTokenException.class, () -> verifier.verify(claimsSet, null));
+        assertEquals(reason, e.getReason());
+    }
+
+    private static JWTClaimsSet claims(String issuer, String audience, long exp, Long nbf) {
+        return new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .audience(audience)
+                .expirationTime(new Date(exp))
+                .notBeforeTime(nbf == null ? null : new Date(nbf))
+                .build();
+    }
+}